@@ -0,0 +1,100 @@
+package com.arsw.shipwreckeds.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for what is broadcast to the game topics of the WebSocket broker.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.broadcast")
+public class BroadcastProperties {
+
+    /**
+     * When enabled, {@code /topic/game/{code}} carries sequenced keyframes and
+     * deltas instead of the full game state on every tick and move. Clients
+     * must understand the frame protocol before this is turned on.
+     */
+    private boolean deltaEnabled = false;
+
+    /**
+     * Frames sent between two periodic keyframes of a match.
+     */
+    private int keyframeInterval = 50;
+
+    /**
+     * How long a match keeps its delta stream without broadcasts before it is
+     * dropped; the next broadcast starts a new stream with a keyframe.
+     */
+    private long streamIdleMillis = 30_000;
+
+    /**
+     * Recent events of each match topic kept in memory for clients catching up
+     * after a reconnect. Values lower than one disable event sequencing.
+     */
+    private int historySize = 128;
+
+    /**
+     * When enabled, events of a match travel on a Redis channel of their own
+     * that a node only listens to while one of its sessions is subscribed to
+     * the match. Every node must run a release that listens to these channels
+     * before this is turned on.
+     */
+    private boolean perMatchChannels = false;
+
+    /**
+     * When enabled, events are published to Redis in the binary envelope
+     * instead of the JSON one. Both are read, but releases before the binary
+     * envelope only read JSON, so every node must be upgraded before this is
+     * turned on.
+     */
+    private boolean binaryEnvelope = false;
+
+    public boolean isDeltaEnabled() {
+        return deltaEnabled;
+    }
+
+    public void setDeltaEnabled(boolean deltaEnabled) {
+        this.deltaEnabled = deltaEnabled;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public void setKeyframeInterval(int keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    public long getStreamIdleMillis() {
+        return streamIdleMillis;
+    }
+
+    public void setStreamIdleMillis(long streamIdleMillis) {
+        this.streamIdleMillis = streamIdleMillis;
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+    }
+
+    public boolean isPerMatchChannels() {
+        return perMatchChannels;
+    }
+
+    public void setPerMatchChannels(boolean perMatchChannels) {
+        this.perMatchChannels = perMatchChannels;
+    }
+
+    public boolean isBinaryEnvelope() {
+        return binaryEnvelope;
+    }
+
+    public void setBinaryEnvelope(boolean binaryEnvelope) {
+        this.binaryEnvelope = binaryEnvelope;
+    }
+}
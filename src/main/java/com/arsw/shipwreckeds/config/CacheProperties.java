@@ -0,0 +1,142 @@
+package com.arsw.shipwreckeds.config;
+
+import com.arsw.shipwreckeds.service.cache.MatchStorageLayout;
+import com.arsw.shipwreckeds.service.cache.MatchUpdateStrategy;
+import com.arsw.shipwreckeds.service.cache.PayloadFormat;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for how matches stored in Redis are updated.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    /**
+     * How a match is stored: one JSON value ({@code value}) or a hash written
+     * field by field ({@code hash}). Matches stored with the other layout are
+     * not seen.
+     */
+    private MatchStorageLayout layout = MatchStorageLayout.VALUE;
+
+    /**
+     * Encoding written for match and session payloads: {@code json} or the
+     * compact {@code binary} layout. Both are always read, so switch to
+     * {@code binary} only once every node runs a release that reads it.
+     */
+    private PayloadFormat payloadFormat = PayloadFormat.JSON;
+
+    /**
+     * Size in bytes above which binary payloads are deflated before they are
+     * written; {@code 0} never compresses. Only applies to the {@code binary}
+     * payload format.
+     */
+    private int compressionThresholdBytes = 0;
+
+    /**
+     * Consistency strategy of match updates that are not applied by the owning
+     * node: {@code lock} or {@code optimistic}.
+     */
+    private MatchUpdateStrategy updateStrategy = MatchUpdateStrategy.LOCK;
+
+    /**
+     * Attempts of an optimistic update before it gives up with a conflict.
+     */
+    private int optimisticMaxAttempts = 8;
+
+    /**
+     * Backoff before the second optimistic attempt; it doubles on every further
+     * conflict, with random jitter, up to {@code optimistic-max-backoff-millis}.
+     */
+    private long optimisticBackoffMillis = 2;
+
+    /**
+     * Upper bound of the backoff between two optimistic attempts.
+     */
+    private long optimisticMaxBackoffMillis = 50;
+
+    /**
+     * How long a match read for a read-only lookup is served from memory
+     * before Redis is asked again, should its invalidation message be lost;
+     * {@code 0} turns the near cache off.
+     */
+    private long nearCacheTtlMillis = 0;
+
+    /**
+     * Matches kept in the near cache at most.
+     */
+    private int nearCacheMaxEntries = 1024;
+
+    public MatchStorageLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(MatchStorageLayout layout) {
+        this.layout = layout;
+    }
+
+    public PayloadFormat getPayloadFormat() {
+        return payloadFormat;
+    }
+
+    public void setPayloadFormat(PayloadFormat payloadFormat) {
+        this.payloadFormat = payloadFormat;
+    }
+
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    public MatchUpdateStrategy getUpdateStrategy() {
+        return updateStrategy;
+    }
+
+    public void setUpdateStrategy(MatchUpdateStrategy updateStrategy) {
+        this.updateStrategy = updateStrategy;
+    }
+
+    public int getOptimisticMaxAttempts() {
+        return optimisticMaxAttempts;
+    }
+
+    public void setOptimisticMaxAttempts(int optimisticMaxAttempts) {
+        this.optimisticMaxAttempts = optimisticMaxAttempts;
+    }
+
+    public long getOptimisticBackoffMillis() {
+        return optimisticBackoffMillis;
+    }
+
+    public void setOptimisticBackoffMillis(long optimisticBackoffMillis) {
+        this.optimisticBackoffMillis = optimisticBackoffMillis;
+    }
+
+    public long getOptimisticMaxBackoffMillis() {
+        return optimisticMaxBackoffMillis;
+    }
+
+    public void setOptimisticMaxBackoffMillis(long optimisticMaxBackoffMillis) {
+        this.optimisticMaxBackoffMillis = optimisticMaxBackoffMillis;
+    }
+
+    public long getNearCacheTtlMillis() {
+        return nearCacheTtlMillis;
+    }
+
+    public void setNearCacheTtlMillis(long nearCacheTtlMillis) {
+        this.nearCacheTtlMillis = nearCacheTtlMillis;
+    }
+
+    public int getNearCacheMaxEntries() {
+        return nearCacheMaxEntries;
+    }
+
+    public void setNearCacheMaxEntries(int nearCacheMaxEntries) {
+        this.nearCacheMaxEntries = nearCacheMaxEntries;
+    }
+}
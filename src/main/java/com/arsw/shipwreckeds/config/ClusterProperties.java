@@ -0,0 +1,166 @@
+package com.arsw.shipwreckeds.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for running several backend nodes against the same Redis: match
+ * ownership leases and the node-to-node command channel.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.cluster")
+public class ClusterProperties {
+
+    /**
+     * When enabled, the node that starts a match takes a renewable lease on it,
+     * keeps the authoritative state in memory and ticks it without the
+     * distributed lock. Other nodes forward player commands to the owner.
+     * Nodes of releases without ownership keep writing through the lock, so
+     * turn it on only once every node runs a release that has it.
+     */
+    private boolean ownershipEnabled = false;
+
+    /**
+     * Lifetime of a match lease. If the owner stops renewing it, the lease
+     * expires and the match can be adopted by another node.
+     */
+    private long leaseTtlMillis = 15_000;
+
+    /**
+     * How often the owner renews all its leases in one pipelined call.
+     */
+    private long leaseRenewMillis = 5_000;
+
+    /**
+     * How long a node waits for the owner to answer a forwarded REST command.
+     */
+    private long commandTimeoutMillis = 3_000;
+
+    /**
+     * How long a node caches the owner of a match before asking Redis again.
+     */
+    private long ownerCacheMillis = 1_000;
+
+    /**
+     * How often every node reports its load, adopts running matches nobody
+     * ticks and hands matches off when it carries more than its share.
+     */
+    private long rebalanceIntervalMillis = 5_000;
+
+    /**
+     * How long an unticked match waits for an underloaded node before any node
+     * adopts it.
+     */
+    private long orphanGraceMillis = 10_000;
+
+    /**
+     * Matches a node hands off at most per round, so load moves gradually.
+     */
+    private int maxMigrationsPerRound = 2;
+
+    /**
+     * Matches a node may carry above its fair share before it hands any off.
+     */
+    private int rebalanceSlack = 1;
+
+    /**
+     * Tick lag at which a node counts as saturated when weighting its share.
+     */
+    private long tickLagBudgetMillis = 250;
+
+    /**
+     * How long the owner of a match may keep mutations in memory before they
+     * are flushed to Redis, i.e. the most other nodes lag behind it. Changes
+     * of status, votes and eliminations are written right away; {@code 0}
+     * writes every mutation through.
+     */
+    private long writeBehindMillis = 0;
+
+    public boolean isOwnershipEnabled() {
+        return ownershipEnabled;
+    }
+
+    public void setOwnershipEnabled(boolean ownershipEnabled) {
+        this.ownershipEnabled = ownershipEnabled;
+    }
+
+    public long getLeaseTtlMillis() {
+        return leaseTtlMillis;
+    }
+
+    public void setLeaseTtlMillis(long leaseTtlMillis) {
+        this.leaseTtlMillis = leaseTtlMillis;
+    }
+
+    public long getLeaseRenewMillis() {
+        return leaseRenewMillis;
+    }
+
+    public void setLeaseRenewMillis(long leaseRenewMillis) {
+        this.leaseRenewMillis = leaseRenewMillis;
+    }
+
+    public long getCommandTimeoutMillis() {
+        return commandTimeoutMillis;
+    }
+
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    public long getOwnerCacheMillis() {
+        return ownerCacheMillis;
+    }
+
+    public void setOwnerCacheMillis(long ownerCacheMillis) {
+        this.ownerCacheMillis = ownerCacheMillis;
+    }
+
+    public long getRebalanceIntervalMillis() {
+        return rebalanceIntervalMillis;
+    }
+
+    public void setRebalanceIntervalMillis(long rebalanceIntervalMillis) {
+        this.rebalanceIntervalMillis = rebalanceIntervalMillis;
+    }
+
+    public long getOrphanGraceMillis() {
+        return orphanGraceMillis;
+    }
+
+    public void setOrphanGraceMillis(long orphanGraceMillis) {
+        this.orphanGraceMillis = orphanGraceMillis;
+    }
+
+    public int getMaxMigrationsPerRound() {
+        return maxMigrationsPerRound;
+    }
+
+    public void setMaxMigrationsPerRound(int maxMigrationsPerRound) {
+        this.maxMigrationsPerRound = maxMigrationsPerRound;
+    }
+
+    public int getRebalanceSlack() {
+        return rebalanceSlack;
+    }
+
+    public void setRebalanceSlack(int rebalanceSlack) {
+        this.rebalanceSlack = rebalanceSlack;
+    }
+
+    public long getTickLagBudgetMillis() {
+        return tickLagBudgetMillis;
+    }
+
+    public void setTickLagBudgetMillis(long tickLagBudgetMillis) {
+        this.tickLagBudgetMillis = tickLagBudgetMillis;
+    }
+
+    public long getWriteBehindMillis() {
+        return writeBehindMillis;
+    }
+
+    public void setWriteBehindMillis(long writeBehindMillis) {
+        this.writeBehindMillis = writeBehindMillis;
+    }
+}
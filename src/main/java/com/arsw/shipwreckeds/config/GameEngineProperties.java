@@ -0,0 +1,136 @@
+package com.arsw.shipwreckeds.config;
+
+import com.arsw.shipwreckeds.service.engine.ExecutionMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tuning knobs for the server-side {@code GameEngine} scheduler.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.engine")
+public class GameEngineProperties {
+
+    /**
+     * Number of worker lanes used to tick matches. Each match code is pinned to
+     * one lane so its ticks never run concurrently. Values lower than one fall
+     * back to the number of available processors.
+     */
+    private int tickLanes = 0;
+
+    /**
+     * How blocking match mutations (moves, REST commands, ticks and vote
+     * timeouts) are executed. {@code virtual} requires a build with the {@code java21} profile.
+     */
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    /**
+     * Duration of one slot of the timing wheel holding match ticks and deadlines.
+     */
+    private long wheelTickMillis = 10;
+
+    /**
+     * Number of slots of the timing wheel (rounded up to a power of two).
+     */
+    private int wheelSlots = 512;
+
+    /**
+     * Rate of the fixed-timestep NPC simulation in steps per second. The
+     * simulation runs in memory, decoupled from the 1 Hz match clock. Values
+     * lower than one keep the legacy behaviour of moving NPCs once per clock tick.
+     */
+    private int simulationHz = 0;
+
+    /**
+     * Maximum rate of snapshot broadcasts carrying the simulated NPC positions.
+     * Snapshots are skipped while other updates of the match already went out
+     * within the period. Values lower than one disable them.
+     */
+    private int snapshotHz = 0;
+
+    /**
+     * Ticks every match hosted by a lane together: one MGET, one pipelined batch
+     * of compare-and-set writes and one pipelined publish per lane and second,
+     * instead of a lock, GET, SET and PUBLISH per match.
+     */
+    private boolean batchTick = false;
+
+    /**
+     * Maximum age of the client timestamp at which eliminations and boat
+     * interactions are checked against the recent positions of the avatars.
+     * Values lower than one check current positions only.
+     */
+    private long rewindWindowMillis = 250;
+
+    public int getTickLanes() {
+        return tickLanes;
+    }
+
+    public void setTickLanes(int tickLanes) {
+        this.tickLanes = tickLanes;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public long getWheelTickMillis() {
+        return wheelTickMillis;
+    }
+
+    public void setWheelTickMillis(long wheelTickMillis) {
+        this.wheelTickMillis = wheelTickMillis;
+    }
+
+    public int getWheelSlots() {
+        return wheelSlots;
+    }
+
+    public void setWheelSlots(int wheelSlots) {
+        this.wheelSlots = wheelSlots;
+    }
+
+    public int getSimulationHz() {
+        return simulationHz;
+    }
+
+    public void setSimulationHz(int simulationHz) {
+        this.simulationHz = simulationHz;
+    }
+
+    public int getSnapshotHz() {
+        return snapshotHz;
+    }
+
+    public void setSnapshotHz(int snapshotHz) {
+        this.snapshotHz = snapshotHz;
+    }
+
+    public boolean isBatchTick() {
+        return batchTick;
+    }
+
+    public void setBatchTick(boolean batchTick) {
+        this.batchTick = batchTick;
+    }
+
+    public long getRewindWindowMillis() {
+        return rewindWindowMillis;
+    }
+
+    public void setRewindWindowMillis(long rewindWindowMillis) {
+        this.rewindWindowMillis = rewindWindowMillis;
+    }
+
+    /**
+     * @return configured lane count, or the number of available processors when
+     *         not explicitly set
+     */
+    public int effectiveTickLanes() {
+        return tickLanes > 0 ? tickLanes : Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -1,6 +1,10 @@
 package com.arsw.shipwreckeds.config;
 
+import com.arsw.shipwreckeds.service.cache.CompactPayloadSerializer;
 import com.arsw.shipwreckeds.service.cache.MatchCachePayload;
+import com.arsw.shipwreckeds.service.cache.MatchLockManager;
+import com.arsw.shipwreckeds.service.cache.MatchNearCache;
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
 import com.arsw.shipwreckeds.service.session.PlayerSessionPayload;
 import com.arsw.shipwreckeds.websocket.DistributedWsBroadcaster;
 import org.springframework.context.annotation.Bean;
@@ -10,7 +14,6 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.integration.redis.util.RedisLockRegistry;
 
@@ -18,11 +21,14 @@ import org.springframework.integration.redis.util.RedisLockRegistry;
 public class RedisConfig {
 
     @Bean("matchRedisTemplate")
-    public RedisTemplate<String, MatchCachePayload> matchRedisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, MatchCachePayload> matchRedisTemplate(RedisConnectionFactory connectionFactory,
+            CacheProperties properties) {
         RedisTemplate<String, MatchCachePayload> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        GenericJackson2JsonRedisSerializer valueSerializer = new GenericJackson2JsonRedisSerializer();
+        CompactPayloadSerializer<MatchCachePayload> valueSerializer = new CompactPayloadSerializer<>(
+                MatchCachePayload.class, MatchCachePayload::getVersion, properties.getPayloadFormat(),
+                properties.getCompressionThresholdBytes());
         template.setValueSerializer(valueSerializer);
         template.setHashKeySerializer(new StringRedisSerializer());
         template.setHashValueSerializer(valueSerializer);
@@ -32,11 +38,13 @@ public class RedisConfig {
 
     @Bean("playerSessionRedisTemplate")
     public RedisTemplate<String, PlayerSessionPayload> playerSessionRedisTemplate(
-            RedisConnectionFactory connectionFactory) {
+            RedisConnectionFactory connectionFactory, CacheProperties properties) {
         RedisTemplate<String, PlayerSessionPayload> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        GenericJackson2JsonRedisSerializer valueSerializer = new GenericJackson2JsonRedisSerializer();
+        CompactPayloadSerializer<PlayerSessionPayload> valueSerializer = new CompactPayloadSerializer<>(
+                PlayerSessionPayload.class, payload -> 0L, properties.getPayloadFormat(),
+                properties.getCompressionThresholdBytes());
         template.setValueSerializer(valueSerializer);
         template.setHashKeySerializer(new StringRedisSerializer());
         template.setHashValueSerializer(valueSerializer);
@@ -46,7 +54,7 @@ public class RedisConfig {
 
     @Bean
     public RedisLockRegistry redisLockRegistry(RedisConnectionFactory connectionFactory) {
-        return new RedisLockRegistry(connectionFactory, "shipwreckeds-locks");
+        return new RedisLockRegistry(connectionFactory, MatchLockManager.LOCK_REGISTRY_KEY);
     }
 
     @Bean
@@ -57,10 +65,14 @@ public class RedisConfig {
     @Bean
     public RedisMessageListenerContainer redisMessageListenerContainer(
             RedisConnectionFactory connectionFactory,
-            DistributedWsBroadcaster wsBroadcaster) {
+            DistributedWsBroadcaster wsBroadcaster,
+            MatchCommandBus commandBus,
+            MatchNearCache nearCache) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
         container.addMessageListener(wsBroadcaster, new ChannelTopic(DistributedWsBroadcaster.WS_CHANNEL));
+        container.addMessageListener(commandBus, new ChannelTopic(commandBus.inboxChannel()));
+        container.addMessageListener(nearCache, new ChannelTopic(MatchNearCache.CHANNEL));
         return container;
     }
 }
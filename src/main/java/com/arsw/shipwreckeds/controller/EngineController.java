@@ -0,0 +1,32 @@
+package com.arsw.shipwreckeds.controller;
+
+import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.engine.TickLaneStats;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Operational endpoints exposing the load of the local {@link GameEngine}.
+ */
+@RestController
+@RequestMapping("/api/engine")
+public class EngineController {
+
+    private final GameEngine gameEngine;
+
+    public EngineController(GameEngine gameEngine) {
+        this.gameEngine = gameEngine;
+    }
+
+    /**
+     * Lists queue depth and tick lag for every scheduler lane of this node.
+     */
+    @GetMapping("/lanes")
+    public ResponseEntity<List<TickLaneStats>> lanes() {
+        return ResponseEntity.ok(gameEngine.laneStats());
+    }
+}
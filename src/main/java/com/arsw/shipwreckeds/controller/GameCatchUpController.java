@@ -0,0 +1,86 @@
+package com.arsw.shipwreckeds.controller;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.dto.GameCatchUp;
+import com.arsw.shipwreckeds.model.dto.ReplayedEvent;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
+import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.websocket.MatchEventHistory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Answers clients that reconnect to a match with the events they missed, from
+ * the in-memory history of this node instead of a REST read of the match.
+ *
+ * <p>
+ * A node only records the events it relays, and with per-match channels it
+ * only relays a match while one of its sessions is subscribed to it. A client
+ * reconnecting to a node that was not following the match, or that stopped
+ * following it for a while, finds no history there; it then gets a snapshot
+ * of the match as stored, and the next relayed event carries the stream and
+ * sequence to continue from.
+ */
+@Controller
+public class GameCatchUpController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GameCatchUpController.class);
+    private static final String GAME_TOPIC = "/topic/game/";
+
+    private final MatchEventHistory history;
+    private final MatchService matchService;
+    private final GameSnapshotService snapshots;
+    private final ObjectMapper objectMapper;
+
+    public GameCatchUpController(MatchEventHistory history, MatchService matchService,
+            GameSnapshotService snapshots, ObjectMapper objectMapper) {
+        this.history = history;
+        this.matchService = matchService;
+        this.snapshots = snapshots;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Replies once, to the subscribing session only, on
+     * {@code /app/game/{code}/catchup}. The client passes the
+     * {@code match-stream} and {@code match-seq} headers of the last event it
+     * received; without them it gets the latest snapshot.
+     *
+     * @param code    match identifier
+     * @param stream  stream of the last event seen by the client
+     * @param lastSeq sequence number of that event
+     * @return missed events, or the latest snapshot when the gap is too old or
+     *         this node kept no history of the match
+     */
+    @SubscribeMapping("/game/{code}/catchup")
+    public GameCatchUp catchUp(@DestinationVariable String code,
+            @Header(name = MatchEventHistory.STREAM_HEADER, required = false) String stream,
+            @Header(name = MatchEventHistory.SEQ_HEADER, required = false) Long lastSeq) {
+        GameCatchUp catchUp = history.catchUp(code, stream, lastSeq);
+        // an empty complete reply means the client is up to date
+        if (catchUp.isComplete() || (catchUp.getEvents() != null && !catchUp.getEvents().isEmpty())) {
+            return catchUp;
+        }
+        Match match = code != null ? matchService.getMatchByCode(code) : null;
+        if (match == null) {
+            return catchUp;
+        }
+        try {
+            String state = objectMapper.writeValueAsString(snapshots.snapshot(match));
+            catchUp.setComplete(false);
+            catchUp.setEvents(List.of(new ReplayedEvent(catchUp.getLatestSeq(), GAME_TOPIC + code, state)));
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Failed to serialize the catch-up snapshot of match {}", code, e);
+        }
+        return catchUp;
+    }
+}
@@ -1,42 +1,50 @@
 package com.arsw.shipwreckeds.controller;
 
 import com.arsw.shipwreckeds.model.Match;
-import com.arsw.shipwreckeds.model.MatchStatus;
-import com.arsw.shipwreckeds.model.Npc;
 import com.arsw.shipwreckeds.model.Player;
 import com.arsw.shipwreckeds.model.Position;
-import com.arsw.shipwreckeds.model.dto.AvatarState;
 import com.arsw.shipwreckeds.model.dto.GameState;
 import com.arsw.shipwreckeds.model.dto.MoveCommand;
 import com.arsw.shipwreckeds.service.AuthService;
 import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
 import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.engine.MatchMutationExecutor;
+import com.arsw.shipwreckeds.service.engine.MoveIntent;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.stereotype.Controller;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * STOMP message controller that validates and applies movement commands before
- * broadcasting updated game state snapshots.
+ * broadcasting updated game state snapshots. Moves for a match owned by another
+ * node are forwarded to it instead of being applied here, and moves for a match
+ * simulated here are coalesced into its next simulation step.
  */
 @Controller
 public class GameController {
 
-    private static final double ISLAND_RADIUS = 100.0;
-    private static final double BOAT_X = ISLAND_RADIUS + 12.0;
-    private static final double BOAT_Y = 0.0;
-    private static final double BOAT_INTERACTION_RADIUS = 40.0;
+    private static final double ISLAND_RADIUS = GameSnapshotService.ISLAND_RADIUS;
+    private static final long MOVE_INTERVAL_MILLIS = 100;
+    static final String CMD_MOVE = "move";
 
     private final MatchService matchService;
     private final AuthService authService;
     private final WebSocketController webSocketController;
+    private final MatchMutationExecutor mutationExecutor;
+    private final GameEngine gameEngine;
+    private final MatchOwnership ownership;
+    private final MatchCommandBus commandBus;
+    private final GameSnapshotService snapshots;
 
     private final Map<Long, Long> lastMoveTsByAvatar = new ConcurrentHashMap<>();
+    // latest rate-limited move per avatar, acknowledged by the next written move of its match
+    private final Map<Long, MoveIntent> droppedMovesByAvatar = new ConcurrentHashMap<>();
 
     /**
      * Creates a controller that handles player movement synchronization.
@@ -44,11 +52,31 @@ public class GameController {
      * @param matchService        service used to retrieve active matches
      * @param authService         service that validates player sessions
      * @param webSocketController broadcaster for updated game state messages
+     * @param mutationExecutor    runs the blocking lock/Redis section of a move
+     * @param gameEngine          engine holding the simulated NPC positions
+     * @param ownership           resolves the node owning each match
+     * @param commandBus          forwards moves to the owning node
+     * @param snapshots           builds the broadcast game state snapshots
      */
-    public GameController(MatchService matchService, AuthService authService, WebSocketController webSocketController) {
+    public GameController(MatchService matchService, AuthService authService, WebSocketController webSocketController,
+            MatchMutationExecutor mutationExecutor, GameEngine gameEngine, MatchOwnership ownership,
+            MatchCommandBus commandBus, GameSnapshotService snapshots) {
         this.matchService = matchService;
         this.authService = authService;
         this.webSocketController = webSocketController;
+        this.mutationExecutor = mutationExecutor;
+        this.gameEngine = gameEngine;
+        this.ownership = ownership;
+        this.commandBus = commandBus;
+        this.snapshots = snapshots;
+        commandBus.registerHandler(CMD_MOVE, MoveCommand.class, (code, cmd) -> {
+            if (cmd != null && cmd.getUsername() != null && cmd.getAvatarId() != null && cmd.getDirection() != null) {
+                long receivedAt = System.currentTimeMillis();
+                mutationExecutor.execute(code, () -> acceptMove(code, cmd, receivedAt));
+            }
+            return null;
+        });
+        gameEngine.onMoveIntent(this::applyIntent);
     }
 
     /**
@@ -62,67 +90,56 @@ public class GameController {
     public void handleMove(@DestinationVariable String code, MoveCommand cmd) {
         if (cmd == null || cmd.getUsername() == null || cmd.getAvatarId() == null || cmd.getDirection() == null)
             return;
+        String owner = ownership.remoteOwner(code);
+        if (owner != null) {
+            commandBus.send(owner, CMD_MOVE, code, cmd);
+            return;
+        }
+        long receivedAt = System.currentTimeMillis();
+        mutationExecutor.execute(code, () -> acceptMove(code, cmd, receivedAt));
+    }
 
+    /**
+     * Validates the session and hands the move to the engine, which applies it
+     * with the other moves of the match in its next simulation step. Matches
+     * without a running simulation on this node apply it right away.
+     *
+     * @param code       match identifier
+     * @param cmd        movement command already checked for completeness
+     * @param receivedAt time the command arrived, used for the rate limit
+     */
+    private void acceptMove(String code, MoveCommand cmd, long receivedAt) {
         // validate session
         Player session = authService.getPlayer(cmd.getUsername());
         if (session == null)
             return;
+        MoveIntent intent = MoveIntent.of(cmd, receivedAt);
+        if (intent == null || gameEngine.queueMove(code, intent))
+            return;
+        applyMove(code, intent);
+    }
+
+    /**
+     * Applies a single movement under the match lock and broadcasts the
+     * resulting snapshot. Every step here may block on Redis. A move inside
+     * the rate limit window is dropped before the match is touched, so it
+     * costs neither a write nor a broadcast.
+     *
+     * @param code   match identifier
+     * @param intent validated movement
+     */
+    private void applyMove(String code, MoveIntent intent) {
+        if (isRateLimited(intent)) {
+            droppedMovesByAvatar.merge(intent.avatarId(), intent,
+                    (held, next) -> next.seq() > held.seq() ? next : held);
+            return;
+        }
         try {
             GameState updatedState = matchService.updateMatch(code, match -> {
-                if (match.getStatus() == null || !match.getStatus().name().equals("STARTED")) {
+                if (!applyIntent(match, intent)) {
                     return null;
                 }
-
-                Player target = match.getPlayers().stream()
-                        .filter(p -> p.getId().equals(cmd.getAvatarId()))
-                        .findFirst().orElse(null);
-                if (target == null) {
-                    return null;
-                }
-
-                if (!target.getUsername().equals(cmd.getUsername())) {
-                    return null;
-                }
-
-                long now = System.currentTimeMillis();
-                Long last = lastMoveTsByAvatar.getOrDefault(target.getId(), 0L);
-                if (now - last < 100) {
-                    return null;
-                }
-
-                double dx = cmd.getDirection().getDx();
-                double dy = cmd.getDirection().getDy();
-                double len = Math.hypot(dx, dy);
-                if (Double.isNaN(len) || len < 1e-6)
-                    return null;
-                dx /= len;
-                dy /= len;
-
-                double step = ISLAND_RADIUS * 0.035;
-
-                Position pos = target.getPosition();
-                if (pos == null) {
-                    pos = new Position(0.0, 0.0);
-                    target.setPosition(pos);
-                }
-                double proposedX = pos.getX() + dx * step;
-                double proposedY = pos.getY() + dy * step;
-                double distToCenter = Math.hypot(proposedX, proposedY);
-                double margin = 0.5;
-                if (distToCenter > ISLAND_RADIUS - margin) {
-                    double vecX = proposedX;
-                    double vecY = proposedY;
-                    double plen = Math.hypot(vecX, vecY);
-                    if (plen == 0)
-                        plen = 1;
-                    double clampedX = (vecX / plen) * (ISLAND_RADIUS - margin);
-                    double clampedY = (vecY / plen) * (ISLAND_RADIUS - margin);
-                    target.moveTo(new Position(clampedX, clampedY));
-                } else {
-                    target.moveTo(new Position(proposedX, proposedY));
-                }
-
-                lastMoveTsByAvatar.put(target.getId(), now);
+                gameEngine.syncSimulation(match);
                 return buildGameState(match);
             });
 
@@ -135,84 +152,114 @@ public class GameController {
     }
 
     /**
-     * Builds a {@link GameState} snapshot representing the current state of the
-     * requested match.
+     * Moves the avatar one step in the requested direction, clamped to the
+     * island, if the match is running, the avatar belongs to the player and
+     * the avatar has not moved within the rate limit window. Runs under the
+     * match mutation.
      *
-     * @param match match whose state needs to be broadcast
-     * @return immutable snapshot ready to send over WebSocket
+     * <p>
+     * The input sequence of the move is recorded even when the rate limit
+     * drops it, so the next snapshot of the match acknowledges it and a
+     * predicting client stops replaying it. Moves dropped before reaching the
+     * match are recorded here too, by whichever move of the match is written
+     * next.
+     *
+     * @param match  match being mutated
+     * @param intent validated movement
+     * @return whether the avatar moved
      */
-    private GameState buildGameState(Match match) {
-        List<AvatarState> avatars = new ArrayList<>();
-        for (Player p : match.getPlayers()) {
-            Position pos = p.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-
-            if (p.isInfiltrator()) {
-                String dname = GameEngine.resolveNpcAlias(p);
-                avatars.add(new AvatarState(p.getId(), "npc", null, x, y, true, p.isAlive(), dname));
-            } else {
-                avatars.add(new AvatarState(p.getId(), "human", p.getUsername(), x, y, false, p.isAlive(),
-                        p.getUsername()));
-            }
+    private boolean applyIntent(Match match, MoveIntent intent) {
+        if (match.getStatus() == null || !match.getStatus().name().equals("STARTED")) {
+            return false;
+        }
+        acknowledgeDroppedMoves(match);
+
+        Player target = match.getPlayers().stream()
+                .filter(p -> p.getId().equals(intent.avatarId()))
+                .findFirst().orElse(null);
+        if (target == null) {
+            return false;
+        }
+
+        if (!target.getUsername().equals(intent.username())) {
+            return false;
+        }
+
+        if (intent.seq() > target.getLastInputSeq()) {
+            target.setLastInputSeq(intent.seq());
+        }
+
+        if (isRateLimited(intent)) {
+            return false;
         }
+        long now = intent.receivedAtMillis();
+
+        double step = ISLAND_RADIUS * 0.035;
 
-        for (Npc n : match.getNpcs()) {
-            Position pos = n.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            avatars.add(new AvatarState(n.getId(), "npc", null, x, y, n.isInfiltrator(), n.isActive(),
-                    n.getDisplayName()));
+        Position pos = target.getPosition();
+        if (pos == null) {
+            pos = new Position(0.0, 0.0);
+            target.setPosition(pos);
         }
+        double proposedX = pos.getX() + intent.dx() * step;
+        double proposedY = pos.getY() + intent.dy() * step;
+        double distToCenter = Math.hypot(proposedX, proposedY);
+        double margin = 0.5;
+        if (distToCenter > ISLAND_RADIUS - margin) {
+            double vecX = proposedX;
+            double vecY = proposedY;
+            double plen = Math.hypot(vecX, vecY);
+            if (plen == 0)
+                plen = 1;
+            double clampedX = (vecX / plen) * (ISLAND_RADIUS - margin);
+            double clampedY = (vecY / plen) * (ISLAND_RADIUS - margin);
+            target.moveTo(new Position(clampedX, clampedY));
+        } else {
+            target.moveTo(new Position(proposedX, proposedY));
+        }
+
+        lastMoveTsByAvatar.put(target.getId(), now);
+        gameEngine.recordPosition(match.getCode(), target.getId(), now, target.getPosition());
+        return true;
+    }
 
-        GameState.Island isl = new GameState.Island(0.0, 0.0, ISLAND_RADIUS);
-        GameState.Boat boat = new GameState.Boat(BOAT_X, BOAT_Y, BOAT_INTERACTION_RADIUS);
-        String status = match.getStatus() != null ? match.getStatus().name() : MatchStatus.WAITING.name();
-
-        // Winner message propagated to the frontend when available
-        String winnerMessage = match.getWinnerMessage();
-
-        boolean votingActive = match.isVotingActive();
-        long voteDeadline = votingActive ? match.getVoteStartEpochMs() + Match.VOTE_DURATION_SECONDS * 1000L : 0L;
-        List<AvatarState> voteOptions = votingActive ? buildVoteOptions(match) : null;
-        return new GameState(
-                match.getCode(),
-                System.currentTimeMillis(),
-                match.getTimerSeconds(),
-                isl,
-                avatars,
-                match.getFuelPercentage(),
-                status,
-                boat,
-                winnerMessage,
-                match.isFuelWindowOpenNow(),
-                match.getFuelWindowSecondsRemaining(),
-                votingActive,
-                voteDeadline,
-                voteOptions,
-                match.getLastVoteResult(),
-                match.getLastVoteResultEpochMs());
+    private boolean isRateLimited(MoveIntent intent) {
+        Long last = lastMoveTsByAvatar.getOrDefault(intent.avatarId(), 0L);
+        return intent.receivedAtMillis() - last < MOVE_INTERVAL_MILLIS;
     }
 
-    private List<AvatarState> buildVoteOptions(Match match) {
-        List<AvatarState> options = new ArrayList<>();
-        for (Npc npc : match.getNpcs()) {
-            Position pos = npc.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            options.add(new AvatarState(npc.getId(), "npc", null, x, y, npc.isInfiltrator(), npc.isActive(),
-                    npc.getDisplayName()));
+    /**
+     * Raises the input acknowledgement of each player of the match to the
+     * latest move of theirs dropped by the rate limit. Runs under the match
+     * mutation.
+     *
+     * @param match match being mutated
+     */
+    private void acknowledgeDroppedMoves(Match match) {
+        if (droppedMovesByAvatar.isEmpty()) {
+            return;
         }
-        for (Player p : match.getPlayers()) {
-            if (p.isInfiltrator() && p.isAlive()) {
-                Position pos = p.getPosition();
-                double x = pos != null ? pos.getX() : 0.0;
-                double y = pos != null ? pos.getY() : 0.0;
-                options.add(new AvatarState(p.getId(), "npc", null, x, y, true, p.isAlive(),
-                        GameEngine.resolveNpcAlias(p)));
+        for (Player player : match.getPlayers()) {
+            MoveIntent dropped = player.getId() != null ? droppedMovesByAvatar.get(player.getId()) : null;
+            if (dropped == null || !dropped.username().equals(player.getUsername())) {
+                continue;
+            }
+            droppedMovesByAvatar.remove(player.getId(), dropped);
+            if (dropped.seq() > player.getLastInputSeq()) {
+                player.setLastInputSeq(dropped.seq());
             }
         }
-        return options;
+    }
+
+    /**
+     * Builds a {@link GameState} snapshot representing the current state of the
+     * requested match.
+     *
+     * @param match match whose state needs to be broadcast
+     * @return immutable snapshot ready to send over WebSocket
+     */
+    private GameState buildGameState(Match match) {
+        return snapshots.snapshot(match);
     }
 
 }
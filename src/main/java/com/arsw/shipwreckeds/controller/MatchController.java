@@ -9,7 +9,6 @@ import org.springframework.http.HttpStatus;
 import com.arsw.shipwreckeds.model.dto.CreateMatchRequest;
 import com.arsw.shipwreckeds.model.dto.CreateMatchResponse;
 import com.arsw.shipwreckeds.model.dto.JoinMatchRequest;
-import com.arsw.shipwreckeds.model.dto.AvatarState;
 import com.arsw.shipwreckeds.model.dto.EliminationEvent;
 import com.arsw.shipwreckeds.model.dto.FuelActionRequest;
 import com.arsw.shipwreckeds.model.dto.FuelActionResponse;
@@ -20,30 +19,39 @@ import com.arsw.shipwreckeds.model.dto.VoteResult;
 import com.arsw.shipwreckeds.model.dto.VoteStart;
 import com.arsw.shipwreckeds.service.AuthService;
 import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
 import com.arsw.shipwreckeds.service.MatchService;
 import com.arsw.shipwreckeds.service.NpcService;
 import com.arsw.shipwreckeds.service.RoleService;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.FuelReply;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.VoteReply;
+import com.arsw.shipwreckeds.service.cluster.CommandReply;
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 /**
  * Controlador que maneja creación y unión a partidas (lobbies).
  * Implementación limpia y con buenas prácticas de imports y estructura.
+ * Las acciones de juego sobre una partida administrada por otro nodo se
+ * reenvían a ese nodo y se responde con su resultado.
  */
 @RestController
 @RequestMapping("/api/match")
 public class MatchController {
-    private static final double ISLAND_RADIUS = 100.0;
-    private static final double BOAT_X = ISLAND_RADIUS + 12.0;
-    private static final double BOAT_Y = 0.0;
-    private static final double BOAT_INTERACTION_RADIUS = 40.0;
+    private static final double BOAT_X = GameSnapshotService.BOAT_X;
+    private static final double BOAT_Y = GameSnapshotService.BOAT_Y;
+    private static final double BOAT_INTERACTION_RADIUS = GameSnapshotService.BOAT_INTERACTION_RADIUS;
     private static final double FUEL_STEP = 5.0;
     private static final double ELIMINATION_RANGE = 20.0;
+    static final String CMD_START_VOTE = "startVote";
+    static final String CMD_VOTE = "vote";
+    static final String CMD_ELIMINATE = "eliminate";
+    static final String CMD_FUEL = "fuel";
 
     private final MatchService matchService;
     private final AuthService authService;
@@ -51,19 +59,35 @@ public class MatchController {
     private final RoleService roleService;
     private final NpcService npcService;
     private final GameEngine gameEngine;
+    private final MatchOwnership ownership;
+    private final MatchCommandBus commandBus;
+    private final GameSnapshotService snapshots;
 
     public MatchController(MatchService matchService,
             AuthService authService,
             WebSocketController webSocketController,
             RoleService roleService,
             NpcService npcService,
-            GameEngine gameEngine) {
+            GameEngine gameEngine,
+            MatchOwnership ownership,
+            MatchCommandBus commandBus,
+            GameSnapshotService snapshots) {
         this.matchService = matchService;
         this.authService = authService;
         this.webSocketController = webSocketController;
         this.roleService = roleService;
         this.npcService = npcService;
         this.gameEngine = gameEngine;
+        this.ownership = ownership;
+        this.commandBus = commandBus;
+        this.snapshots = snapshots;
+        gameEngine.onVoteExpired(code -> concludeVote(code, true));
+        commandBus.registerHandler(CMD_START_VOTE, String.class,
+                (code, username) -> toReply(applyStartVote(code, username)));
+        commandBus.registerHandler(CMD_VOTE, VoteRequest.class, (code, req) -> toReply(applySubmitVote(code, req)));
+        commandBus.registerHandler(CMD_ELIMINATE, VoteRequest.class, (code, req) -> toReply(applyEliminate(code, req)));
+        commandBus.registerHandler(CMD_FUEL, FuelActionRequest.class,
+                (code, req) -> toReply(applyModifyFuel(code, req)));
     }
 
     @PostMapping("/create")
@@ -151,6 +175,11 @@ public class MatchController {
 
     @PostMapping("/{code}/startVote")
     public ResponseEntity<Object> startVote(@PathVariable String code, @RequestParam String username) {
+        ResponseEntity<Object> forwarded = forwardToOwner(code, CMD_START_VOTE, username);
+        return forwarded != null ? forwarded : applyStartVote(code, username);
+    }
+
+    private ResponseEntity<Object> applyStartVote(String code, String username) {
         try {
             VoteStartContext ctx = matchService.updateMatch(code, match -> {
                 if (match.getStatus() == null || !match.getStatus().name().equals("STARTED")) {
@@ -175,7 +204,7 @@ public class MatchController {
                 match.startVoting();
                 long voteEndsAt = match.getVoteStartEpochMs() + Match.VOTE_DURATION_SECONDS * 1000L;
                 GameState state = buildGameStateForMatch(match);
-                VoteStart vs = new VoteStart(buildVoteOptions(match),
+                VoteStart vs = new VoteStart(snapshots.voteOptions(match),
                         "Iniciar votación: elige un NPC para expulsar",
                         Match.VOTE_DURATION_SECONDS,
                         voteEndsAt);
@@ -195,8 +224,14 @@ public class MatchController {
 
     @PostMapping("/{code}/vote")
     public ResponseEntity<Object> submitVote(@PathVariable String code, @RequestBody VoteRequest req) {
+        ResponseEntity<Object> forwarded = forwardToOwner(code, CMD_VOTE, req);
+        return forwarded != null ? forwarded : applySubmitVote(code, req);
+    }
+
+    private ResponseEntity<Object> applySubmitVote(String code, VoteRequest req) {
         try {
-            VoteSubmissionResult result = matchService.updateMatch(code, match -> {
+            VoteSubmissionResult scripted = submitVoteAtomically(code, req);
+            VoteSubmissionResult result = scripted != null ? scripted : matchService.updateMatch(code, match -> {
                 if (!match.isVotingActive()) {
                     throw new IllegalArgumentException("No hay votación activa.");
                 }
@@ -238,72 +273,18 @@ public class MatchController {
         return ResponseEntity.ok(m);
     }
 
-    // Helper to build GameState DTO from Match
-    private GameState buildGameStateForMatch(Match match) {
-        List<AvatarState> avatars = new ArrayList<>();
-        for (Player p : match.getPlayers()) {
-            Position pos = p.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            String type = p.isInfiltrator() ? "npc" : "human";
-            String owner = p.isInfiltrator() ? null : p.getUsername();
-            String dname = p.isInfiltrator() ? GameEngine.resolveNpcAlias(p) : p.getUsername();
-            avatars.add(new AvatarState(p.getId(), type, owner, x, y, p.isInfiltrator(), p.isAlive(), dname));
-        }
-        for (Npc n : match.getNpcs()) {
-            Position pos = n.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            avatars.add(
-                    new AvatarState(n.getId(), "npc", null, x, y, n.isInfiltrator(), n.isActive(), n.getDisplayName()));
-        }
-        GameState.Island isl = new GameState.Island(0.0, 0.0, ISLAND_RADIUS);
-        GameState.Boat boat = new GameState.Boat(BOAT_X, BOAT_Y, BOAT_INTERACTION_RADIUS);
-        String status = match.getStatus() != null ? match.getStatus().name() : MatchStatus.WAITING.name();
-        boolean votingActive = match.isVotingActive();
-        long voteEndsAt = votingActive ? match.getVoteStartEpochMs() + Match.VOTE_DURATION_SECONDS * 1000L : 0L;
-        List<AvatarState> voteOptions = votingActive ? buildVoteOptions(match) : null;
-        VoteResult lastVoteResult = match.getLastVoteResult();
-        long lastVoteResultEpoch = match.getLastVoteResultEpochMs();
-        return new GameState(
-                match.getCode(),
-                System.currentTimeMillis(),
-                match.getTimerSeconds(),
-                isl,
-                avatars,
-                match.getFuelPercentage(),
-                status,
-                boat,
-                match.getWinnerMessage(),
-                match.isFuelWindowOpenNow(),
-                match.getFuelWindowSecondsRemaining(),
-                votingActive,
-                voteEndsAt,
-                voteOptions,
-                lastVoteResult,
-                lastVoteResultEpoch);
-
+    @GetMapping("/{code}/state")
+    public ResponseEntity<Object> getGameState(@PathVariable String code) {
+        Match m = matchService.getMatchByCode(code);
+        if (m == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(snapshots.snapshot(m));
     }
 
-    private List<AvatarState> buildVoteOptions(Match match) {
-        List<AvatarState> options = new ArrayList<>();
-        for (Npc n : match.getNpcs()) {
-            Position pos = n.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            options.add(new AvatarState(n.getId(), "npc", null, x, y, n.isInfiltrator(), n.isActive(),
-                    n.getDisplayName()));
-        }
-        for (Player pl : match.getPlayers()) {
-            if (pl.isInfiltrator() && pl.isAlive()) {
-                Position pos = pl.getPosition();
-                double x = pos != null ? pos.getX() : 0.0;
-                double y = pos != null ? pos.getY() : 0.0;
-                options.add(new AvatarState(pl.getId(), "npc", null, x, y, true, pl.isAlive(),
-                        GameEngine.resolveNpcAlias(pl)));
-            }
-        }
-        return options;
+    // Helper to build GameState DTO from Match
+    private GameState buildGameStateForMatch(Match match) {
+        gameEngine.syncSimulation(match);
+        return snapshots.snapshot(match);
     }
 
     private void concludeVote(String code, boolean dueToTimeout) {
@@ -374,7 +355,6 @@ public class MatchController {
                             match.setWinnerMessage(
                                     "¡El infiltrado ha sido identificado y eliminado! Los náufragos ganan");
                             match.endMatch();
-                            gameEngine.stopMatchTicker(code);
                             result = new VoteResult(counts, leadingId, "human",
                                     "El infiltrado fue expulsado por mayoría. Los náufragos ganan.", abstentions, 0L);
                         } else {
@@ -383,7 +363,8 @@ public class MatchController {
                         }
 
                         VoteResult stamped = stampAndStoreResult(match, result);
-                        return new VoteResultContext(stamped, buildGameStateForMatch(match));
+                        return new VoteResultContext(stamped, buildGameStateForMatch(match),
+                                match.getStatus() == MatchStatus.FINISHED);
                     }
 
                     final Long npcTargetId = leadingId;
@@ -393,11 +374,11 @@ public class MatchController {
                             .orElse(null);
                     if (expelledNpc != null) {
                         expelledNpc.deactivate();
-                        match.getNpcs().remove(expelledNpc);
+                        match.removeNpc(expelledNpc);
                         match.stopVoting();
                         match.getVotesByPlayer().clear();
 
-                        boolean infiltratorNpcVictory = checkNpcOnlyInfiltratorLeft(match, code);
+                        boolean infiltratorNpcVictory = checkNpcOnlyInfiltratorLeft(match);
 
                         String resultMessage = infiltratorNpcVictory
                                 ? "Se expulsó un NPC por mayoría. El infiltrado ha ganado, todos los demás NPC han sido eliminados."
@@ -406,7 +387,8 @@ public class MatchController {
                         VoteResult result = new VoteResult(counts, leadingId, "npc",
                                 resultMessage, abstentions, 0L);
                         VoteResult stamped = stampAndStoreResult(match, result);
-                        return new VoteResultContext(stamped, buildGameStateForMatch(match));
+                        return new VoteResultContext(stamped, buildGameStateForMatch(match),
+                                match.getStatus() == MatchStatus.FINISHED);
                     }
                 }
 
@@ -432,7 +414,8 @@ public class MatchController {
 
                 VoteResult result = new VoteResult(counts, null, "none", message, abstentions, 0L);
                 VoteResult stamped = stampAndStoreResult(match, result);
-                return new VoteResultContext(stamped, buildGameStateForMatch(match));
+                return new VoteResultContext(stamped, buildGameStateForMatch(match),
+                                match.getStatus() == MatchStatus.FINISHED);
             });
         } catch (IllegalArgumentException e) {
             return;
@@ -441,6 +424,10 @@ public class MatchController {
         if (ctx == null) {
             return;
         }
+        // only after the final state is written, so the lease is not given back mid-update
+        if (ctx.matchFinished()) {
+            gameEngine.stopMatchTicker(code);
+        }
 
         webSocketController.broadcastVoteResult(code, ctx.result());
         webSocketController.broadcastGameState(code, ctx.gameState());
@@ -458,7 +445,16 @@ public class MatchController {
     public ResponseEntity<Object> eliminate(@PathVariable String code, @RequestBody VoteRequest req) {
         if (req.getUsername() == null || req.getTargetId() == null)
             return ResponseEntity.badRequest().body("Solicitud inválida.");
+        ResponseEntity<Object> forwarded = forwardToOwner(code, CMD_ELIMINATE, req);
+        return forwarded != null ? forwarded : applyEliminate(code, req);
+    }
+
+    private ResponseEntity<Object> applyEliminate(String code, VoteRequest req) {
+        if (req == null || req.getUsername() == null || req.getTargetId() == null)
+            return ResponseEntity.badRequest().body("Solicitud inválida.");
 
+        // moves received before the request must count for the range check
+        gameEngine.flushPendingMoves(code);
         try {
             EliminationContext ctx = matchService.updateMatch(code, match -> {
                 if (match.getStatus() == null || !match.getStatus().name().equals("STARTED")) {
@@ -482,9 +478,12 @@ public class MatchController {
                     throw new MatchOperationException(HttpStatus.FORBIDDEN, "Objetivo inválido.");
                 }
 
-                Position killerPos = killer.getPosition();
-                Position targetPos = target.getPosition();
-                double dist = distance(killerPos, targetPos);
+                double dist = distance(killer.getPosition(), target.getPosition());
+                if (dist > ELIMINATION_RANGE) {
+                    // the infiltrator may have been in range when the request left the client
+                    dist = distance(positionAt(code, killer, req.getClientTimestamp()),
+                            positionAt(code, target, req.getClientTimestamp()));
+                }
                 if (dist > ELIMINATION_RANGE) {
                     throw new MatchOperationException(HttpStatus.FORBIDDEN, "Fuera de rango para eliminar.");
                 }
@@ -525,9 +524,18 @@ public class MatchController {
     public ResponseEntity<Object> modifyFuel(@PathVariable String code, @RequestBody FuelActionRequest req) {
         if (req.getUsername() == null || req.getAction() == null)
             return ResponseEntity.badRequest().body("Solicitud inválida.");
+        ResponseEntity<Object> forwarded = forwardToOwner(code, CMD_FUEL, req);
+        return forwarded != null ? forwarded : applyModifyFuel(code, req);
+    }
+
+    private ResponseEntity<Object> applyModifyFuel(String code, FuelActionRequest req) {
+        if (req == null || req.getUsername() == null || req.getAction() == null)
+            return ResponseEntity.badRequest().body("Solicitud inválida.");
 
+        gameEngine.flushPendingMoves(code);
         try {
-            FuelActionContext ctx = matchService.updateMatch(code, match -> {
+            FuelActionContext scripted = modifyFuelAtomically(code, req);
+            FuelActionContext ctx = scripted != null ? scripted : matchService.updateMatch(code, match -> {
                 if (match.getStatus() == null || !match.getStatus().name().equals("STARTED")) {
                     throw new IllegalArgumentException("La partida no está en curso.");
                 }
@@ -540,6 +548,9 @@ public class MatchController {
                 }
 
                 double boatDist = computeDistanceToBoat(actor.getPosition());
+                if (boatDist > BOAT_INTERACTION_RADIUS) {
+                    boatDist = computeDistanceToBoat(positionAt(code, actor, req.getClientTimestamp()));
+                }
                 boolean requiresProximity = !actor.isInfiltrator();
                 if (requiresProximity && boatDist > BOAT_INTERACTION_RADIUS) {
                     throw new MatchOperationException(HttpStatus.FORBIDDEN, "Debes acercarte al barco.");
@@ -606,13 +617,116 @@ public class MatchController {
         }
     }
 
+    /**
+     * Records a ballot with the atomic vote script when the match allows it,
+     * enforcing the same rules as the locked path.
+     *
+     * @return the submission, or {@code null} when the locked path must run
+     */
+    private VoteSubmissionResult submitVoteAtomically(String code, VoteRequest req) {
+        VoteReply reply = matchService.recordVoteAtomically(code, req.getUsername(), req.getTargetId());
+        if (reply == null) {
+            return null;
+        }
+        switch (reply.outcome()) {
+            case APPLIED:
+                return new VoteSubmissionResult(new VoteAck(req.getUsername(),
+                        "Voto registrado correctamente, esperando resultados finales."), reply.allVoted());
+            case NO_ACTIVE_VOTE:
+                throw new IllegalArgumentException("No hay votación activa.");
+            case INVALID_PLAYER:
+                throw new MatchOperationException(HttpStatus.FORBIDDEN, "Jugador no válido para votar.");
+            case INFILTRATOR_CANNOT_VOTE:
+                throw new MatchOperationException(HttpStatus.FORBIDDEN, "El infiltrado no puede votar.");
+            default:
+                throw new IllegalArgumentException("Código inválido o partida no encontrada.");
+        }
+    }
+
+    /**
+     * Applies a fuel click with the atomic fuel script when the match allows
+     * it, enforcing the same rules as the locked path. Clicks that complete the
+     * repair, or that need the rewound position of the actor, are left to the
+     * locked path.
+     *
+     * @return the click result, or {@code null} when the locked path must run
+     */
+    private FuelActionContext modifyFuelAtomically(String code, FuelActionRequest req) {
+        double step = req.getAmount() != null ? req.getAmount() : FUEL_STEP;
+        FuelReply reply = matchService.adjustFuelAtomically(code, req.getUsername(),
+                req.getAction() == FuelActionRequest.Action.FILL, step, BOAT_X, BOAT_Y, BOAT_INTERACTION_RADIUS);
+        if (reply == null) {
+            return null;
+        }
+        switch (reply.outcome()) {
+            case APPLIED:
+                Match match = matchService.getMatchByCode(code);
+                if (match == null) {
+                    throw new IllegalArgumentException("Código inválido o partida no encontrada.");
+                }
+                FuelActionResponse response = new FuelActionResponse(reply.fuel(),
+                        MatchStatus.STARTED.name().toLowerCase(Locale.ROOT));
+                // the cached instance is shared with other readers: describe it, never sync into it
+                GameState state = snapshots.snapshotWithFuel(match, gameEngine.simulationOf(code), reply.fuel());
+                return new FuelActionContext(response, state, false);
+            case NOT_STARTED:
+                throw new IllegalArgumentException("La partida no está en curso.");
+            case INVALID_PLAYER:
+                throw new MatchOperationException(HttpStatus.FORBIDDEN, "Jugador no válido.");
+            case WINDOW_CLOSED:
+                String msg = "Tanque de gasolina bloqueado temporalmente.";
+                if (reply.secondsToWindow() > 0) {
+                    msg += " Disponible en " + reply.secondsToWindow() + "s.";
+                }
+                throw new MatchOperationException(HttpStatus.LOCKED, msg);
+            case INFILTRATOR_CANNOT_FILL:
+                throw new MatchOperationException(HttpStatus.FORBIDDEN, "El infiltrado no puede llenar el tanque.");
+            case ONLY_INFILTRATOR_SABOTAGES:
+                throw new MatchOperationException(HttpStatus.FORBIDDEN, "Solo el infiltrado puede sabotear.");
+            default:
+                throw new IllegalArgumentException("Código inválido o partida no encontrada.");
+        }
+    }
+
+    /**
+     * Sends the command to the node owning the match, if it is not this one.
+     *
+     * @return response of the owner, or {@code null} when the command must run
+     *         locally
+     */
+    private ResponseEntity<Object> forwardToOwner(String code, String type, Object payload) {
+        String owner = ownership.remoteOwner(code);
+        if (owner == null) {
+            return null;
+        }
+        try {
+            CommandReply reply = commandBus.request(owner, type, code, payload);
+            return ResponseEntity.status(reply.status()).body(reply.bodyValue());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    private CommandReply toReply(ResponseEntity<Object> response) {
+        return new CommandReply(response.getStatusCode().value(), commandBus.toJson(response.getBody()));
+    }
+
+    /**
+     * @return position of the player at the client timestamp within the rewind
+     *         window, or its current position when the history does not know
+     */
+    private Position positionAt(String code, Player player, Long clientTimestamp) {
+        Position rewound = gameEngine.positionAt(code, player.getId(), clientTimestamp);
+        return rewound != null ? rewound : player.getPosition();
+    }
+
     private double computeDistanceToBoat(Position position) {
         if (position == null)
             return Double.MAX_VALUE;
         return Math.hypot(position.getX() - BOAT_X, position.getY() - BOAT_Y);
     }
 
-    private boolean checkNpcOnlyInfiltratorLeft(Match match, String code) {
+    private boolean checkNpcOnlyInfiltratorLeft(Match match) {
         Player infiltrator = match.getInfiltrator();
         boolean infiltratorAlive = infiltrator != null && infiltrator.isAlive();
         if (!infiltratorAlive) {
@@ -630,7 +744,6 @@ public class MatchController {
         if (!anyActiveNpc) {
             match.setWinnerMessage("El infiltrado ha ganado, todos los demás NPC han sido eliminados");
             match.endMatch();
-            gameEngine.stopMatchTicker(code);
             return true;
         }
 
@@ -651,7 +764,7 @@ public class MatchController {
     private record VoteSubmissionResult(VoteAck ack, boolean shouldConclude) {
     }
 
-    private record VoteResultContext(VoteResult result, GameState gameState) {
+    private record VoteResultContext(VoteResult result, GameState gameState, boolean matchFinished) {
     }
 
     private record EliminationContext(EliminationEvent event, GameState gameState, boolean matchFinished) {
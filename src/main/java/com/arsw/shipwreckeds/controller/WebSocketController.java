@@ -1,16 +1,23 @@
 package com.arsw.shipwreckeds.controller;
 
 import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.dto.GameState;
 import com.arsw.shipwreckeds.websocket.DistributedWsBroadcaster;
+import com.arsw.shipwreckeds.websocket.GameStateDeltaEncoder;
 import org.springframework.stereotype.Controller;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Controller
 public class WebSocketController {
 
     private final DistributedWsBroadcaster broadcaster;
+    private final GameStateDeltaEncoder deltaEncoder;
 
-    public WebSocketController(DistributedWsBroadcaster broadcaster) {
+    public WebSocketController(DistributedWsBroadcaster broadcaster, GameStateDeltaEncoder deltaEncoder) {
         this.broadcaster = broadcaster;
+        this.deltaEncoder = deltaEncoder;
     }
 
     /**
@@ -24,15 +31,41 @@ public class WebSocketController {
     }
 
     /**
-     * Publica el GameState completo a /topic/game/{code}
+     * Publica el GameState a /topic/game/{code}: completo, o como keyframe/delta
+     * secuenciado cuando app.broadcast.delta-enabled está activo.
      */
     public void broadcastGameState(String code, Object gameState) {
         if (code == null)
             return;
         String dest = "/topic/game/" + code;
+        if (gameState instanceof GameState state && deltaEncoder.isEnabled()) {
+            deltaEncoder.encode(code, state, frame -> broadcaster.publish(dest, frame));
+            return;
+        }
         broadcaster.publish(dest, gameState);
     }
 
+    /**
+     * Publica varios GameState de una sola vez, cada uno a /topic/game/{code}
+     */
+    public void broadcastGameStates(Map<String, ?> gameStatesByCode) {
+        if (gameStatesByCode == null || gameStatesByCode.isEmpty())
+            return;
+        Map<String, Object> byDestination = new LinkedHashMap<>();
+        boolean deltas = deltaEncoder.isEnabled();
+        gameStatesByCode.forEach((code, state) -> {
+            if (code == null || state == null)
+                return;
+            String dest = "/topic/game/" + code;
+            if (deltas && state instanceof GameState gameState) {
+                deltaEncoder.encode(code, gameState, frame -> byDestination.put(dest, frame));
+            } else {
+                byDestination.put(dest, state);
+            }
+        });
+        broadcaster.publishAll(byDestination);
+    }
+
     /**
      * Broadcast that a voting session has started. Payload can be a VoteStart DTO.
      */
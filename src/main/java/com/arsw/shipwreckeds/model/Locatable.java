@@ -0,0 +1,12 @@
+package com.arsw.shipwreckeds.model;
+
+/**
+ * Anything placed on the island map that the {@link SpatialGrid} of a match
+ * can index: players and NPCs.
+ */
+public interface Locatable {
+
+    Long getId();
+
+    Position getPosition();
+}
@@ -3,11 +3,13 @@ package com.arsw.shipwreckeds.model;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Predicate;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.arsw.shipwreckeds.model.dto.VoteResult;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -47,6 +49,18 @@ public class Match {
     // Winner message broadcast to clients when the match concludes
     private String winnerMessage;
 
+    // Bumped by MatchService on every mutation; 0 until the first one
+    private long version;
+
+    // Hash fields as last read from or written to Redis, to write only the changed ones
+    @JsonIgnore
+    private transient java.util.Map<String, byte[]> storedFields;
+
+    // Derived from the rosters, rebuilt after deserialization
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient SpatialGrid<Locatable> spatialIndex;
+
     /**
      * Creates a new lobby with the supplied identifier and code.
      *
@@ -318,6 +332,9 @@ public class Match {
             player.setPosition(null);
         }
         players.add(player);
+        if (spatialIndex != null && player != null) {
+            player.attachSpatialIndex(spatialIndex);
+        }
         log.info("Jugador {} se unió a la partida con código {}.", player.getUsername(), code);
     }
 
@@ -328,6 +345,78 @@ public class Match {
      */
     public void addNpc(Npc npc) {
         npcs.add(npc);
+        if (spatialIndex != null && npc != null) {
+            npc.attachSpatialIndex(spatialIndex);
+        }
+    }
+
+    /**
+     * Removes an NPC from the roster and from the spatial index.
+     *
+     * @param npc NPC instance to drop
+     * @return whether it was part of the roster
+     */
+    public boolean removeNpc(Npc npc) {
+        boolean removed = npcs.remove(npc);
+        if (removed && spatialIndex != null) {
+            spatialIndex.remove(npc);
+            npc.attachSpatialIndex(null);
+        }
+        return removed;
+    }
+
+    public void setPlayers(List<Player> players) {
+        this.players = players;
+        this.spatialIndex = null;
+    }
+
+    public void setNpcs(List<Npc> npcs) {
+        this.npcs = npcs;
+        this.spatialIndex = null;
+    }
+
+    /**
+     * Uniform-grid index of every placed player and NPC. It is built on first
+     * use and then updated incrementally whenever an avatar moves. Code that
+     * edits the roster lists directly instead of using the match methods must
+     * replace them through the setters so the index is rebuilt.
+     *
+     * @return spatial index of the avatars of this match
+     */
+    public SpatialGrid<Locatable> spatialIndex() {
+        if (spatialIndex == null) {
+            SpatialGrid<Locatable> index = new SpatialGrid<>();
+            if (players != null) {
+                players.stream().filter(p -> p != null).forEach(p -> p.attachSpatialIndex(index));
+            }
+            if (npcs != null) {
+                npcs.stream().filter(n -> n != null).forEach(n -> n.attachSpatialIndex(index));
+            }
+            spatialIndex = index;
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * @param x      X coordinate of the center
+     * @param y      Y coordinate of the center
+     * @param radius search radius
+     * @param filter avatars to consider
+     * @return players and NPCs within {@code radius} of the point
+     */
+    public List<Locatable> avatarsWithin(double x, double y, double radius, Predicate<Locatable> filter) {
+        return spatialIndex().withinRadius(x, y, radius, filter);
+    }
+
+    /**
+     * @param x         X coordinate of the point
+     * @param y         Y coordinate of the point
+     * @param maxRadius avatars farther than this are ignored
+     * @param filter    avatars to consider
+     * @return closest player or NPC, or {@code null}
+     */
+    public Locatable nearestAvatar(double x, double y, double maxRadius, Predicate<Locatable> filter) {
+        return spatialIndex().nearest(x, y, maxRadius, filter);
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.arsw.shipwreckeds.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -16,7 +17,7 @@ import lombok.extern.slf4j.Slf4j;
 @Setter
 @NoArgsConstructor
 @Slf4j
-public class Npc {
+public class Npc implements Locatable {
 
     private Long id;
     private String skinId;
@@ -25,6 +26,9 @@ public class Npc {
     private double movementSpeed;
     private boolean infiltrator;
     private String displayName;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient SpatialGrid<Locatable> spatialIndex;
 
     /**
      * Builds a new NPC with visual traits and starting position.
@@ -45,6 +49,21 @@ public class Npc {
         this.displayName = "NPC-" + id;
     }
 
+    /**
+     * Places the NPC, keeping the spatial index of its match up to date.
+     *
+     * @param position new coordinates
+     */
+    public void setPosition(Position position) {
+        this.position = position;
+        SpatialGrid.track(spatialIndex, this, position);
+    }
+
+    void attachSpatialIndex(SpatialGrid<Locatable> index) {
+        this.spatialIndex = index;
+        SpatialGrid.track(index, this, position);
+    }
+
     /**
      * Moves the NPC to a new position, simulating autonomous behavior.
      *
@@ -57,6 +76,7 @@ public class Npc {
             return;
         }
         position.moveTo(newX, newY);
+        SpatialGrid.track(spatialIndex, this, position);
         log.info("El NPC {} se movió a ({}, {}).", id, newX, newY);
     }
 
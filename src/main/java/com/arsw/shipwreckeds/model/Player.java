@@ -1,5 +1,6 @@
 package com.arsw.shipwreckeds.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -17,7 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 @Setter
 @NoArgsConstructor
 @Slf4j
-public class Player {
+public class Player implements Locatable {
 
     private Long id;
     private String username;
@@ -26,6 +27,11 @@ public class Player {
     private boolean isInfiltrator;
     private boolean isAlive;
     private String npcAlias;
+    /** Highest client input sequence processed for this player (0 = none). */
+    private long lastInputSeq;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient SpatialGrid<Locatable> spatialIndex;
 
     /**
      * Creates a player with the provided base attributes.
@@ -58,10 +64,25 @@ public class Player {
      * @param p destination coordinates
      */
     public void moveTo(Position p) {
-        this.position = p;
+        setPosition(p);
         log.info("{} se movió a la posición ({}, {}).", username, p.getX(), p.getY());
     }
 
+    /**
+     * Places the player, keeping the spatial index of its match up to date.
+     *
+     * @param position new coordinates, or {@code null} when not placed yet
+     */
+    public void setPosition(Position position) {
+        this.position = position;
+        SpatialGrid.track(spatialIndex, this, position);
+    }
+
+    void attachSpatialIndex(SpatialGrid<Locatable> index) {
+        this.spatialIndex = index;
+        SpatialGrid.track(index, this, position);
+    }
+
     /**
      * Logs the activation of a task.
      *
@@ -0,0 +1,233 @@
+package com.arsw.shipwreckeds.model;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Uniform grid over the island that buckets items by position, so proximity
+ * queries only look at the few cells overlapping the query area instead of
+ * scanning every avatar. Updates are incremental: moving an item touches its
+ * old and new cell only.
+ *
+ * <p>
+ * The grid covers a fixed square around the island; items outside of it are
+ * kept in the border cells, so queries stay exact everywhere. Not thread-safe;
+ * it is mutated together with its match.
+ *
+ * @param <T> indexed item type, compared by identity
+ */
+public final class SpatialGrid<T> {
+
+    /** Half side of the covered square: island radius plus the boat and a margin. */
+    public static final double DEFAULT_EXTENT = 128.0;
+    public static final double DEFAULT_CELL_SIZE = 16.0;
+
+    private final double extent;
+    private final double cellSize;
+    private final int cellsPerSide;
+    private final List<List<Entry<T>>> cells;
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+
+    public SpatialGrid() {
+        this(DEFAULT_EXTENT, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param extent   half side of the covered square, centered on the origin
+     * @param cellSize side of a cell; about the usual query radius works best
+     */
+    public SpatialGrid(double extent, double cellSize) {
+        if (extent <= 0 || cellSize <= 0) {
+            throw new IllegalArgumentException("extent and cellSize must be positive");
+        }
+        this.extent = extent;
+        this.cellSize = cellSize;
+        this.cellsPerSide = (int) Math.ceil(2 * extent / cellSize);
+        this.cells = new ArrayList<>(cellsPerSide * cellsPerSide);
+        for (int i = 0; i < cellsPerSide * cellsPerSide; i++) {
+            cells.add(new ArrayList<>(4));
+        }
+    }
+
+    /**
+     * Inserts an item or moves it to a new position.
+     *
+     * @param item item to place
+     * @param x    X coordinate
+     * @param y    Y coordinate
+     */
+    public void put(T item, double x, double y) {
+        int cell = cellIndex(column(x), column(y));
+        Entry<T> entry = entries.get(item);
+        if (entry == null) {
+            entry = new Entry<>(item);
+            entries.put(item, entry);
+            addToCell(entry, cell);
+        } else if (entry.cell != cell) {
+            removeFromCell(entry);
+            addToCell(entry, cell);
+        }
+        entry.x = x;
+        entry.y = y;
+    }
+
+    /**
+     * @param item item to drop
+     * @return whether it was indexed
+     */
+    public boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        removeFromCell(entry);
+        return true;
+    }
+
+    /**
+     * @return number of indexed items
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param item indexed item
+     * @return whether the item is indexed
+     */
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * Collects the items within {@code radius} of a point.
+     *
+     * @param x      X coordinate of the center
+     * @param y      Y coordinate of the center
+     * @param radius search radius, inclusive
+     * @param filter items to consider
+     * @return matching items in no particular order
+     */
+    public List<T> withinRadius(double x, double y, double radius, Predicate<? super T> filter) {
+        List<T> result = new ArrayList<>();
+        double r2 = radius * radius;
+        int minCol = column(x - radius);
+        int maxCol = column(x + radius);
+        int minRow = column(y - radius);
+        int maxRow = column(y + radius);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                for (Entry<T> entry : cells.get(cellIndex(col, row))) {
+                    double dx = entry.x - x;
+                    double dy = entry.y - y;
+                    if (dx * dx + dy * dy <= r2 && filter.test(entry.item)) {
+                        result.add(entry.item);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the closest item to a point by searching rings of cells outwards
+     * until no unvisited cell can hold a closer one.
+     *
+     * @param x         X coordinate of the point
+     * @param y         Y coordinate of the point
+     * @param maxRadius items farther than this are ignored
+     * @param filter    items to consider
+     * @return closest matching item, or {@code null}
+     */
+    public T nearest(double x, double y, double maxRadius, Predicate<? super T> filter) {
+        int centerCol = column(x);
+        int centerRow = column(y);
+        T best = null;
+        double bestDist2 = maxRadius * maxRadius;
+        for (int ring = 0; ring < cellsPerSide; ring++) {
+            // cells of this ring and beyond are at least (ring - 1) cells away
+            double reach = Math.max(0, ring - 1) * cellSize;
+            if (reach * reach > bestDist2) {
+                break;
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= cellsPerSide) {
+                    continue;
+                }
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int col = centerCol - ring; col <= centerCol + ring; col += step) {
+                    if (col < 0 || col >= cellsPerSide) {
+                        continue;
+                    }
+                    for (Entry<T> entry : cells.get(cellIndex(col, row))) {
+                        double dx = entry.x - x;
+                        double dy = entry.y - y;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 <= bestDist2 && filter.test(entry.item)) {
+                            best = entry.item;
+                            bestDist2 = d2;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Mirrors the position of an item into an optional index: placed items are
+     * moved, unplaced ones dropped.
+     */
+    static <T> void track(SpatialGrid<T> index, T item, Position position) {
+        if (index == null) {
+            return;
+        }
+        if (position == null) {
+            index.remove(item);
+        } else {
+            index.put(item, position.getX(), position.getY());
+        }
+    }
+
+    private int column(double coordinate) {
+        int index = (int) Math.floor((coordinate + extent) / cellSize);
+        return Math.min(Math.max(index, 0), cellsPerSide - 1);
+    }
+
+    private int cellIndex(int col, int row) {
+        return row * cellsPerSide + col;
+    }
+
+    private void addToCell(Entry<T> entry, int cell) {
+        List<Entry<T>> bucket = cells.get(cell);
+        entry.cell = cell;
+        entry.slot = bucket.size();
+        bucket.add(entry);
+    }
+
+    private void removeFromCell(Entry<T> entry) {
+        List<Entry<T>> bucket = cells.get(entry.cell);
+        Entry<T> last = bucket.remove(bucket.size() - 1);
+        if (last != entry) {
+            bucket.set(entry.slot, last);
+            last.slot = entry.slot;
+        }
+    }
+
+    private static final class Entry<T> {
+
+        private final T item;
+        private double x;
+        private double y;
+        private int cell;
+        private int slot;
+
+        private Entry(T item) {
+            this.item = item;
+        }
+    }
+}
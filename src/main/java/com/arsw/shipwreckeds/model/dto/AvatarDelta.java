@@ -0,0 +1,44 @@
+package com.arsw.shipwreckeds.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Changed fields of an avatar between two game state frames. Only the id and
+ * the fields that differ from the previous frame are set; avatars that just
+ * appeared carry every field.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AvatarDelta {
+    private Long id;
+    private String type;
+    private String ownerUsername;
+    private Double x;
+    private Double y;
+    private Boolean infiltrator;
+    private Boolean alive;
+    private String displayName;
+
+    /**
+     * @param avatar avatar that was not in the previous frame
+     * @return delta carrying every field of the avatar
+     */
+    public static AvatarDelta full(AvatarState avatar) {
+        AvatarDelta delta = new AvatarDelta();
+        delta.id = avatar.getId();
+        delta.type = avatar.getType();
+        delta.ownerUsername = avatar.getOwnerUsername();
+        delta.x = avatar.getX();
+        delta.y = avatar.getY();
+        delta.infiltrator = avatar.isInfiltrator();
+        delta.alive = avatar.isAlive();
+        delta.displayName = avatar.getDisplayName();
+        return delta;
+    }
+}
@@ -16,4 +16,6 @@ public class FuelActionRequest {
     private String username;
     private Action action;
     private Double amount;
+    /** Server timestamp of the game state the client acted on; optional. */
+    private Long clientTimestamp;
 }
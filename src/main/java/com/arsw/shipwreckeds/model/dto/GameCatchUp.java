@@ -0,0 +1,26 @@
+package com.arsw.shipwreckeds.model.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Reply to a client asking what it missed of a match since the last event it
+ * saw. When {@code complete} is {@code false} the gap was no longer in memory
+ * and {@code events} starts from the latest snapshot instead; when it is also
+ * empty the client waits for the next snapshot.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class GameCatchUp {
+    private String code;
+    private String stream;
+    private long latestSeq;
+    private boolean complete;
+    private List<ReplayedEvent> events;
+}
@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.util.List;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -28,6 +29,20 @@ public class GameState {
     private List<AvatarState> voteOptions;
     private VoteResult lastVoteResult;
     private long lastVoteResultEpochMs;
+    /**
+     * Last processed input sequence per username, so each client can drop the
+     * inputs it predicted locally and reconcile with its avatar position.
+     */
+    private Map<String, Long> inputAcks;
+
+    public GameState(String code, long timestamp, int timerSeconds, Island island, List<AvatarState> avatars,
+            double fuelPercentage, String status, Boat boat, String winnerMessage, boolean fuelWindowOpen,
+            int fuelWindowSecondsRemaining, boolean votingActive, long voteEndsAtEpochMs,
+            List<AvatarState> voteOptions, VoteResult lastVoteResult, long lastVoteResultEpochMs) {
+        this(code, timestamp, timerSeconds, island, avatars, fuelPercentage, status, boat, winnerMessage,
+                fuelWindowOpen, fuelWindowSecondsRemaining, votingActive, voteEndsAtEpochMs, voteOptions,
+                lastVoteResult, lastVoteResultEpochMs, null);
+    }
 
     @Getter
     @Setter
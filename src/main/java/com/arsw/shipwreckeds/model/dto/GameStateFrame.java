@@ -0,0 +1,82 @@
+package com.arsw.shipwreckeds.model.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Sequenced message of the game topic when delta broadcasting is enabled.
+ *
+ * <p>
+ * A {@code keyframe} carries the whole {@link GameState}. A {@code delta}
+ * carries only the scalar fields and avatar fields that changed since the
+ * frame {@code baseSeq} of the same {@code stream}; clients apply it only when
+ * that is the last frame they applied and otherwise wait for the next
+ * keyframe. Island and boat are static and only travel in keyframes; input
+ * acknowledgements only list the players whose sequence advanced.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GameStateFrame {
+
+    public static final String KEYFRAME = "keyframe";
+    public static final String DELTA = "delta";
+
+    private String kind;
+    private String code;
+    private String stream;
+    private long seq;
+    private Long baseSeq;
+    private long timestamp;
+    private GameState state;
+
+    private Integer timerSeconds;
+    private Double fuelPercentage;
+    private String status;
+    private String winnerMessage;
+    private Boolean fuelWindowOpen;
+    private Integer fuelWindowSecondsRemaining;
+    private Boolean votingActive;
+    private Long voteEndsAtEpochMs;
+    private List<AvatarState> voteOptions;
+    private VoteResult lastVoteResult;
+    private Long lastVoteResultEpochMs;
+    private List<AvatarDelta> avatars;
+    private List<Long> removedAvatars;
+    private Map<String, Long> inputAcks;
+
+    public static GameStateFrame keyframe(String stream, long seq, GameState state) {
+        GameStateFrame frame = new GameStateFrame();
+        frame.kind = KEYFRAME;
+        frame.code = state.getCode();
+        frame.stream = stream;
+        frame.seq = seq;
+        frame.timestamp = state.getTimestamp();
+        frame.state = state;
+        return frame;
+    }
+
+    public static GameStateFrame delta(String stream, long seq, GameState state) {
+        GameStateFrame frame = new GameStateFrame();
+        frame.kind = DELTA;
+        frame.code = state.getCode();
+        frame.stream = stream;
+        frame.seq = seq;
+        frame.baseSeq = seq - 1;
+        frame.timestamp = state.getTimestamp();
+        return frame;
+    }
+
+    @JsonIgnore
+    public boolean isKeyframe() {
+        return KEYFRAME.equals(kind);
+    }
+}
@@ -13,6 +13,12 @@ public class MoveCommand {
     private String username;
     private Long avatarId;
     private Direction direction;
+    /** Client-side input sequence, echoed back once processed; optional. */
+    private Long seq;
+
+    public MoveCommand(String username, Long avatarId, Direction direction) {
+        this(username, avatarId, direction, null);
+    }
 
     @Getter
     @Setter
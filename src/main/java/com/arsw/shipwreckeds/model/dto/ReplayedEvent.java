@@ -0,0 +1,23 @@
+package com.arsw.shipwreckeds.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * An event of a match topic as it was broadcast, replayed to a client
+ * catching up. The payload is the JSON body that was sent, embedded as is.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayedEvent {
+    private long seq;
+    private String destination;
+    @JsonRawValue
+    private String payload;
+}
@@ -12,4 +12,10 @@ import lombok.Setter;
 public class VoteRequest {
     private String username;
     private Long targetId;
+    /** Server timestamp of the game state the client acted on; optional. */
+    private Long clientTimestamp;
+
+    public VoteRequest(String username, Long targetId) {
+        this(username, targetId, null);
+    }
 }
@@ -1,118 +1,594 @@
 package com.arsw.shipwreckeds.service;
 
+import com.arsw.shipwreckeds.config.GameEngineProperties;
 import com.arsw.shipwreckeds.controller.WebSocketController;
 import com.arsw.shipwreckeds.model.Match;
-import com.arsw.shipwreckeds.model.MatchStatus;
 import com.arsw.shipwreckeds.model.Npc;
 import com.arsw.shipwreckeds.model.Player;
 import com.arsw.shipwreckeds.model.Position;
-import com.arsw.shipwreckeds.model.dto.AvatarState;
 import com.arsw.shipwreckeds.model.dto.GameState;
 import com.arsw.shipwreckeds.service.NpcService;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.cluster.OwnedMatch;
+import com.arsw.shipwreckeds.service.engine.HashedWheelTimer;
+import com.arsw.shipwreckeds.service.engine.MatchSimulation;
+import com.arsw.shipwreckeds.service.engine.MoveInputBuffer;
+import com.arsw.shipwreckeds.service.engine.MoveIntent;
+import com.arsw.shipwreckeds.service.engine.NpcStore;
+import com.arsw.shipwreckeds.service.engine.PositionHistory;
+import com.arsw.shipwreckeds.service.engine.MatchMutationExecutor;
+import com.arsw.shipwreckeds.service.engine.ShardedTickExecutor;
+import com.arsw.shipwreckeds.service.engine.TickLaneStats;
+import com.arsw.shipwreckeds.service.engine.TimerKind;
+import com.arsw.shipwreckeds.service.engine.WheelTimeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
 
 /**
  * Server-side engine responsible for ticking matches, moving NPCs and
- * scheduling vote timers.
+ * scheduling vote timers. Every timer lives on a single {@link HashedWheelTimer};
+ * timers expiring in the same slot are dispatched as one batch per
+ * {@link ShardedTickExecutor} lane, so each match is always ticked by the same
+ * lane.
+ *
+ * <p>
+ * When {@code app.engine.simulation-hz} is set, NPCs are advanced by an
+ * in-memory {@link MatchSimulation} at that rate instead of once per clock tick,
+ * and {@code app.engine.snapshot-hz} bounds how often the simulated positions
+ * are broadcast. Neither path touches Redis; the 1 Hz clock keeps persisting
+ * the match and folds the simulated positions in.
+ *
+ * <p>
+ * With {@code app.engine.batch-tick} the per-match clock timers are replaced by
+ * one node-wide timer that ticks every hosted match of a lane together, using
+ * a constant number of Redis round trips per lane and second.
+ *
+ * <p>
+ * Applied moves are also kept in a per-match {@link PositionHistory}, so
+ * eliminations and boat interactions can be checked at the time the client
+ * acted, within {@code app.engine.rewind-window-millis}.
+ *
+ * <p>
+ * When match ownership is enabled, a node only ticks the matches whose lease it
+ * holds; starting a ticker takes the lease and stopping it gives it back.
  */
 @Service
 public class GameEngine {
 
-    private static final double ISLAND_RADIUS = 100.0;
-    private static final double BOAT_X = ISLAND_RADIUS + 12.0;
-    private static final double BOAT_Y = 0.0;
-    private static final double BOAT_INTERACTION_RADIUS = 40.0;
-    private static final long NPC_ALIAS_OFFSET = 100000L;
-    private static final double NPC_SPEED_MULTIPLIER = 3.0;
+    private static final Logger LOGGER = LoggerFactory.getLogger(GameEngine.class);
 
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread t = new Thread(r, "game-engine");
-        t.setDaemon(true);
-        return t;
-    });
+    private static final long NPC_ALIAS_OFFSET = 100000L;
+    private static final String BATCH_TIMER_KEY = "__batch-tick__";
+    /** Ordering key of the batch tick of a lane; match codes never contain it. */
+    private static final String LANE_KEY = "__lane-";
 
-    private final Map<String, ScheduledFuture<?>> tasks = new ConcurrentHashMap<>();
-    private final Map<String, ScheduledFuture<?>> voteTimers = new ConcurrentHashMap<>();
-    private final Map<String, Map<Long, Position>> npcTargetsByMatch = new ConcurrentHashMap<>();
+    private final ShardedTickExecutor lanes;
+    private final HashedWheelTimer timer;
+    private final Map<String, List<WheelTimeout>> tasks = new ConcurrentHashMap<>();
+    private final Map<String, WheelTimeout> voteTimers = new ConcurrentHashMap<>();
+    private final Map<String, NpcStore> npcStoresByMatch = new ConcurrentHashMap<>();
+    private final Map<String, MatchSimulation> simulations = new ConcurrentHashMap<>();
+    private final Map<String, MoveInputBuffer> inputBuffers = new ConcurrentHashMap<>();
+    private final Map<String, PositionHistory> positionHistories = new ConcurrentHashMap<>();
+    private final Set<String> batchMembers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean[] batchInFlight;
     private final WebSocketController ws;
     private final MatchService matchService;
+    private final MatchMutationExecutor mutationExecutor;
+    private final MatchOwnership ownership;
+    private final GameSnapshotService snapshots;
+    private final int simulationHz;
+    private final int snapshotHz;
+    private final boolean batchTick;
+    private final long rewindWindowMillis;
+    private volatile Consumer<String> voteExpiryHandler;
+    private volatile BiPredicate<Match, MoveIntent> moveHandler;
 
-    public GameEngine(WebSocketController ws, MatchService matchService) {
+    public GameEngine(WebSocketController ws, MatchService matchService, GameEngineProperties properties,
+            MatchMutationExecutor mutationExecutor, MatchOwnership ownership, GameSnapshotService snapshots) {
         this.ws = ws;
         this.matchService = matchService;
+        this.mutationExecutor = mutationExecutor;
+        this.ownership = ownership;
+        this.snapshots = snapshots;
+        this.simulationHz = properties.getSimulationHz();
+        this.snapshotHz = properties.getSnapshotHz();
+        this.batchTick = properties.isBatchTick();
+        this.rewindWindowMillis = properties.getRewindWindowMillis();
+        this.lanes = new ShardedTickExecutor(properties.effectiveTickLanes(), "game-engine");
+        this.timer = new HashedWheelTimer(properties.getWheelTickMillis(), TimeUnit.MILLISECONDS,
+                properties.getWheelSlots(), "game-engine-wheel", this::dispatchExpired);
+        this.batchInFlight = new AtomicBoolean[lanes.laneCount()];
+        for (int i = 0; i < batchInFlight.length; i++) {
+            batchInFlight[i] = new AtomicBoolean(false);
+        }
+        ownership.addLeaseLostListener(this::cancelLocalTimers);
+        if (batchTick) {
+            timer.scheduleAtFixedRate(BATCH_TIMER_KEY, TimerKind.BATCH_TICK, this::dispatchBatchTick, 1, 1,
+                    TimeUnit.SECONDS);
+        }
     }
 
     /**
      * Starts the periodic task that updates a match timer and NPC movement.
-     * Any previous ticker for the same match will be stopped.
+     * Any previous ticker for the same match will be stopped. With ownership
+     * enabled the match is only ticked here if this node gets its lease.
      *
      * @param match match to tick
      */
     public void startMatchTicker(String code) {
         if (code == null || code.isBlank())
             return;
-        stopMatchTicker(code);
-        npcTargetsByMatch.remove(code);
+        cancelTicker(code);
+        if (ownership.isEnabled() && !ownership.acquire(code)) {
+            LOGGER.info("Match {} is owned by another node, not ticking it here", code);
+            return;
+        }
+        npcStoresByMatch.remove(code);
+        MatchSimulation simulation = simulationHz > 0 ? new MatchSimulation(code, simulationHz, System.nanoTime())
+                : null;
 
+        List<WheelTimeout> timers = new ArrayList<>(3);
+        if (batchTick) {
+            batchMembers.add(code);
+        } else {
+            timers.add(timer.scheduleAtFixedRate(code, TimerKind.MATCH_TICK, clockDispatcher(code, simulation), 1, 1,
+                    TimeUnit.SECONDS));
+        }
+        if (simulation != null) {
+            simulations.put(code, simulation);
+            MoveInputBuffer inputs = new MoveInputBuffer();
+            inputBuffers.put(code, inputs);
+            long stepMicros = TimeUnit.NANOSECONDS.toMicros(simulation.stepNanos());
+            timers.add(timer.scheduleAtFixedRate(code, TimerKind.SIMULATION, () -> {
+                simulation.advance(System.nanoTime());
+                flushInputs(code, simulation, inputs);
+            }, stepMicros, stepMicros, TimeUnit.MICROSECONDS));
+            if (snapshotHz > 0) {
+                long periodMicros = TimeUnit.SECONDS.toMicros(1) / snapshotHz;
+                timers.add(timer.scheduleAtFixedRate(code, TimerKind.SNAPSHOT,
+                        () -> publishSnapshot(simulation, TimeUnit.MICROSECONDS.toNanos(periodMicros)),
+                        periodMicros, periodMicros, TimeUnit.MICROSECONDS));
+            }
+        }
+        tasks.put(code, timers);
+    }
+
+    /**
+     * Builds the per-match clock task used when batch ticking is off: one
+     * locked read-modify-write of the match per second.
+     *
+     * @param code       match identifier
+     * @param simulation in-memory simulation of the match, or {@code null}
+     * @return task to register on the wheel
+     */
+    private Runnable clockDispatcher(String code, MatchSimulation simulation) {
         Runnable tick = () -> {
             TickResult result;
             try {
-                result = matchService.updateMatch(code, current -> {
-                    if (current.getStatus() == null || !current.getStatus().name().equals("STARTED")) {
-                        return TickResult.stop(null);
-                    }
-                    int t = current.getTimerSeconds();
-                    if (t <= 0) {
-                        if (current.getWinnerMessage() == null || current.getWinnerMessage().isBlank()) {
-                            current.setWinnerMessage("Se acabó el tiempo, ganó el infiltrado.");
-                        }
-                        current.endMatch();
-                        return TickResult.stop(buildGameState(current));
-                    }
-                    updateNpcMovement(current, 1.0);
-                    current.setTimerSeconds(t - 1);
-                    return TickResult.keepRunning(buildGameState(current));
-                });
+                result = matchService.updateMatch(code, current -> tickMatch(current, simulation));
             } catch (IllegalArgumentException ex) {
                 // match disappeared
                 stopMatchTicker(code);
                 return;
             }
+            if (applyTickResult(code, result) != null) {
+                ws.broadcastGameState(code, result.gameState);
+            }
+        };
 
-            if (result == null) {
-                stopMatchTicker(code);
+        // With virtual threads the lane only dispatches the tick; skip a beat instead of
+        // letting two ticks of the same match overlap when Redis is slow.
+        AtomicBoolean inFlight = new AtomicBoolean(false);
+        return () -> {
+            if (!inFlight.compareAndSet(false, true)) {
                 return;
             }
+            mutationExecutor.execute(code, () -> {
+                try {
+                    tick.run();
+                } finally {
+                    inFlight.set(false);
+                }
+            });
+        };
+    }
 
-            if (result.gameState != null) {
-                ws.broadcastGameState(code, result.gameState);
+    /**
+     * Stops the ticker when the result asks for it.
+     *
+     * @param code   match identifier
+     * @param result outcome of the tick, {@code null} when the match is gone
+     * @return state to broadcast, or {@code null}
+     */
+    private GameState applyTickResult(String code, TickResult result) {
+        if (result == null) {
+            stopMatchTicker(code);
+            return null;
+        }
+        if (result.stop) {
+            stopMatchTicker(code);
+        }
+        return result.gameState;
+    }
+
+    /**
+     * Fans the node-wide batch tick out to the lanes. Every lane ticks its
+     * hosted matches as one batch; a lane still busy with the previous batch
+     * skips this second.
+     */
+    private void dispatchBatchTick() {
+        if (batchMembers.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<String>> byLane = new HashMap<>();
+        for (String code : batchMembers) {
+            byLane.computeIfAbsent(lanes.laneFor(code), k -> new ArrayList<>()).add(code);
+        }
+        long due = System.nanoTime();
+        for (Map.Entry<Integer, List<String>> entry : byLane.entrySet()) {
+            AtomicBoolean inFlight = batchInFlight[entry.getKey()];
+            if (!inFlight.compareAndSet(false, true)) {
+                continue;
             }
+            List<String> codes = entry.getValue();
+            lanes.executeOnLane(entry.getKey(), () -> mutationExecutor.execute(LANE_KEY + entry.getKey(), () -> {
+                try {
+                    tickBatch(codes);
+                } finally {
+                    inFlight.set(false);
+                }
+            }), due);
+        }
+    }
 
-            if (result.stop) {
-                stopMatchTicker(code);
+    /**
+     * Ticks several matches with one MGET, one pipelined write and one
+     * pipelined publish.
+     *
+     * @param codes matches hosted by the same lane
+     */
+    private void tickBatch(List<String> codes) {
+        MatchService.BatchUpdate<TickResult> outcome;
+        try {
+            outcome = matchService.updateMatches(codes,
+                    current -> tickMatch(current, simulations.get(current.getCode())));
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Batch tick of {} matches failed", codes.size(), ex);
+            return;
+        }
+        outcome.missing().forEach(this::stopMatchTicker);
+        Map<String, GameState> states = new LinkedHashMap<>();
+        outcome.results().forEach((code, result) -> {
+            GameState state = applyTickResult(code, result);
+            if (state != null) {
+                states.put(code, state);
             }
-        };
+        });
+        ws.broadcastGameStates(states);
+    }
 
-        ScheduledFuture<?> f = scheduler.scheduleAtFixedRate(tick, 1, 1, TimeUnit.SECONDS);
-        tasks.put(code, f);
+    /**
+     * Advances the match clock by one second. Runs inside a match mutation.
+     *
+     * @param current    match loaded for this tick
+     * @param simulation in-memory simulation of the match, or {@code null}
+     * @return whether to keep ticking and the state to broadcast
+     */
+    private TickResult tickMatch(Match current, MatchSimulation simulation) {
+        if (current.getStatus() == null || !current.getStatus().name().equals("STARTED")) {
+            return TickResult.stop(null);
+        }
+        int t = current.getTimerSeconds();
+        if (t <= 0) {
+            if (current.getWinnerMessage() == null || current.getWinnerMessage().isBlank()) {
+                current.setWinnerMessage("Se acabó el tiempo, ganó el infiltrado.");
+            }
+            current.endMatch();
+            return TickResult.stop(snapshots.snapshot(current));
+        }
+        if (simulation != null) {
+            current.setTimerSeconds(t - 1);
+            simulation.sync(current, System.nanoTime());
+        } else {
+            updateNpcMovement(current, 1.0);
+            current.setTimerSeconds(t - 1);
+        }
+        return TickResult.keepRunning(snapshots.snapshot(current));
+    }
+
+    /**
+     * Writes the simulated NPC positions of a match into the given instance and
+     * records it as the latest view for snapshot broadcasts. Callers mutating a
+     * match outside the engine invoke it right before building the state they
+     * broadcast. Does nothing when the match has no running simulation.
+     *
+     * @param match match being mutated under its lock
+     */
+    public void syncSimulation(Match match) {
+        if (match == null || match.getCode() == null) {
+            return;
+        }
+        MatchSimulation simulation = simulations.get(match.getCode());
+        if (simulation != null) {
+            simulation.sync(match, System.nanoTime());
+        }
+    }
+
+    /**
+     * @param code match identifier
+     * @return running simulation of the match on this node, or {@code null};
+     *         callers only read it
+     */
+    public MatchSimulation simulationOf(String code) {
+        return code != null ? simulations.get(code) : null;
+    }
+
+    /**
+     * Queues a move for the next simulation step of the match, so all moves
+     * received during a step cost one match write and one broadcast. Only
+     * matches ticked here with a running simulation buffer moves.
+     *
+     * @param code   match identifier
+     * @param intent validated move
+     * @return {@code false} when the caller must apply the move itself
+     */
+    public boolean queueMove(String code, MoveIntent intent) {
+        MoveInputBuffer inputs = code != null ? inputBuffers.get(code) : null;
+        if (inputs == null || moveHandler == null) {
+            return false;
+        }
+        if (!inputs.offer(intent)) {
+            LOGGER.debug("Input buffer of match {} is full, dropping move of avatar {}", code, intent.avatarId());
+        }
+        return true;
+    }
+
+    /**
+     * Registers how a buffered move is applied to the match. The handler runs
+     * under the match mutation and returns whether the avatar moved.
+     *
+     * @param handler applies one move intent
+     */
+    public void onMoveIntent(BiPredicate<Match, MoveIntent> handler) {
+        this.moveHandler = handler;
+    }
+
+    /**
+     * Applies the moves still buffered for the match right away, in the
+     * calling thread, so a command checking positions next sees the moves
+     * received before it. Costs a match write and a broadcast only when moves
+     * are pending. Does nothing while a step is flushing the buffer.
+     *
+     * @param code match identifier
+     */
+    public void flushPendingMoves(String code) {
+        MatchSimulation simulation = code != null ? simulations.get(code) : null;
+        MoveInputBuffer inputs = code != null ? inputBuffers.get(code) : null;
+        if (simulation == null || inputs == null || moveHandler == null || inputs.isEmpty()
+                || !inputs.tryBeginFlush()) {
+            return;
+        }
+        applyBufferedMoves(code, simulation, inputs);
+    }
+
+    /**
+     * Remembers where an avatar moved, for later lag-compensated checks. Only
+     * node-local memory is touched.
+     *
+     * @param code     match identifier
+     * @param avatarId avatar that moved
+     * @param atMillis epoch milliseconds the move was received
+     * @param position new position of the avatar
+     */
+    public void recordPosition(String code, Long avatarId, long atMillis, Position position) {
+        if (code == null || avatarId == null || position == null || rewindWindowMillis < 1) {
+            return;
+        }
+        positionHistories.computeIfAbsent(code, c -> new PositionHistory())
+                .record(avatarId, atMillis, position.getX(), position.getY());
     }
 
     /**
-     * Stops the ticking task for the given match code, if any.
+     * Rewinds an avatar to the time a client acted. The client timestamp is
+     * clamped to the rewind window, so an old or forged one cannot reach
+     * further back than {@code app.engine.rewind-window-millis}.
+     *
+     * @param code            match identifier
+     * @param avatarId        avatar to look up
+     * @param clientTimestamp server time, in epoch milliseconds, of the state
+     *                        the client acted on; may be {@code null}
+     * @return the position at that time, or {@code null} when it is unknown and
+     *         the current position applies
+     */
+    public Position positionAt(String code, Long avatarId, Long clientTimestamp) {
+        if (code == null || avatarId == null || clientTimestamp == null || rewindWindowMillis < 1) {
+            return null;
+        }
+        PositionHistory history = positionHistories.get(code);
+        if (history == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long at = Math.min(now, Math.max(now - rewindWindowMillis, clientTimestamp));
+        double[] out = new double[2];
+        return history.positionAt(avatarId, at, out) ? new Position(out[0], out[1]) : null;
+    }
+
+    /**
+     * Applies every move buffered since the previous step in one match
+     * mutation and broadcasts the result once. Counts as the snapshot of the
+     * period, so the snapshot timer does not send the same state again.
+     *
+     * @param code       match identifier
+     * @param simulation simulation of the match
+     * @param inputs     move buffer of the match
+     */
+    private void flushInputs(String code, MatchSimulation simulation, MoveInputBuffer inputs) {
+        if (moveHandler == null || inputs.isEmpty() || !inputs.tryBeginFlush()) {
+            return;
+        }
+        mutationExecutor.execute(code, () -> applyBufferedMoves(code, simulation, inputs));
+    }
+
+    /**
+     * Drains the buffer into one match mutation and broadcasts the result. The
+     * caller has begun the flush; it is ended here.
+     */
+    private void applyBufferedMoves(String code, MatchSimulation simulation, MoveInputBuffer inputs) {
+        BiPredicate<Match, MoveIntent> handler = moveHandler;
+        try {
+            List<MoveIntent> intents = inputs.drain();
+            if (intents.isEmpty() || handler == null) {
+                return;
+            }
+            GameState state = matchService.updateMatch(code, match -> {
+                boolean moved = false;
+                for (MoveIntent intent : intents) {
+                    moved |= handler.test(match, intent);
+                }
+                if (!moved) {
+                    return null;
+                }
+                simulation.sync(match, System.nanoTime());
+                return snapshots.snapshot(match, simulation);
+            });
+            if (state != null) {
+                simulation.markPublished(System.nanoTime());
+                ws.broadcastGameState(code, state);
+            }
+        } catch (IllegalArgumentException ex) {
+            // match disappeared; the clock tick stops the ticker
+        } finally {
+            inputs.endFlush();
+        }
+    }
+
+    /**
+     * Broadcasts the latest view with simulated NPC positions unless some other
+     * update of the match already went out within the snapshot period.
+     *
+     * <p>
+     * For an owned match the view is the live instance that mutations keep
+     * changing, so it is only read under the owned-match lock. The timer
+     * thread does not wait for it: while a mutation holds the lock this beat
+     * is skipped, and the mutation publishes its own state anyway.
+     *
+     * @param simulation  simulation of the match
+     * @param periodNanos minimum distance between two published states
+     */
+    private void publishSnapshot(MatchSimulation simulation, long periodNanos) {
+        long now = System.nanoTime();
+        Match view = simulation.view();
+        if (view == null || now - simulation.lastPublishedNanos() < periodNanos) {
+            return;
+        }
+        OwnedMatch owned = ownership.owned(simulation.getCode());
+        GameState state;
+        if (owned == null) {
+            state = snapshots.snapshot(view, simulation);
+        } else if (owned.getLock().tryLock()) {
+            try {
+                // the view may have been replaced while waiting; describe the current one
+                state = snapshots.snapshot(simulation.view(), simulation);
+            } finally {
+                owned.getLock().unlock();
+            }
+        } else {
+            return;
+        }
+        simulation.markPublished(now);
+        mutationExecutor.execute(simulation.getCode(), () -> ws.broadcastGameState(simulation.getCode(), state));
+    }
+
+    /**
+     * Stops the ticking task for the given match code, if any, and gives its
+     * ownership lease back. Call it once the final state of the match has been
+     * written, not from inside a {@link MatchService#updateMatch} updater:
+     * releasing the lease there lets another node adopt the match before the
+     * write lands.
      *
      * @param code identifier of the match to stop
      */
     public void stopMatchTicker(String code) {
-        ScheduledFuture<?> f = tasks.remove(code);
-        if (f != null)
-            f.cancel(false);
-        npcTargetsByMatch.remove(code);
+        cancelTicker(code);
+        ownership.release(code);
+    }
+
+    /**
+     * Takes over a running match whose previous ticker is gone, e.g. because
+     * its node died or handed it off. A vote in progress gets its deadline back
+     * with the time it had left.
+     *
+     * @param code match identifier
+     * @return whether this node owns and ticks the match afterwards
+     */
+    public boolean adoptMatch(String code) {
+        startMatchTicker(code);
+        OwnedMatch owned = ownership.owned(code);
+        if (owned == null) {
+            return false;
+        }
+        Match match = owned.getMatch();
+        Consumer<String> handler = voteExpiryHandler;
+        if (match != null && match.isVotingActive() && handler != null) {
+            long endsAt = match.getVoteStartEpochMs() + Match.VOTE_DURATION_SECONDS * 1000L;
+            long remaining = Math.max(0L, endsAt - System.currentTimeMillis());
+            cancelVoteTimeout(code);
+            voteTimers.put(code, timer.schedule(code, TimerKind.VOTE_END,
+                    () -> mutationExecutor.execute(code, () -> handler.accept(code)), remaining, TimeUnit.MILLISECONDS));
+        }
+        return true;
+    }
+
+    /**
+     * Stops ticking a match so another node can adopt it. The lease is only
+     * given back after any in-flight mutation has been written to Redis.
+     *
+     * @param code match identifier
+     */
+    public void handOff(String code) {
+        cancelLocalTimers(code);
+        ownership.release(code);
+    }
+
+    /**
+     * Registers what to run when an adopted match reaches its vote deadline.
+     *
+     * @param handler callback receiving the match code
+     */
+    public void onVoteExpired(Consumer<String> handler) {
+        this.voteExpiryHandler = handler;
+    }
+
+    private void cancelLocalTimers(String code) {
+        cancelTicker(code);
+        cancelVoteTimeout(code);
+    }
+
+    private void cancelTicker(String code) {
+        List<WheelTimeout> timers = tasks.remove(code);
+        if (timers != null)
+            timers.forEach(WheelTimeout::cancel);
+        npcStoresByMatch.remove(code);
+        simulations.remove(code);
+        inputBuffers.remove(code);
+        positionHistories.remove(code);
+        batchMembers.remove(code);
+        snapshots.evict(code);
     }
 
     /**
@@ -126,10 +602,9 @@ public class GameEngine {
             return;
         }
         cancelVoteTimeout(code);
-        ScheduledFuture<?> future = scheduler.schedule(() -> {
-            callback.run();
-        }, Match.VOTE_DURATION_SECONDS, TimeUnit.SECONDS);
-        voteTimers.put(code, future);
+        WheelTimeout timeout = timer.schedule(code, TimerKind.VOTE_END, () -> mutationExecutor.execute(code, callback),
+                Match.VOTE_DURATION_SECONDS, TimeUnit.SECONDS);
+        voteTimers.put(code, timeout);
     }
 
     /**
@@ -138,62 +613,60 @@ public class GameEngine {
      * @param code match identifier
      */
     public void cancelVoteTimeout(String code) {
-        ScheduledFuture<?> future = voteTimers.remove(code);
-        if (future != null) {
-            future.cancel(false);
+        WheelTimeout timeout = voteTimers.remove(code);
+        if (timeout != null) {
+            timeout.cancel();
         }
     }
 
     /**
-     * Creates a {@link GameState} snapshot for broadcasting.
+     * Reports queue depth and tick lag for every scheduler lane.
      *
-     * @param match match whose state is being serialized
-     * @return ready-to-send game state payload
+     * @return one entry per lane
      */
-    private GameState buildGameState(Match match) {
-        List<AvatarState> avatars = new ArrayList<>();
-        for (Player p : match.getPlayers()) {
-            Position pos = p.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            if (p.isInfiltrator()) {
-                avatars.add(new AvatarState(p.getId(), "npc", null, x, y, true, p.isAlive(),
-                        resolveNpcAlias(p)));
-            } else {
-                avatars.add(new AvatarState(p.getId(), "human", p.getUsername(), x, y, false, p.isAlive(),
-                        p.getUsername()));
+    public List<TickLaneStats> laneStats() {
+        return lanes.stats();
+    }
+
+    /**
+     * @return current tick lag of the slowest lane in milliseconds
+     */
+    public long maxTickLagMillis() {
+        long max = 0L;
+        for (TickLaneStats stats : lanes.stats()) {
+            max = Math.max(max, stats.lastTickLagMs());
+        }
+        return max;
+    }
+
+    /**
+     * Receives the timers expired in one wheel slot, groups them by lane and
+     * submits each group as a single batch.
+     *
+     * @param expired timers that fired in the current wheel tick
+     */
+    private void dispatchExpired(List<WheelTimeout> expired) {
+        Map<Integer, List<WheelTimeout>> byLane = new HashMap<>();
+        for (WheelTimeout timeout : expired) {
+            byLane.computeIfAbsent(lanes.laneFor(timeout.key()), k -> new ArrayList<>()).add(timeout);
+        }
+        for (Map.Entry<Integer, List<WheelTimeout>> entry : byLane.entrySet()) {
+            List<WheelTimeout> batch = entry.getValue();
+            lanes.executeOnLane(entry.getKey(), () -> runBatch(batch), batch.get(0).deadlineNanos());
+        }
+    }
+
+    private void runBatch(List<WheelTimeout> batch) {
+        for (WheelTimeout timeout : batch) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            try {
+                timeout.task().run();
+            } catch (RuntimeException ex) {
+                LOGGER.error("Timer {} failed for match {}", timeout.kind(), timeout.key(), ex);
             }
         }
-        for (Npc n : match.getNpcs()) {
-            Position pos = n.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            avatars.add(
-                    new AvatarState(n.getId(), "npc", null, x, y, n.isInfiltrator(), n.isActive(), n.getDisplayName()));
-        }
-        GameState.Island isl = new GameState.Island(0.0, 0.0, ISLAND_RADIUS);
-        GameState.Boat boat = new GameState.Boat(BOAT_X, BOAT_Y, BOAT_INTERACTION_RADIUS);
-        String status = match.getStatus() != null ? match.getStatus().name() : MatchStatus.WAITING.name();
-        boolean votingActive = match.isVotingActive();
-        long voteEndsAt = votingActive ? match.getVoteStartEpochMs() + Match.VOTE_DURATION_SECONDS * 1000L : 0L;
-        List<AvatarState> voteOptions = votingActive ? buildVoteOptionsSnapshot(match) : null;
-        return new GameState(
-                match.getCode(),
-                System.currentTimeMillis(),
-                match.getTimerSeconds(),
-                isl,
-                avatars,
-                match.getFuelPercentage(),
-                status,
-                boat,
-                match.getWinnerMessage(),
-                match.isFuelWindowOpenNow(),
-                match.getFuelWindowSecondsRemaining(),
-                votingActive,
-                voteEndsAt,
-                voteOptions,
-                match.getLastVoteResult(),
-                match.getLastVoteResultEpochMs());
     }
 
     /**
@@ -204,11 +677,13 @@ public class GameEngine {
      * @param deltaSeconds elapsed seconds since the last update
      */
     private void updateNpcMovement(Match match, double deltaSeconds) {
-        Map<Long, Position> targets = npcTargetsByMatch.computeIfAbsent(match.getCode(),
-                k -> new ConcurrentHashMap<>());
-        for (Npc npc : match.getNpcs()) {
-            if (!npc.isActive()) {
-                targets.remove(npc.getId());
+        NpcStore store = npcStoresByMatch.computeIfAbsent(match.getCode(), k -> new NpcStore());
+        List<Npc> npcs = match.getNpcs();
+        // the match was just read back, so its positions are the authoritative ones
+        store.beginSync();
+        int hint = 0;
+        for (Npc npc : npcs) {
+            if (!npc.isActive() || npc.getId() == null) {
                 continue;
             }
             Position position = npc.getPosition();
@@ -216,65 +691,31 @@ public class GameEngine {
                 position = new Position(0.0, 0.0);
                 npc.setPosition(position);
             }
-
-            Position target = targets.computeIfAbsent(npc.getId(), id -> randomIslandPoint());
-            double dx = target.getX() - position.getX();
-            double dy = target.getY() - position.getY();
-            double distance = Math.hypot(dx, dy);
-
-            if (distance < 1.0) {
-                targets.put(npc.getId(), randomIslandPoint());
-                continue;
+            int slot = store.slotOf(npc.getId(), hint);
+            if (slot < 0) {
+                slot = store.add(npc.getId(), position.getX(), position.getY(), npc.getMovementSpeed());
+            } else {
+                store.setPosition(slot, position.getX(), position.getY());
             }
+            hint = slot + 1;
+        }
+        store.endSync();
 
-            double baseSpeed = Math.min(Math.max(0.15, npc.getMovementSpeed()), 0.55);
-            double step = Math.min(distance, baseSpeed * NPC_SPEED_MULTIPLIER * deltaSeconds);
-            double nx = position.getX() + (dx / distance) * step;
-            double ny = position.getY() + (dy / distance) * step;
+        store.step(deltaSeconds);
 
-            double distFromCenter = Math.hypot(nx, ny);
-            if (distFromCenter >= ISLAND_RADIUS - 2.0) {
-                targets.put(npc.getId(), randomIslandPoint());
+        hint = 0;
+        for (Npc npc : npcs) {
+            if (!npc.isActive() || npc.getId() == null) {
                 continue;
             }
-
-            position.setX(nx);
-            position.setY(ny);
-        }
-    }
-
-    /**
-     * Generates a random position within the island radius.
-     *
-     * @return pseudo-random position constrained to the island
-     */
-    private Position randomIslandPoint() {
-        double angle = ThreadLocalRandom.current().nextDouble(0, Math.PI * 2);
-        double radius = ThreadLocalRandom.current().nextDouble(0, ISLAND_RADIUS * 0.9);
-        double x = Math.cos(angle) * radius;
-        double y = Math.sin(angle) * radius;
-        return new Position(x, y);
-    }
-
-    private List<AvatarState> buildVoteOptionsSnapshot(Match match) {
-        List<AvatarState> options = new ArrayList<>();
-        for (Npc n : match.getNpcs()) {
-            Position pos = n.getPosition();
-            double x = pos != null ? pos.getX() : 0.0;
-            double y = pos != null ? pos.getY() : 0.0;
-            options.add(new AvatarState(n.getId(), "npc", null, x, y, n.isInfiltrator(), n.isActive(),
-                    n.getDisplayName()));
-        }
-        for (Player p : match.getPlayers()) {
-            if (p.isInfiltrator() && p.isAlive()) {
-                Position pos = p.getPosition();
-                double x = pos != null ? pos.getX() : 0.0;
-                double y = pos != null ? pos.getY() : 0.0;
-                options.add(new AvatarState(p.getId(), "npc", null, x, y, true, p.isAlive(),
-                        resolveNpcAlias(p)));
-            }
+            int slot = store.slotOf(npc.getId(), hint);
+            Position position = npc.getPosition();
+            position.setX(store.x(slot));
+            position.setY(store.y(slot));
+            // keeps the spatial index of the match in step
+            npc.setPosition(position);
+            hint = slot + 1;
         }
-        return options;
     }
 
     /**
@@ -313,11 +754,12 @@ public class GameEngine {
      */
     @PreDestroy
     public void shutdown() {
-        for (ScheduledFuture<?> f : tasks.values())
-            f.cancel(false);
-        for (ScheduledFuture<?> f : voteTimers.values())
-            f.cancel(false);
-        scheduler.shutdownNow();
+        for (List<WheelTimeout> timers : tasks.values())
+            timers.forEach(WheelTimeout::cancel);
+        for (WheelTimeout f : voteTimers.values())
+            f.cancel();
+        timer.stop();
+        lanes.shutdown();
     }
 
     private record TickResult(boolean stop, GameState gameState) {
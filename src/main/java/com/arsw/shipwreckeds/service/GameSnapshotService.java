@@ -0,0 +1,307 @@
+package com.arsw.shipwreckeds.service;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+import com.arsw.shipwreckeds.model.dto.AvatarState;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.service.engine.MatchSimulation;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the {@link GameState} snapshots broadcast to clients and served over
+ * REST, for the engine and the controllers alike.
+ *
+ * <p>
+ * A snapshot is memoized per match and state version ({@link Match#getVersion()},
+ * bumped by {@code MatchService} on every mutation) and simulation revision, so
+ * every broadcaster and reader of the same version gets the same instance.
+ * Matches with version {@code 0} were never mutated through the service and
+ * are rebuilt on every call. Which avatars the vote options list is cached
+ * until the roster changes, but the options themselves are the avatar entries
+ * of each snapshot, so they move with it. The island and boat are shared
+ * constants.
+ *
+ * <p>
+ * Snapshots are shared between threads and must not be modified; their lists
+ * are unmodifiable. For the same reason a memoized snapshot keeps the
+ * {@link GameState#getTimestamp() timestamp} of when it was built rather than
+ * when it is sent: it stamps the positions it carries, which have not changed
+ * since, and clients echo it as the {@code clientTimestamp} that
+ * {@code GameEngine} rewinds eliminations and boat actions to.
+ */
+@Service
+public class GameSnapshotService {
+
+    public static final double ISLAND_RADIUS = 100.0;
+    public static final double BOAT_X = ISLAND_RADIUS + 12.0;
+    public static final double BOAT_Y = 0.0;
+    public static final double BOAT_INTERACTION_RADIUS = 40.0;
+    /** Bound of the memo tables; they are cleared when reached. */
+    static final int MAX_MATCHES = 4096;
+
+    private static final GameState.Island ISLAND = new GameState.Island(0.0, 0.0, ISLAND_RADIUS);
+    private static final GameState.Boat BOAT = new GameState.Boat(BOAT_X, BOAT_Y, BOAT_INTERACTION_RADIUS);
+
+    private final Map<String, Memo> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, VoteOptions> voteOptions = new ConcurrentHashMap<>();
+
+    /**
+     * @param match match to describe
+     * @return snapshot of the match as stored
+     */
+    public GameState snapshot(Match match) {
+        return snapshot(match, null);
+    }
+
+    /**
+     * Returns the snapshot of the current version of a match, taking NPC
+     * positions from the simulation when one is given.
+     *
+     * @param match      match to describe
+     * @param simulation in-memory simulation of the match, or {@code null}
+     * @return memoized or freshly built snapshot
+     */
+    public GameState snapshot(Match match, MatchSimulation simulation) {
+        String code = match.getCode();
+        long version = match.getVersion();
+        long revision = simulation != null ? simulation.revision() : -1L;
+        if (version > 0 && code != null) {
+            Memo memo = snapshots.get(code);
+            if (memo != null && memo.version() == version && memo.revision() == revision) {
+                return memo.state();
+            }
+        }
+        GameState state = build(match, simulation);
+        if (version > 0 && code != null) {
+            if (MatchStatus.FINISHED == match.getStatus()) {
+                evict(code);
+            } else {
+                bound(snapshots);
+                snapshots.merge(code, new Memo(version, revision, state),
+                        (old, memo) -> old.version() > memo.version() ? old : memo);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Builds a one-off snapshot of a match whose fuel was changed in Redis
+     * after the instance was read, e.g. a near-cache copy shared with other
+     * readers. Neither the match nor the memo are touched.
+     *
+     * @param match          match as last read
+     * @param simulation     in-memory simulation of the match, or {@code null}
+     * @param fuelPercentage fuel level written by the update
+     * @return fresh snapshot carrying the new fuel level
+     */
+    public GameState snapshotWithFuel(Match match, MatchSimulation simulation, double fuelPercentage) {
+        GameState state = build(match, simulation);
+        state.setFuelPercentage(fuelPercentage);
+        return state;
+    }
+
+    /**
+     * Lists every avatar a player can vote for: the NPCs and the infiltrator
+     * disguised as one, at their stored positions. Only who is listed is
+     * reused until the roster changes; the entries are built on every call.
+     *
+     * @param match match being voted on
+     * @return unmodifiable vote options
+     */
+    public List<AvatarState> voteOptions(Match match) {
+        return voteOptions(match, null);
+    }
+
+    /**
+     * Forgets what was memoized for a match, e.g. once it stops.
+     *
+     * @param code match identifier
+     */
+    public void evict(String code) {
+        if (code != null) {
+            snapshots.remove(code);
+            voteOptions.remove(code);
+        }
+    }
+
+    /**
+     * Collects the last processed input sequence of every player that sent
+     * sequenced moves.
+     *
+     * @param match match whose players are read
+     * @return username to sequence, or {@code null} when no player sent any
+     */
+    public static Map<String, Long> inputAcks(Match match) {
+        Map<String, Long> acks = null;
+        for (Player p : match.getPlayers()) {
+            if (p.getLastInputSeq() > 0 && p.getUsername() != null) {
+                if (acks == null) {
+                    acks = new HashMap<>();
+                }
+                acks.put(p.getUsername(), p.getLastInputSeq());
+            }
+        }
+        return acks != null ? Collections.unmodifiableMap(acks) : null;
+    }
+
+    private GameState build(Match match, MatchSimulation simulation) {
+        List<Player> players = match.getPlayers();
+        List<Npc> npcs = match.getNpcs();
+        List<AvatarState> avatars = new ArrayList<>(players.size() + npcs.size());
+        for (Player p : players) {
+            avatars.add(playerState(p));
+        }
+        double[] simulated = simulation != null ? simulation.positionsOf(npcs) : null;
+        for (int i = 0; i < npcs.size(); i++) {
+            Npc n = npcs.get(i);
+            double[] xy = simulated != null && !Double.isNaN(simulated[2 * i])
+                    ? new double[] { simulated[2 * i], simulated[2 * i + 1] }
+                    : position(n.getPosition());
+            avatars.add(npcState(n, xy));
+        }
+        String status = match.getStatus() != null ? match.getStatus().name() : MatchStatus.WAITING.name();
+        boolean votingActive = match.isVotingActive();
+        long voteEndsAt = votingActive ? match.getVoteStartEpochMs() + Match.VOTE_DURATION_SECONDS * 1000L : 0L;
+        return new GameState(
+                match.getCode(),
+                System.currentTimeMillis(),
+                match.getTimerSeconds(),
+                ISLAND,
+                Collections.unmodifiableList(avatars),
+                match.getFuelPercentage(),
+                status,
+                BOAT,
+                match.getWinnerMessage(),
+                match.isFuelWindowOpenNow(),
+                match.getFuelWindowSecondsRemaining(),
+                votingActive,
+                voteEndsAt,
+                votingActive ? voteOptions(match, avatars) : null,
+                match.getLastVoteResult(),
+                match.getLastVoteResultEpochMs(),
+                inputAcks(match));
+    }
+
+    /**
+     * Picks the vote options out of the avatars of a snapshot, so they show
+     * the same positions, or builds them from the stored positions when no
+     * snapshot is given.
+     */
+    private List<AvatarState> voteOptions(Match match, List<AvatarState> avatars) {
+        List<Player> players = match.getPlayers();
+        List<Npc> npcs = match.getNpcs();
+        int[] slots = voteSlots(match);
+        AvatarState[] options = new AvatarState[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            if (avatars != null) {
+                options[i] = avatars.get(slot);
+            } else if (slot < players.size()) {
+                options[i] = playerState(players.get(slot));
+            } else {
+                Npc n = npcs.get(slot - players.size());
+                options[i] = npcState(n, position(n.getPosition()));
+            }
+        }
+        return List.of(options);
+    }
+
+    /**
+     * Indexes, in snapshot avatar order (players, then NPCs), of the avatars
+     * listed as vote options. Reused until the roster changes.
+     */
+    private int[] voteSlots(Match match) {
+        long roster = rosterSignature(match);
+        String code = match.getCode();
+        VoteOptions cached = code != null ? voteOptions.get(code) : null;
+        if (cached != null && cached.roster() == roster) {
+            return cached.slots();
+        }
+        List<Player> players = match.getPlayers();
+        int npcCount = match.getNpcs().size();
+        int[] slots = new int[npcCount + players.size()];
+        int count = 0;
+        for (int i = 0; i < npcCount; i++) {
+            slots[count++] = players.size() + i;
+        }
+        for (int i = 0; i < players.size(); i++) {
+            Player p = players.get(i);
+            if (p.isInfiltrator() && p.isAlive()) {
+                slots[count++] = i;
+            }
+        }
+        slots = Arrays.copyOf(slots, count);
+        if (code != null) {
+            bound(voteOptions);
+            voteOptions.put(code, new VoteOptions(roster, slots));
+        }
+        return slots;
+    }
+
+    /** Humans show their username; the infiltrator is disguised as an NPC. */
+    private static AvatarState playerState(Player p) {
+        double[] xy = position(p.getPosition());
+        if (p.isInfiltrator()) {
+            return new AvatarState(p.getId(), "npc", null, xy[0], xy[1], true, p.isAlive(),
+                    GameEngine.resolveNpcAlias(p));
+        }
+        return new AvatarState(p.getId(), "human", p.getUsername(), xy[0], xy[1], false, p.isAlive(),
+                p.getUsername());
+    }
+
+    private static AvatarState npcState(Npc n, double[] xy) {
+        return new AvatarState(n.getId(), "npc", null, xy[0], xy[1], n.isInfiltrator(), n.isActive(),
+                n.getDisplayName());
+    }
+
+    private static double[] position(Position pos) {
+        return pos != null ? new double[] { pos.getX(), pos.getY() } : new double[] { 0.0, 0.0 };
+    }
+
+    /**
+     * Hash of what the vote options show besides positions: who is listed,
+     * under which name and where in the snapshot.
+     */
+    private static long rosterSignature(Match match) {
+        List<Player> players = match.getPlayers();
+        long h = 17 + players.size();
+        for (Npc n : match.getNpcs()) {
+            h = 31 * h + Objects.hashCode(n.getId());
+            h = 31 * h + (n.isActive() ? 1 : 0) + (n.isInfiltrator() ? 2 : 0);
+            h = 31 * h + Objects.hashCode(n.getDisplayName());
+        }
+        for (int i = 0; i < players.size(); i++) {
+            Player p = players.get(i);
+            if (p.isInfiltrator() && p.isAlive()) {
+                h = 31 * h + i;
+                h = 31 * h + Objects.hashCode(p.getId());
+                h = 31 * h + GameEngine.resolveNpcAlias(p).hashCode();
+            }
+        }
+        return h;
+    }
+
+    private static void bound(Map<String, ?> table) {
+        if (table.size() >= MAX_MATCHES) {
+            table.clear();
+        }
+    }
+
+    private record Memo(long version, long revision, GameState state) {
+    }
+
+    private record VoteOptions(long roster, int[] slots) {
+    }
+}
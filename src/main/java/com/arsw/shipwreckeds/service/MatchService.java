@@ -1,13 +1,32 @@
 package com.arsw.shipwreckeds.service;
 
+import com.arsw.shipwreckeds.config.CacheProperties;
 import com.arsw.shipwreckeds.model.Match;
 import com.arsw.shipwreckeds.model.Player;
 import com.arsw.shipwreckeds.model.dto.CreateMatchResponse;
 import com.arsw.shipwreckeds.service.cache.MatchCacheRepository;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.FuelReply;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.Outcome;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.VoteReply;
+import com.arsw.shipwreckeds.service.cache.MatchCacheRepository.WriteOutcome;
 import com.arsw.shipwreckeds.service.cache.MatchLockManager;
+import com.arsw.shipwreckeds.service.cache.MatchUpdateStrategy;
+import com.arsw.shipwreckeds.service.cache.VersionedMatch;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.cluster.OwnedMatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
@@ -15,24 +34,51 @@ import java.util.function.Function;
  * Distributed match registry backed by AWS Valkey (Redis) so multiple backend
  * instances can share the same mutable game state. Generates unique lobby
  * codes, validates TTL, and executes state mutations under a Redis-backed
- * distributed lock to keep the game logic consistent across nodes.
+ * distributed lock to keep the game logic consistent across nodes. Matches
+ * owned by this node (see {@link MatchOwnership}) are mutated in memory under a
+ * local lock and written through to Redis instead, or, with write-behind on,
+ * left for the ownership flusher unless the mutation changed something other
+ * nodes must see right away, such as a start, a vote result or an
+ * elimination. With
+ * {@code app.cache.update-strategy=optimistic} shared matches are not locked
+ * either: they are written back with a compare-and-set on their version and
+ * the mutation is retried when another writer got there first.
+ *
+ * <p>
+ * Every mutation bumps {@link Match#getVersion()} before the updater runs, so
+ * the snapshots built by the updater are memoized under the version being
+ * written; when the write fails those snapshots are evicted from the
+ * {@link GameSnapshotService}.
  */
 @Service
 public class MatchService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchService.class);
+
     private final SecureRandom random = new SecureRandom();
     private static final String ALPHANUM = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     private static final int CODE_LENGTH = 6;
-    private static final long MATCH_TTL_SECONDS = 2 * 60 * 60;
+    /** Lifetime of a match in Redis, refreshed on every write. */
+    public static final long MATCH_TTL_SECONDS = 2 * 60 * 60;
 
     private static final AtomicLong NEXT_ID = new AtomicLong(1L);
 
     private final MatchCacheRepository cacheRepository;
     private final MatchLockManager lockManager;
+    private final MatchOwnership ownership;
+    private final GameSnapshotService snapshots;
+    private final CacheProperties cacheProperties;
+    private final MatchFieldScripts fieldScripts;
 
-    public MatchService(MatchCacheRepository cacheRepository, MatchLockManager lockManager) {
+    public MatchService(MatchCacheRepository cacheRepository, MatchLockManager lockManager,
+            MatchOwnership ownership, GameSnapshotService snapshots, CacheProperties cacheProperties,
+            MatchFieldScripts fieldScripts) {
         this.cacheRepository = cacheRepository;
         this.lockManager = lockManager;
+        this.ownership = ownership;
+        this.snapshots = snapshots;
+        this.cacheProperties = cacheProperties;
+        this.fieldScripts = fieldScripts;
     }
 
     /**
@@ -92,13 +138,14 @@ public class MatchService {
 
     /**
      * Retrieves the match referenced by the given code, pruning expired entries if
-     * necessary.
+     * necessary. Recently read matches are served from the node's near cache,
+     * so the result may be shared with other readers and must not be modified.
      *
      * @param code match identifier assigned at creation time
      * @return match instance or {@code null} if not found or expired
      */
     public Match getMatchByCode(String code) {
-        return cacheRepository.findActive(code);
+        return cacheRepository.findActiveCached(code);
     }
 
     /**
@@ -127,15 +174,331 @@ public class MatchService {
         cacheRepository.delete(code);
     }
 
+    /**
+     * Applies a mutation to a match and saves it. With the optimistic strategy
+     * the updater may run more than once for the same call and must not have
+     * side effects outside of the match that cannot be repeated.
+     *
+     * @param code    match identifier
+     * @param updater mutation applied to the loaded match
+     * @param <T>     result type of the updater
+     * @return result of the updater run that was saved
+     * @throws IllegalArgumentException when the match does not exist
+     * @throws IllegalStateException    when the lock could not be taken or
+     *                                  every optimistic attempt conflicted
+     */
     public <T> T updateMatch(String code, Function<Match, T> updater) {
-        return lockManager.withLock(code, () -> {
+        OwnedMatch owned = ownership.owned(code);
+        if (owned != null) {
+            owned.getLock().lock();
+            try {
+                // a lease given back while waiting for the lock sends us to the shared path
+                if (!owned.isReleased()) {
+                    return updateOwnedMatch(owned, updater);
+                }
+            } finally {
+                owned.getLock().unlock();
+            }
+        }
+        if (cacheProperties.getUpdateStrategy() == MatchUpdateStrategy.OPTIMISTIC) {
+            return updateOptimistically(code, updater);
+        }
+        try {
+            return lockManager.withLock(code, () -> {
+                Match match = cacheRepository.findActive(code);
+                if (match == null) {
+                    throw new IllegalArgumentException("Código inválido o partida no encontrada.");
+                }
+                T result = apply(match, updater);
+                cacheRepository.save(match, MATCH_TTL_SECONDS);
+                return result;
+            });
+        } catch (RuntimeException ex) {
+            snapshots.evict(code);
+            throw ex;
+        }
+    }
+
+    /**
+     * Read-modify-write without the distributed lock: the match is saved only if
+     * its version did not change since it was read, otherwise the cycle starts
+     * over after a jittered exponential backoff.
+     */
+    private <T> T updateOptimistically(String code, Function<Match, T> updater) {
+        int maxAttempts = Math.max(1, cacheProperties.getOptimisticMaxAttempts());
+        for (int attempt = 1;; attempt++) {
             Match match = cacheRepository.findActive(code);
             if (match == null) {
                 throw new IllegalArgumentException("Código inválido o partida no encontrada.");
             }
-            T result = updater.apply(match);
+            long readVersion = match.getVersion();
+            T result;
+            try {
+                result = apply(match, updater);
+            } catch (RuntimeException ex) {
+                snapshots.evict(code);
+                throw ex;
+            }
+            WriteOutcome outcome = cacheRepository.compareAndSave(match, readVersion, MATCH_TTL_SECONDS);
+            if (outcome == WriteOutcome.WRITTEN) {
+                return result;
+            }
+            snapshots.evict(code);
+            if (outcome == WriteOutcome.MISSING) {
+                throw new IllegalArgumentException("Código inválido o partida no encontrada.");
+            }
+            if (attempt >= maxAttempts) {
+                throw new IllegalStateException(
+                        "No se pudo actualizar la partida " + code + " por escrituras concurrentes");
+            }
+            LOGGER.debug("Version conflict on match {}, attempt {} of {}", code, attempt, maxAttempts);
+            backoff(code, attempt);
+        }
+    }
+
+    private void backoff(String code, int attempt) {
+        long cap = Math.min(cacheProperties.getOptimisticMaxBackoffMillis(),
+                cacheProperties.getOptimisticBackoffMillis() << Math.min(attempt - 1, 20));
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap / 2, cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupción al actualizar la partida " + code, e);
+        }
+    }
+
+    /**
+     * Mutates a match owned by this node without the distributed lock; the
+     * caller holds the local lock of the match. If the updater fails halfway the
+     * in-memory copy is reloaded from Redis when Redis holds the last committed
+     * state. A copy with mutations not flushed yet is kept as it is instead:
+     * reloading it would drop them, and updaters check before they mutate.
+     */
+    private <T> T updateOwnedMatch(OwnedMatch owned, Function<Match, T> updater) {
+        Match match = owned.getMatch();
+        if (match == null) {
+            throw new IllegalArgumentException("Código inválido o partida no encontrada.");
+        }
+        long milestone = milestone(match);
+        T result;
+        try {
+            result = apply(match, updater);
+        } catch (RuntimeException ex) {
+            rollBack(owned);
+            throw ex;
+        }
+        if (deferWrite(owned, milestone)) {
+            owned.markDirty();
+        } else {
             cacheRepository.save(match, MATCH_TTL_SECONDS);
-            return result;
-        });
+            owned.markClean();
+        }
+        return result;
+    }
+
+    private void rollBack(OwnedMatch owned) {
+        if (!owned.isDirty()) {
+            owned.replace(cacheRepository.findActive(owned.getCode()));
+        }
+        snapshots.evict(owned.getCode());
+    }
+
+    /**
+     * @return whether the write of an owned match can be left to the
+     *         write-behind flusher
+     */
+    private boolean deferWrite(OwnedMatch owned, long milestoneBefore) {
+        return ownership.isWriteBehind() && milestone(owned.getMatch()) == milestoneBefore;
+    }
+
+    /**
+     * Fingerprint of what other nodes must see without waiting for a
+     * write-behind flush: the status (start and finish), the vote in progress
+     * and its result, and who is in the match and alive.
+     */
+    private static long milestone(Match match) {
+        long h = match.getStatus() != null ? match.getStatus().ordinal() + 1L : 0L;
+        h = 31 * h + (match.isVotingActive() ? 1 : 0);
+        h = 31 * h + match.getLastVoteResultEpochMs();
+        h = 31 * h + match.getPlayers().size();
+        for (Player p : match.getPlayers()) {
+            h = 31 * h + (p.isAlive() ? 1 : 0);
+        }
+        return h;
+    }
+
+    /**
+     * Applies a fuel click to a shared match with a single atomic script, no
+     * lock and no full read or write of the match.
+     *
+     * @param code       match identifier
+     * @param username   player clicking
+     * @param fill       {@code true} to fill, {@code false} to sabotage
+     * @param step       amount of fuel, sign ignored
+     * @param boatX      X coordinate of the boat
+     * @param boatY      Y coordinate of the boat
+     * @param boatRadius how close to the boat a castaway must be
+     * @return the script reply, or {@code null} when the click must go through
+     *         {@link #updateMatch(String, Function)}: the match is owned by
+     *         this node, matches are not stored field by field, or the script
+     *         stepped aside
+     */
+    public FuelReply adjustFuelAtomically(String code, String username, boolean fill, double step,
+            double boatX, double boatY, double boatRadius) {
+        if (username == null || !scriptable(code)) {
+            return null;
+        }
+        FuelReply reply = fieldScripts.adjustFuel(code, username, fill, step, boatX, boatY, boatRadius);
+        return reply.outcome() != Outcome.FALL_BACK ? reply : null;
+    }
+
+    /**
+     * Records a ballot on a shared match with a single atomic script.
+     *
+     * @param code     match identifier
+     * @param username player voting
+     * @param targetId avatar voted for
+     * @return the script reply, or {@code null} when the ballot must go through
+     *         {@link #updateMatch(String, Function)}
+     */
+    public VoteReply recordVoteAtomically(String code, String username, Long targetId) {
+        if (username == null || targetId == null || !scriptable(code)) {
+            return null;
+        }
+        VoteReply reply = fieldScripts.recordVote(code, username, targetId);
+        return reply.outcome() != Outcome.FALL_BACK ? reply : null;
+    }
+
+    private boolean scriptable(String code) {
+        return fieldScripts.isAvailable() && ownership.owned(code) == null;
+    }
+
+    /**
+     * Applies the same mutation to several matches with a constant number of
+     * Redis round trips: one MGET to load them and one pipelined batch of
+     * compare-and-set writes that keep each key's TTL. Writes racing a locked
+     * mutation are rejected by Redis and retried through
+     * {@link #updateMatch(String, Function)}, so the updater may run twice for
+     * the same match and must not have side effects outside of it. Matches
+     * owned by this node are taken from memory and written with one pipelined
+     * SET batch, or left dirty for the write-behind flusher.
+     *
+     * @param codes   matches to update
+     * @param updater mutation applied to each loaded match
+     * @param <T>     result type of the updater
+     * @return results of the matches that were written and codes that no
+     *         longer exist
+     */
+    public <T> BatchUpdate<T> updateMatches(List<String> codes, Function<Match, T> updater) {
+        Set<String> missing = new LinkedHashSet<>();
+        Map<String, T> results = new LinkedHashMap<>();
+        List<String> shared = new ArrayList<>(codes.size());
+        List<OwnedMatch> local = new ArrayList<>();
+        for (String code : codes) {
+            OwnedMatch owned = ownership.owned(code);
+            if (owned != null) {
+                local.add(owned);
+            } else {
+                shared.add(code);
+            }
+        }
+        if (!local.isEmpty()) {
+            updateOwnedMatches(local, updater, results, missing);
+        }
+        if (shared.isEmpty()) {
+            return new BatchUpdate<>(results, missing);
+        }
+
+        missing.addAll(shared);
+        Map<String, T> applied = new LinkedHashMap<>();
+        List<VersionedMatch> dirty = new ArrayList<>();
+        for (VersionedMatch entry : cacheRepository.findAllActive(shared)) {
+            missing.remove(entry.code());
+            try {
+                applied.put(entry.code(), apply(entry.match(), updater));
+                dirty.add(entry);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Batch update skipped match {}", entry.code(), ex);
+                snapshots.evict(entry.code());
+            }
+        }
+
+        Set<String> rejected = cacheRepository.compareAndSaveAll(dirty, MATCH_TTL_SECONDS);
+        rejected.forEach(snapshots::evict);
+        for (Map.Entry<String, T> entry : applied.entrySet()) {
+            if (!rejected.contains(entry.getKey())) {
+                results.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (String code : rejected) {
+            try {
+                results.put(code, updateMatch(code, updater));
+            } catch (IllegalArgumentException ex) {
+                missing.add(code);
+            } catch (IllegalStateException ex) {
+                LOGGER.debug("Match {} still locked, skipping it this round", code);
+            }
+        }
+        return new BatchUpdate<>(results, missing);
+    }
+
+    private <T> void updateOwnedMatches(List<OwnedMatch> owned, Function<Match, T> updater, Map<String, T> results,
+            Set<String> missing) {
+        List<OwnedMatch> locked = new ArrayList<>(owned.size());
+        try {
+            List<Match> dirty = new ArrayList<>(owned.size());
+            List<OwnedMatch> written = new ArrayList<>(owned.size());
+            for (OwnedMatch entry : owned) {
+                entry.getLock().lock();
+                locked.add(entry);
+                if (entry.isReleased()) {
+                    // handed off to another node meanwhile; it ticks the match from now on
+                    continue;
+                }
+                Match match = entry.getMatch();
+                if (match == null) {
+                    missing.add(entry.getCode());
+                    continue;
+                }
+                long milestone = milestone(match);
+                try {
+                    results.put(entry.getCode(), apply(match, updater));
+                } catch (RuntimeException ex) {
+                    LOGGER.warn("Batch update skipped owned match {}", entry.getCode(), ex);
+                    rollBack(entry);
+                    continue;
+                }
+                if (deferWrite(entry, milestone)) {
+                    entry.markDirty();
+                } else {
+                    dirty.add(match);
+                    written.add(entry);
+                }
+            }
+            if (!dirty.isEmpty()) {
+                cacheRepository.saveAll(dirty, MATCH_TTL_SECONDS);
+                written.forEach(OwnedMatch::markClean);
+            }
+        } finally {
+            locked.forEach(entry -> entry.getLock().unlock());
+        }
+    }
+
+    private static <T> T apply(Match match, Function<Match, T> updater) {
+        match.setVersion(match.getVersion() + 1);
+        return updater.apply(match);
+    }
+
+    /**
+     * Outcome of {@link #updateMatches(List, Function)}.
+     *
+     * @param results updater result per written match code
+     * @param missing codes that were not found or already expired
+     * @param <T>     result type of the updater
+     */
+    public record BatchUpdate<T>(Map<String, T> results, Set<String> missing) {
     }
 }
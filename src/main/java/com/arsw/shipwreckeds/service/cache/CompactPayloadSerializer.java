@@ -0,0 +1,894 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.core.json.JsonReadContext;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import com.fasterxml.jackson.core.json.PackageVersion;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToLongFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis serializer for the cache payloads that writes a compact binary layout
+ * instead of JSON with class names.
+ *
+ * <p>
+ * A binary value starts with {@link #MAGIC}, the format number and an 8-byte
+ * big-endian stamp (the match version, so scripts can compare it without
+ * decoding the rest), followed by the Jackson tokens of the payload: one tag
+ * byte per token, varint integers, raw doubles, length-prefixed UTF-8 strings
+ * and property names as indexes into {@link #NAMES}. Jackson writes and reads
+ * the tags directly through a streaming generator and parser over the bytes,
+ * so no intermediate token buffer or tree is built. Properties whose index is
+ * unknown to the reader are skipped and missing ones keep their defaults, so
+ * nodes of different releases read each other's payloads as long as
+ * {@link #NAMES} is only ever appended to. Values not starting with
+ * {@link #MAGIC} are read as the legacy JSON, and the format written is
+ * chosen with {@link PayloadFormat}, so a cluster moves to the binary layout
+ * by first deploying readers that write JSON and then switching the format.
+ *
+ * <p>
+ * Binary values larger than the compression threshold have their tokens
+ * deflated at the fastest level and start with {@link #DEFLATED_MAGIC}
+ * instead; the header stays uncompressed so scripts can still read the
+ * stamp, and the uncompressed size follows it as a varint. Plain and
+ * deflated values are read alike.
+ */
+public class CompactPayloadSerializer<T> implements RedisSerializer<T> {
+
+    /** First byte of every binary value; never the first byte of JSON. */
+    static final int MAGIC = 0xC5;
+    /** First byte of binary values whose tokens are deflated. */
+    static final int DEFLATED_MAGIC = 0xC6;
+    /** Format number written; bumped only for changes older readers cannot skip. */
+    static final int FORMAT = 1;
+    /** Bytes before the first token: magic, format and stamp. */
+    static final int HEADER_BYTES = 10;
+
+    /**
+     * Property names written as indexes. Append only: an index must keep its
+     * name for as long as payloads written with it may be read.
+     */
+    static final List<String> NAMES = List.of(
+            // MatchCachePayload, PlayerSessionPayload
+            "match", "createdAtEpochSec", "ttlSeconds", "version", "player", "tokens",
+            // Match
+            "id", "code", "players", "npcs", "tasks", "status", "timerSeconds", "infiltrator",
+            "fuelPercentage", "votingActive", "votesByPlayer", "voteStartEpochMs", "lastVoteResult",
+            "lastVoteResultEpochMs", "winnerMessage",
+            // Player, Npc, Position
+            "username", "skinId", "position", "npcAlias", "lastInputSeq", "alive", "active",
+            "movementSpeed", "displayName", "x", "y",
+            // VoteResult
+            "counts", "expelledId", "expelledType", "message", "abstentions", "publishedAtEpochMs",
+            // CognitoTokens
+            "accessToken", "idToken", "refreshToken", "expiresIn", "tokenType");
+
+    private static final int END = 0;
+    private static final int OBJECT = 1;
+    private static final int ARRAY = 2;
+    private static final int NULL = 3;
+    private static final int FALSE = 4;
+    private static final int TRUE = 5;
+    private static final int INT = 6;
+    private static final int WHOLE_DOUBLE = 7;
+    private static final int DOUBLE = 8;
+    private static final int STRING = 9;
+    private static final int NAME = 10;
+    private static final int INLINE_NAME = 11;
+
+    /** Largest magnitude below which every whole double is exact as a long. */
+    private static final double EXACT_WHOLE_LIMIT = 0x1p53;
+
+    private final Class<T> type;
+    private final ToLongFunction<? super T> stamp;
+    private final PayloadFormat format;
+    private final int compressionThreshold;
+    private final List<String> names;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final ObjectMapper mapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final GenericJackson2JsonRedisSerializer legacy = new GenericJackson2JsonRedisSerializer();
+    // zlib streams hold native memory, so they are pooled rather than kept per thread
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param type   payload class
+     * @param stamp  value written in the header, {@code 0} when the payload has
+     *               no version
+     * @param format encoding written; both are read
+     */
+    public CompactPayloadSerializer(Class<T> type, ToLongFunction<? super T> stamp, PayloadFormat format) {
+        this(type, stamp, format, 0);
+    }
+
+    /**
+     * @param type                 payload class
+     * @param stamp                value written in the header, {@code 0} when
+     *                             the payload has no version
+     * @param format               encoding written; both are read
+     * @param compressionThreshold size in bytes above which binary values are
+     *                             deflated, {@code 0} to never compress
+     */
+    public CompactPayloadSerializer(Class<T> type, ToLongFunction<? super T> stamp, PayloadFormat format,
+            int compressionThreshold) {
+        this(type, stamp, format, compressionThreshold, NAMES);
+    }
+
+    CompactPayloadSerializer(Class<T> type, ToLongFunction<? super T> stamp, PayloadFormat format,
+            int compressionThreshold, List<String> names) {
+        this.type = type;
+        this.stamp = stamp;
+        this.format = format;
+        this.compressionThreshold = compressionThreshold;
+        this.names = names;
+        for (int i = 0; i < names.size(); i++) {
+            indexes.put(names.get(i), i);
+        }
+        this.writer = mapper.writerFor(type);
+        this.reader = mapper.readerFor(type);
+    }
+
+    @Override
+    public byte[] serialize(T value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (format == PayloadFormat.JSON) {
+            return legacy.serialize(value);
+        }
+        Output out = new Output();
+        out.write(MAGIC);
+        out.write(FORMAT);
+        out.writeLong(stamp.applyAsLong(value));
+        try {
+            writer.writeValue(new TokenWriter(out), value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write " + type.getSimpleName() + " as binary", e);
+        }
+        byte[] plain = out.toByteArray();
+        return compressionThreshold > 0 && plain.length > compressionThreshold ? deflate(plain) : plain;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        int magic = bytes[0] & 0xFF;
+        if (magic == DEFLATED_MAGIC) {
+            bytes = inflate(bytes);
+        } else if (magic != MAGIC) {
+            return type.cast(legacy.deserialize(bytes));
+        }
+        if (bytes.length < HEADER_BYTES || bytes[1] > FORMAT) {
+            throw new SerializationException("Unsupported binary " + type.getSimpleName() + " format " + bytes[1]);
+        }
+        try (JsonParser parser = new TokenReader(new Input(bytes, HEADER_BYTES))) {
+            return reader.readValue(parser);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Could not read binary " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * @param plain a binary value
+     * @return the value with its tokens deflated, or {@code plain} when that
+     *         does not make it smaller
+     */
+    private byte[] deflate(byte[] plain) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+        }
+        try {
+            deflater.setInput(plain, HEADER_BYTES, plain.length - HEADER_BYTES);
+            deflater.finish();
+            Output out = new Output();
+            out.write(DEFLATED_MAGIC);
+            for (int i = 1; i < HEADER_BYTES; i++) {
+                out.write(plain[i]);
+            }
+            out.writeVarint(plain.length - HEADER_BYTES);
+            byte[] chunk = new byte[Math.max(64, plain.length / 2)];
+            while (!deflater.finished() && out.size() < plain.length) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, n);
+            }
+            return deflater.finished() && out.size() < plain.length ? out.toByteArray() : plain;
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    /**
+     * @param deflated a value starting with {@link #DEFLATED_MAGIC}
+     * @return the same value as a plain binary one
+     */
+    private byte[] inflate(byte[] deflated) {
+        Input in = new Input(deflated, HEADER_BYTES);
+        long size = in.readVarint();
+        if (size < 0 || size > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new SerializationException("Corrupt deflated " + type.getSimpleName());
+        }
+        byte[] plain = new byte[HEADER_BYTES + (int) size];
+        plain[0] = (byte) MAGIC;
+        System.arraycopy(deflated, 1, plain, 1, HEADER_BYTES - 1);
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            inflater.setInput(deflated, in.position(), deflated.length - in.position());
+            int offset = HEADER_BYTES;
+            while (offset < plain.length) {
+                int n = inflater.inflate(plain, offset, plain.length - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new SerializationException("Truncated deflated " + type.getSimpleName());
+                }
+                offset += n;
+            }
+            return plain;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt deflated " + type.getSimpleName(), e);
+        } finally {
+            inflater.reset();
+            inflaters.offer(inflater);
+        }
+    }
+
+    private static void skipValue(Input in) {
+        int depth = 0;
+        do {
+            int tag = in.read();
+            switch (tag) {
+                case OBJECT, ARRAY -> depth++;
+                case END -> depth--;
+                case NAME, INT, WHOLE_DOUBLE -> in.readVarint();
+                case DOUBLE -> in.readLong();
+                case STRING, INLINE_NAME -> in.readString();
+                case NULL, FALSE, TRUE -> {
+                    // no payload
+                }
+                default -> throw new SerializationException("Unknown tag " + tag + " in skipped value");
+            }
+        } while (depth > 0);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Generator that writes each Jackson token straight into the binary
+     * layout.
+     */
+    private final class TokenWriter extends GeneratorBase {
+
+        private final Output out;
+
+        TokenWriter(Output out) {
+            super(JsonGenerator.Feature.collectDefaults(), mapper);
+            this.out = out;
+        }
+
+        @Override
+        public void writeStartObject() throws IOException {
+            _verifyValueWrite("start an object");
+            _writeContext = _writeContext.createChildObjectContext();
+            out.write(OBJECT);
+        }
+
+        @Override
+        public void writeEndObject() throws IOException {
+            if (!_writeContext.inObject()) {
+                _reportError("Current context not Object but " + _writeContext.typeDesc());
+            }
+            _writeContext = _writeContext.clearAndGetParent();
+            out.write(END);
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            _verifyValueWrite("start an array");
+            _writeContext = _writeContext.createChildArrayContext();
+            out.write(ARRAY);
+        }
+
+        @Override
+        public void writeEndArray() throws IOException {
+            if (!_writeContext.inArray()) {
+                _reportError("Current context not Array but " + _writeContext.typeDesc());
+            }
+            _writeContext = _writeContext.clearAndGetParent();
+            out.write(END);
+        }
+
+        @Override
+        public void writeFieldName(String name) throws IOException {
+            if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+                _reportError("Can not write a field name, expecting a value");
+            }
+            Integer index = indexes.get(name);
+            if (index != null) {
+                out.write(NAME);
+                out.writeVarint(index);
+            } else {
+                out.write(INLINE_NAME);
+                out.writeString(name);
+            }
+        }
+
+        @Override
+        public void writeString(String text) throws IOException {
+            if (text == null) {
+                writeNull();
+                return;
+            }
+            _verifyValueWrite("write a string");
+            out.write(STRING);
+            out.writeString(text);
+        }
+
+        @Override
+        public void writeString(char[] text, int offset, int len) throws IOException {
+            writeString(new String(text, offset, len));
+        }
+
+        @Override
+        public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+            writeUTF8String(text, offset, length);
+        }
+
+        @Override
+        public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+            _verifyValueWrite("write a string");
+            out.write(STRING);
+            out.writeVarint(length);
+            out.write(text, offset, length);
+        }
+
+        @Override
+        public void writeBinary(Base64Variant variant, byte[] data, int offset, int len) throws IOException {
+            writeString(variant.encode(Arrays.copyOfRange(data, offset, offset + len)));
+        }
+
+        @Override
+        public void writeNumber(int value) throws IOException {
+            writeNumber((long) value);
+        }
+
+        @Override
+        public void writeNumber(long value) throws IOException {
+            _verifyValueWrite("write a number");
+            out.write(INT);
+            out.writeVarint(zigZag(value));
+        }
+
+        @Override
+        public void writeNumber(BigInteger value) throws IOException {
+            // numeric strings are coerced back by Jackson
+            writeNumber(value == null ? null : value.toString());
+        }
+
+        @Override
+        public void writeNumber(String encodedValue) throws IOException {
+            writeString(encodedValue);
+        }
+
+        @Override
+        public void writeNumber(double value) throws IOException {
+            _verifyValueWrite("write a number");
+            if (value == Math.rint(value) && Math.abs(value) < EXACT_WHOLE_LIMIT
+                    && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+                out.write(WHOLE_DOUBLE);
+                out.writeVarint(zigZag((long) value));
+            } else {
+                out.write(DOUBLE);
+                out.writeLong(Double.doubleToRawLongBits(value));
+            }
+        }
+
+        @Override
+        public void writeNumber(float value) throws IOException {
+            writeNumber((double) value);
+        }
+
+        @Override
+        public void writeNumber(BigDecimal value) throws IOException {
+            if (value == null) {
+                writeNull();
+            } else {
+                writeNumber(value.doubleValue());
+            }
+        }
+
+        @Override
+        public void writeBoolean(boolean state) throws IOException {
+            _verifyValueWrite("write a boolean");
+            out.write(state ? TRUE : FALSE);
+        }
+
+        @Override
+        public void writeNull() throws IOException {
+            _verifyValueWrite("write a null");
+            out.write(NULL);
+        }
+
+        @Override
+        public void writeRaw(String text) throws IOException {
+            _reportUnsupportedOperation();
+        }
+
+        @Override
+        public void writeRaw(String text, int offset, int len) throws IOException {
+            _reportUnsupportedOperation();
+        }
+
+        @Override
+        public void writeRaw(char[] text, int offset, int len) throws IOException {
+            _reportUnsupportedOperation();
+        }
+
+        @Override
+        public void writeRaw(char c) throws IOException {
+            _reportUnsupportedOperation();
+        }
+
+        @Override
+        public void flush() {
+            // everything is already in the buffer
+        }
+
+        @Override
+        protected void _releaseBuffers() {
+            // the buffer belongs to the caller
+        }
+
+        @Override
+        protected void _verifyValueWrite(String typeMsg) throws IOException {
+            if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+                _reportError("Can not " + typeMsg + ", expecting a field name");
+            }
+        }
+    }
+
+    /**
+     * Parser that reads Jackson tokens straight from the binary layout,
+     * skipping the values of property indexes unknown to this release.
+     */
+    private final class TokenReader extends ParserMinimalBase {
+
+        private final Input in;
+        private ObjectCodec codec = mapper;
+        private JsonReadContext context = JsonReadContext.createRootContext(null);
+        private boolean closed;
+        private String text;
+        private long longValue;
+        private double doubleValue;
+
+        TokenReader(Input in) {
+            this.in = in;
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            while (true) {
+                if (!in.hasMore()) {
+                    if (!context.inRoot()) {
+                        _reportInvalidEOF();
+                    }
+                    return _currToken = null;
+                }
+                int tag = in.read();
+                switch (tag) {
+                    case OBJECT -> {
+                        context.expectComma();
+                        context = context.createChildObjectContext(-1, -1);
+                        return _currToken = JsonToken.START_OBJECT;
+                    }
+                    case ARRAY -> {
+                        context.expectComma();
+                        context = context.createChildArrayContext(-1, -1);
+                        return _currToken = JsonToken.START_ARRAY;
+                    }
+                    case END -> {
+                        if (context.inRoot()) {
+                            throw new SerializationException("Unbalanced end in binary " + type.getSimpleName());
+                        }
+                        JsonToken token = context.inObject() ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+                        context = context.getParent();
+                        return _currToken = token;
+                    }
+                    case NAME -> {
+                        int index = (int) in.readVarint();
+                        if (index < names.size()) {
+                            return fieldName(names.get(index));
+                        }
+                        // written by a newer release: a property this one does not have
+                        skipValue(in);
+                    }
+                    case INLINE_NAME -> {
+                        return fieldName(in.readString());
+                    }
+                    case NULL -> {
+                        return value(JsonToken.VALUE_NULL);
+                    }
+                    case FALSE -> {
+                        return value(JsonToken.VALUE_FALSE);
+                    }
+                    case TRUE -> {
+                        return value(JsonToken.VALUE_TRUE);
+                    }
+                    case INT -> {
+                        longValue = unZigZag(in.readVarint());
+                        return value(JsonToken.VALUE_NUMBER_INT);
+                    }
+                    case WHOLE_DOUBLE -> {
+                        doubleValue = unZigZag(in.readVarint());
+                        return value(JsonToken.VALUE_NUMBER_FLOAT);
+                    }
+                    case DOUBLE -> {
+                        doubleValue = Double.longBitsToDouble(in.readLong());
+                        return value(JsonToken.VALUE_NUMBER_FLOAT);
+                    }
+                    case STRING -> {
+                        text = in.readString();
+                        return value(JsonToken.VALUE_STRING);
+                    }
+                    default -> throw new SerializationException(
+                            "Unknown tag " + tag + " in binary " + type.getSimpleName());
+                }
+            }
+        }
+
+        private JsonToken fieldName(String name) throws JsonProcessingException {
+            context.setCurrentName(name);
+            return _currToken = JsonToken.FIELD_NAME;
+        }
+
+        private JsonToken value(JsonToken token) {
+            context.expectComma();
+            return _currToken = token;
+        }
+
+        @Override
+        protected void _handleEOF() throws JsonParseException {
+            if (!context.inRoot()) {
+                _reportInvalidEOF();
+            }
+        }
+
+        @Override
+        public String getCurrentName() {
+            if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+                JsonReadContext parent = context.getParent();
+                return parent == null ? null : parent.getCurrentName();
+            }
+            return context.getCurrentName();
+        }
+
+        @Override
+        public void overrideCurrentName(String name) {
+            try {
+                context.setCurrentName(name);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public JsonStreamContext getParsingContext() {
+            return context;
+        }
+
+        @Override
+        public String getText() {
+            if (_currToken == null) {
+                return null;
+            }
+            return switch (_currToken) {
+                case VALUE_STRING -> text;
+                case FIELD_NAME -> context.getCurrentName();
+                case VALUE_NUMBER_INT -> Long.toString(longValue);
+                case VALUE_NUMBER_FLOAT -> Double.toString(doubleValue);
+                default -> _currToken.asString();
+            };
+        }
+
+        @Override
+        public char[] getTextCharacters() {
+            String value = getText();
+            return value == null ? null : value.toCharArray();
+        }
+
+        @Override
+        public boolean hasTextCharacters() {
+            return false;
+        }
+
+        @Override
+        public int getTextLength() {
+            String value = getText();
+            return value == null ? 0 : value.length();
+        }
+
+        @Override
+        public int getTextOffset() {
+            return 0;
+        }
+
+        @Override
+        public byte[] getBinaryValue(Base64Variant variant) throws IOException {
+            if (_currToken != JsonToken.VALUE_STRING) {
+                _reportError("Current token (" + _currToken + ") not VALUE_STRING, can not access as binary");
+            }
+            return variant.decode(text);
+        }
+
+        @Override
+        public NumberType getNumberType() {
+            if (_currToken == JsonToken.VALUE_NUMBER_INT) {
+                return longValue == (int) longValue ? NumberType.INT : NumberType.LONG;
+            }
+            return _currToken == JsonToken.VALUE_NUMBER_FLOAT ? NumberType.DOUBLE : null;
+        }
+
+        @Override
+        public Number getNumberValue() throws IOException {
+            return switch (checkNumber()) {
+                case INT -> (int) longValue;
+                case LONG -> longValue;
+                default -> doubleValue;
+            };
+        }
+
+        @Override
+        public int getIntValue() throws IOException {
+            long value = getLongValue();
+            if (value != (int) value) {
+                reportOverflowInt();
+            }
+            return (int) value;
+        }
+
+        @Override
+        public long getLongValue() throws IOException {
+            return checkNumber() == NumberType.DOUBLE ? (long) doubleValue : longValue;
+        }
+
+        @Override
+        public BigInteger getBigIntegerValue() throws IOException {
+            return checkNumber() == NumberType.DOUBLE ? BigDecimal.valueOf(doubleValue).toBigInteger()
+                    : BigInteger.valueOf(longValue);
+        }
+
+        @Override
+        public float getFloatValue() throws IOException {
+            return (float) getDoubleValue();
+        }
+
+        @Override
+        public double getDoubleValue() throws IOException {
+            return checkNumber() == NumberType.DOUBLE ? doubleValue : longValue;
+        }
+
+        @Override
+        public BigDecimal getDecimalValue() throws IOException {
+            return checkNumber() == NumberType.DOUBLE ? BigDecimal.valueOf(doubleValue)
+                    : BigDecimal.valueOf(longValue);
+        }
+
+        private NumberType checkNumber() throws IOException {
+            NumberType numberType = getNumberType();
+            if (numberType == null) {
+                _reportError("Current token (" + _currToken + ") not numeric, can not use numeric value accessors");
+            }
+            return numberType;
+        }
+
+        @Override
+        public ObjectCodec getCodec() {
+            return codec;
+        }
+
+        @Override
+        public void setCodec(ObjectCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public Version version() {
+            return PackageVersion.VERSION;
+        }
+
+        @Override
+        public JsonLocation getCurrentLocation() {
+            return JsonLocation.NA;
+        }
+
+        @Override
+        public JsonLocation getTokenLocation() {
+            return JsonLocation.NA;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+
+    /**
+     * Growable byte buffer with the primitive encodings of the layout.
+     */
+    private static final class Output {
+
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeString(String value) {
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(utf8.length);
+                    write(utf8, utf8.length);
+                    return;
+                }
+            }
+            // ASCII, the usual case: one byte per char, copied without an array
+            writeVarint(length);
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        void write(byte[] chunk, int length) {
+            write(chunk, 0, length);
+        }
+
+        void write(byte[] chunk, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(chunk, offset, bytes, size, length);
+            size += length;
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /**
+     * Cursor over a binary value.
+     */
+    private static final class Input {
+
+        private final byte[] bytes;
+        private int position;
+
+        Input(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int position() {
+            return position;
+        }
+
+        boolean hasMore() {
+            return position < bytes.length;
+        }
+
+        int read() {
+            if (position >= bytes.length) {
+                throw new SerializationException("Truncated binary payload");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in binary payload");
+        }
+
+        long readLong() {
+            long value = 0L;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | read();
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            if (length < 0 || position + length > bytes.length) {
+                throw new SerializationException("Truncated string in binary payload");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -9,7 +9,9 @@ import java.time.Instant;
 
 /**
  * Wrapper stored in Valkey/Redis containing the serialized {@link Match}
- * alongside basic metadata to manage TTL locally.
+ * alongside basic metadata to manage TTL locally. The version of the match is
+ * repeated at the top level so compare-and-set scripts can check it without
+ * walking the match.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class MatchCachePayload implements Serializable {
@@ -17,6 +19,7 @@ public class MatchCachePayload implements Serializable {
     private Match match;
     private long createdAtEpochSec;
     private long ttlSeconds;
+    private long version;
 
     public MatchCachePayload() {
     }
@@ -25,6 +28,7 @@ public class MatchCachePayload implements Serializable {
         this.match = match;
         this.createdAtEpochSec = createdAtEpochSec;
         this.ttlSeconds = ttlSeconds;
+        this.version = match != null ? match.getVersion() : 0L;
     }
 
     public Match getMatch() {
@@ -51,6 +55,14 @@ public class MatchCachePayload implements Serializable {
         this.ttlSeconds = ttlSeconds;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @JsonIgnore
     public boolean isExpired() {
         long now = Instant.now().getEpochSecond();
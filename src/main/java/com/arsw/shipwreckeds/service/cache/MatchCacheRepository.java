@@ -1,38 +1,159 @@
 package com.arsw.shipwreckeds.service.cache;
 
+import com.arsw.shipwreckeds.config.CacheProperties;
 import com.arsw.shipwreckeds.model.Match;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Thin wrapper around RedisTemplate that persists {@link Match} snapshots while
  * preserving the original TTL semantics used by the in-memory implementation.
+ * Every write and delete also publishes the code and version of the match on
+ * {@link MatchNearCache#CHANNEL}, in the same round trip, so the near caches
+ * of all nodes drop their copy.
+ *
+ * <p>
+ * With {@code app.cache.layout=hash} a match is stored as a Redis hash instead
+ * of one JSON value (see {@link MatchHashCodec}), under its own key prefix so
+ * the two layouts never read each other's keys. A save then only writes the
+ * fields whose bytes differ from those the match was read or last written
+ * with, e.g. the timer and the version for a clock tick; the compare-and-set
+ * variants compare the {@code version} field.
  */
 @Component
 public class MatchCacheRepository {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MatchCacheRepository.class);
     private static final String KEY_PREFIX = "shipwreckeds:match:";
+    static final String HASH_KEY_PREFIX = "shipwreckeds:match-hash:";
+    static final String LOCK_KEY_PREFIX = MatchLockManager.LOCK_REGISTRY_KEY + ":";
+
+    /**
+     * Writes KEYS[1] only if its bytes still hash to ARGV[1] and nobody holds the
+     * distributed lock of the match (KEYS[2]); the value becomes ARGV[2] with a
+     * TTL of ARGV[3] seconds and ARGV[5] is published on channel ARGV[4].
+     * Returns 1 when written, 0 otherwise.
+     */
+    private static final byte[] COMPARE_AND_SET_SCRIPT = """
+            local current = redis.call('GET', KEYS[1])
+            if not current or redis.sha1hex(current) ~= ARGV[1] then return 0 end
+            if redis.call('EXISTS', KEYS[2]) == 1 then return 0 end
+            redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3])
+            redis.call('PUBLISH', ARGV[4], ARGV[5])
+            return 1
+            """.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Writes KEYS[1] only if its payload still has version ARGV[1] and nobody
+     * holds the distributed lock of the match (KEYS[2]); the value becomes
+     * ARGV[2] with a TTL of ARGV[3] seconds and ARGV[5] is published on channel
+     * ARGV[4]. Returns 1 when written, 0 on a conflict and -1 when the match is
+     * gone. The stored version is read from the header of binary payloads,
+     * plain or deflated, and from the JSON otherwise (see
+     * {@link CompactPayloadSerializer}).
+     */
+    private static final byte[] COMPARE_VERSION_AND_SET_SCRIPT = ("""
+            local current = redis.call('GET', KEYS[1])
+            if not current then return -1 end
+            local stored
+            local magic = string.byte(current, 1)
+            if magic == %d or magic == %d then
+                stored = struct.unpack('>i8', current, 3)
+            else
+                stored = tonumber(cjson.decode(current)['version']) or 0
+            end
+            if stored ~= tonumber(ARGV[1]) then return 0 end
+            if redis.call('EXISTS', KEYS[2]) == 1 then return 0 end
+            redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3])
+            redis.call('PUBLISH', ARGV[4], ARGV[5])
+            return 1
+            """.formatted(CompactPayloadSerializer.MAGIC, CompactPayloadSerializer.DEFLATED_MAGIC))
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Writes the field/value pairs from ARGV[6] on into hash KEYS[1], replacing
+     * the whole hash when ARGV[3] is '1', refreshes its TTL to ARGV[2] seconds
+     * and publishes ARGV[5] on channel ARGV[4]. When ARGV[1] is not empty the
+     * write only happens if the {@code version} field still equals it and
+     * nobody holds the distributed lock of the match (KEYS[2]). Returns 1 when
+     * written, 0 on a conflict, -1 when a compared match is gone and -2 when a
+     * partial write finds no hash to patch.
+     */
+    private static final byte[] HASH_WRITE_SCRIPT = """
+            local exists = redis.call('EXISTS', KEYS[1]) == 1
+            if ARGV[1] ~= '' then
+                if not exists then return -1 end
+                if redis.call('HGET', KEYS[1], 'version') ~= ARGV[1] then return 0 end
+                if redis.call('EXISTS', KEYS[2]) == 1 then return 0 end
+            end
+            if not exists and ARGV[3] ~= '1' then return -2 end
+            if ARGV[3] == '1' then redis.call('DEL', KEYS[1]) end
+            if #ARGV > 5 then redis.call('HSET', KEYS[1], unpack(ARGV, 6)) end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('PUBLISH', ARGV[4], ARGV[5])
+            return 1
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] INVALIDATION_CHANNEL = MatchNearCache.CHANNEL.getBytes(StandardCharsets.UTF_8);
 
     private final RedisTemplate<String, MatchCachePayload> redisTemplate;
+    private final MatchNearCache nearCache;
+    private final CacheProperties properties;
+    private final MatchHashCodec hashCodec = new MatchHashCodec();
 
     public MatchCacheRepository(
-            @Qualifier("matchRedisTemplate") RedisTemplate<String, MatchCachePayload> redisTemplate) {
+            @Qualifier("matchRedisTemplate") RedisTemplate<String, MatchCachePayload> redisTemplate,
+            MatchNearCache nearCache, CacheProperties properties) {
         this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.properties = properties;
     }
 
     public void save(Match match, long ttlSeconds) {
         if (match == null || match.getCode() == null) {
             return;
         }
+        if (hashLayout()) {
+            HashWrite write = hashWrite(match, null, ttlSeconds, false);
+            if (evalHashWrite(write) == -2L) {
+                write = hashWrite(match, null, ttlSeconds, true);
+                evalHashWrite(write);
+            }
+            match.setStoredFields(write.fields());
+            nearCache.invalidate(match.getCode(), match.getVersion());
+            return;
+        }
         MatchCachePayload payload = new MatchCachePayload(match, System.currentTimeMillis() / 1000, ttlSeconds);
-        String key = keyFor(match.getCode());
-        redisTemplate.opsForValue().set(key, payload, Duration.ofSeconds(ttlSeconds));
+        byte[] key = keyFor(match.getCode()).getBytes(StandardCharsets.UTF_8);
+        byte[] value = valueSerializer().serialize(payload);
+        byte[] invalidation = MatchNearCache.message(match.getCode(), match.getVersion());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().set(key, value, Expiration.seconds(ttlSeconds), SetOption.upsert());
+            connection.publish(INVALIDATION_CHANNEL, invalidation);
+            return null;
+        });
+        nearCache.invalidate(match.getCode(), match.getVersion());
     }
 
     public Match findActive(String code) {
@@ -40,26 +161,383 @@ public class MatchCacheRepository {
             return null;
         }
         String key = keyFor(code);
+        if (hashLayout()) {
+            Map<byte[], byte[]> raw = redisTemplate
+                    .execute((RedisCallback<Map<byte[], byte[]>>) connection -> connection.hashCommands()
+                            .hGetAll(key.getBytes(StandardCharsets.UTF_8)));
+            return raw == null || raw.isEmpty() ? null : hashCodec.decode(fieldsByName(raw));
+        }
         MatchCachePayload payload = redisTemplate.opsForValue().get(key);
         if (payload == null) {
             return null;
         }
         if (payload.isExpired()) {
-            redisTemplate.delete(key);
+            delete(code);
             LOGGER.debug("Expired match {} evicted from cache", code);
             return null;
         }
         return payload.getMatch();
     }
 
+    /**
+     * Read-only lookup served from the {@link MatchNearCache} when it holds the
+     * match. The returned match may be shared and must not be modified.
+     *
+     * @param code match identifier
+     * @return match or {@code null} if not found or expired
+     */
+    public Match findActiveCached(String code) {
+        return nearCache.get(code, this::findActive);
+    }
+
+    /**
+     * Writes a match back only if the stored one still has the version it was
+     * read with, in a single round trip.
+     *
+     * @param match           match to save, whose version was already bumped
+     * @param expectedVersion version of the match when it was read
+     * @param ttlSeconds      TTL applied to the written key
+     * @return whether the match was written, lost the race or no longer exists
+     */
+    public WriteOutcome compareAndSave(Match match, long expectedVersion, long ttlSeconds) {
+        if (hashLayout()) {
+            HashWrite write = hashWrite(match, Long.toString(expectedVersion), ttlSeconds, false);
+            long reply = evalHashWrite(write);
+            if (reply == 0L) {
+                return WriteOutcome.CONFLICT;
+            }
+            if (reply < 0L) {
+                return WriteOutcome.MISSING;
+            }
+            match.setStoredFields(write.fields());
+            nearCache.invalidate(match.getCode(), match.getVersion());
+            return WriteOutcome.WRITTEN;
+        }
+        byte[] value = valueSerializer()
+                .serialize(new MatchCachePayload(match, System.currentTimeMillis() / 1000, ttlSeconds));
+        byte[][] args = {
+                keyFor(match.getCode()).getBytes(StandardCharsets.UTF_8),
+                (LOCK_KEY_PREFIX + match.getCode()).getBytes(StandardCharsets.UTF_8),
+                Long.toString(expectedVersion).getBytes(StandardCharsets.UTF_8),
+                value,
+                Long.toString(ttlSeconds).getBytes(StandardCharsets.UTF_8),
+                INVALIDATION_CHANNEL,
+                MatchNearCache.message(match.getCode(), match.getVersion()) };
+        Long reply = redisTemplate.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                .eval(COMPARE_VERSION_AND_SET_SCRIPT, ReturnType.INTEGER, 2, args));
+        if (reply == null || reply == 0L) {
+            return WriteOutcome.CONFLICT;
+        }
+        if (reply < 0L) {
+            return WriteOutcome.MISSING;
+        }
+        nearCache.invalidate(match.getCode(), match.getVersion());
+        return WriteOutcome.WRITTEN;
+    }
+
+    /**
+     * Saves several matches in one pipelined round trip, unconditionally.
+     *
+     * @param matches    matches to save
+     * @param ttlSeconds TTL applied to every written key
+     */
+    public void saveAll(List<Match> matches, long ttlSeconds) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        if (hashLayout()) {
+            saveAllHashes(matches, ttlSeconds);
+            return;
+        }
+        RedisSerializer<MatchCachePayload> serializer = valueSerializer();
+        long now = System.currentTimeMillis() / 1000;
+        List<byte[][]> entries = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            entries.add(new byte[][] {
+                    keyFor(match.getCode()).getBytes(StandardCharsets.UTF_8),
+                    serializer.serialize(new MatchCachePayload(match, now, ttlSeconds)),
+                    MatchNearCache.message(match.getCode(), match.getVersion()) });
+        }
+        Expiration ttl = Expiration.seconds(ttlSeconds);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[][] entry : entries) {
+                connection.stringCommands().set(entry[0], entry[1], ttl, SetOption.upsert());
+                connection.publish(INVALIDATION_CHANNEL, entry[2]);
+            }
+            return null;
+        });
+        for (Match match : matches) {
+            nearCache.invalidate(match.getCode(), match.getVersion());
+        }
+    }
+
+    /**
+     * Loads several matches with a single MGET, or one pipelined HGETALL per
+     * match with the hash layout. Missing or expired entries are left out of the
+     * result.
+     *
+     * @param codes match identifiers
+     * @return loaded matches with the digest of their stored bytes, or their
+     *         stored version with the hash layout
+     */
+    public List<VersionedMatch> findAllActive(List<String> codes) {
+        List<VersionedMatch> result = new ArrayList<>(codes.size());
+        if (codes.isEmpty()) {
+            return result;
+        }
+        byte[][] keys = new byte[codes.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyFor(codes.get(i)).getBytes(StandardCharsets.UTF_8);
+        }
+        if (hashLayout()) {
+            findAllHashes(codes, keys, result);
+            return result;
+        }
+        List<byte[]> raw = redisTemplate
+                .execute((RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(keys));
+        if (raw == null) {
+            return result;
+        }
+        RedisSerializer<MatchCachePayload> serializer = valueSerializer();
+        for (int i = 0; i < raw.size() && i < codes.size(); i++) {
+            byte[] bytes = raw.get(i);
+            if (bytes == null) {
+                continue;
+            }
+            MatchCachePayload payload = serializer.deserialize(bytes);
+            if (payload == null || payload.getMatch() == null || payload.isExpired()) {
+                continue;
+            }
+            result.add(new VersionedMatch(codes.get(i), payload.getMatch(), sha1Hex(bytes)));
+        }
+        return result;
+    }
+
+    /**
+     * Writes several matches back in one pipelined round trip. Each write only
+     * succeeds when the stored value is still the one read by
+     * {@link #findAllActive(List)} and the match lock is free, so a concurrent
+     * locked mutation is never overwritten.
+     *
+     * @param matches    matches to save, mutated in place since they were read
+     * @param ttlSeconds TTL applied to every written key
+     * @return codes whose write was rejected
+     */
+    public Set<String> compareAndSaveAll(List<VersionedMatch> matches, long ttlSeconds) {
+        Set<String> rejected = new HashSet<>();
+        if (matches.isEmpty()) {
+            return rejected;
+        }
+        if (hashLayout()) {
+            compareAndSaveAllHashes(matches, ttlSeconds, rejected);
+            return rejected;
+        }
+        RedisSerializer<MatchCachePayload> serializer = valueSerializer();
+        long now = System.currentTimeMillis() / 1000;
+        byte[] ttl = Long.toString(ttlSeconds).getBytes(StandardCharsets.UTF_8);
+        List<byte[][]> calls = new ArrayList<>(matches.size());
+        for (VersionedMatch entry : matches) {
+            byte[] value = serializer.serialize(new MatchCachePayload(entry.match(), now, ttlSeconds));
+            calls.add(new byte[][] {
+                    keyFor(entry.code()).getBytes(StandardCharsets.UTF_8),
+                    (LOCK_KEY_PREFIX + entry.code()).getBytes(StandardCharsets.UTF_8),
+                    entry.digest().getBytes(StandardCharsets.UTF_8),
+                    value,
+                    ttl,
+                    INVALIDATION_CHANNEL,
+                    MatchNearCache.message(entry.code(), entry.match().getVersion()) });
+        }
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[][] args : calls) {
+                connection.scriptingCommands().eval(COMPARE_AND_SET_SCRIPT, ReturnType.INTEGER, 2, args);
+            }
+            return null;
+        });
+        for (int i = 0; i < matches.size(); i++) {
+            Object reply = replies != null && i < replies.size() ? replies.get(i) : null;
+            VersionedMatch entry = matches.get(i);
+            if (!(reply instanceof Long written) || written != 1L) {
+                rejected.add(entry.code());
+            } else {
+                nearCache.invalidate(entry.code(), entry.match().getVersion());
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Lists the codes of every stored match with a non-blocking SCAN.
+     *
+     * @return match codes, in no particular order
+     */
+    public List<String> scanCodes() {
+        List<String> codes = redisTemplate.execute((RedisCallback<List<String>>) connection -> {
+            List<String> found = new ArrayList<>();
+            String prefix = keyPrefix();
+            ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(500).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                cursor.forEachRemaining(key -> found.add(
+                        new String(key, StandardCharsets.UTF_8).substring(prefix.length())));
+            }
+            return found;
+        });
+        return codes != null ? codes : List.of();
+    }
+
     public void delete(String code) {
         if (code == null) {
             return;
         }
-        redisTemplate.delete(keyFor(code));
+        byte[] key = keyFor(code).getBytes(StandardCharsets.UTF_8);
+        byte[] invalidation = MatchNearCache.message(code, MatchNearCache.DELETED);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.keyCommands().del(key);
+            connection.publish(INVALIDATION_CHANNEL, invalidation);
+            return null;
+        });
+        nearCache.invalidate(code, MatchNearCache.DELETED);
     }
 
     private String keyFor(String code) {
-        return KEY_PREFIX + code;
+        return keyPrefix() + code;
+    }
+
+    private String keyPrefix() {
+        return hashLayout() ? HASH_KEY_PREFIX : KEY_PREFIX;
+    }
+
+    private boolean hashLayout() {
+        return properties.getLayout() == MatchStorageLayout.HASH;
+    }
+
+    /**
+     * Arguments of one {@link #HASH_WRITE_SCRIPT} call and the fields the match
+     * is stored with once it succeeds.
+     */
+    private record HashWrite(byte[][] args, Map<String, byte[]> fields) {
+    }
+
+    /**
+     * @param expectedVersion version the stored hash must have, or {@code null}
+     *                        to write unconditionally
+     * @param full            whether to replace the whole hash rather than
+     *                        patch the changed fields
+     */
+    private HashWrite hashWrite(Match match, String expectedVersion, long ttlSeconds, boolean full) {
+        Map<String, byte[]> fields = hashCodec.encode(match);
+        boolean replace = full || match.getStoredFields() == null;
+        Map<String, byte[]> written = replace ? fields : MatchHashCodec.changed(fields, match.getStoredFields());
+        byte[][] args = new byte[7 + 2 * written.size()][];
+        args[0] = keyFor(match.getCode()).getBytes(StandardCharsets.UTF_8);
+        args[1] = (LOCK_KEY_PREFIX + match.getCode()).getBytes(StandardCharsets.UTF_8);
+        args[2] = (expectedVersion != null ? expectedVersion : "").getBytes(StandardCharsets.UTF_8);
+        args[3] = Long.toString(ttlSeconds).getBytes(StandardCharsets.UTF_8);
+        args[4] = (replace ? "1" : "0").getBytes(StandardCharsets.UTF_8);
+        args[5] = INVALIDATION_CHANNEL;
+        args[6] = MatchNearCache.message(match.getCode(), match.getVersion());
+        int i = 7;
+        for (Map.Entry<String, byte[]> field : written.entrySet()) {
+            args[i++] = field.getKey().getBytes(StandardCharsets.UTF_8);
+            args[i++] = field.getValue();
+        }
+        return new HashWrite(args, fields);
+    }
+
+    private long evalHashWrite(HashWrite write) {
+        Long reply = redisTemplate.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                .eval(HASH_WRITE_SCRIPT, ReturnType.INTEGER, 2, write.args()));
+        return reply != null ? reply : 0L;
+    }
+
+    private List<Object> evalHashWrites(List<HashWrite> writes) {
+        // raw replies: the template's value serializer only understands whole payloads
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (HashWrite write : writes) {
+                connection.scriptingCommands().eval(HASH_WRITE_SCRIPT, ReturnType.INTEGER, 2, write.args());
+            }
+            return null;
+        }, null);
+    }
+
+    private void saveAllHashes(List<Match> matches, long ttlSeconds) {
+        List<HashWrite> writes = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            writes.add(hashWrite(match, null, ttlSeconds, false));
+        }
+        List<Object> replies = evalHashWrites(writes);
+        for (int i = 0; i < matches.size(); i++) {
+            Match match = matches.get(i);
+            HashWrite write = writes.get(i);
+            Object reply = replies != null && i < replies.size() ? replies.get(i) : null;
+            if (reply instanceof Long code && code == -2L) {
+                write = hashWrite(match, null, ttlSeconds, true);
+                evalHashWrite(write);
+            }
+            match.setStoredFields(write.fields());
+            nearCache.invalidate(match.getCode(), match.getVersion());
+        }
+    }
+
+    private void findAllHashes(List<String> codes, byte[][] keys, List<VersionedMatch> result) {
+        List<Object> raw = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] key : keys) {
+                connection.hashCommands().hGetAll(key);
+            }
+            return null;
+        }, null);
+        for (int i = 0; raw != null && i < raw.size() && i < codes.size(); i++) {
+            if (raw.get(i) instanceof Map<?, ?> hash && !hash.isEmpty()) {
+                @SuppressWarnings("unchecked")
+                Map<String, byte[]> fields = fieldsByName((Map<byte[], byte[]>) hash);
+                Match match = hashCodec.decode(fields);
+                result.add(new VersionedMatch(codes.get(i), match, Long.toString(match.getVersion())));
+            }
+        }
+    }
+
+    private void compareAndSaveAllHashes(List<VersionedMatch> matches, long ttlSeconds, Set<String> rejected) {
+        List<HashWrite> writes = new ArrayList<>(matches.size());
+        for (VersionedMatch entry : matches) {
+            writes.add(hashWrite(entry.match(), entry.digest(), ttlSeconds, false));
+        }
+        List<Object> replies = evalHashWrites(writes);
+        for (int i = 0; i < matches.size(); i++) {
+            VersionedMatch entry = matches.get(i);
+            Object reply = replies != null && i < replies.size() ? replies.get(i) : null;
+            if (!(reply instanceof Long written) || written != 1L) {
+                rejected.add(entry.code());
+            } else {
+                entry.match().setStoredFields(writes.get(i).fields());
+                nearCache.invalidate(entry.code(), entry.match().getVersion());
+            }
+        }
+    }
+
+    private static Map<String, byte[]> fieldsByName(Map<byte[], byte[]> raw) {
+        Map<String, byte[]> fields = new LinkedHashMap<>();
+        raw.forEach((name, value) -> fields.put(new String(name, StandardCharsets.UTF_8), value));
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<MatchCachePayload> valueSerializer() {
+        return (RedisSerializer<MatchCachePayload>) redisTemplate.getValueSerializer();
+    }
+
+    /**
+     * Result of {@link #compareAndSave(Match, long, long)}.
+     */
+    public enum WriteOutcome {
+        WRITTEN,
+        CONFLICT,
+        MISSING
+    }
+
+    private static String sha1Hex(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 no disponible en esta JVM", e);
+        }
     }
 }
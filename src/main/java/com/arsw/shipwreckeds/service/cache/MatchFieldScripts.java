@@ -0,0 +1,263 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import com.arsw.shipwreckeds.config.CacheProperties;
+import com.arsw.shipwreckeds.model.Match;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Hot single-field mutations of a match run as Redis scripts against the hash
+ * layout ({@link MatchStorageLayout#HASH}): a fuel click patches the
+ * {@code fuel} field and a ballot the {@code vote} field, checking the same
+ * rules as the Java path and bumping the {@code version} field, in one round
+ * trip and without the distributed lock. The write also publishes the near
+ * cache invalidation.
+ *
+ * <p>
+ * The scripts step aside ({@link Outcome#FALL_BACK}) whenever the full Java
+ * path is needed: the match lock is held, the actor is only close enough to
+ * the boat in a rewound position, or a fuel click would complete the repair
+ * and end the match.
+ */
+@Component
+public class MatchFieldScripts {
+
+    /**
+     * KEYS[1] match hash, KEYS[2] match lock. ARGV: username, action
+     * ({@code FILL} or {@code SABOTAGE}), step, boat x, boat y, interaction
+     * radius, match duration, fuel window cycle, invalidation channel, match
+     * code. Replies {status, fuel or seconds to the window, version}.
+     */
+    static final byte[] FUEL_SCRIPT = """
+            if redis.call('EXISTS', KEYS[2]) == 1 then return {0} end
+            local f = redis.call('HMGET', KEYS[1], 'status', 'timer', 'fuel', 'roster', 'version')
+            if not f[1] or not f[2] or not f[3] or not f[4] then return {-1} end
+            if cjson.decode(f[1])['status'] ~= 'STARTED' then return {-2} end
+            local actor
+            for _, p in ipairs(cjson.decode(f[4])['players'] or {}) do
+                if p['username'] == ARGV[1] then actor = p break end
+            end
+            if not actor or actor['alive'] ~= true then return {-3} end
+            local infiltrator = actor['infiltrator'] == true
+            if not infiltrator then
+                local pos = actor['position']
+                if type(pos) ~= 'table' then return {0} end
+                local dx = (tonumber(pos['x']) or 0) - tonumber(ARGV[4])
+                local dy = (tonumber(pos['y']) or 0) - tonumber(ARGV[5])
+                if math.sqrt(dx * dx + dy * dy) > tonumber(ARGV[6]) then return {0} end
+            end
+            local timer = tonumber(cjson.decode(f[2])['timerSeconds']) or 0
+            if timer <= 0 then return {-4, '0'} end
+            local cycle = tonumber(ARGV[8])
+            local elapsed = math.max(0, tonumber(ARGV[7]) - timer)
+            if math.floor(elapsed / cycle) % 2 ~= 1 then
+                local remaining = cycle - (elapsed % cycle)
+                if remaining <= 0 then remaining = cycle end
+                if timer < remaining then remaining = timer end
+                return {-4, tostring(math.max(0, remaining))}
+            end
+            local delta = math.abs(tonumber(ARGV[3]))
+            if ARGV[2] == 'FILL' then
+                if infiltrator then return {-5} end
+            else
+                if not infiltrator then return {-6} end
+                delta = -delta
+            end
+            local fuel = cjson.decode(f[3])
+            local before = tonumber(fuel['fuelPercentage']) or 0
+            local updated = math.max(0, math.min(100, before + delta))
+            if updated >= 100 and before < 100 then return {0} end
+            fuel['fuelPercentage'] = updated
+            local version = (tonumber(f[5]) or 0) + 1
+            redis.call('HSET', KEYS[1], 'fuel', cjson.encode(fuel), 'version', version)
+            redis.call('PUBLISH', ARGV[9], ARGV[10] .. ':' .. version)
+            return {1, tostring(updated), version}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * KEYS[1] match hash, KEYS[2] match lock. ARGV: username, target id,
+     * invalidation channel, match code. Replies {status, 1 when every living
+     * human has voted, version}.
+     */
+    static final byte[] VOTE_SCRIPT = """
+            if redis.call('EXISTS', KEYS[2]) == 1 then return {0} end
+            local f = redis.call('HMGET', KEYS[1], 'vote', 'roster', 'version')
+            if not f[1] or not f[2] then return {-1} end
+            local vote = cjson.decode(f[1])
+            if vote['votingActive'] ~= true then return {-7} end
+            local voter
+            local humans = 0
+            for _, p in ipairs(cjson.decode(f[2])['players'] or {}) do
+                if p['username'] == ARGV[1] then voter = p end
+                if p['alive'] == true and p['infiltrator'] ~= true then humans = humans + 1 end
+            end
+            if not voter or voter['alive'] ~= true then return {-3} end
+            if voter['infiltrator'] == true then return {-8} end
+            local votes = vote['votesByPlayer']
+            if type(votes) ~= 'table' then votes = {} end
+            votes[ARGV[1]] = tonumber(ARGV[2])
+            vote['votesByPlayer'] = votes
+            local cast = 0
+            for _ in pairs(votes) do cast = cast + 1 end
+            local version = (tonumber(f[3]) or 0) + 1
+            redis.call('HSET', KEYS[1], 'vote', cjson.encode(vote), 'version', version)
+            redis.call('PUBLISH', ARGV[3], ARGV[4] .. ':' .. version)
+            return {1, cast >= humans and 1 or 0, version}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] INVALIDATION_CHANNEL = MatchNearCache.CHANNEL.getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, MatchCachePayload> redisTemplate;
+    private final MatchNearCache nearCache;
+    private final CacheProperties properties;
+
+    public MatchFieldScripts(
+            @Qualifier("matchRedisTemplate") RedisTemplate<String, MatchCachePayload> redisTemplate,
+            MatchNearCache nearCache, CacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.properties = properties;
+    }
+
+    /**
+     * What a script did, or which rule of the Java path it enforced.
+     */
+    public enum Outcome {
+        APPLIED,
+        /** Nothing was written; the caller must go through the locked path. */
+        FALL_BACK,
+        NOT_FOUND,
+        NOT_STARTED,
+        INVALID_PLAYER,
+        WINDOW_CLOSED,
+        INFILTRATOR_CANNOT_FILL,
+        ONLY_INFILTRATOR_SABOTAGES,
+        NO_ACTIVE_VOTE,
+        INFILTRATOR_CANNOT_VOTE
+    }
+
+    /**
+     * @param outcome          what happened
+     * @param fuel             fuel percentage after an applied click
+     * @param secondsToWindow  seconds until the fuel window opens when it was
+     *                         closed
+     */
+    public record FuelReply(Outcome outcome, double fuel, int secondsToWindow) {
+    }
+
+    /**
+     * @param outcome  what happened
+     * @param allVoted whether every living human has voted after the ballot
+     */
+    public record VoteReply(Outcome outcome, boolean allVoted) {
+    }
+
+    /**
+     * @return whether matches are stored field by field, which the scripts
+     *         need
+     */
+    public boolean isAvailable() {
+        return properties.getLayout() == MatchStorageLayout.HASH;
+    }
+
+    /**
+     * Applies a fuel click.
+     *
+     * @param code        match identifier
+     * @param username    player clicking
+     * @param fill        {@code true} to fill, {@code false} to sabotage
+     * @param step        amount of fuel, sign ignored
+     * @param boatX       X coordinate of the boat
+     * @param boatY       Y coordinate of the boat
+     * @param boatRadius  how close to the boat a castaway must be
+     * @return outcome and resulting fuel
+     */
+    public FuelReply adjustFuel(String code, String username, boolean fill, double step, double boatX,
+            double boatY, double boatRadius) {
+        List<Object> reply = eval(FUEL_SCRIPT, code,
+                username,
+                fill ? "FILL" : "SABOTAGE",
+                Double.toString(step),
+                Double.toString(boatX),
+                Double.toString(boatY),
+                Double.toString(boatRadius),
+                Integer.toString(Match.MATCH_DURATION_SECONDS),
+                Integer.toString(Match.FUEL_WINDOW_CYCLE_SECONDS));
+        Outcome outcome = outcome(reply);
+        if (outcome == Outcome.APPLIED) {
+            invalidate(code, reply);
+            return new FuelReply(outcome, Double.parseDouble(text(reply, 1)), 0);
+        }
+        if (outcome == Outcome.WINDOW_CLOSED) {
+            return new FuelReply(outcome, 0.0, (int) Double.parseDouble(text(reply, 1)));
+        }
+        return new FuelReply(outcome, 0.0, 0);
+    }
+
+    /**
+     * Records a ballot.
+     *
+     * @param code     match identifier
+     * @param username player voting
+     * @param targetId avatar voted for
+     * @return outcome and whether the vote can be concluded
+     */
+    public VoteReply recordVote(String code, String username, long targetId) {
+        List<Object> reply = eval(VOTE_SCRIPT, code, username, Long.toString(targetId));
+        Outcome outcome = outcome(reply);
+        if (outcome == Outcome.APPLIED) {
+            invalidate(code, reply);
+            return new VoteReply(outcome, number(reply, 1) == 1L);
+        }
+        return new VoteReply(outcome, false);
+    }
+
+    private List<Object> eval(byte[] script, String code, String... args) {
+        byte[][] keysAndArgs = new byte[args.length + 4][];
+        keysAndArgs[0] = (MatchCacheRepository.HASH_KEY_PREFIX + code).getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[1] = (MatchCacheRepository.LOCK_KEY_PREFIX + code).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < args.length; i++) {
+            keysAndArgs[i + 2] = args[i].getBytes(StandardCharsets.UTF_8);
+        }
+        keysAndArgs[args.length + 2] = INVALIDATION_CHANNEL;
+        keysAndArgs[args.length + 3] = code.getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.execute((RedisCallback<List<Object>>) connection -> connection.scriptingCommands()
+                .eval(script, ReturnType.MULTI, 2, keysAndArgs));
+    }
+
+    private void invalidate(String code, List<Object> reply) {
+        nearCache.invalidate(code, number(reply, 2));
+    }
+
+    static Outcome outcome(List<Object> reply) {
+        long status = reply != null && !reply.isEmpty() ? number(reply, 0) : 0L;
+        return switch ((int) status) {
+            case 1 -> Outcome.APPLIED;
+            case -1 -> Outcome.NOT_FOUND;
+            case -2 -> Outcome.NOT_STARTED;
+            case -3 -> Outcome.INVALID_PLAYER;
+            case -4 -> Outcome.WINDOW_CLOSED;
+            case -5 -> Outcome.INFILTRATOR_CANNOT_FILL;
+            case -6 -> Outcome.ONLY_INFILTRATOR_SABOTAGES;
+            case -7 -> Outcome.NO_ACTIVE_VOTE;
+            case -8 -> Outcome.INFILTRATOR_CANNOT_VOTE;
+            default -> Outcome.FALL_BACK;
+        };
+    }
+
+    private static long number(List<Object> reply, int index) {
+        Object value = reply.get(index);
+        return value instanceof Number n ? n.longValue() : Long.parseLong(text(reply, index));
+    }
+
+    private static String text(List<Object> reply, int index) {
+        Object value = reply.get(index);
+        return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+}
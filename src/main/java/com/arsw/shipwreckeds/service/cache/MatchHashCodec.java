@@ -0,0 +1,161 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Splits a {@link Match} into the fields of its Redis hash and puts it back
+ * together. Each field holds a JSON object with some of the match properties,
+ * grouped by how often they change together; properties not listed below
+ * (the identifiers and anything added later) go to {@link #META_FIELD}. The
+ * version is a plain number so scripts can compare it with {@code HGET}.
+ *
+ * <p>
+ * Each group is written straight from the match by a writer that filters out
+ * the properties of the other groups, so no tree of the whole match is built.
+ * A group whose bytes equal the stored ones keeps the stored array instead of
+ * a new copy, which lets {@link #changed} skip it by identity.
+ */
+final class MatchHashCodec {
+
+    static final String VERSION_FIELD = "version";
+    static final String META_FIELD = "meta";
+
+    private static final Map<String, String> FIELD_OF = Map.ofEntries(
+            Map.entry("players", "roster"),
+            Map.entry("infiltrator", "roster"),
+            Map.entry("tasks", "roster"),
+            Map.entry("npcs", "npcs"),
+            Map.entry("timerSeconds", "timer"),
+            Map.entry("status", "status"),
+            Map.entry("winnerMessage", "status"),
+            Map.entry("fuelPercentage", "fuel"),
+            Map.entry("fuelWindowOpenNow", "fuel"),
+            Map.entry("fuelWindowSecondsRemaining", "fuel"),
+            Map.entry("votingActive", "vote"),
+            Map.entry("votesByPlayer", "vote"),
+            Map.entry("voteStartEpochMs", "vote"),
+            Map.entry("lastVoteResult", "result"),
+            Map.entry("lastVoteResultEpochMs", "result"));
+
+    private static final String GROUP_FILTER = "matchHashGroup";
+
+    private final ObjectMapper mapper = new ObjectMapper().addMixIn(Match.class, GroupFilterMixIn.class);
+    private final Map<String, ObjectWriter> groupWriters = new LinkedHashMap<>();
+
+    MatchHashCodec() {
+        Map<String, Set<String>> groups = new TreeMap<>();
+        FIELD_OF.forEach((property, field) -> groups.computeIfAbsent(field, name -> new HashSet<>()).add(property));
+        groups.forEach((field, properties) -> groupWriters.put(field,
+                groupWriter(SimpleBeanPropertyFilter.filterOutAllExcept(properties))));
+        Set<String> grouped = new HashSet<>(FIELD_OF.keySet());
+        grouped.add(VERSION_FIELD);
+        groupWriters.put(META_FIELD, groupWriter(SimpleBeanPropertyFilter.serializeAllExcept(grouped)));
+    }
+
+    private ObjectWriter groupWriter(SimpleBeanPropertyFilter filter) {
+        return mapper.writer(new SimpleFilterProvider().addFilter(GROUP_FILTER, filter));
+    }
+
+    /**
+     * @param match match to store
+     * @return every hash field of the match, by name; fields unchanged since
+     *         the match was read or written are the stored arrays
+     */
+    Map<String, byte[]> encode(Match match) {
+        Map<String, byte[]> stored = match.getStoredFields();
+        Map<String, byte[]> fields = new LinkedHashMap<>();
+        GroupBuffer buffer = new GroupBuffer();
+        try {
+            for (Map.Entry<String, ObjectWriter> group : groupWriters.entrySet()) {
+                buffer.reset();
+                group.getValue().writeValue(buffer, match);
+                byte[] previous = stored != null ? stored.get(group.getKey()) : null;
+                fields.put(group.getKey(), buffer.contentEquals(previous) ? previous : buffer.toByteArray());
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not write match " + match.getCode() + " as hash fields", e);
+        }
+        fields.put(VERSION_FIELD, Long.toString(match.getVersion()).getBytes(StandardCharsets.UTF_8));
+        return fields;
+    }
+
+    /**
+     * @param fields every hash field of a match, by name
+     * @return the match, remembering the fields it was read from
+     */
+    Match decode(Map<String, byte[]> fields) {
+        ObjectNode tree = mapper.createObjectNode();
+        try {
+            for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+                if (VERSION_FIELD.equals(field.getKey())) {
+                    tree.put(VERSION_FIELD, Long.parseLong(new String(field.getValue(), StandardCharsets.UTF_8)));
+                } else if (mapper.readTree(field.getValue()) instanceof ObjectNode group) {
+                    tree.setAll(group);
+                }
+            }
+            Match match = mapper.treeToValue(tree, Match.class);
+            match.setStoredFields(fields);
+            return match;
+        } catch (IOException | NumberFormatException e) {
+            throw new SerializationException("Could not read match from hash fields " + fields.keySet(), e);
+        }
+    }
+
+    /**
+     * @param fields fields of the match as it is now
+     * @param stored fields as last read or written, or {@code null}
+     * @return the fields whose bytes differ from the stored ones
+     */
+    static Map<String, byte[]> changed(Map<String, byte[]> fields, Map<String, byte[]> stored) {
+        if (stored == null) {
+            return fields;
+        }
+        Map<String, byte[]> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            byte[] previous = stored.get(field.getKey());
+            if (field.getValue() != previous && !Arrays.equals(field.getValue(), previous)) {
+                changed.put(field.getKey(), field.getValue());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Attaches the group filter to {@link Match} for this codec's mapper only.
+     */
+    @JsonFilter(GROUP_FILTER)
+    private abstract static class GroupFilterMixIn {
+    }
+
+    /**
+     * Scratch buffer one group is written to before it is compared with the
+     * stored bytes.
+     */
+    private static final class GroupBuffer extends ByteArrayOutputStream {
+
+        GroupBuffer() {
+            super(1024);
+        }
+
+        boolean contentEquals(byte[] other) {
+            return other != null && Arrays.equals(buf, 0, count, other, 0, other.length);
+        }
+    }
+}
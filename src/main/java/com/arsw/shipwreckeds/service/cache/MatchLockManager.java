@@ -14,6 +14,9 @@ import java.util.function.Supplier;
 @Component
 public class MatchLockManager {
 
+    /** Registry key of the lock registry; lock keys are {@code <registry>:<code>}. */
+    public static final String LOCK_REGISTRY_KEY = "shipwreckeds-locks";
+
     private final RedisLockRegistry lockRegistry;
 
     public MatchLockManager(RedisLockRegistry lockRegistry) {
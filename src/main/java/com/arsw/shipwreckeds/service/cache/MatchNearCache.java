@@ -0,0 +1,137 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import com.arsw.shipwreckeds.config.CacheProperties;
+import com.arsw.shipwreckeds.model.Match;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Node-local cache of recently read matches in front of Redis, for read-only
+ * lookups such as lobby polling. Every write of a match publishes its code and
+ * version on {@link #CHANNEL}; each node drops its entry when it hears about a
+ * version at least as new, and entries expire after
+ * {@code app.cache.near-cache-ttl-millis} in case a message is lost.
+ *
+ * <p>
+ * An invalidation leaves a version floor behind, so a lookup that read the
+ * match before the write and finishes after the message cannot put the older
+ * version back. Cached matches are shared by every caller and must not be
+ * modified.
+ */
+@Component
+public class MatchNearCache implements MessageListener {
+
+    /** Redis Pub/Sub channel carrying {@code code:version} invalidations. */
+    public static final String CHANNEL = "shipwreckeds:match-invalidate";
+    /** Version announced by a delete: no stored version is newer. */
+    static final long DELETED = Long.MAX_VALUE;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchNearCache.class);
+
+    private final CacheProperties properties;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public MatchNearCache(CacheProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @return whether lookups are served from this cache
+     */
+    public boolean isEnabled() {
+        return properties.getNearCacheTtlMillis() > 0 && properties.getNearCacheMaxEntries() > 0;
+    }
+
+    /**
+     * Returns the cached match, or loads it and caches it.
+     *
+     * @param code   match identifier
+     * @param loader reads the match from Redis
+     * @return cached or loaded match, or {@code null} if it does not exist
+     */
+    public Match get(String code, Function<String, Match> loader) {
+        if (!isEnabled() || code == null) {
+            return loader.apply(code);
+        }
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(code);
+        if (cached != null && cached.match() != null && cached.expiresAt() > now) {
+            return cached.match();
+        }
+        Match match = loader.apply(code);
+        if (match != null) {
+            bound(now);
+            Entry loaded = new Entry(match.getVersion(), match, now + properties.getNearCacheTtlMillis());
+            entries.merge(code, loaded, (old, fresh) -> old.expiresAt() > now && old.version() > fresh.version()
+                    ? old
+                    : fresh);
+        }
+        return match;
+    }
+
+    /**
+     * Drops the cached copy of a match older than or as old as {@code version}.
+     *
+     * @param code    match identifier
+     * @param version version just written, or {@link #DELETED}
+     */
+    public void invalidate(String code, long version) {
+        if (!isEnabled() || code == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Entry floor = new Entry(version, null, now + properties.getNearCacheTtlMillis());
+        entries.merge(code, floor, (old, fresh) -> old.expiresAt() > now && old.version() > fresh.version()
+                ? old
+                : fresh);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int colon = body.lastIndexOf(':');
+        try {
+            invalidate(body.substring(0, colon), Long.parseLong(body.substring(colon + 1)));
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Ignoring malformed match invalidation '{}'", body);
+        }
+    }
+
+    /**
+     * @param code    match identifier
+     * @param version version written
+     * @return body of the invalidation message of that write
+     */
+    public static byte[] message(String code, long version) {
+        return (code + ":" + version).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return number of entries, version floors included
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private void bound(long now) {
+        if (entries.size() < properties.getNearCacheMaxEntries()) {
+            return;
+        }
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        if (entries.size() >= properties.getNearCacheMaxEntries()) {
+            entries.clear();
+        }
+    }
+
+    /** A cached match, or only a version floor when {@code match} is null. */
+    private record Entry(long version, Match match, long expiresAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.arsw.shipwreckeds.service.cache;
+
+/**
+ * How a match is laid out in Redis by {@link MatchCacheRepository}.
+ */
+public enum MatchStorageLayout {
+
+    /**
+     * One string value holding the whole {@link MatchCachePayload} as JSON,
+     * rewritten on every save.
+     */
+    VALUE,
+
+    /**
+     * One hash with a field per part of the match (roster, NPCs, timer, fuel,
+     * vote, result...), of which a save only writes the parts that changed.
+     */
+    HASH
+}
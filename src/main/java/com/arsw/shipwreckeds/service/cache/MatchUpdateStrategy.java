@@ -0,0 +1,21 @@
+package com.arsw.shipwreckeds.service.cache;
+
+/**
+ * How read-modify-write cycles on a shared (not locally owned) match are kept
+ * consistent across backend instances.
+ */
+public enum MatchUpdateStrategy {
+
+    /**
+     * The cycle runs under the distributed lock of the match
+     * ({@link MatchLockManager}).
+     */
+    LOCK,
+
+    /**
+     * The match is read without a lock and written back with a compare-and-set
+     * on its version; a conflicting write makes the cycle start over with
+     * bounded backoff.
+     */
+    OPTIMISTIC
+}
@@ -0,0 +1,21 @@
+package com.arsw.shipwreckeds.service.cache;
+
+/**
+ * Encoding of the payloads written to Redis by {@link CompactPayloadSerializer}.
+ * Both encodings are always readable, so a cluster can switch from one to the
+ * other with a rolling deploy.
+ */
+public enum PayloadFormat {
+
+    /**
+     * JSON with the class name of every object, as written by
+     * {@code GenericJackson2JsonRedisSerializer}.
+     */
+    JSON,
+
+    /**
+     * Versioned binary layout without class names; see
+     * {@link CompactPayloadSerializer}.
+     */
+    BINARY
+}
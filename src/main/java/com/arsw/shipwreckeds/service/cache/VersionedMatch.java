@@ -0,0 +1,15 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import com.arsw.shipwreckeds.model.Match;
+
+/**
+ * Match read from the cache together with the SHA-1 of the stored bytes, used
+ * to detect concurrent writers when saving it back without the distributed
+ * lock.
+ *
+ * @param code   match identifier
+ * @param match  deserialized match, mutable by the caller
+ * @param digest lowercase hex SHA-1 of the value as read from Redis
+ */
+public record VersionedMatch(String code, Match match, String digest) {
+}
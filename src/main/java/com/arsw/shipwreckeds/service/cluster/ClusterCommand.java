@@ -0,0 +1,21 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Envelope exchanged between node inboxes. Requests carry a command type and
+ * payload; replies reuse the request id with {@code reply} set and the HTTP
+ * status of the outcome.
+ *
+ * @param id           correlation id
+ * @param origin       node id of the sender
+ * @param type         command name, e.g. {@code move}
+ * @param code         match the command targets
+ * @param reply        whether this envelope answers a request
+ * @param expectsReply whether the sender waits for an answer
+ * @param status       HTTP status of the outcome (replies only)
+ * @param payload      command arguments or response body
+ */
+public record ClusterCommand(String id, String origin, String type, String code, boolean reply,
+        boolean expectsReply, int status, JsonNode payload) {
+}
@@ -0,0 +1,23 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Outcome of a command executed by the owner of a match.
+ *
+ * @param status HTTP status the owner answered with
+ * @param body   response body as JSON, may be {@code null}
+ */
+public record CommandReply(int status, JsonNode body) {
+
+    /**
+     * @return body as a plain string when the owner answered with text, the JSON
+     *         tree otherwise
+     */
+    public Object bodyValue() {
+        if (body == null || body.isNull()) {
+            return null;
+        }
+        return body.isTextual() ? body.asText() : body;
+    }
+}
@@ -0,0 +1,210 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import com.arsw.shipwreckeds.config.ClusterProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Point-to-point channel used to forward player commands to the node owning a
+ * match. Each node listens on its own Redis Pub/Sub inbox; commands addressed
+ * to the local node are dispatched in-process without touching Redis.
+ */
+@Component
+public class MatchCommandBus implements MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchCommandBus.class);
+    private static final String INBOX_PREFIX = "shipwreckeds:node:";
+
+    private final NodeIdentity node;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ClusterProperties properties;
+    private final Map<String, Registration<?>> handlers = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CommandReply>> pending = new ConcurrentHashMap<>();
+
+    public MatchCommandBus(NodeIdentity node, StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+            ClusterProperties properties) {
+        this.node = node;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * @return Pub/Sub channel this node listens on
+     */
+    public String inboxChannel() {
+        return INBOX_PREFIX + node.getNodeId();
+    }
+
+    /**
+     * Registers the local executor of a command type.
+     *
+     * @param type        command name
+     * @param payloadType class the JSON payload is converted to
+     * @param handler     executes the command; its reply is ignored for
+     *                    fire-and-forget sends
+     * @param <T>         payload type
+     */
+    public <T> void registerHandler(String type, Class<T> payloadType, CommandHandler<T> handler) {
+        handlers.put(type, new Registration<>(payloadType, handler));
+    }
+
+    /**
+     * Sends a command without waiting for its outcome.
+     *
+     * @param targetNode node owning the match
+     * @param type       command name
+     * @param code       match identifier
+     * @param payload    command arguments
+     */
+    public void send(String targetNode, String type, String code, Object payload) {
+        if (node.getNodeId().equals(targetNode)) {
+            dispatch(type, code, objectMapper.valueToTree(payload));
+            return;
+        }
+        ClusterCommand command = new ClusterCommand(UUID.randomUUID().toString(), node.getNodeId(), type, code,
+                false, false, 0, objectMapper.valueToTree(payload));
+        publish(targetNode, command);
+    }
+
+    /**
+     * Sends a command and waits for the owner to answer it.
+     *
+     * @param targetNode node owning the match
+     * @param type       command name
+     * @param code       match identifier
+     * @param payload    command arguments
+     * @return reply of the owner
+     * @throws IllegalStateException if the owner does not answer in time
+     */
+    public CommandReply request(String targetNode, String type, String code, Object payload) {
+        if (node.getNodeId().equals(targetNode)) {
+            return dispatch(type, code, objectMapper.valueToTree(payload));
+        }
+        String id = UUID.randomUUID().toString();
+        CompletableFuture<CommandReply> future = new CompletableFuture<>();
+        pending.put(id, future);
+        try {
+            publish(targetNode, new ClusterCommand(id, node.getNodeId(), type, code, false, true, 0,
+                    objectMapper.valueToTree(payload)));
+            return future.get(properties.getCommandTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("El nodo que administra la partida no respondió a tiempo.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("No se pudo reenviar el comando a la partida.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupción esperando respuesta de la partida " + code, e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (message == null || message.getBody() == null) {
+            return;
+        }
+        ClusterCommand command;
+        try {
+            command = objectMapper.readValue(message.getBody(), ClusterCommand.class);
+        } catch (Exception e) {
+            LOGGER.error("Failed to read cluster command", e);
+            return;
+        }
+        if (command.reply()) {
+            CompletableFuture<CommandReply> future = pending.get(command.id());
+            if (future != null) {
+                future.complete(new CommandReply(command.status(), command.payload()));
+            }
+            return;
+        }
+        CommandReply reply = dispatch(command.type(), command.code(), command.payload());
+        if (command.expectsReply() && command.origin() != null) {
+            publish(command.origin(), new ClusterCommand(command.id(), node.getNodeId(), command.type(),
+                    command.code(), true, false, reply.status(), reply.body()));
+        }
+    }
+
+    /**
+     * Converts a response body to the JSON carried by a reply.
+     *
+     * @param body response body
+     * @return JSON tree, or {@code null}
+     */
+    public JsonNode toJson(Object body) {
+        return body != null ? objectMapper.valueToTree(body) : null;
+    }
+
+    private CommandReply dispatch(String type, String code, JsonNode payload) {
+        Registration<?> registration = handlers.get(type);
+        if (registration == null) {
+            LOGGER.warn("No handler for cluster command {}", type);
+            return new CommandReply(501, toJson("Comando no soportado: " + type));
+        }
+        try {
+            CommandReply reply = registration.invoke(objectMapper, code, payload);
+            return reply != null ? reply : new CommandReply(202, null);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Cluster command {} failed for match {}", type, code, ex);
+            return new CommandReply(500, toJson("Error procesando el comando."));
+        }
+    }
+
+    private void publish(String targetNode, ClusterCommand command) {
+        try {
+            String json = objectMapper.writeValueAsString(command);
+            redisTemplate.convertAndSend(INBOX_PREFIX + targetNode, json);
+        } catch (Exception e) {
+            LOGGER.error("Failed to send cluster command {} to node {}", command.type(), targetNode, e);
+            CompletableFuture<CommandReply> future = pending.get(command.id());
+            if (future != null) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Executes a forwarded command on the owning node.
+     *
+     * @param <T> payload type
+     */
+    @FunctionalInterface
+    public interface CommandHandler<T> {
+
+        /**
+         * @param code    match identifier
+         * @param payload command arguments
+         * @return outcome to send back, or {@code null} for fire-and-forget commands
+         */
+        CommandReply handle(String code, T payload);
+    }
+
+    private record Registration<T>(Class<T> payloadType, CommandHandler<T> handler) {
+
+        private CommandReply invoke(ObjectMapper mapper, String code, JsonNode payload) {
+            try {
+                T value = payload != null && !payload.isNull() ? mapper.treeToValue(payload, payloadType) : null;
+                return handler.handle(code, value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Payload inválido para el comando.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis operations on match ownership leases. A lease is a plain string key
+ * holding the owner node id with a millisecond TTL; every write is a small Lua
+ * script so a node never extends or deletes a lease it does not hold.
+ */
+@Component
+public class MatchLeaseRepository {
+
+    private static final String KEY_PREFIX = "shipwreckeds:lease:";
+
+    private static final String ACQUIRE_SCRIPT = """
+            local owner = redis.call('GET', KEYS[1])
+            if not owner then
+              redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+              return 1
+            end
+            if owner == ARGV[1] then
+              redis.call('PEXPIRE', KEYS[1], ARGV[2])
+              return 1
+            end
+            return 0
+            """;
+
+    private static final String RENEW_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """;
+
+    private static final String RELEASE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """;
+
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>(ACQUIRE_SCRIPT, Long.class);
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(RELEASE_SCRIPT, Long.class);
+    private static final byte[] RENEW_BYTES = RENEW_SCRIPT.getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public MatchLeaseRepository(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Takes the lease if it is free, or extends it if this node already holds it.
+     *
+     * @param code      match identifier
+     * @param nodeId    candidate owner
+     * @param ttlMillis lease lifetime
+     * @return {@code true} when {@code nodeId} holds the lease afterwards
+     */
+    public boolean tryAcquire(String code, String nodeId, long ttlMillis) {
+        Long result = redisTemplate.execute(ACQUIRE, List.of(keyFor(code)), nodeId, Long.toString(ttlMillis));
+        return result != null && result == 1L;
+    }
+
+    /**
+     * Extends every given lease held by {@code nodeId} in one pipelined round
+     * trip.
+     *
+     * @param codes     leases to renew
+     * @param nodeId    owner renewing them
+     * @param ttlMillis new lifetime
+     * @return codes whose lease is no longer held by {@code nodeId}
+     */
+    public Set<String> renewAll(Collection<String> codes, String nodeId, long ttlMillis) {
+        Set<String> lost = new HashSet<>();
+        if (codes.isEmpty()) {
+            return lost;
+        }
+        List<String> ordered = new ArrayList<>(codes);
+        byte[] owner = nodeId.getBytes(StandardCharsets.UTF_8);
+        byte[] ttl = Long.toString(ttlMillis).getBytes(StandardCharsets.UTF_8);
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String code : ordered) {
+                connection.scriptingCommands().eval(RENEW_BYTES, ReturnType.INTEGER, 1,
+                        keyFor(code).getBytes(StandardCharsets.UTF_8), owner, ttl);
+            }
+            return null;
+        });
+        for (int i = 0; i < ordered.size(); i++) {
+            Object reply = replies != null && i < replies.size() ? replies.get(i) : null;
+            if (!(reply instanceof Long renewed) || renewed != 1L) {
+                lost.add(ordered.get(i));
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * Deletes the lease if it is still held by {@code nodeId}.
+     *
+     * @param code   match identifier
+     * @param nodeId owner releasing it
+     */
+    public void release(String code, String nodeId) {
+        redisTemplate.execute(RELEASE, List.of(keyFor(code)), nodeId);
+    }
+
+    /**
+     * @param code match identifier
+     * @return node id holding the lease, or {@code null} if nobody does
+     */
+    public String ownerOf(String code) {
+        return redisTemplate.opsForValue().get(keyFor(code));
+    }
+
+    /**
+     * Looks up the owners of several matches with a single MGET.
+     *
+     * @param codes match identifiers
+     * @return owner node id per code; codes without lease are left out
+     */
+    public Map<String, String> ownersOf(List<String> codes) {
+        Map<String, String> owners = new HashMap<>();
+        if (codes.isEmpty()) {
+            return owners;
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(codes.stream().map(this::keyFor).toList());
+        for (int i = 0; values != null && i < values.size() && i < codes.size(); i++) {
+            if (values.get(i) != null) {
+                owners.put(codes.get(i), values.get(i));
+            }
+        }
+        return owners;
+    }
+
+    private String keyFor(String code) {
+        return KEY_PREFIX + code;
+    }
+}
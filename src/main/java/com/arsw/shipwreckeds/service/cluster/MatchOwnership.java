@@ -0,0 +1,293 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import com.arsw.shipwreckeds.config.ClusterProperties;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.service.cache.MatchCacheRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tracks which matches this node owns. Ownership is a Redis lease renewed in
+ * the background; while it holds the lease the node keeps the authoritative
+ * {@link Match} in memory, mutates it under a local lock and writes it through
+ * to Redis. Other nodes look up the owner here to forward commands to it.
+ *
+ * <p>
+ * With {@code app.cluster.write-behind-millis} set, routine mutations only mark
+ * the in-memory copy dirty and this class flushes the dirty matches in one
+ * pipelined batch on that interval, so a match mutated many times in between
+ * is written once. A lease is only given back after its pending mutations are
+ * flushed; a lease that is lost loses them, as the match may already belong
+ * to another node.
+ *
+ * <p>
+ * Everything is a no-op when {@code app.cluster.ownership-enabled} is off, so
+ * every node keeps using the distributed lock as before.
+ */
+@Component
+public class MatchOwnership {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchOwnership.class);
+
+    private final NodeIdentity node;
+    private final MatchLeaseRepository leaseRepository;
+    private final MatchCacheRepository cacheRepository;
+    private final ClusterProperties properties;
+    private final Map<String, OwnedMatch> owned = new ConcurrentHashMap<>();
+    private final Map<String, CachedOwner> ownerCache = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> leaseLostListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService renewer;
+    private ScheduledExecutorService flusher;
+
+    public MatchOwnership(NodeIdentity node, MatchLeaseRepository leaseRepository,
+            MatchCacheRepository cacheRepository, ClusterProperties properties) {
+        this.node = node;
+        this.leaseRepository = leaseRepository;
+        this.cacheRepository = cacheRepository;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isOwnershipEnabled()) {
+            return;
+        }
+        renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "match-lease-renewer");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = properties.getLeaseRenewMillis();
+        renewer.scheduleAtFixedRate(this::renewLeases, period, period, TimeUnit.MILLISECONDS);
+        if (isWriteBehind()) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "match-write-behind");
+                t.setDaemon(true);
+                return t;
+            });
+            long interval = properties.getWriteBehindMillis();
+            flusher.scheduleWithFixedDelay(this::flushDirty, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return whether the ownership model is active on this node
+     */
+    public boolean isEnabled() {
+        return properties.isOwnershipEnabled();
+    }
+
+    /**
+     * @return whether owned matches are flushed to Redis in the background
+     *         instead of on every mutation
+     */
+    public boolean isWriteBehind() {
+        return isEnabled() && properties.getWriteBehindMillis() > 0;
+    }
+
+    /**
+     * @return identifier of this node
+     */
+    public String nodeId() {
+        return node.getNodeId();
+    }
+
+    /**
+     * Takes the lease of a match and loads it into memory.
+     *
+     * @param code match identifier
+     * @return {@code true} if this node owns the match afterwards
+     */
+    public boolean acquire(String code) {
+        if (!isEnabled() || code == null) {
+            return false;
+        }
+        if (owned.containsKey(code)) {
+            return true;
+        }
+        if (!leaseRepository.tryAcquire(code, nodeId(), properties.getLeaseTtlMillis())) {
+            return false;
+        }
+        Match match = cacheRepository.findActive(code);
+        if (match == null) {
+            leaseRepository.release(code, nodeId());
+            return false;
+        }
+        owned.put(code, new OwnedMatch(code, match));
+        ownerCache.remove(code);
+        LOGGER.info("Node {} now owns match {}", nodeId(), code);
+        return true;
+    }
+
+    /**
+     * @param code match identifier
+     * @return in-memory match owned by this node, or {@code null}
+     */
+    public OwnedMatch owned(String code) {
+        return code != null ? owned.get(code) : null;
+    }
+
+    /**
+     * @return codes of every match owned by this node
+     */
+    public Set<String> ownedCodes() {
+        return Set.copyOf(owned.keySet());
+    }
+
+    /**
+     * Resolves the node commands for a match must be sent to.
+     *
+     * @param code match identifier
+     * @return id of another node holding the lease, or {@code null} when the
+     *         match is local, unowned or ownership is disabled
+     */
+    public String remoteOwner(String code) {
+        if (!isEnabled() || code == null || owned.containsKey(code)) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        CachedOwner cached = ownerCache.get(code);
+        if (cached == null || cached.expiresAt() < now) {
+            String owner = leaseRepository.ownerOf(code);
+            cached = new CachedOwner(owner, now + properties.getOwnerCacheMillis());
+            ownerCache.put(code, cached);
+        }
+        String owner = cached.nodeId();
+        return owner != null && !owner.equals(nodeId()) ? owner : null;
+    }
+
+    /**
+     * Drops the in-memory copy and gives the lease back. Waits for a mutation
+     * in progress on the match and flushes what is still pending, so Redis
+     * holds its result once the lease is free.
+     *
+     * @param code match identifier
+     */
+    public void release(String code) {
+        OwnedMatch match = code != null ? owned.get(code) : null;
+        if (match == null) {
+            return;
+        }
+        // wait for an in-flight mutation so its write-through lands before the lease is free
+        match.getLock().lock();
+        try {
+            if (!owned.remove(code, match)) {
+                return;
+            }
+            match.markReleased();
+            flush(match);
+            leaseRepository.release(code, nodeId());
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Could not release lease of match {}: {}", code, ex.getMessage());
+        } finally {
+            match.getLock().unlock();
+        }
+    }
+
+    /**
+     * Registers a callback invoked with the match code when a lease could not be
+     * renewed and the match is no longer owned here.
+     *
+     * @param listener callback receiving the match code
+     */
+    public void addLeaseLostListener(Consumer<String> listener) {
+        leaseLostListeners.add(listener);
+    }
+
+    /**
+     * Writes every dirty owned match with one pipelined batch. Matches being
+     * mutated right now are left for the next round instead of waited for.
+     */
+    void flushDirty() {
+        List<OwnedMatch> locked = new ArrayList<>();
+        try {
+            List<Match> matches = new ArrayList<>();
+            for (OwnedMatch match : owned.values()) {
+                if (!match.isDirty() || !match.getLock().tryLock()) {
+                    continue;
+                }
+                locked.add(match);
+                if (match.isDirty() && !match.isReleased() && match.getMatch() != null) {
+                    matches.add(match.getMatch());
+                }
+            }
+            if (!matches.isEmpty()) {
+                cacheRepository.saveAll(matches, MatchService.MATCH_TTL_SECONDS);
+                locked.forEach(OwnedMatch::markClean);
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Write-behind flush of {} matches failed: {}", locked.size(), ex.getMessage());
+        } finally {
+            locked.forEach(match -> match.getLock().unlock());
+        }
+    }
+
+    private void flush(OwnedMatch match) {
+        if (!match.isDirty() || match.getMatch() == null) {
+            return;
+        }
+        try {
+            cacheRepository.save(match.getMatch(), MatchService.MATCH_TTL_SECONDS);
+            match.markClean();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Could not flush match {} before releasing it: {}", match.getCode(), ex.getMessage());
+        }
+    }
+
+    void renewLeases() {
+        if (owned.isEmpty()) {
+            return;
+        }
+        Set<String> lost;
+        try {
+            lost = leaseRepository.renewAll(new ArrayList<>(owned.keySet()), nodeId(),
+                    properties.getLeaseTtlMillis());
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Lease renewal failed: {}", ex.getMessage());
+            return;
+        }
+        for (String code : lost) {
+            OwnedMatch match = owned.remove(code);
+            if (match != null) {
+                match.markReleased();
+                LOGGER.warn("Lost lease of match {}", code);
+                leaseLostListeners.forEach(listener -> listener.accept(code));
+            }
+        }
+    }
+
+    /**
+     * Flushes and hands every lease back so other nodes can adopt the matches
+     * right away instead of waiting for the TTL.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (renewer != null) {
+            renewer.shutdownNow();
+        }
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        for (String code : ownedCodes()) {
+            release(code);
+        }
+    }
+
+    private record CachedOwner(String nodeId, long expiresAt) {
+    }
+}
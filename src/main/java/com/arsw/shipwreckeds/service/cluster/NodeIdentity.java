@@ -0,0 +1,27 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Random identifier of this backend process, used as lease owner and as the
+ * address of its command inbox.
+ */
+@Component
+public class NodeIdentity {
+
+    private final String nodeId;
+
+    public NodeIdentity() {
+        this(UUID.randomUUID().toString());
+    }
+
+    public NodeIdentity(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,25 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+/**
+ * Load report a node publishes on every coordination round.
+ *
+ * @param nodeId        reporting node
+ * @param ownedMatches  matches ticked by the node
+ * @param tickLagMillis worst current delay of its tick lanes
+ * @param cpuLoad       process CPU usage between 0 and 1
+ * @param reportedAt    epoch millis of the report
+ */
+public record NodeLoad(String nodeId, int ownedMatches, long tickLagMillis, double cpuLoad, long reportedAt) {
+
+    /**
+     * How saturated the node is: the larger of its CPU usage and its tick lag
+     * relative to the budget. Zero is idle, one is at capacity.
+     *
+     * @param lagBudgetMillis tick lag considered saturated
+     * @return non-negative pressure
+     */
+    public double pressure(long lagBudgetMillis) {
+        double lag = lagBudgetMillis > 0 ? (double) tickLagMillis / lagBudgetMillis : 0.0;
+        return Math.max(0.0, Math.max(cpuLoad, lag));
+    }
+}
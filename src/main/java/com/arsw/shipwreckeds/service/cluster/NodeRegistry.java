@@ -0,0 +1,83 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heartbeats of the backend nodes. Every node writes its {@link NodeLoad} under
+ * its own key with a short TTL, so a node that stops reporting drops out of
+ * {@link #liveNodes()} on its own.
+ */
+@Component
+public class NodeRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeRegistry.class);
+    private static final String KEY_PREFIX = "shipwreckeds:node-load:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    public NodeRegistry(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Publishes the load of this node.
+     *
+     * @param load      current report
+     * @param ttlMillis how long the report counts as a live heartbeat
+     */
+    public void publish(NodeLoad load, long ttlMillis) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + load.nodeId(), objectMapper.writeValueAsString(load),
+                    Duration.ofMillis(ttlMillis));
+        } catch (Exception e) {
+            LOGGER.warn("Could not publish load of node {}: {}", load.nodeId(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return latest report of every node whose heartbeat has not expired
+     */
+    public List<NodeLoad> liveNodes() {
+        List<String> keys = redisTemplate.execute((RedisCallback<List<String>>) connection -> {
+            List<String> found = new ArrayList<>();
+            ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(100).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                cursor.forEachRemaining(key -> found.add(new String(key, StandardCharsets.UTF_8)));
+            }
+            return found;
+        });
+        List<NodeLoad> nodes = new ArrayList<>();
+        if (keys == null || keys.isEmpty()) {
+            return nodes;
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return nodes;
+        }
+        for (String json : values) {
+            if (json == null) {
+                continue;
+            }
+            try {
+                nodes.add(objectMapper.readValue(json, NodeLoad.class));
+            } catch (Exception e) {
+                LOGGER.warn("Ignoring unreadable node load report: {}", e.getMessage());
+            }
+        }
+        return nodes;
+    }
+}
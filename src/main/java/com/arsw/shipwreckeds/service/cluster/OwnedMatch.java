@@ -0,0 +1,84 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import com.arsw.shipwreckeds.model.Match;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Authoritative in-memory copy of a match owned by this node. Mutations hold
+ * {@link #getLock()} instead of the distributed lock and write the result
+ * through to Redis, or mark the copy dirty for {@link MatchOwnership} to flush
+ * it later when write-behind is on.
+ */
+public class OwnedMatch {
+
+    private final String code;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Match match;
+    private volatile boolean released;
+    /** Written under {@link #lock}; read without it only as a hint. */
+    private volatile boolean dirty;
+
+    public OwnedMatch(String code, Match match) {
+        this.code = code;
+        this.match = match;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    public Match getMatch() {
+        return match;
+    }
+
+    /**
+     * Replaces the in-memory copy, e.g. with the last persisted state after a
+     * mutation failed halfway.
+     *
+     * @param match new authoritative copy, or {@code null} if it no longer exists
+     */
+    public void replace(Match match) {
+        this.match = match;
+        this.dirty = false;
+    }
+
+    /**
+     * @return whether the copy has mutations Redis does not hold yet; the
+     *         caller holds the lock
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Records that the copy was mutated without writing it; the caller holds
+     * the lock.
+     */
+    public void markDirty() {
+        this.dirty = true;
+    }
+
+    /**
+     * Records that Redis holds the copy as it is; the caller holds the lock.
+     */
+    public void markClean() {
+        this.dirty = false;
+    }
+
+    /**
+     * @return whether the lease was given back; a mutation that was waiting for
+     *         the lock must not write this copy anymore
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    void markReleased() {
+        this.released = true;
+    }
+}
@@ -0,0 +1,246 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import com.arsw.shipwreckeds.config.ClusterProperties;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.cache.MatchCacheRepository;
+import com.arsw.shipwreckeds.service.cache.VersionedMatch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Keeps every running match ticked by exactly one node and spreads them by
+ * load. On each round the node publishes its {@link NodeLoad}, adopts
+ * {@code STARTED} matches that have no lease (their node died or handed them
+ * off) and hands matches off when it carries more than its share.
+ *
+ * <p>
+ * A node's share of the running matches is weighted by
+ * {@code 1 / (1 + pressure)}, where pressure is the larger of its CPU usage and
+ * its tick lag over {@code app.cluster.tick-lag-budget-millis}. An unticked
+ * match is adopted right away by nodes below their share; once it has waited
+ * {@code app.cluster.orphan-grace-millis} any node takes it, so a match never
+ * stays frozen because the heartbeats were stale.
+ *
+ * <p>
+ * Only active with {@code app.cluster.ownership-enabled}, since leases are what
+ * tells a ticked match from an abandoned one. Rounds run on a single thread.
+ */
+@Component
+public class TickCoordinator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TickCoordinator.class);
+
+    private final GameEngine gameEngine;
+    private final MatchOwnership ownership;
+    private final MatchCacheRepository cacheRepository;
+    private final MatchLeaseRepository leaseRepository;
+    private final NodeRegistry registry;
+    private final ClusterProperties properties;
+    private final Map<String, Long> orphanSince = new HashMap<>();
+    private final Map<String, Long> handedOffAt = new HashMap<>();
+    private DoubleSupplier cpuProbe = TickCoordinator::processCpuLoad;
+    private ScheduledExecutorService scheduler;
+
+    public TickCoordinator(GameEngine gameEngine, MatchOwnership ownership, MatchCacheRepository cacheRepository,
+            MatchLeaseRepository leaseRepository, NodeRegistry registry, ClusterProperties properties) {
+        this.gameEngine = gameEngine;
+        this.ownership = ownership;
+        this.cacheRepository = cacheRepository;
+        this.leaseRepository = leaseRepository;
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isOwnershipEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tick-coordinator");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = properties.getRebalanceIntervalMillis();
+        // jitter the first round so nodes started together do not race for the same orphans
+        long initialDelay = period + ThreadLocalRandom.current().nextLong(period);
+        scheduler.scheduleWithFixedDelay(this::coordinate, initialDelay, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one coordination round: heartbeat, adoption of unticked matches and
+     * hand-off of the excess.
+     */
+    void coordinate() {
+        try {
+            long now = System.currentTimeMillis();
+            NodeLoad self = currentLoad(now);
+            registry.publish(self, properties.getRebalanceIntervalMillis() * 3);
+            List<NodeLoad> nodes = clusterView(self);
+
+            List<Match> orphans = findOrphans(now);
+            int total = orphans.size();
+            for (NodeLoad node : nodes) {
+                total += node.ownedMatches();
+            }
+            int target = (int) Math.ceil(
+                    targetShare(self.nodeId(), nodes, total, properties.getTickLagBudgetMillis()));
+            int owned = self.ownedMatches();
+            if (!orphans.isEmpty()) {
+                adopt(orphans, target - owned, now);
+                return;
+            }
+            int excess = owned - target;
+            if (nodes.size() > 1 && excess > properties.getRebalanceSlack()) {
+                handOff(Math.min(excess, properties.getMaxMigrationsPerRound()), now);
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Tick coordination round failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Share of {@code total} running matches a node should tick, weighted by how
+     * saturated each node is.
+     *
+     * @param nodeId          node whose share is computed
+     * @param nodes           live nodes, including {@code nodeId}
+     * @param total           running matches in the cluster
+     * @param lagBudgetMillis tick lag considered saturated
+     * @return fractional number of matches
+     */
+    static double targetShare(String nodeId, List<NodeLoad> nodes, int total, long lagBudgetMillis) {
+        double sum = 0.0;
+        double mine = 0.0;
+        for (NodeLoad node : nodes) {
+            double weight = 1.0 / (1.0 + node.pressure(lagBudgetMillis));
+            sum += weight;
+            if (node.nodeId().equals(nodeId)) {
+                mine = weight;
+            }
+        }
+        return sum > 0.0 ? total * mine / sum : total;
+    }
+
+    void setCpuProbe(DoubleSupplier cpuProbe) {
+        this.cpuProbe = cpuProbe;
+    }
+
+    private NodeLoad currentLoad(long now) {
+        return new NodeLoad(ownership.nodeId(), ownership.ownedCodes().size(), gameEngine.maxTickLagMillis(),
+                cpuProbe.getAsDouble(), now);
+    }
+
+    private List<NodeLoad> clusterView(NodeLoad self) {
+        List<NodeLoad> nodes = new ArrayList<>();
+        for (NodeLoad node : registry.liveNodes()) {
+            if (!node.nodeId().equals(self.nodeId())) {
+                nodes.add(node);
+            }
+        }
+        nodes.add(self);
+        return nodes;
+    }
+
+    /**
+     * Finds running matches nobody holds a lease on. Matches this node just
+     * handed off are skipped during the grace period so another node gets them.
+     */
+    private List<Match> findOrphans(long now) {
+        handedOffAt.values().removeIf(at -> now - at >= properties.getOrphanGraceMillis());
+        Set<String> mine = ownership.ownedCodes();
+        List<String> candidates = new ArrayList<>();
+        for (String code : cacheRepository.scanCodes()) {
+            if (!mine.contains(code) && !handedOffAt.containsKey(code)) {
+                candidates.add(code);
+            }
+        }
+        candidates.removeAll(leaseRepository.ownersOf(candidates).keySet());
+
+        List<Match> orphans = new ArrayList<>();
+        Set<String> orphanCodes = new HashSet<>();
+        for (VersionedMatch entry : cacheRepository.findAllActive(candidates)) {
+            if (entry.match().getStatus() == MatchStatus.STARTED) {
+                orphans.add(entry.match());
+                orphanCodes.add(entry.code());
+                orphanSince.putIfAbsent(entry.code(), now);
+            }
+        }
+        orphanSince.keySet().retainAll(orphanCodes);
+        return orphans;
+    }
+
+    private void adopt(List<Match> orphans, int deficit, long now) {
+        orphans.sort(Comparator.comparingLong(m -> orphanSince.getOrDefault(m.getCode(), now)));
+        int room = deficit;
+        for (Match match : orphans) {
+            String code = match.getCode();
+            boolean overdue = now - orphanSince.getOrDefault(code, now) >= properties.getOrphanGraceMillis();
+            if (room <= 0 && !overdue) {
+                continue;
+            }
+            if (gameEngine.adoptMatch(code)) {
+                LOGGER.info("Node {} adopted unticked match {}", ownership.nodeId(), code);
+                orphanSince.remove(code);
+                room--;
+            }
+        }
+    }
+
+    private void handOff(int count, long now) {
+        List<OwnedMatch> candidates = new ArrayList<>();
+        for (String code : ownership.ownedCodes()) {
+            OwnedMatch owned = ownership.owned(code);
+            if (owned != null) {
+                candidates.add(owned);
+            }
+        }
+        // moving a match in the middle of a vote works but is best avoided
+        candidates.sort(Comparator.comparing(owned -> owned.getMatch() != null && owned.getMatch().isVotingActive()));
+        for (int i = 0; i < count && i < candidates.size(); i++) {
+            String code = candidates.get(i).getCode();
+            gameEngine.handOff(code);
+            handedOffAt.put(code, now);
+            LOGGER.info("Node {} handed off match {} to rebalance ticks", ownership.nodeId(), code);
+        }
+    }
+
+    private static double processCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            double load = sunOs.getProcessCpuLoad();
+            if (load >= 0.0) {
+                return load;
+            }
+        }
+        double average = os.getSystemLoadAverage();
+        return average >= 0.0 ? Math.min(1.0, average / os.getAvailableProcessors()) : 0.0;
+    }
+}
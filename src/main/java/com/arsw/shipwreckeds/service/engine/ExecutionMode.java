@@ -0,0 +1,20 @@
+package com.arsw.shipwreckeds.service.engine;
+
+/**
+ * Strategy used to run code paths that block on the distributed match lock and
+ * Redis I/O.
+ */
+public enum ExecutionMode {
+
+    /**
+     * Blocking sections run inline on the calling platform thread (STOMP inbound
+     * pool, Tomcat worker or tick lane).
+     */
+    PLATFORM,
+
+    /**
+     * Blocking sections are handed to a virtual thread so the calling pool is
+     * released immediately. Requires a build with the {@code java21} Maven profile.
+     */
+    VIRTUAL
+}
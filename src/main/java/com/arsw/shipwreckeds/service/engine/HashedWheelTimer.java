@@ -0,0 +1,283 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel holding every periodic match tick and one-shot deadline
+ * of this node. Scheduling and cancelling are O(1): callers only enqueue the
+ * request and the single worker thread links or unlinks the intrusive
+ * {@link WheelTimeout} node in its bucket. Timers landing in the same slot are
+ * handed to the batch handler together, once per wheel tick, so the caller can
+ * process them as one batch. Periodic timers are re-armed in place, keeping
+ * memory per timer constant.
+ *
+ * <p>
+ * The batch handler runs on the wheel thread and must not block; it is
+ * expected to hand the work to an executor such as {@link ShardedTickExecutor}.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos;
+    private final Consumer<List<WheelTimeout>> batchHandler;
+    private final Queue<WheelTimeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeTimers = new AtomicInteger();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    // Owned by the worker thread
+    private long tick;
+    private final List<WheelTimeout> expired = new ArrayList<>();
+    private final List<WheelTimeout> rearm = new ArrayList<>();
+
+    /**
+     * Creates the wheel and starts its worker thread.
+     *
+     * @param tickDuration  duration of one wheel slot
+     * @param unit          unit of {@code tickDuration}
+     * @param ticksPerWheel number of slots, rounded up to a power of two
+     * @param threadName    name of the worker thread
+     * @param batchHandler  receives the timers expired in each tick; the list is
+     *                      reused and only valid during the call
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName,
+            Consumer<List<WheelTimeout>> batchHandler) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("ticksPerWheel must be positive");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(ticksPerWheel - 1 > 0 ? (ticksPerWheel - 1) << 1 : 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.batchHandler = batchHandler;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::runWorker, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Registers a one-shot timer.
+     *
+     * @param key   grouping key, usually the match code
+     * @param kind  timer category
+     * @param task  work to run once the deadline is reached
+     * @param delay delay before expiration
+     * @param unit  unit of {@code delay}
+     * @return handle that can cancel the timer
+     */
+    public WheelTimeout schedule(String key, TimerKind kind, Runnable task, long delay, TimeUnit unit) {
+        return register(key, kind, task, unit.toNanos(Math.max(0L, delay)), 0L);
+    }
+
+    /**
+     * Registers a periodic timer.
+     *
+     * @param key          grouping key, usually the match code
+     * @param kind         timer category
+     * @param task         work to run on every period
+     * @param initialDelay delay before the first expiration
+     * @param period       period between expirations
+     * @param unit         unit of {@code initialDelay} and {@code period}
+     * @return handle that can cancel the timer
+     */
+    public WheelTimeout scheduleAtFixedRate(String key, TimerKind kind, Runnable task, long initialDelay,
+            long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        return register(key, kind, task, unit.toNanos(Math.max(0L, initialDelay)), unit.toNanos(period));
+    }
+
+    /**
+     * @return number of timers that are scheduled and not yet cancelled or expired
+     */
+    public int activeTimers() {
+        return activeTimers.get();
+    }
+
+    /**
+     * @return wheel slot duration in nanoseconds
+     */
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Stops the worker thread. Pending timers never fire afterwards.
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    void onCancelled(WheelTimeout timeout) {
+        activeTimers.decrementAndGet();
+        cancelled.add(timeout);
+    }
+
+    private WheelTimeout register(String key, TimerKind kind, Runnable task, long delayNanos, long periodNanos) {
+        if (!running) {
+            throw new IllegalStateException("El temporizador del motor de juego está detenido.");
+        }
+        WheelTimeout timeout = new WheelTimeout(this, key, kind, task, System.nanoTime() + delayNanos, periodNanos);
+        activeTimers.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void runWorker() {
+        while (running) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            processCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire(expired);
+            if (!expired.isEmpty()) {
+                try {
+                    batchHandler.accept(Collections.unmodifiableList(expired));
+                } catch (RuntimeException ex) {
+                    LOGGER.error("Timer batch handler failed", ex);
+                }
+                expired.clear();
+            }
+            // re-arm after the handler so it still sees the deadline that just fired
+            for (WheelTimeout timeout : rearm) {
+                if (!timeout.isCancelled()) {
+                    timeout.rearm();
+                    place(timeout, tick + 1);
+                }
+            }
+            rearm.clear();
+            tick++;
+        }
+    }
+
+    private boolean waitForNextTick() {
+        long deadline = startNanos + tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void processCancelled() {
+        WheelTimeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (!timeout.isCancelled()) {
+                place(timeout, tick);
+            }
+        }
+    }
+
+    private void place(WheelTimeout timeout, long earliestTick) {
+        long calculated = (timeout.deadlineNanos() - startNanos) / tickNanos;
+        long target = Math.max(calculated, earliestTick);
+        timeout.remainingRounds = (target - earliestTick) / wheel.length;
+        wheel[(int) (target & mask)].add(timeout);
+    }
+
+    /**
+     * Doubly linked list of timers sharing a slot. Only touched by the worker.
+     */
+    final class Bucket {
+
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        private void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            timeout.next = null;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        private void remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void expire(List<WheelTimeout> out) {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.isPeriodic()) {
+                        out.add(timeout);
+                        rearm.add(timeout);
+                    } else if (timeout.markExpired()) {
+                        activeTimers.decrementAndGet();
+                        out.add(timeout);
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
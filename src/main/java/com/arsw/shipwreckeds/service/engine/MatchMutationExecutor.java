@@ -0,0 +1,125 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.arsw.shipwreckeds.config.GameEngineProperties;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs blocking match mutations according to the configured
+ * {@link ExecutionMode}. In {@link ExecutionMode#PLATFORM} mode tasks run
+ * inline; in {@link ExecutionMode#VIRTUAL} mode each task gets its own virtual
+ * thread, so thousands of moves and ticks can wait on the match lock and Redis
+ * without pinning pooled platform threads.
+ *
+ * <p>
+ * Tasks submitted with the same key, usually a match code, still run one at a
+ * time and in submission order, as they did inline: each one is chained after
+ * the previous task of its key. Virtual threads come from
+ * {@code VirtualThreads}, compiled from {@code src/main/java21} by the
+ * {@code java21} Maven profile and from {@code src/main/java17} otherwise.
+ */
+@Component
+public class MatchMutationExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchMutationExecutor.class);
+
+    private final ExecutionMode mode;
+    private final ExecutorService virtualExecutor;
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MatchMutationExecutor(GameEngineProperties properties) {
+        this(properties.getExecutionMode() != null ? properties.getExecutionMode() : ExecutionMode.PLATFORM,
+                properties.getExecutionMode() == ExecutionMode.VIRTUAL ? VirtualThreads.newPerTaskExecutor() : null);
+    }
+
+    /**
+     * @param mode     execution mode
+     * @param executor executor of the tasks in {@link ExecutionMode#VIRTUAL}
+     *                 mode, {@code null} otherwise
+     */
+    MatchMutationExecutor(ExecutionMode mode, ExecutorService executor) {
+        this.mode = mode;
+        this.virtualExecutor = mode == ExecutionMode.VIRTUAL ? executor : null;
+        if (virtualExecutor != null) {
+            LOGGER.info("Match mutations will run on virtual threads");
+        }
+    }
+
+    /**
+     * @return the active execution mode
+     */
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return whether this build can run {@link ExecutionMode#VIRTUAL}
+     */
+    public static boolean isVirtualSupported() {
+        return VirtualThreads.isSupported();
+    }
+
+    /**
+     * Executes a blocking section with no ordering against other tasks. The
+     * caller must not rely on the task having completed when this method
+     * returns.
+     *
+     * @param task blocking work that does not mutate a match, e.g. a broadcast
+     */
+    public void execute(Runnable task) {
+        if (virtualExecutor == null) {
+            task.run();
+            return;
+        }
+        virtualExecutor.execute(guarded(task));
+    }
+
+    /**
+     * Executes a blocking section after every task previously submitted with
+     * the same key. The caller must not rely on the task having completed when
+     * this method returns.
+     *
+     * @param key  ordering key, usually the match code
+     * @param task blocking work, typically a {@code MatchService.updateMatch} call
+     *             followed by its broadcast
+     */
+    public void execute(String key, Runnable task) {
+        if (virtualExecutor == null || key == null) {
+            execute(task);
+            return;
+        }
+        Runnable guarded = guarded(task);
+        CompletableFuture<Void> tail = tails.compute(key, (k, previous) -> previous == null
+                ? CompletableFuture.runAsync(guarded, virtualExecutor)
+                : previous.exceptionally(ex -> null).thenRunAsync(guarded, virtualExecutor));
+        // drop the chain once idle, unless a newer task was queued behind it
+        tail.whenComplete((ignored, ex) -> tails.remove(key, tail));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdownNow();
+        }
+    }
+
+    private static Runnable guarded(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LOGGER.error("Match mutation failed on virtual thread", ex);
+            }
+        };
+    }
+}
@@ -0,0 +1,194 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Position;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process NPC simulation of one match, advanced with a fixed timestep that
+ * is independent from the 1 Hz match clock. Steps only touch local memory: the
+ * authoritative {@link Match} receives the simulated positions when it is
+ * mutated anyway (clock tick, moves, REST commands) through
+ * {@link #sync(Match, long)}, which also keeps the latest committed view used
+ * for snapshot broadcasts. NPC state lives in a primitive {@link NpcStore}.
+ *
+ * <p>
+ * Instances are shared between the lane stepping the simulation and the
+ * threads mutating the match, so every method is synchronized.
+ */
+public class MatchSimulation {
+
+    /** Upper bound of catch-up steps per advance, so a stalled lane does not spiral. */
+    static final int MAX_STEPS_PER_ADVANCE = 5;
+
+    private final String code;
+    private final long stepNanos;
+    private final double stepSeconds;
+    private final NpcStore npcs = new NpcStore();
+    private long lastAdvanceNanos;
+    private long accumulatorNanos;
+    private long lastPublishedNanos;
+    private long revision;
+    private Match view;
+
+    /**
+     * @param code           match identifier
+     * @param stepsPerSecond simulation rate in Hz; must be positive
+     * @param nowNanos       {@link System#nanoTime()} at creation
+     */
+    public MatchSimulation(String code, int stepsPerSecond, long nowNanos) {
+        if (stepsPerSecond < 1) {
+            throw new IllegalArgumentException("stepsPerSecond must be positive");
+        }
+        this.code = code;
+        this.stepNanos = TimeUnit.SECONDS.toNanos(1) / stepsPerSecond;
+        this.stepSeconds = stepNanos / 1_000_000_000.0;
+        this.lastAdvanceNanos = nowNanos;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * @return duration of one fixed step in nanoseconds
+     */
+    public long stepNanos() {
+        return stepNanos;
+    }
+
+    /**
+     * Consumes the real time elapsed since the previous call in fixed steps. The
+     * remainder is carried over to the next call.
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return number of steps performed
+     */
+    public synchronized int advance(long nowNanos) {
+        accumulatorNanos += Math.max(0L, nowNanos - lastAdvanceNanos);
+        lastAdvanceNanos = nowNanos;
+        int steps = 0;
+        while (accumulatorNanos >= stepNanos && steps < MAX_STEPS_PER_ADVANCE) {
+            npcs.step(stepSeconds);
+            accumulatorNanos -= stepNanos;
+            steps++;
+            revision++;
+        }
+        if (steps == MAX_STEPS_PER_ADVANCE && accumulatorNanos >= stepNanos) {
+            // drop the backlog instead of fast-forwarding NPCs
+            accumulatorNanos = 0L;
+        }
+        return steps;
+    }
+
+    /**
+     * Aligns the simulated roster with the match (new NPCs join, inactive or
+     * expelled ones leave), writes the simulated positions into the match and
+     * remembers it as the latest view. Call it at the end of a mutation, right
+     * before the state is broadcast; the match must not be mutated afterwards.
+     *
+     * @param match    match being mutated under its lock
+     * @param nowNanos current {@link System#nanoTime()}
+     */
+    public synchronized void sync(Match match, long nowNanos) {
+        List<Npc> roster = match.getNpcs();
+        npcs.beginSync();
+        int hint = 0;
+        for (Npc npc : roster) {
+            if (!npc.isActive() || npc.getId() == null) {
+                continue;
+            }
+            int slot = npcs.slotOf(npc.getId(), hint);
+            if (slot < 0) {
+                Position p = npc.getPosition();
+                slot = npcs.add(npc.getId(), p != null ? p.getX() : 0.0, p != null ? p.getY() : 0.0,
+                        npc.getMovementSpeed());
+            }
+            npc.setPosition(new Position(npcs.x(slot), npcs.y(slot)));
+            hint = slot + 1;
+        }
+        npcs.endSync();
+        revision++;
+        view = match;
+        lastPublishedNanos = nowNanos;
+    }
+
+    /**
+     * @return latest match view handed to {@link #sync(Match, long)}, or
+     *         {@code null} before the first sync. For a match owned by this
+     *         node it is the live instance: read it only under the owned-match
+     *         lock
+     */
+    public synchronized Match view() {
+        return view;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the latest sync, i.e. the last time a
+     *         full state left this node for the match
+     */
+    public synchronized long lastPublishedNanos() {
+        return lastPublishedNanos;
+    }
+
+    /**
+     * Marks a snapshot as published without changing the view.
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     */
+    public synchronized void markPublished(long nowNanos) {
+        lastPublishedNanos = nowNanos;
+    }
+
+    /**
+     * @return counter bumped by every step and sync, i.e. whenever the
+     *         simulated positions may have changed
+     */
+    public synchronized long revision() {
+        return revision;
+    }
+
+    /**
+     * @param npcId NPC identifier
+     * @return simulated position, or {@code null} when the NPC is not simulated
+     */
+    public synchronized Position positionOf(Long npcId) {
+        int slot = npcId != null ? npcs.slotOf(npcId, -1) : -1;
+        return slot >= 0 ? new Position(npcs.x(slot), npcs.y(slot)) : null;
+    }
+
+    /**
+     * Looks up the simulated positions of a whole roster in one pass.
+     *
+     * @param roster NPCs of the match
+     * @return {@code x, y} pairs indexed like {@code roster}; {@code NaN} for
+     *         NPCs that are not simulated
+     */
+    public synchronized double[] positionsOf(List<Npc> roster) {
+        double[] out = new double[roster.size() * 2];
+        int hint = 0;
+        for (int i = 0; i < roster.size(); i++) {
+            Npc npc = roster.get(i);
+            int slot = npc.isActive() && npc.getId() != null ? npcs.slotOf(npc.getId(), hint) : -1;
+            if (slot < 0) {
+                out[2 * i] = Double.NaN;
+                out[2 * i + 1] = Double.NaN;
+                continue;
+            }
+            out[2 * i] = npcs.x(slot);
+            out[2 * i + 1] = npcs.y(slot);
+            hint = slot + 1;
+        }
+        return out;
+    }
+
+    /**
+     * @return number of NPCs currently simulated
+     */
+    public synchronized int size() {
+        return npcs.size();
+    }
+}
@@ -0,0 +1,69 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Move intents of one match waiting for its next simulation step, where they
+ * are applied together with a single match write and a single broadcast.
+ *
+ * <p>
+ * Producers are the threads accepting moves; the step drains the buffer. At
+ * most one flush of a match runs at a time, and a step that finds a flush
+ * still running leaves the intents queued for the next one. The buffer is
+ * bounded so a flooding client cannot grow it without limit; the per-avatar
+ * rate limit discards the excess when the intents are applied anyway.
+ */
+public final class MoveInputBuffer {
+
+    static final int MAX_PENDING = 256;
+
+    private final ConcurrentLinkedQueue<MoveIntent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    /**
+     * @param intent validated move
+     * @return {@code false} when the buffer is full and the intent was dropped
+     */
+    public boolean offer(MoveIntent intent) {
+        if (size.incrementAndGet() > MAX_PENDING) {
+            size.decrementAndGet();
+            return false;
+        }
+        pending.add(intent);
+        return true;
+    }
+
+    /**
+     * @return queued intents in arrival order; the buffer is left empty
+     */
+    public List<MoveIntent> drain() {
+        List<MoveIntent> intents = new ArrayList<>();
+        MoveIntent intent;
+        while ((intent = pending.poll()) != null) {
+            size.decrementAndGet();
+            intents.add(intent);
+        }
+        return intents;
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * @return whether the caller may start a flush; the caller must then call
+     *         {@link #endFlush()}
+     */
+    public boolean tryBeginFlush() {
+        return flushing.compareAndSet(false, true);
+    }
+
+    public void endFlush() {
+        flushing.set(false);
+    }
+}
@@ -0,0 +1,34 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import com.arsw.shipwreckeds.model.dto.MoveCommand;
+
+/**
+ * Movement request accepted from a client, with the direction already
+ * normalized and the time it was received, which is what the per-avatar rate
+ * limit is checked against when the move is applied later.
+ *
+ * @param avatarId         avatar the player wants to move
+ * @param username         player issuing the move
+ * @param dx               unit direction, X component
+ * @param dy               unit direction, Y component
+ * @param receivedAtMillis wall-clock time the command arrived
+ * @param seq              client input sequence, 0 when the client sent none
+ */
+public record MoveIntent(long avatarId, String username, double dx, double dy, long receivedAtMillis, long seq) {
+
+    /**
+     * @param cmd              complete movement command
+     * @param receivedAtMillis wall-clock time the command arrived
+     * @return the intent, or {@code null} when the direction has no length
+     */
+    public static MoveIntent of(MoveCommand cmd, long receivedAtMillis) {
+        double dx = cmd.getDirection().getDx();
+        double dy = cmd.getDirection().getDy();
+        double len = Math.hypot(dx, dy);
+        if (Double.isNaN(len) || len < 1e-6) {
+            return null;
+        }
+        long seq = cmd.getSeq() != null ? cmd.getSeq() : 0L;
+        return new MoveIntent(cmd.getAvatarId(), cmd.getUsername(), dx / len, dy / len, receivedAtMillis, seq);
+    }
+}
@@ -0,0 +1,206 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Structure-of-arrays storage of the NPCs simulated for one match. Every NPC
+ * lives in a slot of parallel primitive arrays (position, target, speed) and
+ * the {@code active} bitset tells which slots are in use, so the movement step
+ * walks contiguous {@code double[]} without boxing, hashing or allocation.
+ *
+ * <p>
+ * Slots of removed NPCs are reused by later additions; arrays only grow. The
+ * {@code Npc} objects of the match stay the serialization view and are
+ * reconciled with the store through {@link #beginSync()},
+ * {@link #slotOf(long, int)}, {@link #add(long, double, double, double)} and
+ * {@link #endSync()}.
+ *
+ * <p>
+ * Not thread-safe; callers confine each store to the thread mutating its match.
+ */
+public final class NpcStore {
+
+    static final double ISLAND_RADIUS = 100.0;
+    private static final double NPC_SPEED_MULTIPLIER = 3.0;
+    private static final double MIN_SPEED = 0.15;
+    private static final double MAX_SPEED = 0.55;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] ids;
+    private double[] x;
+    private double[] y;
+    private double[] targetX;
+    private double[] targetY;
+    private double[] speed;
+    private final BitSet active = new BitSet();
+    private final BitSet seen = new BitSet();
+
+    public NpcStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity initial number of slots
+     */
+    public NpcStore(int capacity) {
+        int slots = Math.max(1, capacity);
+        ids = new long[slots];
+        x = new double[slots];
+        y = new double[slots];
+        targetX = new double[slots];
+        targetY = new double[slots];
+        speed = new double[slots];
+    }
+
+    /**
+     * Adds an NPC with a fresh random target.
+     *
+     * @param id            NPC identifier
+     * @param startX        initial X coordinate
+     * @param startY        initial Y coordinate
+     * @param movementSpeed speed of the NPC, clamped to the walking range
+     * @return slot assigned to the NPC
+     */
+    public int add(long id, double startX, double startY, double movementSpeed) {
+        int slot = active.nextClearBit(0);
+        if (slot >= ids.length) {
+            grow(Math.max(slot + 1, ids.length * 2));
+        }
+        ids[slot] = id;
+        x[slot] = startX;
+        y[slot] = startY;
+        speed[slot] = Math.min(Math.max(MIN_SPEED, movementSpeed), MAX_SPEED);
+        active.set(slot);
+        seen.set(slot);
+        retarget(slot);
+        return slot;
+    }
+
+    /**
+     * Finds the slot of an NPC and marks it as seen in the current sync.
+     *
+     * @param id   NPC identifier
+     * @param hint slot to try first, typically the index of the NPC in the match
+     * @return slot of the NPC, or {@code -1} when it is not stored
+     */
+    public int slotOf(long id, int hint) {
+        int slot = -1;
+        if (hint >= 0 && hint < ids.length && active.get(hint) && ids[hint] == id) {
+            slot = hint;
+        } else {
+            for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
+                if (ids[i] == id) {
+                    slot = i;
+                    break;
+                }
+            }
+        }
+        if (slot >= 0) {
+            seen.set(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Starts reconciling the store with the NPC list of the match.
+     */
+    public void beginSync() {
+        seen.clear();
+    }
+
+    /**
+     * Removes every NPC that was neither looked up nor added since
+     * {@link #beginSync()}.
+     */
+    public void endSync() {
+        active.and(seen);
+    }
+
+    /**
+     * Advances every active NPC towards its target. NPCs that arrive or would
+     * leave the island pick a new target and stay put for this step.
+     *
+     * @param dt elapsed time in seconds
+     */
+    public void step(double dt) {
+        double factor = NPC_SPEED_MULTIPLIER * dt;
+        double edge = ISLAND_RADIUS - 2.0;
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
+            double dx = targetX[i] - x[i];
+            double dy = targetY[i] - y[i];
+            double distance = Math.hypot(dx, dy);
+            if (distance < 1.0) {
+                retarget(i);
+                continue;
+            }
+            double stride = Math.min(distance, speed[i] * factor);
+            double nx = x[i] + (dx / distance) * stride;
+            double ny = y[i] + (dy / distance) * stride;
+            if (Math.hypot(nx, ny) >= edge) {
+                retarget(i);
+                continue;
+            }
+            x[i] = nx;
+            y[i] = ny;
+        }
+    }
+
+    public void setPosition(int slot, double newX, double newY) {
+        x[slot] = newX;
+        y[slot] = newY;
+    }
+
+    public void setTarget(int slot, double newX, double newY) {
+        targetX[slot] = newX;
+        targetY[slot] = newY;
+    }
+
+    public double x(int slot) {
+        return x[slot];
+    }
+
+    public double y(int slot) {
+        return y[slot];
+    }
+
+    public double targetX(int slot) {
+        return targetX[slot];
+    }
+
+    public double targetY(int slot) {
+        return targetY[slot];
+    }
+
+    /**
+     * @return number of active NPCs
+     */
+    public int size() {
+        return active.cardinality();
+    }
+
+    /**
+     * @return number of allocated slots
+     */
+    int capacity() {
+        return ids.length;
+    }
+
+    private void retarget(int slot) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double angle = random.nextDouble(0, Math.PI * 2);
+        double radius = random.nextDouble(0, ISLAND_RADIUS * 0.9);
+        targetX[slot] = Math.cos(angle) * radius;
+        targetY[slot] = Math.sin(angle) * radius;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        targetX = Arrays.copyOf(targetX, capacity);
+        targetY = Arrays.copyOf(targetY, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+    }
+}
@@ -0,0 +1,138 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.Arrays;
+
+/**
+ * Recent timestamped positions of the avatars of one match, used to evaluate
+ * proximity checks (eliminations, boat interactions) at the moment the client
+ * acted instead of the moment the request reached the match lock.
+ *
+ * <p>
+ * Every avatar owns a fixed ring of {@code samplesPerAvatar} samples in
+ * parallel primitive arrays, so recording a position never allocates and the
+ * memory of a match only grows when a new avatar is seen. The history is
+ * node-local and is never written to Redis; a node adopting a match starts
+ * with an empty one and falls back to the current positions.
+ *
+ * <p>
+ * Instances are shared between the threads applying moves and the ones
+ * checking proximity, so every method is synchronized.
+ */
+public final class PositionHistory {
+
+    static final int DEFAULT_SAMPLES_PER_AVATAR = 16;
+    private static final int INITIAL_AVATARS = 8;
+
+    private final int samplesPerAvatar;
+    private long[] ids = new long[INITIAL_AVATARS];
+    private int[] heads = new int[INITIAL_AVATARS];
+    private int[] counts = new int[INITIAL_AVATARS];
+    private long[] times;
+    private double[] xs;
+    private double[] ys;
+    private int avatars;
+
+    public PositionHistory() {
+        this(DEFAULT_SAMPLES_PER_AVATAR);
+    }
+
+    /**
+     * @param samplesPerAvatar size of the ring kept for each avatar; must be
+     *                         positive
+     */
+    public PositionHistory(int samplesPerAvatar) {
+        if (samplesPerAvatar < 1) {
+            throw new IllegalArgumentException("samplesPerAvatar must be positive");
+        }
+        this.samplesPerAvatar = samplesPerAvatar;
+        this.times = new long[INITIAL_AVATARS * samplesPerAvatar];
+        this.xs = new double[times.length];
+        this.ys = new double[times.length];
+    }
+
+    /**
+     * Records where an avatar is from {@code atMillis} on, overwriting its
+     * oldest sample once the ring is full. Samples older than the newest one
+     * of the avatar are ignored.
+     *
+     * @param avatarId avatar identifier
+     * @param atMillis epoch milliseconds of the position
+     * @param x        X coordinate
+     * @param y        Y coordinate
+     */
+    public synchronized void record(long avatarId, long atMillis, double x, double y) {
+        int slot = slotOf(avatarId);
+        if (slot < 0) {
+            slot = addSlot(avatarId);
+        }
+        int base = slot * samplesPerAvatar;
+        if (counts[slot] > 0 && atMillis < times[base + heads[slot]]) {
+            return;
+        }
+        int head = counts[slot] == 0 ? 0 : (heads[slot] + 1) % samplesPerAvatar;
+        times[base + head] = atMillis;
+        xs[base + head] = x;
+        ys[base + head] = y;
+        heads[slot] = head;
+        counts[slot] = Math.min(counts[slot] + 1, samplesPerAvatar);
+    }
+
+    /**
+     * Looks up where an avatar was at a given time: its newest sample taken at
+     * or before {@code atMillis}.
+     *
+     * @param avatarId avatar identifier
+     * @param atMillis epoch milliseconds to rewind to
+     * @param out      receives {@code x, y}; at least two elements
+     * @return {@code false} when the history does not reach back to
+     *         {@code atMillis} and {@code out} was left untouched
+     */
+    public synchronized boolean positionAt(long avatarId, long atMillis, double[] out) {
+        int slot = slotOf(avatarId);
+        if (slot < 0) {
+            return false;
+        }
+        int base = slot * samplesPerAvatar;
+        int index = heads[slot];
+        for (int i = 0; i < counts[slot]; i++) {
+            if (times[base + index] <= atMillis) {
+                out[0] = xs[base + index];
+                out[1] = ys[base + index];
+                return true;
+            }
+            index = index == 0 ? samplesPerAvatar - 1 : index - 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return number of avatars with a ring
+     */
+    public synchronized int size() {
+        return avatars;
+    }
+
+    private int slotOf(long avatarId) {
+        // a match has a handful of players, a linear scan beats hashing boxed ids
+        for (int i = 0; i < avatars; i++) {
+            if (ids[i] == avatarId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int addSlot(long avatarId) {
+        if (avatars == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            heads = Arrays.copyOf(heads, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            times = Arrays.copyOf(times, capacity * samplesPerAvatar);
+            xs = Arrays.copyOf(xs, capacity * samplesPerAvatar);
+            ys = Arrays.copyOf(ys, capacity * samplesPerAvatar);
+        }
+        ids[avatars] = avatarId;
+        return avatars++;
+    }
+}
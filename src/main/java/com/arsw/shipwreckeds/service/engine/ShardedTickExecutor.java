@@ -0,0 +1,152 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor that spreads match work across a fixed number of single-threaded
+ * lanes. Every match code is pinned to one lane, so ticks and timeouts of the
+ * same match stay serialized while a slow Redis round trip in one lane does not
+ * delay the matches hosted by the others. Timing is handled by
+ * {@link HashedWheelTimer}; lanes only run work that is already due.
+ */
+public class ShardedTickExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedTickExecutor.class);
+
+    private final Lane[] lanes;
+
+    /**
+     * Creates the executor and starts one daemon thread per lane.
+     *
+     * @param laneCount  number of lanes; must be positive
+     * @param namePrefix prefix used to name lane threads
+     */
+    public ShardedTickExecutor(int laneCount, String namePrefix) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be positive");
+        }
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, namePrefix + "-" + i);
+        }
+    }
+
+    /**
+     * @return number of lanes managed by this executor
+     */
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Resolves the lane index that owns the given match code.
+     *
+     * @param code match identifier
+     * @return lane index in {@code [0, laneCount)}
+     */
+    public int laneFor(String code) {
+        int h = code != null ? code.hashCode() : 0;
+        // spread the hash so codes that differ only in the last char still scatter
+        h ^= (h >>> 16);
+        return Math.floorMod(h, lanes.length);
+    }
+
+    /**
+     * Runs a task on the lane owning {@code code}.
+     *
+     * @param code     match identifier used to pick the lane
+     * @param task     work to execute
+     * @param dueNanos {@link System#nanoTime()} at which the task became due, used
+     *                 to report lag
+     */
+    public void execute(String code, Runnable task, long dueNanos) {
+        executeOnLane(laneFor(code), task, dueNanos);
+    }
+
+    /**
+     * Runs a task on a specific lane, typically a batch of timers that already
+     * share the lane.
+     *
+     * @param lane     lane index
+     * @param task     work to execute
+     * @param dueNanos {@link System#nanoTime()} at which the task became due
+     */
+    public void executeOnLane(int lane, Runnable task, long dueNanos) {
+        Lane target = lanes[lane];
+        try {
+            target.executor.execute(() -> target.run(task, dueNanos));
+        } catch (RejectedExecutionException ex) {
+            LOGGER.debug("Lane {} is shut down, dropping task", lane);
+        }
+    }
+
+    /**
+     * Captures the current load of every lane.
+     *
+     * @return one snapshot per lane, ordered by lane index
+     */
+    public List<TickLaneStats> stats() {
+        List<TickLaneStats> result = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            result.add(lane.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Stops every lane, discarding pending work.
+     */
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.executor.shutdownNow();
+        }
+    }
+
+    private static final class Lane {
+
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong executed = new AtomicLong();
+        private volatile long lastLagNanos;
+        private volatile long maxLagNanos;
+
+        private Lane(int index, String threadName) {
+            this.index = index;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        private void run(Runnable task, long dueNanos) {
+            long lag = Math.max(0L, System.nanoTime() - dueNanos);
+            lastLagNanos = lag;
+            if (lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+            executed.incrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LOGGER.error("Tick task failed on lane {}", index, ex);
+            }
+        }
+
+        private TickLaneStats snapshot() {
+            return new TickLaneStats(index, executor.getQueue().size(),
+                    TimeUnit.NANOSECONDS.toMillis(lastLagNanos),
+                    TimeUnit.NANOSECONDS.toMillis(maxLagNanos),
+                    executed.get());
+        }
+    }
+}
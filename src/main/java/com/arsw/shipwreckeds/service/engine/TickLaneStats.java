@@ -0,0 +1,13 @@
+package com.arsw.shipwreckeds.service.engine;
+
+/**
+ * Point-in-time load report of a single tick lane.
+ *
+ * @param lane          lane index
+ * @param queueDepth    tasks already due but still waiting for the lane thread
+ * @param lastTickLagMs delay between due time and start of the latest task
+ * @param maxTickLagMs  worst delay observed since startup
+ * @param executedTasks total tasks executed by the lane
+ */
+public record TickLaneStats(int lane, int queueDepth, long lastTickLagMs, long maxTickLagMs, long executedTasks) {
+}
@@ -0,0 +1,32 @@
+package com.arsw.shipwreckeds.service.engine;
+
+/**
+ * Categories of timers registered on the {@link HashedWheelTimer}. A match can
+ * hold at most one active timer of each kind.
+ *
+ * <p>
+ * Fuel window toggles and match expiry have no kind of their own. The fuel
+ * window is derived from {@code Match.timerSeconds}, which only the
+ * {@link #MATCH_TICK} changes, so it opens and closes on the tick that
+ * broadcasts it and a separate deadline would only repeat that write.
+ * Expiry is the TTL Redis keeps on the match key, refreshed by every write;
+ * the next {@link #MATCH_TICK} that finds the key gone stops the ticker, so
+ * there is no node-local deadline to keep.
+ */
+public enum TimerKind {
+
+    /** Periodic 1 Hz match clock (countdown, fuel window, persistence). */
+    MATCH_TICK,
+
+    /** One-shot deadline closing an open vote. */
+    VOTE_END,
+
+    /** Periodic fixed-timestep NPC simulation step (in-process only). */
+    SIMULATION,
+
+    /** Periodic, rate-limited snapshot broadcast of the simulated state. */
+    SNAPSHOT,
+
+    /** Node-wide 1 Hz clock ticking every hosted match as one batch per lane. */
+    BATCH_TICK
+}
@@ -0,0 +1,99 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Handle of a timer registered on a {@link HashedWheelTimer}. The handle is
+ * also the intrusive list node stored in the wheel bucket, so a timer costs a
+ * single object regardless of how many times a periodic timer fires.
+ */
+public final class WheelTimeout {
+
+    private static final int ST_ACTIVE = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE = AtomicIntegerFieldUpdater
+            .newUpdater(WheelTimeout.class, "state");
+
+    private final HashedWheelTimer timer;
+    private final String key;
+    private final TimerKind kind;
+    private final Runnable task;
+    private final long periodNanos;
+
+    private volatile int state = ST_ACTIVE;
+    private volatile long deadlineNanos;
+
+    // Owned by the wheel worker thread
+    long remainingRounds;
+    WheelTimeout next;
+    WheelTimeout prev;
+    HashedWheelTimer.Bucket bucket;
+
+    WheelTimeout(HashedWheelTimer timer, String key, TimerKind kind, Runnable task, long deadlineNanos,
+            long periodNanos) {
+        this.timer = timer;
+        this.key = key;
+        this.kind = kind;
+        this.task = task;
+        this.deadlineNanos = deadlineNanos;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * @return match code (or other grouping key) the timer belongs to
+     */
+    public String key() {
+        return key;
+    }
+
+    public TimerKind kind() {
+        return kind;
+    }
+
+    public Runnable task() {
+        return task;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} value at which the timer is, or was, due
+     */
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public boolean isPeriodic() {
+        return periodNanos > 0;
+    }
+
+    public boolean isCancelled() {
+        return state == ST_CANCELLED;
+    }
+
+    /**
+     * Cancels the timer. The wheel unlinks it on its next tick; callers dispatching
+     * an already expired batch should skip cancelled entries.
+     *
+     * @return {@code true} if this call cancelled the timer
+     */
+    public boolean cancel() {
+        if (!STATE.compareAndSet(this, ST_ACTIVE, ST_CANCELLED)) {
+            return false;
+        }
+        timer.onCancelled(this);
+        return true;
+    }
+
+    long periodNanos() {
+        return periodNanos;
+    }
+
+    void rearm() {
+        deadlineNanos += periodNanos;
+    }
+
+    boolean markExpired() {
+        return STATE.compareAndSet(this, ST_ACTIVE, ST_EXPIRED);
+    }
+}
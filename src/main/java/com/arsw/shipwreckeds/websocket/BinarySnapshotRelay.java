@@ -0,0 +1,76 @@
+package com.arsw.shipwreckeds.websocket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Re-encodes the game state payloads relayed to this node with
+ * {@link SnapshotBinaryCodec} for the local sessions that negotiated it. The
+ * encoding happens once per node and message, not once per session, and only
+ * for matches with binary subscribers here.
+ */
+@Component
+public class BinarySnapshotRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinarySnapshotRelay.class);
+
+    private final BinarySnapshotSubscriptions subscriptions;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<String, SnapshotBinaryCodec.StringTable> tables = new ConcurrentHashMap<>();
+
+    public BinarySnapshotRelay(BinarySnapshotSubscriptions subscriptions, SimpMessagingTemplate messagingTemplate,
+            ObjectMapper objectMapper) {
+        this.subscriptions = subscriptions;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Sends the binary form of a payload just relayed to {@code destination},
+     * when it is a game state topic with binary subscribers.
+     *
+     * @param destination STOMP destination of the JSON payload
+     * @param payload     UTF-8 JSON payload
+     * @param frame       whether the payload is a {@link GameStateFrame} rather
+     *                    than a full {@link GameState}
+     */
+    public void relay(String destination, byte[] payload, boolean frame) {
+        String code = GameStateSubscriptionListener.matchCodeOf(destination);
+        if (code == null || payload == null) {
+            return;
+        }
+        if (!subscriptions.hasSubscribers(code)) {
+            tables.remove(code);
+            return;
+        }
+        try {
+            Class<?> type = frame ? GameStateFrame.class : GameState.class;
+            Object snapshot = objectMapper.readValue(payload, type);
+            SnapshotBinaryCodec.StringTable table = tables.computeIfAbsent(code,
+                    c -> new SnapshotBinaryCodec.StringTable());
+            // one encoder per match at a time: the table and the send order must agree
+            synchronized (table) {
+                byte[] bytes = SnapshotBinaryCodec.encode(snapshot, table, subscriptions.takeFullTableRequest(code));
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+                accessor.setContentType(SnapshotBinaryCodec.CONTENT_TYPE);
+                accessor.setLeaveMutable(true);
+                messagingTemplate.send(BinarySnapshotSubscriptions.binaryDestination(code),
+                        MessageBuilder.createMessage(bytes, accessor.getMessageHeaders()));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to relay binary snapshot for match {}", code, e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.arsw.shipwreckeds.websocket;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+/**
+ * Negotiates the binary snapshot codec. A client that subscribes to
+ * {@code /topic/game/{code}} with {@link SnapshotBinaryCodec#CONTENT_TYPE} as
+ * {@code content-type}, over the native WebSocket endpoint, is moved to the
+ * node-local {@code /topic/game/{code}/binary} destination; everyone else keeps
+ * the JSON topic. SockJS sessions always stay on JSON since SockJS frames are
+ * text only.
+ *
+ * <p>
+ * Also counts the binary subscribers of each match on this node, so snapshots
+ * are only encoded where someone will read them, and remembers which matches
+ * gained a subscriber that still needs the whole string table.
+ */
+@Component
+public class BinarySnapshotSubscriptions implements ChannelInterceptor {
+
+    /** Session attribute set by the handshake of the native WebSocket endpoint. */
+    public static final String NATIVE_TRANSPORT = "shipwreckeds.nativeTransport";
+
+    private static final String BINARY_SUFFIX = "/binary";
+
+    private final Map<String, Map<String, String>> codesBySession = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> subscribers = new ConcurrentHashMap<>();
+    private final Set<String> needFullTable = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param code match identifier
+     * @return destination binary subscribers of the match are moved to
+     */
+    public static String binaryDestination(String code) {
+        return "/topic/game/" + code + BINARY_SUFFIX;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.SUBSCRIBE) {
+            String code = GameStateSubscriptionListener.matchCodeOf(accessor.getDestination());
+            if (code == null || !wantsBinary(accessor) || !isNativeTransport(accessor)) {
+                return message;
+            }
+            register(accessor.getSessionId(), accessor.getSubscriptionId(), code);
+            accessor.setDestination(binaryDestination(code));
+            return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+        }
+        if (command == StompCommand.UNSUBSCRIBE) {
+            unregister(accessor.getSessionId(), accessor.getSubscriptionId());
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> codes = codesBySession.remove(event.getSessionId());
+        if (codes != null) {
+            codes.values().forEach(this::decrement);
+        }
+    }
+
+    /**
+     * @param code match identifier
+     * @return whether a session of this node reads binary snapshots of the match
+     */
+    public boolean hasSubscribers(String code) {
+        AtomicInteger count = subscribers.get(code);
+        return count != null && count.get() > 0;
+    }
+
+    /**
+     * @param code match identifier
+     * @return whether the next snapshot must carry the whole string table;
+     *         clears the request
+     */
+    public boolean takeFullTableRequest(String code) {
+        return needFullTable.remove(code);
+    }
+
+    private void register(String sessionId, String subscriptionId, String code) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        String previous = codesBySession.computeIfAbsent(sessionId, s -> new ConcurrentHashMap<>())
+                .put(subscriptionId, code);
+        if (previous != null) {
+            decrement(previous);
+        }
+        subscribers.computeIfAbsent(code, c -> new AtomicInteger()).incrementAndGet();
+        needFullTable.add(code);
+    }
+
+    private void unregister(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        Map<String, String> codes = codesBySession.get(sessionId);
+        String code = codes != null ? codes.remove(subscriptionId) : null;
+        if (code != null) {
+            decrement(code);
+        }
+    }
+
+    private void decrement(String code) {
+        subscribers.computeIfPresent(code, (c, count) -> count.decrementAndGet() > 0 ? count : null);
+    }
+
+    private static boolean wantsBinary(StompHeaderAccessor accessor) {
+        String contentType = accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER);
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            return SnapshotBinaryCodec.CONTENT_TYPE.equals(MimeType.valueOf(contentType));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isNativeTransport(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        return attributes != null && Boolean.TRUE.equals(attributes.get(NATIVE_TRANSPORT));
+    }
+}
@@ -1,18 +1,27 @@
 package com.arsw.shipwreckeds.websocket;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
 
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -20,56 +29,193 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * backend instances
  * broadcast the same STOMP events regardless of which node executed the game
  * logic.
+ *
+ * <p>
+ * Events of a match topic are sequenced through {@link MatchEventHistory} and
+ * relayed with their stream and sequence number as STOMP headers, so clients
+ * can ask for the gap after a reconnect.
+ *
+ * <p>
+ * A payload is serialized to JSON once, by the node publishing it. The bytes
+ * travel through Redis inside a {@link DistributedWsEvent} envelope and are
+ * handed to the local broker as a pre-encoded message, so relaying an event
+ * builds no intermediate JSON tree on any node. The envelope is the JSON one
+ * older releases read unless {@code app.broadcast.binary-envelope} is on.
+ *
+ * <p>
+ * With {@code app.broadcast.per-match-channels}, events of the lobby and game
+ * topics of a match are published on {@link #matchChannel(String)} instead of
+ * {@link #WS_CHANNEL}, and {@link MatchChannelSubscriptions} only listens to it
+ * on the nodes where a session is subscribed to the match; other destinations
+ * keep the shared channel.
  */
 @Component
 public class DistributedWsBroadcaster implements MessageListener {
 
     public static final String WS_CHANNEL = "shipwreckeds:ws:events";
+    public static final String MATCH_CHANNEL_PREFIX = "shipwreckeds:ws:match:";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DistributedWsBroadcaster.class);
+    private static final byte[] CHANNEL = WS_CHANNEL.getBytes(StandardCharsets.UTF_8);
+    private static final String GAME_TOPIC = "/topic/game/";
+    private static final String LOBBY_TOPIC = "/topic/lobby/";
+    private static final MimeType JSON = new MimeType("application", "json", StandardCharsets.UTF_8);
 
     private final String instanceId = UUID.randomUUID().toString();
     private final StringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper;
     private final SimpMessagingTemplate messagingTemplate;
+    private final BinarySnapshotRelay binaryRelay;
+    private final MatchEventHistory history;
+    private final BroadcastProperties properties;
 
     public DistributedWsBroadcaster(StringRedisTemplate redisTemplate,
             ObjectMapper objectMapper,
-            SimpMessagingTemplate messagingTemplate) {
+            SimpMessagingTemplate messagingTemplate,
+            BinarySnapshotRelay binaryRelay,
+            MatchEventHistory history,
+            BroadcastProperties properties) {
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
         this.messagingTemplate = messagingTemplate;
+        this.binaryRelay = binaryRelay;
+        this.history = history;
+        this.properties = properties;
+    }
+
+    /**
+     * @param code match identifier
+     * @return Redis channel carrying the events of the match when per-match
+     *         channels are enabled
+     */
+    public static String matchChannel(String code) {
+        return MATCH_CHANNEL_PREFIX + code;
+    }
+
+    /**
+     * @param destination STOMP destination
+     * @return match code of a lobby or game topic, including its sub-topics,
+     *         otherwise {@code null}
+     */
+    static String matchOf(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        String rest;
+        if (destination.startsWith(GAME_TOPIC)) {
+            rest = destination.substring(GAME_TOPIC.length());
+        } else if (destination.startsWith(LOBBY_TOPIC)) {
+            rest = destination.substring(LOBBY_TOPIC.length());
+        } else {
+            return null;
+        }
+        int end = rest.indexOf('/');
+        String code = end < 0 ? rest : rest.substring(0, end);
+        return code.isEmpty() ? null : code;
+    }
+
+    private byte[] channelFor(String destination) {
+        String code = properties.isPerMatchChannels() ? matchOf(destination) : null;
+        return code != null ? matchChannel(code).getBytes(StandardCharsets.UTF_8) : CHANNEL;
     }
 
     /**
      * Publishes the given payload so that every instance (including the current
-     * one)
-     * relays it to its connected WebSocket sessions.
+     * one) relays it to its connected WebSocket sessions. The payload is
+     * serialized here, once; the other nodes relay the bytes as they are.
      */
     public void publish(String destination, Object payload) {
         if (destination == null || payload == null) {
             return;
         }
+        history.publishSequenced(destination, stamp -> {
+            try {
+                byte[] message = encode(newEvent(destination, payload, stamp));
+                byte[] channel = channelFor(destination);
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, message));
+            } catch (JsonProcessingException e) {
+                LOGGER.error("Failed to serialize WebSocket payload for destination {}", destination, e);
+            } catch (Exception e) {
+                LOGGER.error("Failed to publish WebSocket event for destination {} to Redis", destination, e);
+            }
+        });
+    }
+
+    /**
+     * Publishes several payloads in a single pipelined round trip. Used by the
+     * batch tick so the number of Redis calls does not grow with the number of
+     * matches.
+     *
+     * @param payloadsByDestination payload to publish per STOMP destination
+     */
+    public void publishAll(Map<String, ?> payloadsByDestination) {
+        if (payloadsByDestination == null || payloadsByDestination.isEmpty()) {
+            return;
+        }
+        List<byte[]> channels = new ArrayList<>(payloadsByDestination.size());
+        List<byte[]> messages = new ArrayList<>(payloadsByDestination.size());
+        for (Map.Entry<String, ?> entry : payloadsByDestination.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            // the batch is published from one thread in map order, which keeps each match in sequence
+            history.publishSequenced(entry.getKey(), stamp -> {
+                try {
+                    messages.add(encode(newEvent(entry.getKey(), entry.getValue(), stamp)));
+                    channels.add(channelFor(entry.getKey()));
+                } catch (JsonProcessingException e) {
+                    LOGGER.error("Failed to serialize WebSocket payload for destination {}", entry.getKey(), e);
+                }
+            });
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
         try {
-            JsonNode payloadNode = objectMapper.valueToTree(payload);
-            DistributedWsEvent event = new DistributedWsEvent(instanceId, destination, payloadNode);
-            redisTemplate.convertAndSend(WS_CHANNEL, objectMapper.writeValueAsString(event));
-        } catch (JsonProcessingException e) {
-            LOGGER.error("Failed to serialize WebSocket payload for destination {}", destination, e);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < messages.size(); i++) {
+                    connection.publish(channels.get(i), messages.get(i));
+                }
+                return null;
+            });
         } catch (Exception e) {
-            LOGGER.error("Failed to publish WebSocket event to Redis channel {}", WS_CHANNEL, e);
+            LOGGER.error("Failed to publish {} WebSocket events to Redis", messages.size(), e);
         }
     }
 
+    private DistributedWsEvent newEvent(String destination, Object payload, MatchEventHistory.Stamp stamp)
+            throws JsonProcessingException {
+        byte[] body = objectMapper.writeValueAsBytes(payload);
+        boolean frame = payload instanceof GameStateFrame;
+        boolean snapshot = payload instanceof GameState || frame && ((GameStateFrame) payload).isKeyframe();
+        return stamp == null ? new DistributedWsEvent(instanceId, destination, body, null, 0L, snapshot, frame)
+                : new DistributedWsEvent(instanceId, destination, body, stamp.stream(), stamp.seq(), snapshot, frame);
+    }
+
+    private byte[] encode(DistributedWsEvent event) {
+        return properties.isBinaryEnvelope() ? event.encode() : event.encodeJson();
+    }
+
     @Override
     public void onMessage(Message message, byte[] pattern) {
         if (message == null || message.getBody() == null) {
             return;
         }
         try {
-            String body = new String(message.getBody(), StandardCharsets.UTF_8);
-            DistributedWsEvent event = objectMapper.readValue(body, DistributedWsEvent.class);
-            messagingTemplate.convertAndSend(event.destination(), event.payload());
+            DistributedWsEvent event = DistributedWsEvent.decode(message.getBody());
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+            accessor.setContentType(JSON);
+            if (event.stream() != null) {
+                history.record(event.destination(), new MatchEventHistory.Stamp(event.stream(), event.seq()),
+                        event.payload(), event.snapshot());
+                accessor.setNativeHeader(MatchEventHistory.STREAM_HEADER, event.stream());
+                accessor.setNativeHeader(MatchEventHistory.SEQ_HEADER, Long.toString(event.seq()));
+            }
+            accessor.setLeaveMutable(true);
+            // already encoded: the broker writes the bytes to every session as they are
+            messagingTemplate.send(event.destination(),
+                    MessageBuilder.createMessage(event.payload(), accessor.getMessageHeaders()));
+            binaryRelay.relay(event.destination(), event.payload(), event.frame());
         } catch (Exception e) {
             LOGGER.error("Failed to dispatch distributed WebSocket event", e);
         }
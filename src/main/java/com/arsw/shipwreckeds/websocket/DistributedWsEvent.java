@@ -1,10 +1,188 @@
 package com.arsw.shipwreckeds.websocket;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * Payload envelope used to replicate WebSocket/STOMP events across all backend
- * instances via Redis Pub/Sub.
+ * Envelope used to replicate WebSocket/STOMP events across all backend
+ * instances via Redis Pub/Sub. The payload is the JSON body exactly as it is
+ * sent to the clients, encoded once by the publishing node and carried as
+ * opaque bytes. Events of a match topic also carry the stream and sequence
+ * number given by {@link MatchEventHistory}; other events leave them empty.
+ *
+ * <p>
+ * The envelope itself is a small binary frame, so relaying an event never
+ * parses the payload: a format byte, a flags byte, the source, destination and
+ * (when stamped) stream as length-prefixed UTF-8 strings, the sequence number,
+ * and the payload bytes up to the end of the frame.
+ *
+ * <p>
+ * Releases before the binary frame published a JSON object with the same
+ * fields and the payload embedded as a JSON value; {@link #encodeJson()} still
+ * writes it and {@link #decode(byte[])} reads both, so a cluster moves to the
+ * binary frame by first deploying nodes that read it and then switching
+ * {@code app.broadcast.binary-envelope} on.
+ *
+ * @param sourceId    node that published the event
+ * @param destination STOMP destination
+ * @param payload     UTF-8 JSON body
+ * @param stream      stream of the match on the publishing node, or
+ *                    {@code null}
+ * @param seq         position of the event in the stream
+ * @param snapshot    whether the payload is a full game state or a keyframe
+ * @param frame       whether the payload is a {@code GameStateFrame} rather
+ *                    than a plain {@code GameState}
  */
-public record DistributedWsEvent(String sourceId, String destination, JsonNode payload) {
+public record DistributedWsEvent(String sourceId, String destination, byte[] payload, String stream, long seq,
+        boolean snapshot, boolean frame) {
+
+    static final byte FORMAT = 1;
+    /** First byte of a legacy JSON envelope; never a binary format byte. */
+    private static final byte JSON_START = '{';
+    private static final ObjectMapper LEGACY_JSON = new ObjectMapper();
+    private static final int FLAG_SNAPSHOT = 1;
+    private static final int FLAG_FRAME = 1 << 1;
+    private static final int FLAG_STAMPED = 1 << 2;
+
+    public DistributedWsEvent(String sourceId, String destination, byte[] payload) {
+        this(sourceId, destination, payload, null, 0L, false, false);
+    }
+
+    /**
+     * @return the envelope ready to be published
+     */
+    public byte[] encode() {
+        byte[] source = utf8(sourceId);
+        byte[] dest = utf8(destination);
+        byte[] streamBytes = stream != null ? utf8(stream) : null;
+        int size = 2 + 4 + source.length + 4 + dest.length + payload.length
+                + (streamBytes != null ? 4 + streamBytes.length + 8 : 0);
+        ByteBuffer out = ByteBuffer.allocate(size);
+        int flags = (snapshot ? FLAG_SNAPSHOT : 0) | (frame ? FLAG_FRAME : 0)
+                | (streamBytes != null ? FLAG_STAMPED : 0);
+        out.put(FORMAT).put((byte) flags);
+        putBytes(out, source);
+        putBytes(out, dest);
+        if (streamBytes != null) {
+            putBytes(out, streamBytes);
+            out.putLong(seq);
+        }
+        out.put(payload);
+        return out.array();
+    }
+
+    /**
+     * @return the envelope as the JSON object read by releases before the
+     *         binary frame, with the payload bytes embedded as they are
+     */
+    public byte[] encodeJson() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 128);
+        try (JsonGenerator generator = LEGACY_JSON.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("sourceId", sourceId);
+            generator.writeStringField("destination", destination);
+            generator.writeFieldName("payload");
+            generator.writeRawValue(new String(payload, StandardCharsets.UTF_8));
+            if (stream != null) {
+                generator.writeStringField("stream", stream);
+                generator.writeNumberField("seq", seq);
+            }
+            // unknown to older releases, which ignore them
+            generator.writeBooleanField("snapshot", snapshot);
+            generator.writeBooleanField("frame", frame);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // only an in-memory buffer is written
+            throw new IllegalStateException("Could not write WebSocket event for " + destination, e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads an envelope published by {@link #encode()} or
+     * {@link #encodeJson()}.
+     *
+     * @param body message body received from Redis
+     * @return decoded event
+     * @throws IllegalArgumentException when the body is not an envelope of a
+     *                                  known format
+     */
+    public static DistributedWsEvent decode(byte[] body) {
+        if (body.length > 0 && body[0] == JSON_START) {
+            return decodeJson(body);
+        }
+        if (body.length < 2 || body[0] != FORMAT) {
+            throw new IllegalArgumentException("Unknown WebSocket event format");
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(body, 2, body.length - 2);
+            int flags = body[1];
+            String source = getString(in);
+            String dest = getString(in);
+            String stream = null;
+            long seq = 0L;
+            if ((flags & FLAG_STAMPED) != 0) {
+                stream = getString(in);
+                seq = in.getLong();
+            }
+            byte[] payload = Arrays.copyOfRange(body, in.position(), body.length);
+            return new DistributedWsEvent(source, dest, payload, stream, seq, (flags & FLAG_SNAPSHOT) != 0,
+                    (flags & FLAG_FRAME) != 0);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Truncated WebSocket event", e);
+        }
+    }
+
+    /**
+     * Reads a JSON envelope. Envelopes of older releases carry no flags, so
+     * they are worked out from the payload as those releases did.
+     */
+    private static DistributedWsEvent decodeJson(byte[] body) {
+        try {
+            JsonNode tree = LEGACY_JSON.readTree(body);
+            JsonNode payload = tree.get("payload");
+            JsonNode destination = tree.get("destination");
+            if (payload == null || destination == null || !destination.isTextual()) {
+                throw new IllegalArgumentException("Incomplete JSON WebSocket event");
+            }
+            JsonNode kind = payload.get("kind");
+            boolean frame = tree.has("frame") ? tree.get("frame").asBoolean() : kind != null;
+            boolean snapshot = tree.has("snapshot") ? tree.get("snapshot").asBoolean()
+                    : payload.isObject() && (kind == null || GameStateFrame.KEYFRAME.equals(kind.asText()));
+            JsonNode stream = tree.get("stream");
+            return new DistributedWsEvent(tree.path("sourceId").asText(null), destination.asText(),
+                    LEGACY_JSON.writeValueAsBytes(payload), stream != null && stream.isTextual() ? stream.asText() : null,
+                    tree.path("seq").asLong(), snapshot, frame);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JSON WebSocket event", e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
 }
@@ -0,0 +1,311 @@
+package com.arsw.shipwreckeds.websocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.dto.AvatarDelta;
+import com.arsw.shipwreckeds.model.dto.AvatarState;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
+
+/**
+ * Turns the game states broadcast for each match into a stream of sequenced
+ * {@link GameStateFrame}s: a keyframe first, then deltas against the previous
+ * state, with a periodic keyframe every
+ * {@code app.broadcast.keyframe-interval} frames and one on demand after a
+ * client subscribes.
+ *
+ * <p>
+ * Each match stream gets a random id when it is created, so a client that
+ * receives frames from a stream it did not start from (the match moved to
+ * another node, or the stream was dropped while idle) ignores the deltas until
+ * the next keyframe. A delta can only set fields; when a field goes back to
+ * {@code null} (the vote options after a vote, for instance) a keyframe is sent
+ * instead.
+ */
+@Component
+public class GameStateDeltaEncoder {
+
+    private final BroadcastProperties properties;
+    private final ConcurrentMap<String, DeltaStream> streams = new ConcurrentHashMap<>();
+    private volatile long lastSweepAt = System.currentTimeMillis();
+
+    public GameStateDeltaEncoder(BroadcastProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isDeltaEnabled();
+    }
+
+    /**
+     * Encodes the next frame of a match and hands it to {@code sink} while the
+     * stream is still locked, so frames of one match are published in sequence
+     * order.
+     *
+     * @param code  match identifier
+     * @param state full game state to encode
+     * @param sink  publishes the frame
+     */
+    public void encode(String code, GameState state, Consumer<GameStateFrame> sink) {
+        long now = System.currentTimeMillis();
+        sweepIdle(now);
+        DeltaStream stream = streams.computeIfAbsent(code, c -> new DeltaStream());
+        synchronized (stream) {
+            sink.accept(stream.next(state, properties.getKeyframeInterval()));
+            stream.lastFrameAt = now;
+        }
+        if (MatchStatus.FINISHED.name().equals(state.getStatus())) {
+            streams.remove(code, stream);
+        }
+    }
+
+    /**
+     * Makes the next frame of the match a keyframe, typically because a client
+     * just subscribed to its topic.
+     *
+     * @param code match identifier
+     */
+    public void requestKeyframe(String code) {
+        DeltaStream stream = streams.get(code);
+        if (stream != null) {
+            stream.keyframeRequested = true;
+        }
+    }
+
+    /**
+     * @return number of matches with a live stream
+     */
+    int streamCount() {
+        return streams.size();
+    }
+
+    private void sweepIdle(long now) {
+        long idle = properties.getStreamIdleMillis();
+        if (now - lastSweepAt < idle) {
+            return;
+        }
+        lastSweepAt = now;
+        streams.values().removeIf(stream -> now - stream.lastFrameAt >= idle);
+    }
+
+    private static final class DeltaStream {
+
+        private final String id = UUID.randomUUID().toString().substring(0, 8);
+        private long seq;
+        private int sinceKeyframe;
+        private GameState previous;
+        private volatile boolean keyframeRequested;
+        private volatile long lastFrameAt = System.currentTimeMillis();
+
+        private GameStateFrame next(GameState state, int keyframeInterval) {
+            seq++;
+            GameStateFrame frame = null;
+            if (previous != null && !keyframeRequested && sinceKeyframe < keyframeInterval) {
+                frame = diff(previous, state, id, seq);
+            }
+            if (frame == null) {
+                frame = GameStateFrame.keyframe(id, seq, state);
+                keyframeRequested = false;
+                sinceKeyframe = 0;
+            } else {
+                sinceKeyframe++;
+            }
+            previous = state;
+            return frame;
+        }
+    }
+
+    /**
+     * Builds the delta between two consecutive states.
+     *
+     * @return the delta, or {@code null} when it cannot be expressed and a
+     *         keyframe must be sent
+     */
+    static GameStateFrame diff(GameState before, GameState after, String stream, long seq) {
+        if (!sameStatics(before, after)
+                || cleared(before.getStatus(), after.getStatus())
+                || cleared(before.getWinnerMessage(), after.getWinnerMessage())
+                || cleared(before.getVoteOptions(), after.getVoteOptions())
+                || cleared(before.getLastVoteResult(), after.getLastVoteResult())
+                || droppedAcks(before.getInputAcks(), after.getInputAcks())) {
+            return null;
+        }
+        GameStateFrame frame = GameStateFrame.delta(stream, seq, after);
+        if (before.getTimerSeconds() != after.getTimerSeconds()) {
+            frame.setTimerSeconds(after.getTimerSeconds());
+        }
+        if (Double.compare(before.getFuelPercentage(), after.getFuelPercentage()) != 0) {
+            frame.setFuelPercentage(after.getFuelPercentage());
+        }
+        if (!Objects.equals(before.getStatus(), after.getStatus())) {
+            frame.setStatus(after.getStatus());
+        }
+        if (!Objects.equals(before.getWinnerMessage(), after.getWinnerMessage())) {
+            frame.setWinnerMessage(after.getWinnerMessage());
+        }
+        if (before.isFuelWindowOpen() != after.isFuelWindowOpen()) {
+            frame.setFuelWindowOpen(after.isFuelWindowOpen());
+        }
+        if (before.getFuelWindowSecondsRemaining() != after.getFuelWindowSecondsRemaining()) {
+            frame.setFuelWindowSecondsRemaining(after.getFuelWindowSecondsRemaining());
+        }
+        if (before.isVotingActive() != after.isVotingActive()) {
+            frame.setVotingActive(after.isVotingActive());
+        }
+        if (before.getVoteEndsAtEpochMs() != after.getVoteEndsAtEpochMs()) {
+            frame.setVoteEndsAtEpochMs(after.getVoteEndsAtEpochMs());
+        }
+        if (!sameAvatars(before.getVoteOptions(), after.getVoteOptions())) {
+            frame.setVoteOptions(after.getVoteOptions());
+        }
+        // a new vote result always comes with a new publication time
+        if (before.getLastVoteResultEpochMs() != after.getLastVoteResultEpochMs()
+                || (before.getLastVoteResult() == null) != (after.getLastVoteResult() == null)) {
+            frame.setLastVoteResult(after.getLastVoteResult());
+            frame.setLastVoteResultEpochMs(after.getLastVoteResultEpochMs());
+        }
+        frame.setInputAcks(changedAcks(before.getInputAcks(), after.getInputAcks()));
+        return diffAvatars(before.getAvatars(), after.getAvatars(), frame) ? frame : null;
+    }
+
+    private static Map<String, Long> changedAcks(Map<String, Long> before, Map<String, Long> after) {
+        if (after == null) {
+            return null;
+        }
+        Map<String, Long> changed = null;
+        for (Map.Entry<String, Long> entry : after.entrySet()) {
+            if (before == null || !Objects.equals(before.get(entry.getKey()), entry.getValue())) {
+                if (changed == null) {
+                    changed = new HashMap<>();
+                }
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    private static boolean droppedAcks(Map<String, Long> before, Map<String, Long> after) {
+        if (before == null || before.isEmpty()) {
+            return false;
+        }
+        return after == null || !after.keySet().containsAll(before.keySet());
+    }
+
+    private static boolean diffAvatars(List<AvatarState> before, List<AvatarState> after, GameStateFrame frame) {
+        Map<Long, AvatarState> previous = new HashMap<>();
+        if (before != null) {
+            for (AvatarState avatar : before) {
+                previous.put(avatar.getId(), avatar);
+            }
+        }
+        List<AvatarDelta> changed = new ArrayList<>();
+        if (after != null) {
+            for (AvatarState avatar : after) {
+                AvatarState old = previous.remove(avatar.getId());
+                if (old == null) {
+                    changed.add(AvatarDelta.full(avatar));
+                    continue;
+                }
+                if (cleared(old.getType(), avatar.getType())
+                        || cleared(old.getOwnerUsername(), avatar.getOwnerUsername())
+                        || cleared(old.getDisplayName(), avatar.getDisplayName())) {
+                    return false;
+                }
+                AvatarDelta delta = diffAvatar(old, avatar);
+                if (delta != null) {
+                    changed.add(delta);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            frame.setAvatars(changed);
+        }
+        if (!previous.isEmpty()) {
+            frame.setRemovedAvatars(new ArrayList<>(previous.keySet()));
+        }
+        return true;
+    }
+
+    private static AvatarDelta diffAvatar(AvatarState before, AvatarState after) {
+        AvatarDelta delta = new AvatarDelta();
+        boolean changed = false;
+        if (Double.compare(before.getX(), after.getX()) != 0) {
+            delta.setX(after.getX());
+            changed = true;
+        }
+        if (Double.compare(before.getY(), after.getY()) != 0) {
+            delta.setY(after.getY());
+            changed = true;
+        }
+        if (before.isAlive() != after.isAlive()) {
+            delta.setAlive(after.isAlive());
+            changed = true;
+        }
+        if (before.isInfiltrator() != after.isInfiltrator()) {
+            delta.setInfiltrator(after.isInfiltrator());
+            changed = true;
+        }
+        if (!Objects.equals(before.getType(), after.getType())) {
+            delta.setType(after.getType());
+            changed = true;
+        }
+        if (!Objects.equals(before.getOwnerUsername(), after.getOwnerUsername())) {
+            delta.setOwnerUsername(after.getOwnerUsername());
+            changed = true;
+        }
+        if (!Objects.equals(before.getDisplayName(), after.getDisplayName())) {
+            delta.setDisplayName(after.getDisplayName());
+            changed = true;
+        }
+        if (!changed) {
+            return null;
+        }
+        delta.setId(after.getId());
+        return delta;
+    }
+
+    private static boolean sameStatics(GameState before, GameState after) {
+        GameState.Island a = before.getIsland();
+        GameState.Island b = after.getIsland();
+        if ((a == null) != (b == null) || (a != null && (a.getCx() != b.getCx() || a.getCy() != b.getCy()
+                || a.getRadius() != b.getRadius()))) {
+            return false;
+        }
+        GameState.Boat c = before.getBoat();
+        GameState.Boat d = after.getBoat();
+        return (c == null) == (d == null) && (c == null || (c.getX() == d.getX() && c.getY() == d.getY()
+                && c.getInteractionRadius() == d.getInteractionRadius()));
+    }
+
+    private static boolean sameAvatars(List<AvatarState> before, List<AvatarState> after) {
+        if (before == null || after == null) {
+            return before == after;
+        }
+        if (before.size() != after.size()) {
+            return false;
+        }
+        for (int i = 0; i < before.size(); i++) {
+            AvatarState a = before.get(i);
+            if (!Objects.equals(a.getId(), after.get(i).getId()) || diffAvatar(a, after.get(i)) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean cleared(Object before, Object after) {
+        return before != null && after == null;
+    }
+}
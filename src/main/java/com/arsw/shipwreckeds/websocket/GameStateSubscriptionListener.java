@@ -0,0 +1,66 @@
+package com.arsw.shipwreckeds.websocket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+
+/**
+ * Asks for a keyframe whenever a client subscribes to {@code /topic/game/{code}}
+ * so it does not wait for the next periodic keyframe before it can render.
+ * The request goes to the node that owns the match, since that is the node
+ * encoding its frames.
+ */
+@Component
+public class GameStateSubscriptionListener {
+
+    static final String CMD_KEYFRAME = "keyframe";
+    private static final String GAME_TOPIC = "/topic/game/";
+
+    private final GameStateDeltaEncoder deltaEncoder;
+    private final MatchOwnership ownership;
+    private final MatchCommandBus commandBus;
+
+    public GameStateSubscriptionListener(GameStateDeltaEncoder deltaEncoder, MatchOwnership ownership,
+            MatchCommandBus commandBus) {
+        this.deltaEncoder = deltaEncoder;
+        this.ownership = ownership;
+        this.commandBus = commandBus;
+        commandBus.registerHandler(CMD_KEYFRAME, Object.class, (code, ignored) -> {
+            deltaEncoder.requestKeyframe(code);
+            return null;
+        });
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        if (!deltaEncoder.isEnabled()) {
+            return;
+        }
+        String code = matchCodeOf(SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders()));
+        if (code == null) {
+            return;
+        }
+        String owner = ownership.remoteOwner(code);
+        if (owner != null) {
+            commandBus.send(owner, CMD_KEYFRAME, code, null);
+        } else {
+            deltaEncoder.requestKeyframe(code);
+        }
+    }
+
+    /**
+     * @param destination STOMP destination of a subscription
+     * @return match code when it is the game state topic, otherwise {@code null}
+     */
+    static String matchCodeOf(String destination) {
+        if (destination == null || !destination.startsWith(GAME_TOPIC)) {
+            return null;
+        }
+        String code = destination.substring(GAME_TOPIC.length());
+        return code.isEmpty() || code.indexOf('/') >= 0 ? null : code;
+    }
+}
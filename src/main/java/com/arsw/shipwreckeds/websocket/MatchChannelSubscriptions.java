@@ -0,0 +1,128 @@
+package com.arsw.shipwreckeds.websocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.AbstractSubProtocolEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+
+/**
+ * Listens to the Redis channel of a match only while a STOMP session of this
+ * node is subscribed to one of its lobby or game topics, so a node relays the
+ * events of its own players' matches instead of every event of the cluster.
+ *
+ * <p>
+ * Subscriptions are counted per match from the session subscribe, unsubscribe
+ * and disconnect events: the first one adds {@link DistributedWsBroadcaster}
+ * as listener of {@link DistributedWsBroadcaster#matchChannel(String)} and the
+ * last one to go removes it. Events published before the Redis subscription
+ * is in place are not relayed, and since {@link MatchEventHistory} only
+ * records relayed events, a node keeps no history of a match while none of
+ * its sessions follows it. The catch-up endpoint then answers with a snapshot
+ * of the match as stored instead of the missed events (see
+ * {@code GameCatchUpController}).
+ */
+@Component
+public class MatchChannelSubscriptions {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchChannelSubscriptions.class);
+
+    private final RedisMessageListenerContainer container;
+    private final DistributedWsBroadcaster broadcaster;
+    private final BroadcastProperties properties;
+    private final Map<String, Map<String, String>> codesBySession = new ConcurrentHashMap<>();
+    // guarded by this, together with the listener changes, so a match is never left half subscribed
+    private final Map<String, Integer> subscribers = new HashMap<>();
+
+    public MatchChannelSubscriptions(RedisMessageListenerContainer container,
+            DistributedWsBroadcaster broadcaster, BroadcastProperties properties) {
+        this.container = container;
+        this.broadcaster = broadcaster;
+        this.properties = properties;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        if (!properties.isPerMatchChannels()) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = accessorOf(event);
+        String code = DistributedWsBroadcaster.matchOf(accessor.getDestination());
+        if (code == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String previous = codesBySession.computeIfAbsent(accessor.getSessionId(), s -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), code);
+        if (previous != null) {
+            release(previous);
+        }
+        acquire(code);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = accessorOf(event);
+        Map<String, String> codes = accessor.getSessionId() != null ? codesBySession.get(accessor.getSessionId())
+                : null;
+        String code = codes != null && accessor.getSubscriptionId() != null
+                ? codes.remove(accessor.getSubscriptionId())
+                : null;
+        if (code != null) {
+            release(code);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> codes = codesBySession.remove(event.getSessionId());
+        if (codes != null) {
+            codes.values().forEach(this::release);
+        }
+    }
+
+    /**
+     * @param code match identifier
+     * @return whether this node listens to the channel of the match
+     */
+    public synchronized boolean isListening(String code) {
+        return subscribers.containsKey(code);
+    }
+
+    private synchronized void acquire(String code) {
+        int count = subscribers.merge(code, 1, Integer::sum);
+        if (count == 1) {
+            container.addMessageListener(broadcaster, new ChannelTopic(DistributedWsBroadcaster.matchChannel(code)));
+            LOGGER.debug("Listening to the events of match {}", code);
+        }
+    }
+
+    private synchronized void release(String code) {
+        Integer count = subscribers.get(code);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            subscribers.put(code, count - 1);
+            return;
+        }
+        subscribers.remove(code);
+        container.removeMessageListener(broadcaster, new ChannelTopic(DistributedWsBroadcaster.matchChannel(code)));
+        LOGGER.debug("Stopped listening to the events of match {}", code);
+    }
+
+    private static SimpMessageHeaderAccessor accessorOf(AbstractSubProtocolEvent event) {
+        return SimpMessageHeaderAccessor.wrap(event.getMessage());
+    }
+}
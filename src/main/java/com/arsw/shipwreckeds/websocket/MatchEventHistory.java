@@ -0,0 +1,275 @@
+package com.arsw.shipwreckeds.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.dto.GameCatchUp;
+import com.arsw.shipwreckeds.model.dto.ReplayedEvent;
+
+/**
+ * Sequences the events of every match topic ({@code /topic/game/{code}} and
+ * its sub-topics) and keeps the most recent ones in memory, so a client that
+ * reconnects or subscribes late can ask for what it missed instead of reading
+ * the whole match over REST.
+ *
+ * <p>
+ * The node publishing an event stamps it with the stream of the match on that
+ * node and the next sequence number; every node records the events it relays
+ * from Redis, so any node can answer a catch-up. A stream belongs to one
+ * publishing node: when the match moves, or its history was dropped while
+ * idle, a new stream starts and clients get a snapshot instead of a gap.
+ *
+ * <p>
+ * Each match keeps a ring of {@code app.broadcast.history-size} events plus
+ * the latest snapshot (a full game state or a keyframe), which is what a client
+ * whose gap is too old starts again from. Payloads are kept as the JSON bytes
+ * that were relayed and only turned into text when a client catches up.
+ */
+@Component
+public class MatchEventHistory {
+
+    /** STOMP header carrying the stream of a sequenced event. */
+    public static final String STREAM_HEADER = "match-stream";
+    /** STOMP header carrying the sequence number of a sequenced event. */
+    public static final String SEQ_HEADER = "match-seq";
+
+    private static final String GAME_TOPIC = "/topic/game/";
+
+    private final BroadcastProperties properties;
+    private final ConcurrentMap<String, Sequence> sequences = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, History> histories = new ConcurrentHashMap<>();
+    private volatile long lastSweepAt = System.currentTimeMillis();
+
+    public MatchEventHistory(BroadcastProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Stamp of a sequenced event.
+     *
+     * @param stream stream of the match on the publishing node
+     * @param seq    position of the event in the stream, starting at 1
+     */
+    public record Stamp(String stream, long seq) {
+    }
+
+    /**
+     * Stamps an event about to be published and hands the stamp to
+     * {@code publisher} while the match sequence is still locked, so events of
+     * one match reach Redis in sequence order. Destinations outside the match
+     * topics get a {@code null} stamp.
+     *
+     * @param destination STOMP destination of the event
+     * @param publisher   publishes the event with its stamp
+     */
+    public void publishSequenced(String destination, Consumer<Stamp> publisher) {
+        String code = matchOf(destination);
+        if (code == null || properties.getHistorySize() < 1) {
+            publisher.accept(null);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        sweepIdle(now);
+        Sequence sequence = sequences.computeIfAbsent(code, c -> new Sequence());
+        synchronized (sequence) {
+            sequence.lastUsedAt = now;
+            publisher.accept(new Stamp(sequence.id, ++sequence.seq));
+        }
+    }
+
+    /**
+     * Remembers an event relayed to the local sessions.
+     *
+     * @param destination STOMP destination of the event
+     * @param stamp       stamp given by the publishing node; unstamped events
+     *                    are not kept
+     * @param payload     UTF-8 JSON payload
+     * @param snapshot    whether the payload is a full game state or a keyframe
+     */
+    public void record(String destination, Stamp stamp, byte[] payload, boolean snapshot) {
+        String code = matchOf(destination);
+        int size = properties.getHistorySize();
+        if (code == null || stamp == null || stamp.stream() == null || payload == null || size < 1) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        sweepIdle(now);
+        History history = histories.computeIfAbsent(code, c -> new History(size));
+        synchronized (history) {
+            history.lastUsedAt = now;
+            history.add(new Entry(stamp.seq(), destination, payload,
+                    snapshot && GameStateSubscriptionListener.matchCodeOf(destination) != null), stamp.stream());
+        }
+    }
+
+    /**
+     * Builds what a client needs to catch up with a match.
+     *
+     * @param code    match identifier
+     * @param stream  stream of the last event the client saw; may be
+     *                {@code null}
+     * @param lastSeq sequence number of that event; may be {@code null}
+     * @return the missed events when the gap is still in memory, otherwise the
+     *         latest snapshot and what followed it ({@code complete = false};
+     *         no events at all when even that is gone)
+     */
+    public GameCatchUp catchUp(String code, String stream, Long lastSeq) {
+        History history = code != null ? histories.get(code) : null;
+        if (history == null) {
+            return new GameCatchUp(code, null, 0L, false, List.of());
+        }
+        synchronized (history) {
+            history.lastUsedAt = System.currentTimeMillis();
+            long oldest = history.oldestSeq();
+            boolean gapKept = stream != null && stream.equals(history.stream) && lastSeq != null
+                    && lastSeq >= oldest - 1 && lastSeq <= history.latestSeq();
+            if (gapKept) {
+                return new GameCatchUp(code, history.stream, history.latestSeq(), true,
+                        replay(history.since(lastSeq)));
+            }
+            Entry snapshot = history.snapshot;
+            List<Entry> events = new ArrayList<>();
+            // the snapshot only helps when everything after it is still in the ring
+            if (snapshot != null && snapshot.seq() >= oldest - 1) {
+                events.add(snapshot);
+                events.addAll(history.since(snapshot.seq()));
+            }
+            return new GameCatchUp(code, history.stream, history.latestSeq(), false, replay(events));
+        }
+    }
+
+    /**
+     * @param destination STOMP destination
+     * @return match code of a match topic, otherwise {@code null}; the node-local
+     *         binary topic is not a match topic
+     */
+    static String matchOf(String destination) {
+        if (destination == null || !destination.startsWith(GAME_TOPIC)) {
+            return null;
+        }
+        int end = destination.indexOf('/', GAME_TOPIC.length());
+        String code = destination.substring(GAME_TOPIC.length(), end < 0 ? destination.length() : end);
+        if (code.isEmpty() || destination.equals(BinarySnapshotSubscriptions.binaryDestination(code))) {
+            return null;
+        }
+        return code;
+    }
+
+    /**
+     * @return number of matches with a recorded history
+     */
+    int historyCount() {
+        return histories.size();
+    }
+
+    private static List<ReplayedEvent> replay(List<Entry> entries) {
+        List<ReplayedEvent> events = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            events.add(new ReplayedEvent(entry.seq(), entry.destination(),
+                    new String(entry.payload(), StandardCharsets.UTF_8)));
+        }
+        return events;
+    }
+
+    private static boolean isGameState(Entry entry) {
+        return GameStateSubscriptionListener.matchCodeOf(entry.destination()) != null;
+    }
+
+    /** An event as relayed: its JSON body is kept as bytes. */
+    private record Entry(long seq, String destination, byte[] payload, boolean snapshot) {
+    }
+
+    private void sweepIdle(long now) {
+        long idle = properties.getStreamIdleMillis();
+        if (now - lastSweepAt < idle) {
+            return;
+        }
+        lastSweepAt = now;
+        sequences.values().removeIf(sequence -> now - sequence.lastUsedAt >= idle);
+        histories.values().removeIf(history -> now - history.lastUsedAt >= idle);
+    }
+
+    private static final class Sequence {
+
+        private final String id = UUID.randomUUID().toString().substring(0, 8);
+        private long seq;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+    }
+
+    private static final class History {
+
+        private final Entry[] ring;
+        private int head;
+        private int count;
+        private String stream;
+        private Entry snapshot;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        private History(int size) {
+            this.ring = new Entry[size];
+        }
+
+        private void add(Entry event, String eventStream) {
+            if (!eventStream.equals(stream)) {
+                // a new publisher took the match over: its numbering starts again
+                stream = eventStream;
+                count = 0;
+                snapshot = null;
+            } else if (count > 0 && event.seq() <= latestSeq()) {
+                return;
+            }
+            head = (head + 1) % ring.length;
+            ring[head] = event;
+            count = Math.min(count + 1, ring.length);
+            if (event.snapshot()) {
+                snapshot = event;
+            }
+        }
+
+        private long latestSeq() {
+            return count > 0 ? ring[head].seq() : 0L;
+        }
+
+        private long oldestSeq() {
+            return count > 0 ? ring[(head - count + 1 + ring.length) % ring.length].seq() : 1L;
+        }
+
+        /**
+         * Events after {@code seq} in order. Game states superseded by a later
+         * snapshot of the gap are left out; other events are all kept.
+         */
+        private List<Entry> since(long seq) {
+            List<Entry> gap = new ArrayList<>();
+            int lastSnapshot = -1;
+            for (int i = count - 1; i >= 0; i--) {
+                Entry event = ring[(head - i + ring.length) % ring.length];
+                if (event.seq() <= seq) {
+                    continue;
+                }
+                if (event.snapshot()) {
+                    lastSnapshot = gap.size();
+                }
+                gap.add(event);
+            }
+            if (lastSnapshot <= 0) {
+                return gap;
+            }
+            List<Entry> trimmed = new ArrayList<>(gap.size());
+            for (int i = 0; i < gap.size(); i++) {
+                Entry event = gap.get(i);
+                if (i >= lastSnapshot || !isGameState(event)) {
+                    trimmed.add(event);
+                }
+            }
+            return trimmed;
+        }
+    }
+}
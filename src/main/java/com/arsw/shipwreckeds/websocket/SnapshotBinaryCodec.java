@@ -0,0 +1,707 @@
+package com.arsw.shipwreckeds.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.MimeType;
+
+import com.arsw.shipwreckeds.model.dto.AvatarDelta;
+import com.arsw.shipwreckeds.model.dto.AvatarState;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
+import com.arsw.shipwreckeds.model.dto.VoteResult;
+
+/**
+ * Compact binary encoding of the game topic payloads ({@link GameState} and
+ * {@link GameStateFrame}), negotiated by subscribing with
+ * {@link #CONTENT_TYPE} as {@code content-type}.
+ *
+ * <p>
+ * Integers are LEB128 varints (zig-zag for signed values). Coordinates,
+ * radiuses and the fuel percentage are fixed-point with two decimals. Avatar
+ * types are a two-bit enum. Every other string (match code, usernames, display
+ * names, status, messages) is an index into a string table kept per match
+ * and per receiver: each message starts with {@code tableBase} and the entries
+ * added since then, and a {@code tableBase} of 0 replaces the whole table.
+ * A receiver whose table is shorter than {@code tableBase} drops the message;
+ * the encoder sends the whole table again as soon as anyone subscribes.
+ *
+ * <pre>
+ * message  = version:u8 kind:u8 tableBase:varint count:varint string*count body
+ * kind     = 0 full state | 1 keyframe | 2 delta
+ * keyframe = stream:ref seq:varlong state
+ * delta    = stream:ref seq:varlong code:ref timestamp:varlong mask:varint
+ *            fields... avatarDeltas removedIds
+ * ref      = 0 for null, otherwise table index + 1
+ * </pre>
+ */
+public final class SnapshotBinaryCodec {
+
+    /**
+     * Content type requested on {@code SUBSCRIBE} and set on every binary
+     * {@code MESSAGE}. It is an {@code application/octet-stream} subtype so the
+     * STOMP handler sends it as a binary WebSocket frame.
+     */
+    public static final MimeType CONTENT_TYPE = MimeType.valueOf("application/octet-stream;codec=snapshot-v1");
+
+    static final int VERSION = 1;
+    static final int KIND_STATE = 0;
+    static final int KIND_KEYFRAME = 1;
+    static final int KIND_DELTA = 2;
+    private static final double SCALE = 100.0;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_HUMAN = 1;
+    private static final int TYPE_NPC = 2;
+    private static final int TYPE_OTHER = 3;
+    private static final int AVATAR_INFILTRATOR = 1 << 2;
+    private static final int AVATAR_ALIVE = 1 << 3;
+
+    private static final int A_TYPE = 1;
+    private static final int A_OWNER = 1 << 1;
+    private static final int A_X = 1 << 2;
+    private static final int A_Y = 1 << 3;
+    private static final int A_INFILTRATOR = 1 << 4;
+    private static final int A_ALIVE = 1 << 5;
+    private static final int A_DISPLAY = 1 << 6;
+    private static final int A_INFILTRATOR_VALUE = 1 << 7;
+    private static final int A_ALIVE_VALUE = 1 << 8;
+
+    private static final int F_TIMER = 1;
+    private static final int F_FUEL = 1 << 1;
+    private static final int F_STATUS = 1 << 2;
+    private static final int F_WINNER = 1 << 3;
+    private static final int F_FUEL_WINDOW = 1 << 4;
+    private static final int F_FUEL_WINDOW_SECONDS = 1 << 5;
+    private static final int F_VOTING = 1 << 6;
+    private static final int F_VOTE_ENDS = 1 << 7;
+    private static final int F_VOTE_OPTIONS = 1 << 8;
+    private static final int F_VOTE_RESULT = 1 << 9;
+    private static final int F_FUEL_WINDOW_VALUE = 1 << 10;
+    private static final int F_VOTING_VALUE = 1 << 11;
+    private static final int F_INPUT_ACKS = 1 << 12;
+
+    private SnapshotBinaryCodec() {
+    }
+
+    /**
+     * Encodes a game topic payload.
+     *
+     * @param payload   {@link GameState} or {@link GameStateFrame}
+     * @param table     string table of the match on this node
+     * @param fullTable whether to resend every table entry
+     * @return encoded message
+     * @throws IllegalArgumentException if the payload is of another type
+     */
+    public static byte[] encode(Object payload, StringTable table, boolean fullTable) {
+        table.trim();
+        Sink body = new Sink(256);
+        int kind;
+        if (payload instanceof GameState state) {
+            kind = KIND_STATE;
+            writeState(body, state, table);
+        } else if (payload instanceof GameStateFrame frame) {
+            kind = frame.isKeyframe() ? KIND_KEYFRAME : KIND_DELTA;
+            body.ref(frame.getStream(), table);
+            body.varlong(frame.getSeq());
+            if (frame.isKeyframe()) {
+                writeState(body, frame.getState(), table);
+            } else {
+                writeDelta(body, frame, table);
+            }
+        } else {
+            throw new IllegalArgumentException("Tipo de snapshot no soportado: " + payload);
+        }
+        int base = fullTable ? 0 : table.sent;
+        Sink out = new Sink(body.length + 16);
+        out.u8(VERSION);
+        out.u8(kind);
+        out.varint(base);
+        out.varint(table.entries.size() - base);
+        for (int i = base; i < table.entries.size(); i++) {
+            out.string(table.entries.get(i));
+        }
+        out.bytes(body.data, body.length);
+        table.sent = table.entries.size();
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a message produced by {@link #encode}.
+     *
+     * @param data  encoded message
+     * @param table strings received so far for the match, updated in place
+     * @return {@link GameState} or {@link GameStateFrame}
+     * @throws IllegalStateException if the table lacks entries the message
+     *                               relies on
+     */
+    public static Object decode(byte[] data, List<String> table) {
+        Source in = new Source(data);
+        int version = in.u8();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Versión de snapshot desconocida: " + version);
+        }
+        int kind = in.u8();
+        int base = in.varint();
+        int added = in.varint();
+        if (base == 0) {
+            table.clear();
+        } else if (base != table.size()) {
+            throw new IllegalStateException("Faltan entradas de la tabla de textos");
+        }
+        for (int i = 0; i < added; i++) {
+            table.add(in.string());
+        }
+        if (kind == KIND_STATE) {
+            return readState(in, table);
+        }
+        String stream = in.ref(table);
+        long seq = in.varlong();
+        if (kind == KIND_KEYFRAME) {
+            return GameStateFrame.keyframe(stream, seq, readState(in, table));
+        }
+        return readDelta(in, table, stream, seq);
+    }
+
+    private static void writeState(Sink out, GameState state, StringTable table) {
+        out.ref(state.getCode(), table);
+        out.varlong(state.getTimestamp());
+        out.zigzag(state.getTimerSeconds());
+        GameState.Island island = state.getIsland();
+        out.u8(island != null ? 1 : 0);
+        if (island != null) {
+            out.fixed(island.getCx());
+            out.fixed(island.getCy());
+            out.fixed(island.getRadius());
+        }
+        writeAvatars(out, state.getAvatars(), table);
+        out.fixed(state.getFuelPercentage());
+        out.ref(state.getStatus(), table);
+        GameState.Boat boat = state.getBoat();
+        out.u8(boat != null ? 1 : 0);
+        if (boat != null) {
+            out.fixed(boat.getX());
+            out.fixed(boat.getY());
+            out.fixed(boat.getInteractionRadius());
+        }
+        out.ref(state.getWinnerMessage(), table);
+        out.u8((state.isFuelWindowOpen() ? 1 : 0) | (state.isVotingActive() ? 2 : 0));
+        out.zigzag(state.getFuelWindowSecondsRemaining());
+        out.varlong(state.getVoteEndsAtEpochMs());
+        writeAvatars(out, state.getVoteOptions(), table);
+        writeVoteResult(out, state.getLastVoteResult(), table);
+        out.varlong(state.getLastVoteResultEpochMs());
+        writeAcks(out, state.getInputAcks(), table);
+    }
+
+    private static GameState readState(Source in, List<String> table) {
+        GameState state = new GameState();
+        state.setCode(in.ref(table));
+        state.setTimestamp(in.varlong());
+        state.setTimerSeconds((int) in.zigzag());
+        if (in.u8() == 1) {
+            state.setIsland(new GameState.Island(in.fixed(), in.fixed(), in.fixed()));
+        }
+        state.setAvatars(readAvatars(in, table));
+        state.setFuelPercentage(in.fixed());
+        state.setStatus(in.ref(table));
+        if (in.u8() == 1) {
+            state.setBoat(new GameState.Boat(in.fixed(), in.fixed(), in.fixed()));
+        }
+        state.setWinnerMessage(in.ref(table));
+        int flags = in.u8();
+        state.setFuelWindowOpen((flags & 1) != 0);
+        state.setVotingActive((flags & 2) != 0);
+        state.setFuelWindowSecondsRemaining((int) in.zigzag());
+        state.setVoteEndsAtEpochMs(in.varlong());
+        state.setVoteOptions(readAvatars(in, table));
+        state.setLastVoteResult(readVoteResult(in, table));
+        state.setLastVoteResultEpochMs(in.varlong());
+        state.setInputAcks(readAcks(in, table));
+        return state;
+    }
+
+    private static void writeDelta(Sink out, GameStateFrame frame, StringTable table) {
+        out.ref(frame.getCode(), table);
+        out.varlong(frame.getTimestamp());
+        int mask = 0;
+        mask |= frame.getTimerSeconds() != null ? F_TIMER : 0;
+        mask |= frame.getFuelPercentage() != null ? F_FUEL : 0;
+        mask |= frame.getStatus() != null ? F_STATUS : 0;
+        mask |= frame.getWinnerMessage() != null ? F_WINNER : 0;
+        mask |= frame.getFuelWindowOpen() != null ? F_FUEL_WINDOW : 0;
+        mask |= Boolean.TRUE.equals(frame.getFuelWindowOpen()) ? F_FUEL_WINDOW_VALUE : 0;
+        mask |= frame.getFuelWindowSecondsRemaining() != null ? F_FUEL_WINDOW_SECONDS : 0;
+        mask |= frame.getVotingActive() != null ? F_VOTING : 0;
+        mask |= Boolean.TRUE.equals(frame.getVotingActive()) ? F_VOTING_VALUE : 0;
+        mask |= frame.getVoteEndsAtEpochMs() != null ? F_VOTE_ENDS : 0;
+        mask |= frame.getVoteOptions() != null ? F_VOTE_OPTIONS : 0;
+        mask |= frame.getLastVoteResultEpochMs() != null ? F_VOTE_RESULT : 0;
+        mask |= frame.getInputAcks() != null ? F_INPUT_ACKS : 0;
+        out.varint(mask);
+        if ((mask & F_TIMER) != 0) {
+            out.zigzag(frame.getTimerSeconds());
+        }
+        if ((mask & F_FUEL) != 0) {
+            out.fixed(frame.getFuelPercentage());
+        }
+        if ((mask & F_STATUS) != 0) {
+            out.ref(frame.getStatus(), table);
+        }
+        if ((mask & F_WINNER) != 0) {
+            out.ref(frame.getWinnerMessage(), table);
+        }
+        if ((mask & F_FUEL_WINDOW_SECONDS) != 0) {
+            out.zigzag(frame.getFuelWindowSecondsRemaining());
+        }
+        if ((mask & F_VOTE_ENDS) != 0) {
+            out.varlong(frame.getVoteEndsAtEpochMs());
+        }
+        if ((mask & F_VOTE_OPTIONS) != 0) {
+            writeAvatars(out, frame.getVoteOptions(), table);
+        }
+        if ((mask & F_VOTE_RESULT) != 0) {
+            writeVoteResult(out, frame.getLastVoteResult(), table);
+            out.varlong(frame.getLastVoteResultEpochMs());
+        }
+        if ((mask & F_INPUT_ACKS) != 0) {
+            writeAcks(out, frame.getInputAcks(), table);
+        }
+        List<AvatarDelta> avatars = frame.getAvatars() != null ? frame.getAvatars() : List.of();
+        out.varint(avatars.size());
+        for (AvatarDelta avatar : avatars) {
+            writeAvatarDelta(out, avatar, table);
+        }
+        List<Long> removed = frame.getRemovedAvatars() != null ? frame.getRemovedAvatars() : List.of();
+        out.varint(removed.size());
+        for (Long id : removed) {
+            out.zigzag(id);
+        }
+    }
+
+    private static GameStateFrame readDelta(Source in, List<String> table, String stream, long seq) {
+        GameState header = new GameState();
+        header.setCode(in.ref(table));
+        header.setTimestamp(in.varlong());
+        GameStateFrame frame = GameStateFrame.delta(stream, seq, header);
+        int mask = in.varint();
+        if ((mask & F_TIMER) != 0) {
+            frame.setTimerSeconds((int) in.zigzag());
+        }
+        if ((mask & F_FUEL) != 0) {
+            frame.setFuelPercentage(in.fixed());
+        }
+        if ((mask & F_STATUS) != 0) {
+            frame.setStatus(in.ref(table));
+        }
+        if ((mask & F_WINNER) != 0) {
+            frame.setWinnerMessage(in.ref(table));
+        }
+        if ((mask & F_FUEL_WINDOW) != 0) {
+            frame.setFuelWindowOpen((mask & F_FUEL_WINDOW_VALUE) != 0);
+        }
+        if ((mask & F_FUEL_WINDOW_SECONDS) != 0) {
+            frame.setFuelWindowSecondsRemaining((int) in.zigzag());
+        }
+        if ((mask & F_VOTING) != 0) {
+            frame.setVotingActive((mask & F_VOTING_VALUE) != 0);
+        }
+        if ((mask & F_VOTE_ENDS) != 0) {
+            frame.setVoteEndsAtEpochMs(in.varlong());
+        }
+        if ((mask & F_VOTE_OPTIONS) != 0) {
+            frame.setVoteOptions(readAvatars(in, table));
+        }
+        if ((mask & F_VOTE_RESULT) != 0) {
+            frame.setLastVoteResult(readVoteResult(in, table));
+            frame.setLastVoteResultEpochMs(in.varlong());
+        }
+        if ((mask & F_INPUT_ACKS) != 0) {
+            frame.setInputAcks(readAcks(in, table));
+        }
+        int changed = in.varint();
+        if (changed > 0) {
+            List<AvatarDelta> avatars = new ArrayList<>(changed);
+            for (int i = 0; i < changed; i++) {
+                avatars.add(readAvatarDelta(in, table));
+            }
+            frame.setAvatars(avatars);
+        }
+        int removed = in.varint();
+        if (removed > 0) {
+            List<Long> ids = new ArrayList<>(removed);
+            for (int i = 0; i < removed; i++) {
+                ids.add(in.zigzag());
+            }
+            frame.setRemovedAvatars(ids);
+        }
+        return frame;
+    }
+
+    private static void writeAvatars(Sink out, List<AvatarState> avatars, StringTable table) {
+        // 0 encodes a null list, n + 1 a list of n avatars
+        if (avatars == null) {
+            out.varint(0);
+            return;
+        }
+        out.varint(avatars.size() + 1);
+        for (AvatarState avatar : avatars) {
+            out.zigzag(avatar.getId() != null ? avatar.getId() : 0L);
+            int typeCode = typeCode(avatar.getType());
+            out.u8(typeCode | (avatar.isInfiltrator() ? AVATAR_INFILTRATOR : 0)
+                    | (avatar.isAlive() ? AVATAR_ALIVE : 0));
+            if (typeCode == TYPE_OTHER) {
+                out.ref(avatar.getType(), table);
+            }
+            out.ref(avatar.getOwnerUsername(), table);
+            out.ref(avatar.getDisplayName(), table);
+            out.fixed(avatar.getX());
+            out.fixed(avatar.getY());
+        }
+    }
+
+    private static List<AvatarState> readAvatars(Source in, List<String> table) {
+        int count = in.varint() - 1;
+        if (count < 0) {
+            return null;
+        }
+        List<AvatarState> avatars = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AvatarState avatar = new AvatarState();
+            avatar.setId(in.zigzag());
+            int flags = in.u8();
+            int typeCode = flags & 3;
+            avatar.setType(typeCode == TYPE_OTHER ? in.ref(table) : typeName(typeCode));
+            avatar.setInfiltrator((flags & AVATAR_INFILTRATOR) != 0);
+            avatar.setAlive((flags & AVATAR_ALIVE) != 0);
+            avatar.setOwnerUsername(in.ref(table));
+            avatar.setDisplayName(in.ref(table));
+            avatar.setX(in.fixed());
+            avatar.setY(in.fixed());
+            avatars.add(avatar);
+        }
+        return avatars;
+    }
+
+    private static void writeAvatarDelta(Sink out, AvatarDelta avatar, StringTable table) {
+        int mask = 0;
+        mask |= avatar.getType() != null ? A_TYPE : 0;
+        mask |= avatar.getOwnerUsername() != null ? A_OWNER : 0;
+        mask |= avatar.getX() != null ? A_X : 0;
+        mask |= avatar.getY() != null ? A_Y : 0;
+        mask |= avatar.getInfiltrator() != null ? A_INFILTRATOR : 0;
+        mask |= Boolean.TRUE.equals(avatar.getInfiltrator()) ? A_INFILTRATOR_VALUE : 0;
+        mask |= avatar.getAlive() != null ? A_ALIVE : 0;
+        mask |= Boolean.TRUE.equals(avatar.getAlive()) ? A_ALIVE_VALUE : 0;
+        mask |= avatar.getDisplayName() != null ? A_DISPLAY : 0;
+        out.zigzag(avatar.getId() != null ? avatar.getId() : 0L);
+        out.varint(mask);
+        if ((mask & A_TYPE) != 0) {
+            int typeCode = typeCode(avatar.getType());
+            out.u8(typeCode);
+            if (typeCode == TYPE_OTHER) {
+                out.ref(avatar.getType(), table);
+            }
+        }
+        if ((mask & A_OWNER) != 0) {
+            out.ref(avatar.getOwnerUsername(), table);
+        }
+        if ((mask & A_DISPLAY) != 0) {
+            out.ref(avatar.getDisplayName(), table);
+        }
+        if ((mask & A_X) != 0) {
+            out.fixed(avatar.getX());
+        }
+        if ((mask & A_Y) != 0) {
+            out.fixed(avatar.getY());
+        }
+    }
+
+    private static AvatarDelta readAvatarDelta(Source in, List<String> table) {
+        AvatarDelta avatar = new AvatarDelta();
+        avatar.setId(in.zigzag());
+        int mask = in.varint();
+        if ((mask & A_TYPE) != 0) {
+            int typeCode = in.u8();
+            avatar.setType(typeCode == TYPE_OTHER ? in.ref(table) : typeName(typeCode));
+        }
+        if ((mask & A_OWNER) != 0) {
+            avatar.setOwnerUsername(in.ref(table));
+        }
+        if ((mask & A_DISPLAY) != 0) {
+            avatar.setDisplayName(in.ref(table));
+        }
+        if ((mask & A_X) != 0) {
+            avatar.setX(in.fixed());
+        }
+        if ((mask & A_Y) != 0) {
+            avatar.setY(in.fixed());
+        }
+        if ((mask & A_INFILTRATOR) != 0) {
+            avatar.setInfiltrator((mask & A_INFILTRATOR_VALUE) != 0);
+        }
+        if ((mask & A_ALIVE) != 0) {
+            avatar.setAlive((mask & A_ALIVE_VALUE) != 0);
+        }
+        return avatar;
+    }
+
+    private static void writeAcks(Sink out, Map<String, Long> acks, StringTable table) {
+        // 0 encodes a null map, n + 1 a map of n entries
+        if (acks == null) {
+            out.varint(0);
+            return;
+        }
+        out.varint(acks.size() + 1);
+        for (Map.Entry<String, Long> entry : acks.entrySet()) {
+            out.ref(entry.getKey(), table);
+            out.varlong(entry.getValue() != null ? entry.getValue() : 0L);
+        }
+    }
+
+    private static Map<String, Long> readAcks(Source in, List<String> table) {
+        int count = in.varint() - 1;
+        if (count < 0) {
+            return null;
+        }
+        Map<String, Long> acks = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            acks.put(in.ref(table), in.varlong());
+        }
+        return acks;
+    }
+
+    private static void writeVoteResult(Sink out, VoteResult result, StringTable table) {
+        if (result == null) {
+            out.u8(0);
+            return;
+        }
+        out.u8(1 | (result.getCounts() != null ? 2 : 0) | (result.getExpelledId() != null ? 4 : 0));
+        if (result.getCounts() != null) {
+            out.varint(result.getCounts().size());
+            for (Map.Entry<Long, Integer> entry : result.getCounts().entrySet()) {
+                out.zigzag(entry.getKey() != null ? entry.getKey() : 0L);
+                out.zigzag(entry.getValue() != null ? entry.getValue() : 0);
+            }
+        }
+        if (result.getExpelledId() != null) {
+            out.zigzag(result.getExpelledId());
+        }
+        out.ref(result.getExpelledType(), table);
+        out.ref(result.getMessage(), table);
+        out.zigzag(result.getAbstentions());
+        out.varlong(result.getPublishedAtEpochMs());
+    }
+
+    private static VoteResult readVoteResult(Source in, List<String> table) {
+        int flags = in.u8();
+        if (flags == 0) {
+            return null;
+        }
+        VoteResult result = new VoteResult();
+        if ((flags & 2) != 0) {
+            int size = in.varint();
+            Map<Long, Integer> counts = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                counts.put(in.zigzag(), (int) in.zigzag());
+            }
+            result.setCounts(counts);
+        }
+        if ((flags & 4) != 0) {
+            result.setExpelledId(in.zigzag());
+        }
+        result.setExpelledType(in.ref(table));
+        result.setMessage(in.ref(table));
+        result.setAbstentions((int) in.zigzag());
+        result.setPublishedAtEpochMs(in.varlong());
+        return result;
+    }
+
+    private static int typeCode(String type) {
+        if (type == null) {
+            return TYPE_NULL;
+        }
+        return switch (type) {
+            case "human" -> TYPE_HUMAN;
+            case "npc" -> TYPE_NPC;
+            default -> TYPE_OTHER;
+        };
+    }
+
+    private static String typeName(int typeCode) {
+        return switch (typeCode) {
+            case TYPE_HUMAN -> "human";
+            case TYPE_NPC -> "npc";
+            default -> null;
+        };
+    }
+
+    /**
+     * Strings of one match already assigned an index on the sending side.
+     * Confined to the thread encoding the match.
+     */
+    public static final class StringTable {
+
+        private static final int MAX_ENTRIES = 1024;
+
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+        private int sent;
+
+        int size() {
+            return entries.size();
+        }
+
+        private int indexOf(String value) {
+            Integer i = index.get(value);
+            if (i == null) {
+                i = entries.size();
+                entries.add(value);
+                index.put(value, i);
+            }
+            return i;
+        }
+
+        /**
+         * Starts over once the table grows too large (a long match with many
+         * distinct messages); the next message then carries a fresh table.
+         */
+        private void trim() {
+            if (entries.size() > MAX_ENTRIES) {
+                entries.clear();
+                index.clear();
+                sent = 0;
+            }
+        }
+    }
+
+    private static final class Sink {
+
+        private byte[] data;
+        private int length;
+
+        private Sink(int capacity) {
+            data = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+
+        private void u8(int value) {
+            ensure(1);
+            data[length++] = (byte) value;
+        }
+
+        private void varint(int value) {
+            varlong(value & 0xFFFFFFFFL);
+        }
+
+        private void varlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        private void zigzag(long value) {
+            varlong((value << 1) ^ (value >> 63));
+        }
+
+        private void fixed(double value) {
+            zigzag(Math.round(value * SCALE));
+        }
+
+        private void ref(String value, StringTable table) {
+            varint(value == null ? 0 : table.indexOf(value) + 1);
+        }
+
+        private void string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            bytes(utf8, utf8.length);
+        }
+
+        private void bytes(byte[] source, int count) {
+            ensure(count);
+            System.arraycopy(source, 0, data, length, count);
+            length += count;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+    }
+
+    private static final class Source {
+
+        private final byte[] data;
+        private int position;
+
+        private Source(byte[] data) {
+            this.data = data;
+        }
+
+        private int u8() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Snapshot truncado");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        private int varint() {
+            return (int) varlong();
+        }
+
+        private long varlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = u8();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint inválido");
+        }
+
+        private long zigzag() {
+            long raw = varlong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        private double fixed() {
+            return zigzag() / SCALE;
+        }
+
+        private String ref(List<String> table) {
+            int ref = varint();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref > table.size()) {
+                throw new IllegalStateException("Faltan entradas de la tabla de textos");
+            }
+            return table.get(ref - 1);
+        }
+
+        private String string() {
+            int length = varint();
+            if (length < 0 || position + length > data.length) {
+                throw new IllegalArgumentException("Snapshot truncado");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
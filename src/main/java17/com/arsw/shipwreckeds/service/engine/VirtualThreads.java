@@ -0,0 +1,31 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Java 17 build of the virtual thread factory: the baseline has no virtual
+ * threads, so {@link ExecutionMode#VIRTUAL} fails fast. The {@code java21}
+ * Maven profile compiles {@code src/main/java21} instead of this directory.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether this build can start virtual threads
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @return never
+     * @throws IllegalStateException always
+     */
+    static ExecutorService newPerTaskExecutor() {
+        throw new IllegalStateException(
+                "app.engine.execution-mode=virtual requiere compilar con el perfil java21 (runtime actual: "
+                        + Runtime.version() + ")");
+    }
+}
@@ -0,0 +1,28 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 build of the virtual thread factory, compiled by the {@code java21}
+ * Maven profile in place of {@code src/main/java17}.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether this build can start virtual threads
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @return executor starting one virtual thread per task
+     */
+    static ExecutorService newPerTaskExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
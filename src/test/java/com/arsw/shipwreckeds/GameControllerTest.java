@@ -1,5 +1,6 @@
 package com.arsw.shipwreckeds;
 
+import com.arsw.shipwreckeds.config.GameEngineProperties;
 import com.arsw.shipwreckeds.controller.GameController;
 import com.arsw.shipwreckeds.controller.WebSocketController;
 import com.arsw.shipwreckeds.model.Match;
@@ -10,13 +11,21 @@ import com.arsw.shipwreckeds.model.Position;
 import com.arsw.shipwreckeds.model.dto.MoveCommand;
 import com.arsw.shipwreckeds.model.dto.GameState;
 import com.arsw.shipwreckeds.service.AuthService;
+import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
 import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.engine.MatchMutationExecutor;
+import com.arsw.shipwreckeds.service.engine.MoveIntent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.Method;
@@ -53,6 +62,21 @@ class GameControllerTest {
     @Mock
     private WebSocketController webSocketController;
 
+    @Mock
+    private GameEngine gameEngine;
+
+    @Mock
+    private MatchOwnership ownership;
+
+    @Mock
+    private MatchCommandBus commandBus;
+
+    @Spy
+    private MatchMutationExecutor mutationExecutor = new MatchMutationExecutor(new GameEngineProperties());
+
+    @Spy
+    private GameSnapshotService snapshots = new GameSnapshotService();
+
     @InjectMocks
     private GameController gameController;
 
@@ -131,6 +155,71 @@ class GameControllerTest {
         verify(webSocketController).broadcastGameState(eq(code), any());
     }
 
+    @Test
+    @DisplayName("Un movimiento descartado por el rate limit no escribe la partida ni emite broadcast")
+    void handleMove_rateLimited_skipsWriteAndBroadcast() {
+        String code = "SPAM";
+        String username = "spammer";
+        long avatarId = 11L;
+        Match match = matchWithSinglePlayer(code, avatarId, username, MatchStatus.STARTED);
+        when(authService.getPlayer(username)).thenReturn(new Player());
+        stubMatchMutation(code, match);
+
+        for (long seq = 1; seq <= 5; seq++) {
+            gameController.handleMove(code,
+                    new MoveCommand(username, avatarId, new MoveCommand.Direction(1.0, 0.0), seq));
+        }
+
+        verify(matchService, org.mockito.Mockito.times(1)).updateMatch(eq(code), any());
+        verify(webSocketController, org.mockito.Mockito.times(1)).broadcastGameState(eq(code), any());
+        assertEquals(1L, match.getPlayers().get(0).getLastInputSeq());
+    }
+
+    @Test
+    @DisplayName("La secuencia de un movimiento descartado se confirma con la siguiente escritura")
+    void handleMove_sequencedInputs_areAcknowledgedInSnapshots() throws InterruptedException {
+        String code = "SEQ";
+        String username = "predictor";
+        long avatarId = 4L;
+        Match match = matchWithSinglePlayer(code, avatarId, username, MatchStatus.STARTED);
+        when(authService.getPlayer(username)).thenReturn(new Player());
+        stubMatchMutation(code, match);
+
+        gameController.handleMove(code, new MoveCommand(username, avatarId, new MoveCommand.Direction(1.0, 0.0), 7L));
+        // rate limited: held until the next write instead of forcing one
+        gameController.handleMove(code, new MoveCommand(username, avatarId, new MoveCommand.Direction(1.0, 0.0), 8L));
+        Thread.sleep(110);
+        // an out-of-order duplicate never moves the acknowledgement back
+        gameController.handleMove(code, new MoveCommand(username, avatarId, new MoveCommand.Direction(1.0, 0.0), 6L));
+
+        ArgumentCaptor<Object> states = ArgumentCaptor.forClass(Object.class);
+        verify(webSocketController, org.mockito.Mockito.times(2)).broadcastGameState(eq(code), states.capture());
+        GameState first = (GameState) states.getAllValues().get(0);
+        GameState second = (GameState) states.getAllValues().get(1);
+        assertEquals(7L, first.getInputAcks().get(username));
+        assertEquals(8L, second.getInputAcks().get(username));
+        // the second move was rate limited: the avatar moved only twice
+        assertEquals(2 * 100.0 * 0.035, match.getPlayers().get(0).getPosition().getX(), 1e-6);
+        assertEquals(8L, match.getPlayers().get(0).getLastInputSeq());
+    }
+
+    @Test
+    @DisplayName("Si el motor acumula el movimiento no se escribe la partida en el momento")
+    void handleMove_bufferedByEngine_skipsImmediateWrite() {
+        String username = "buffered";
+        MoveCommand cmd = new MoveCommand(username, 5L, new MoveCommand.Direction(0.0, 2.0));
+        when(authService.getPlayer(username)).thenReturn(new Player());
+        when(gameEngine.queueMove(eq("BUF"), any())).thenReturn(true);
+
+        gameController.handleMove("BUF", cmd);
+
+        ArgumentCaptor<MoveIntent> intent = ArgumentCaptor.forClass(MoveIntent.class);
+        verify(gameEngine).queueMove(eq("BUF"), intent.capture());
+        assertEquals(5L, intent.getValue().avatarId());
+        assertEquals(1.0, intent.getValue().dy(), 1e-9);
+        verifyNoInteractions(matchService, webSocketController);
+    }
+
     @Test
     @DisplayName("Las peticiones incompletas se descartan sin tocar servicios")
     void handleMove_nullPayload_returnsEarly() {
@@ -1,9 +1,16 @@
 package com.arsw.shipwreckeds;
 
+import com.arsw.shipwreckeds.config.GameEngineProperties;
 import com.arsw.shipwreckeds.controller.WebSocketController;
 import com.arsw.shipwreckeds.model.*;
 import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
 import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.cluster.OwnedMatch;
+import com.arsw.shipwreckeds.service.engine.MatchMutationExecutor;
+import com.arsw.shipwreckeds.service.engine.MoveIntent;
+import com.arsw.shipwreckeds.service.engine.NpcStore;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,9 +21,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -41,7 +52,9 @@ class GameEngineTest {
 
     @BeforeEach
     void setUp() {
-        gameEngine = new GameEngine(ws, matchService);
+        GameEngineProperties properties = new GameEngineProperties();
+        gameEngine = new GameEngine(ws, matchService, properties, new MatchMutationExecutor(properties),
+                mock(MatchOwnership.class), new GameSnapshotService());
     }
 
     @AfterEach
@@ -100,15 +113,15 @@ class GameEngineTest {
         npc.setPosition(initial);
         match.setNpcs(new ArrayList<>(List.of(npc)));
 
-        Field targetsField = GameEngine.class.getDeclaredField("npcTargetsByMatch");
-        targetsField.setAccessible(true);
+        Field storesField = GameEngine.class.getDeclaredField("npcStoresByMatch");
+        storesField.setAccessible(true);
         @SuppressWarnings("unchecked")
-        java.util.Map<String, java.util.Map<Long, Position>> targetsByMatch = (java.util.Map<String, java.util.Map<Long, Position>>) targetsField
+        java.util.Map<String, NpcStore> storesByMatch = (java.util.Map<String, NpcStore>) storesField
                 .get(gameEngine);
-        java.util.Map<Long, Position> targets = new java.util.concurrent.ConcurrentHashMap<>();
-        Position outwardTarget = new Position(150.0, 0.0);
-        targets.put(npc.getId(), outwardTarget);
-        targetsByMatch.put(match.getCode(), targets);
+        NpcStore store = new NpcStore();
+        int slot = store.add(npc.getId(), initial.getX(), initial.getY(), npc.getMovementSpeed());
+        store.setTarget(slot, 150.0, 0.0);
+        storesByMatch.put(match.getCode(), store);
 
         Method m = GameEngine.class.getDeclaredMethod("updateNpcMovement", Match.class, double.class);
         m.setAccessible(true);
@@ -116,7 +129,7 @@ class GameEngineTest {
 
         assertEquals(99.5, npc.getPosition().getX(), 1e-6);
         assertEquals(0.0, npc.getPosition().getY(), 1e-6);
-        assertNotSame(outwardTarget, targets.get(npc.getId()),
+        assertNotEquals(150.0, store.targetX(slot),
                 "Cuando se alcanza el borde, se debe regenerar un nuevo objetivo");
     }
 
@@ -152,11 +165,140 @@ class GameEngineTest {
 
         assertTrue(latch.await(2, TimeUnit.SECONDS), "Se esperaba al menos un tick del GameEngine");
         verify(matchService, atLeastOnce()).updateMatch(eq(code), any());
-        verify(ws, atLeastOnce()).broadcastGameState(eq(code), any());
+        verify(ws, timeout(1000).atLeastOnce()).broadcastGameState(eq(code), any());
 
         gameEngine.stopMatchTicker(code);
     }
 
+    @Test
+    void startMatchTicker_simulationMode_broadcastsSnapshotsWithoutExtraRedisRoundTrips() throws Exception {
+        gameEngine.shutdown();
+        GameEngineProperties properties = new GameEngineProperties();
+        properties.setSimulationHz(20);
+        properties.setSnapshotHz(10);
+        gameEngine = new GameEngine(ws, matchService, properties, new MatchMutationExecutor(properties),
+                mock(MatchOwnership.class), new GameSnapshotService());
+
+        String code = "SIM20";
+        Match match = new Match(1L, code);
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(60);
+        Npc npc = new Npc(7L, "skin", new Position(0.0, 0.0), 0.5, false);
+        match.setNpcs(new ArrayList<>(List.of(npc)));
+
+        CountDownLatch ticks = new CountDownLatch(2);
+        when(matchService.updateMatch(eq(code), any())).thenAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Function<Match, Object> mutator = (Function<Match, Object>) invocation.getArgument(1);
+            Object result = mutator.apply(match);
+            ticks.countDown();
+            return result;
+        });
+
+        gameEngine.startMatchTicker(code);
+
+        assertTrue(ticks.await(3, TimeUnit.SECONDS), "Se esperaban dos ticks del reloj");
+        gameEngine.stopMatchTicker(code);
+
+        verify(matchService, atMost(3)).updateMatch(eq(code), any());
+        // 1 Hz clock broadcasts plus 10 Hz snapshots between them
+        verify(ws, atLeast(6)).broadcastGameState(eq(code), any());
+        assertEquals(58, match.getTimerSeconds(), 1);
+        assertTrue(Math.abs(npc.getPosition().getX()) > 1e-9 || Math.abs(npc.getPosition().getY()) > 1e-9,
+                "El tick debe volcar la posición simulada en la partida");
+    }
+
+    @Test
+    void simulationSnapshots_ownedMatch_areOnlyTakenUnderTheOwnedLock() throws Exception {
+        gameEngine.shutdown();
+        GameEngineProperties properties = new GameEngineProperties();
+        properties.setSimulationHz(20);
+        properties.setSnapshotHz(10);
+        MatchOwnership ownership = mock(MatchOwnership.class);
+        gameEngine = new GameEngine(ws, matchService, properties, new MatchMutationExecutor(properties), ownership,
+                new GameSnapshotService());
+
+        String code = "OWNSIM";
+        Match match = new Match(1L, code);
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(60);
+        match.setNpcs(new ArrayList<>(List.of(new Npc(7L, "skin", new Position(0.0, 0.0), 0.5, false))));
+        OwnedMatch owned = new OwnedMatch(code, match);
+        when(ownership.isEnabled()).thenReturn(true);
+        when(ownership.acquire(code)).thenReturn(true);
+        when(ownership.owned(code)).thenReturn(owned);
+        CountDownLatch firstTick = new CountDownLatch(1);
+        when(matchService.updateMatch(eq(code), any())).thenAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Function<Match, Object> mutator = (Function<Match, Object>) invocation.getArgument(1);
+            Object result = mutator.apply(match);
+            firstTick.countDown();
+            return result;
+        });
+        AtomicInteger broadcasts = new AtomicInteger();
+        doAnswer(invocation -> broadcasts.incrementAndGet()).when(ws).broadcastGameState(eq(code), any());
+
+        gameEngine.startMatchTicker(code);
+        assertTrue(firstTick.await(3, TimeUnit.SECONDS), "Se esperaba el primer tick del reloj");
+
+        int whileLocked;
+        owned.getLock().lock();
+        try {
+            int before = broadcasts.get();
+            Thread.sleep(600);
+            whileLocked = broadcasts.get() - before;
+        } finally {
+            owned.getLock().unlock();
+        }
+        int before = broadcasts.get();
+        Thread.sleep(1000);
+        int afterUnlock = broadcasts.get() - before;
+        gameEngine.stopMatchTicker(code);
+
+        // at most the 1 Hz clock broadcast got through while the lock was held
+        assertTrue(whileLocked <= 1, "Sin el candado no se leen instantáneas: " + whileLocked);
+        assertTrue(afterUnlock >= 3, "Las instantáneas se reanudan al liberar el candado: " + afterUnlock);
+    }
+
+    @Test
+    void batchTick_ticksHostedMatchesTogetherAndPublishesOnce() throws Exception {
+        gameEngine.shutdown();
+        GameEngineProperties properties = new GameEngineProperties();
+        properties.setBatchTick(true);
+        properties.setTickLanes(1);
+        gameEngine = new GameEngine(ws, matchService, properties, new MatchMutationExecutor(properties),
+                mock(MatchOwnership.class), new GameSnapshotService());
+
+        Map<String, Match> stored = new HashMap<>();
+        for (String code : List.of("B1", "B2", "B3")) {
+            Match match = new Match(1L, code);
+            match.setStatus(MatchStatus.STARTED);
+            match.setTimerSeconds(30);
+            stored.put(code, match);
+        }
+        CountDownLatch batches = new CountDownLatch(1);
+        when(matchService.updateMatches(anyList(), any())).thenAnswer(invocation -> {
+            List<String> codes = invocation.getArgument(0);
+            @SuppressWarnings("unchecked")
+            Function<Match, Object> mutator = (Function<Match, Object>) invocation.getArgument(1);
+            Map<String, Object> results = new HashMap<>();
+            codes.forEach(code -> results.put(code, mutator.apply(stored.get(code))));
+            batches.countDown();
+            return new MatchService.BatchUpdate<>(results, Set.of());
+        });
+
+        stored.keySet().forEach(gameEngine::startMatchTicker);
+
+        assertTrue(batches.await(3, TimeUnit.SECONDS), "Se esperaba un tick por lotes");
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> published = ArgumentCaptor.forClass(Map.class);
+        verify(ws, timeout(1000).atLeastOnce()).broadcastGameStates(published.capture());
+        assertEquals(Set.of("B1", "B2", "B3"), published.getAllValues().get(0).keySet());
+        verify(matchService, never()).updateMatch(anyString(), any());
+        verify(ws, never()).broadcastGameState(anyString(), any());
+        stored.values().forEach(m -> assertTrue(m.getTimerSeconds() < 30));
+    }
+
     @Test
     void scheduleAndCancelVoteTimeout_doesNotTriggerCallbackImmediately() {
         String code = "VOTE1";
@@ -179,4 +321,98 @@ class GameEngineTest {
         assertEquals(1L, latch.getCount());
     }
 
+    @Test
+    void adoptMatch_voteInProgress_resumesRemainingDeadline() throws Exception {
+        gameEngine.shutdown();
+        MatchOwnership ownership = mock(MatchOwnership.class);
+        GameEngineProperties properties = new GameEngineProperties();
+        gameEngine = new GameEngine(ws, matchService, properties, new MatchMutationExecutor(properties), ownership,
+                new GameSnapshotService());
+
+        Match match = new Match(1L, "ADOPT");
+        match.setStatus(MatchStatus.STARTED);
+        match.setVotingActive(true);
+        // vote started long enough ago that only a few milliseconds remain
+        match.setVoteStartEpochMs(System.currentTimeMillis() - Match.VOTE_DURATION_SECONDS * 1000L + 50);
+        when(ownership.isEnabled()).thenReturn(true);
+        when(ownership.acquire("ADOPT")).thenReturn(true);
+        when(ownership.owned("ADOPT")).thenReturn(new OwnedMatch("ADOPT", match));
+        CountDownLatch expired = new CountDownLatch(1);
+        gameEngine.onVoteExpired(code -> expired.countDown());
+
+        assertTrue(gameEngine.adoptMatch("ADOPT"));
+
+        assertTrue(expired.await(2, TimeUnit.SECONDS), "El plazo de la votación debe reanudarse");
+        gameEngine.handOff("ADOPT");
+        verify(ownership).release("ADOPT");
+    }
+
+    @Test
+    void positionAt_rewindsWithinWindowOnly() {
+        long now = System.currentTimeMillis();
+        gameEngine.recordPosition("LAG", 1L, now - 10_000L, new Position(1.0, 1.0));
+        gameEngine.recordPosition("LAG", 1L, now - 5_000L, new Position(4.0, 4.0));
+        gameEngine.recordPosition("LAG", 1L, now - 100L, new Position(2.0, 2.0));
+        gameEngine.recordPosition("LAG", 1L, now + 1_000L, new Position(3.0, 3.0));
+
+        Position recent = gameEngine.positionAt("LAG", 1L, now - 50L);
+        // an old timestamp is clamped to the window, so it never reaches the first sample
+        Position clamped = gameEngine.positionAt("LAG", 1L, now - 10_000L);
+
+        assertEquals(2.0, recent.getX());
+        assertEquals(4.0, clamped.getX());
+        assertNull(gameEngine.positionAt("LAG", 1L, null));
+        assertNull(gameEngine.positionAt("OTHER", 1L, now));
+    }
+
+    @Test
+    void queuedMoves_areAppliedInOneWriteAndOneBroadcastPerStep() throws Exception {
+        gameEngine.shutdown();
+        GameEngineProperties properties = new GameEngineProperties();
+        properties.setSimulationHz(20);
+        properties.setSnapshotHz(0);
+        gameEngine = new GameEngine(ws, matchService, properties, new MatchMutationExecutor(properties),
+                mock(MatchOwnership.class), new GameSnapshotService());
+
+        String code = "COALESCE";
+        Match match = new Match(1L, code);
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(60);
+        AtomicInteger appliedIntents = new AtomicInteger();
+        CountDownLatch applied = new CountDownLatch(8);
+        List<Integer> intentsPerWrite = new ArrayList<>();
+        when(matchService.updateMatch(eq(code), any())).thenAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Function<Match, Object> mutator = (Function<Match, Object>) invocation.getArgument(1);
+            int before = appliedIntents.get();
+            Object result = mutator.apply(match);
+            int count = appliedIntents.get() - before;
+            if (count > 0) {
+                intentsPerWrite.add(count);
+                for (int i = 0; i < count; i++) {
+                    applied.countDown();
+                }
+            }
+            return result;
+        });
+        gameEngine.onMoveIntent((m, intent) -> {
+            appliedIntents.incrementAndGet();
+            return true;
+        });
+
+        assertFalse(gameEngine.queueMove(code, new MoveIntent(1L, "a", 1, 0, 0L, 0L)),
+                "Sin simulación en curso el movimiento se aplica directamente");
+        gameEngine.startMatchTicker(code);
+        for (long avatar = 1; avatar <= 8; avatar++) {
+            assertTrue(gameEngine.queueMove(code, new MoveIntent(avatar, "p" + avatar, 1, 0, 0L, 0L)));
+        }
+
+        assertTrue(applied.await(2, TimeUnit.SECONDS), "Los movimientos deben aplicarse en el siguiente paso");
+        gameEngine.stopMatchTicker(code);
+
+        // normally a single step takes all eight; a step boundary may split them in two
+        assertTrue(intentsPerWrite.size() <= 2, "Escrituras: " + intentsPerWrite);
+        assertEquals(8, intentsPerWrite.stream().mapToInt(Integer::intValue).sum());
+        verify(ws, timeout(1_000).times(intentsPerWrite.size())).broadcastGameState(eq(code), any());
+    }
 }
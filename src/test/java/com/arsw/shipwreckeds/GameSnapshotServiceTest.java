@@ -0,0 +1,130 @@
+package com.arsw.shipwreckeds;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+import com.arsw.shipwreckeds.model.dto.AvatarState;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
+import com.arsw.shipwreckeds.service.engine.MatchSimulation;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para la construcción memoizada de snapshots.
+ */
+class GameSnapshotServiceTest {
+
+    private GameSnapshotService snapshots;
+    private Match match;
+
+    @BeforeEach
+    void setUp() {
+        snapshots = new GameSnapshotService();
+        match = new Match(1L, "SNAP");
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(120);
+        Player human = new Player(1L, "ana", "skin", new Position(10, 5));
+        Player infiltrator = new Player(2L, "spy", "skin", new Position(-4, 2));
+        infiltrator.setInfiltrator(true);
+        match.setPlayers(new ArrayList<>(List.of(human, infiltrator)));
+        match.setNpcs(new ArrayList<>(List.of(new Npc(100L, "npc", new Position(1, 1), 0.3, false))));
+    }
+
+    @Test
+    @DisplayName("Una misma versión de la partida reutiliza el snapshot")
+    void sameVersionReusesSnapshot() {
+        match.setVersion(3L);
+
+        GameState first = snapshots.snapshot(match);
+        GameState second = snapshots.snapshot(match);
+
+        assertSame(first, second);
+        assertEquals(3, first.getAvatars().size());
+        assertThrows(UnsupportedOperationException.class, () -> first.getAvatars().clear());
+    }
+
+    @Test
+    @DisplayName("Una nueva versión o un paso de simulación invalidan el snapshot")
+    void newVersionOrSimulationStepRebuilds() {
+        match.setVersion(3L);
+        GameState first = snapshots.snapshot(match);
+
+        match.setTimerSeconds(119);
+        match.setVersion(4L);
+        GameState second = snapshots.snapshot(match);
+        assertNotSame(first, second);
+        assertEquals(119, second.getTimerSeconds());
+
+        MatchSimulation simulation = new MatchSimulation("SNAP", 30, 0L);
+        simulation.sync(match, 0L);
+        GameState simulated = snapshots.snapshot(match, simulation);
+        assertSame(simulated, snapshots.snapshot(match, simulation));
+        simulation.advance(simulation.stepNanos());
+        assertNotSame(simulated, snapshots.snapshot(match, simulation));
+    }
+
+    @Test
+    @DisplayName("Las partidas sin versión se reconstruyen siempre")
+    void unversionedMatchIsNeverMemoized() {
+        GameState first = snapshots.snapshot(match);
+        match.setTimerSeconds(30);
+
+        GameState second = snapshots.snapshot(match);
+
+        assertNotSame(first, second);
+        assertEquals(30, second.getTimerSeconds());
+    }
+
+    @Test
+    @DisplayName("Las opciones de voto siguen las posiciones y se recalculan cuando cambia el elenco")
+    void voteOptionsFollowPositionsUntilRosterChanges() {
+        match.setVotingActive(true);
+
+        List<AvatarState> options = snapshots.voteOptions(match);
+        assertEquals(2, options.size(), "Debe exponer NPCs y al infiltrado como opciones");
+        match.getPlayers().get(1).setPosition(new Position(50, 50));
+        List<AvatarState> moved = snapshots.voteOptions(match);
+        assertEquals(50.0, moved.get(1).getX(), 1e-9, "Las opciones no deben conservar posiciones viejas");
+
+        match.getPlayers().get(1).setAlive(false);
+        List<AvatarState> afterElimination = snapshots.voteOptions(match);
+        assertEquals(1, afterElimination.size());
+    }
+
+    @Test
+    @DisplayName("Las opciones de voto del snapshot son los mismos avatares que muestra")
+    void snapshotVoteOptionsShareItsAvatars() {
+        match.setVotingActive(true);
+        match.setVoteStartEpochMs(1_000L);
+        match.setVersion(5L);
+        GameState first = snapshots.snapshot(match);
+
+        match.getNpcs().get(0).setPosition(new Position(-20, 8));
+        match.setVersion(6L);
+        GameState second = snapshots.snapshot(match);
+
+        AvatarState npc = second.getVoteOptions().get(0);
+        assertSame(second.getAvatars().get(2), npc);
+        assertEquals(-20.0, npc.getX(), 1e-9);
+        assertSame(second.getAvatars().get(1), second.getVoteOptions().get(1));
+        assertNotSame(first.getVoteOptions().get(0), npc);
+    }
+
+    @Test
+    @DisplayName("Evict descarta el snapshot memoizado")
+    void evictDropsMemoizedSnapshot() {
+        match.setVersion(7L);
+        GameState first = snapshots.snapshot(match);
+
+        snapshots.evict("SNAP");
+
+        assertNotSame(first, snapshots.snapshot(match));
+    }
+}
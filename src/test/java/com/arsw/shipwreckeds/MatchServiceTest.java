@@ -1,11 +1,25 @@
 package com.arsw.shipwreckeds;
 
+import com.arsw.shipwreckeds.config.CacheProperties;
 import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
 import com.arsw.shipwreckeds.model.Player;
 import com.arsw.shipwreckeds.model.dto.CreateMatchResponse;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
 import com.arsw.shipwreckeds.service.MatchService;
 import com.arsw.shipwreckeds.service.cache.MatchCacheRepository;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.Outcome;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.VoteReply;
+import com.arsw.shipwreckeds.service.cache.MatchCacheRepository.WriteOutcome;
 import com.arsw.shipwreckeds.service.cache.MatchLockManager;
+import com.arsw.shipwreckeds.service.cache.MatchUpdateStrategy;
+import com.arsw.shipwreckeds.service.cache.VersionedMatch;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.cluster.OwnedMatch;
+import java.util.List;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,13 +37,20 @@ class MatchServiceTest {
 
     private MatchCacheRepository cacheRepository;
     private MatchLockManager lockManager;
+    private MatchOwnership ownership;
+    private CacheProperties cacheProperties;
+    private MatchFieldScripts fieldScripts;
     private MatchService matchService;
 
     @BeforeEach
     void setUp() {
         cacheRepository = mock(MatchCacheRepository.class);
         lockManager = mock(MatchLockManager.class);
-        matchService = new MatchService(cacheRepository, lockManager);
+        ownership = mock(MatchOwnership.class);
+        cacheProperties = new CacheProperties();
+        fieldScripts = mock(MatchFieldScripts.class);
+        matchService = new MatchService(cacheRepository, lockManager, ownership, new GameSnapshotService(),
+                cacheProperties, fieldScripts);
 
         lenient().when(lockManager.withLock(anyString(), ArgumentMatchers.<Supplier<Object>>any())).thenAnswer(inv -> {
             @SuppressWarnings("unchecked")
@@ -137,4 +158,176 @@ class MatchServiceTest {
         assertEquals("Ya hay un jugador con ese nombre en la partida.", ex.getMessage());
         verify(cacheRepository, never()).save(match, 7200L);
     }
+
+    @Test
+    void updateMatches_writesBatchAndRetriesRejectedWritesUnderLock() {
+        Match a = new Match(20L, "AAA");
+        Match b = new Match(21L, "BBB");
+        Match bFresh = new Match(21L, "BBB");
+        when(cacheRepository.findAllActive(List.of("AAA", "BBB", "GONE"))).thenReturn(List.of(
+                new VersionedMatch("AAA", a, "d1"), new VersionedMatch("BBB", b, "d2")));
+        when(cacheRepository.compareAndSaveAll(anyList(), eq(7200L))).thenReturn(Set.of("BBB"));
+        when(cacheRepository.findActive("BBB")).thenReturn(bFresh);
+
+        MatchService.BatchUpdate<String> outcome = matchService.updateMatches(List.of("AAA", "BBB", "GONE"),
+                m -> {
+                    m.setTimerSeconds(m.getTimerSeconds() - 1);
+                    return m == bFresh ? "locked" : "batched";
+                });
+
+        assertEquals("batched", outcome.results().get("AAA"));
+        assertEquals("locked", outcome.results().get("BBB"));
+        assertEquals(Set.of("GONE"), outcome.missing());
+        verify(cacheRepository).save(bFresh, 7200L);
+        verify(cacheRepository, never()).save(a, 7200L);
+    }
+
+    @Test
+    void updateMatch_ownedMatch_mutatesInMemoryWithoutDistributedLock() {
+        Match match = new Match(30L, "OWNED");
+        when(ownership.owned("OWNED")).thenReturn(new OwnedMatch("OWNED", match));
+
+        String result = matchService.updateMatch("OWNED", m -> {
+            m.setTimerSeconds(42);
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(42, match.getTimerSeconds());
+        verify(cacheRepository).save(match, 7200L);
+        verify(cacheRepository, never()).findActive("OWNED");
+        verifyNoInteractions(lockManager);
+    }
+
+    @Test
+    void updateMatch_ownedMatchFailure_reloadsLastPersistedState() {
+        Match dirty = new Match(31L, "OWNED");
+        Match persisted = new Match(31L, "OWNED");
+        OwnedMatch owned = new OwnedMatch("OWNED", dirty);
+        when(ownership.owned("OWNED")).thenReturn(owned);
+        when(cacheRepository.findActive("OWNED")).thenReturn(persisted);
+
+        assertThrows(IllegalArgumentException.class, () -> matchService.updateMatch("OWNED", m -> {
+            m.setTimerSeconds(1);
+            throw new IllegalArgumentException("boom");
+        }));
+
+        assertSame(persisted, owned.getMatch());
+        verify(cacheRepository, never()).save(any(), anyLong());
+    }
+
+    @Test
+    void updateMatch_ownedMatchWriteBehind_defersRoutineWritesButNotMilestones() {
+        Match match = new Match(32L, "OWNED");
+        match.setStatus(MatchStatus.STARTED);
+        OwnedMatch owned = new OwnedMatch("OWNED", match);
+        when(ownership.owned("OWNED")).thenReturn(owned);
+        when(ownership.isWriteBehind()).thenReturn(true);
+
+        matchService.updateMatch("OWNED", m -> {
+            m.setTimerSeconds(41);
+            return null;
+        });
+        assertTrue(owned.isDirty(), "El tick debe quedar pendiente de escritura");
+        verify(cacheRepository, never()).save(any(), anyLong());
+
+        assertThrows(IllegalArgumentException.class, () -> matchService.updateMatch("OWNED", m -> {
+            throw new IllegalArgumentException("boom");
+        }));
+        assertSame(match, owned.getMatch(), "No se deben descartar mutaciones pendientes");
+        verify(cacheRepository, never()).findActive("OWNED");
+
+        matchService.updateMatch("OWNED", m -> {
+            m.setStatus(MatchStatus.FINISHED);
+            return null;
+        });
+        verify(cacheRepository).save(match, 7200L);
+        assertFalse(owned.isDirty());
+    }
+
+    @Test
+    void updateMatch_bumpsVersionAndEvictsSnapshotsOfFailedWrites() {
+        GameSnapshotService snapshots = new GameSnapshotService();
+        matchService = new MatchService(cacheRepository, lockManager, ownership, snapshots, cacheProperties,
+                fieldScripts);
+        Match match = new Match(32L, "VERS");
+        when(cacheRepository.findActive("VERS")).thenReturn(match);
+
+        GameState written = matchService.updateMatch("VERS", snapshots::snapshot);
+        assertEquals(1L, match.getVersion());
+        assertSame(written, snapshots.snapshot(match));
+
+        GameState[] failed = new GameState[1];
+        assertThrows(IllegalArgumentException.class, () -> matchService.updateMatch("VERS", m -> {
+            failed[0] = snapshots.snapshot(m);
+            throw new IllegalArgumentException("boom");
+        }));
+
+        assertEquals(2L, match.getVersion());
+        assertNotSame(failed[0], snapshots.snapshot(match));
+    }
+
+    @Test
+    void updateMatch_optimistic_retriesConflictsWithoutTakingTheLock() {
+        cacheProperties.setUpdateStrategy(MatchUpdateStrategy.OPTIMISTIC);
+        cacheProperties.setOptimisticBackoffMillis(0);
+        Match first = new Match(33L, "OPT");
+        first.setVersion(4L);
+        Match second = new Match(33L, "OPT");
+        second.setVersion(5L);
+        when(cacheRepository.findActive("OPT")).thenReturn(first, second);
+        when(cacheRepository.compareAndSave(any(Match.class), anyLong(), anyLong()))
+                .thenReturn(WriteOutcome.CONFLICT, WriteOutcome.WRITTEN);
+
+        Integer timer = matchService.updateMatch("OPT", m -> {
+            m.setTimerSeconds(m.getTimerSeconds() + 1);
+            return m.getTimerSeconds();
+        });
+
+        assertEquals(1, timer);
+        verify(cacheRepository).compareAndSave(first, 4L, 7200L);
+        verify(cacheRepository).compareAndSave(second, 5L, 7200L);
+        assertEquals(6L, second.getVersion());
+        verifyNoInteractions(lockManager);
+    }
+
+    @Test
+    void updateMatch_optimistic_givesUpAfterMaxAttempts() {
+        cacheProperties.setUpdateStrategy(MatchUpdateStrategy.OPTIMISTIC);
+        cacheProperties.setOptimisticMaxAttempts(3);
+        cacheProperties.setOptimisticBackoffMillis(0);
+        when(cacheRepository.findActive("BUSY")).thenAnswer(inv -> new Match(34L, "BUSY"));
+        when(cacheRepository.compareAndSave(any(Match.class), anyLong(), anyLong())).thenReturn(WriteOutcome.CONFLICT);
+
+        assertThrows(IllegalStateException.class, () -> matchService.updateMatch("BUSY", m -> m));
+        verify(cacheRepository, times(3)).compareAndSave(any(Match.class), eq(0L), eq(7200L));
+
+        when(cacheRepository.compareAndSave(any(Match.class), anyLong(), anyLong())).thenReturn(WriteOutcome.MISSING);
+        IllegalArgumentException gone = assertThrows(IllegalArgumentException.class,
+                () -> matchService.updateMatch("BUSY", m -> m));
+        assertEquals("Código inválido o partida no encontrada.", gone.getMessage());
+    }
+
+    @Test
+    void recordVoteAtomically_usesTheScriptOnlyForSharedMatchesItCanHandle() {
+        when(fieldScripts.isAvailable()).thenReturn(true);
+        when(fieldScripts.recordVote("SHARED", "bob", 200L)).thenReturn(new VoteReply(Outcome.APPLIED, true));
+        when(fieldScripts.recordVote("BUSY", "bob", 200L)).thenReturn(new VoteReply(Outcome.FALL_BACK, false));
+        when(ownership.owned("OWNED")).thenReturn(new OwnedMatch("OWNED", new Match(1L, "OWNED")));
+
+        VoteReply reply = matchService.recordVoteAtomically("SHARED", "bob", 200L);
+
+        assertEquals(Outcome.APPLIED, reply.outcome());
+        assertTrue(reply.allVoted());
+        assertNull(matchService.recordVoteAtomically("BUSY", "bob", 200L));
+        assertNull(matchService.recordVoteAtomically("OWNED", "bob", 200L));
+        assertNull(matchService.recordVoteAtomically("SHARED", "bob", null));
+        verify(fieldScripts, never()).recordVote(eq("OWNED"), anyString(), anyLong());
+        verifyNoInteractions(lockManager);
+
+        when(fieldScripts.isAvailable()).thenReturn(false);
+        assertNull(matchService.adjustFuelAtomically("SHARED", "bob", true, 10.0, 0.0, 0.0, 40.0));
+        verify(fieldScripts, never()).adjustFuel(anyString(), anyString(), anyBoolean(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble());
+    }
 }
@@ -0,0 +1,278 @@
+package com.arsw.shipwreckeds.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import com.arsw.shipwreckeds.config.CacheProperties;
+import com.arsw.shipwreckeds.config.ClusterProperties;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
+import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.service.cache.MatchCachePayload;
+import com.arsw.shipwreckeds.service.cache.MatchCacheRepository;
+import com.arsw.shipwreckeds.service.cache.MatchLockManager;
+import com.arsw.shipwreckeds.service.cache.MatchUpdateStrategy;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.cluster.NodeIdentity;
+
+/**
+ * Compares the lock-based and the optimistic (version compare-and-set) match
+ * update strategies under contention from a mix of moves, clock ticks and
+ * votes hitting the same matches from several nodes.
+ *
+ * <p>
+ * Redis is simulated in memory with fixed round-trip sleeps: the lock path
+ * pays the lock acquire, GET, SET and unlock round trips and, like
+ * {@code RedisLockRegistry}, polls every 100 ms while another node holds the
+ * lock; the optimistic path pays a GET and a script call and retries on
+ * conflicts. Every run checks that no tick was lost.
+ *
+ * <p>
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class MatchUpdateContentionBenchmarkTest {
+
+    private static final int MATCHES = 4;
+    private static final int NODES = 3;
+    private static final int[] WRITERS_PER_MATCH = { 3, 12 };
+    private static final int OPS_PER_WRITER = 10;
+    private static final long REDIS_RTT_MS = 1;
+    private static final long LOCK_IDLE_BETWEEN_TRIES_MS = 100;
+    private static final int INITIAL_TIMER = 10_000;
+
+    /** Simulated node of the current writer thread. */
+    private static final ThreadLocal<Integer> NODE = ThreadLocal.withInitial(() -> 0);
+
+    @Test
+    void compareLockAndOptimisticUpdates() throws Exception {
+        for (int writers : WRITERS_PER_MATCH) {
+            for (MatchUpdateStrategy strategy : MatchUpdateStrategy.values()) {
+                run(strategy, writers);
+            }
+        }
+    }
+
+    private void run(MatchUpdateStrategy strategy, int writersPerMatch) throws Exception {
+        FakeRedis redis = new FakeRedis();
+        for (int m = 0; m < MATCHES; m++) {
+            Match match = new Match((long) m, "C" + m);
+            match.setStatus(MatchStatus.STARTED);
+            match.setTimerSeconds(INITIAL_TIMER);
+            for (long p = 1; p <= 8; p++) {
+                match.getPlayers().add(new Player(p, "u" + p, "skin", new Position(0, 0)));
+            }
+            redis.put(match);
+        }
+        CacheProperties properties = new CacheProperties();
+        properties.setUpdateStrategy(strategy);
+        MatchService service = new MatchService(redis.repository(), redis.lockManager(),
+                new MatchOwnership(new NodeIdentity(), null, null, new ClusterProperties()),
+                new GameSnapshotService(), properties, null);
+
+        int writers = MATCHES * writersPerMatch;
+        List<Long> latencies = java.util.Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger[] ticks = new AtomicInteger[MATCHES];
+        Arrays.setAll(ticks, i -> new AtomicInteger());
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch done = new CountDownLatch(writers);
+        long started = System.nanoTime();
+        for (int w = 0; w < writers; w++) {
+            int matchIndex = w % MATCHES;
+            int node = w % NODES;
+            Random random = new Random(w);
+            pool.execute(() -> {
+                NODE.set(node);
+                try {
+                    for (int op = 0; op < OPS_PER_WRITER; op++) {
+                        int roll = random.nextInt(100);
+                        boolean tick = roll >= 70 && roll < 95;
+                        Function<Match, Object> updater = roll < 70 ? move(random.nextInt(8) + 1L)
+                                : tick ? TICK : VOTE;
+                        long start = System.nanoTime();
+                        try {
+                            service.updateMatch("C" + matchIndex, updater);
+                            latencies.add(System.nanoTime() - start);
+                            if (tick) {
+                                ticks[matchIndex].incrementAndGet();
+                            }
+                        } catch (IllegalStateException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await(10, TimeUnit.MINUTES);
+        long elapsedNanos = System.nanoTime() - started;
+        pool.shutdownNow();
+
+        for (int m = 0; m < MATCHES; m++) {
+            assertEquals(INITIAL_TIMER - ticks[m].get(), redis.get("C" + m).getTimerSeconds(),
+                    "No se debe perder ningún tick de la partida C" + m);
+        }
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf(
+                "[benchmark] %-10s writers/match=%-3d ops=%-4d failed=%-3d conflicts=%-4d ops/s=%-7.0f p50=%.1fms p99=%.1fms%n",
+                strategy.name().toLowerCase(), writersPerMatch, sorted.length, failures.get(), redis.conflicts.get(),
+                sorted.length / (elapsedNanos / 1e9), percentile(sorted, 0.50), percentile(sorted, 0.99));
+    }
+
+    private static final Function<Match, Object> TICK = m -> {
+        m.setTimerSeconds(m.getTimerSeconds() - 1);
+        return null;
+    };
+
+    private static final Function<Match, Object> VOTE = m -> {
+        m.setLastVoteResultEpochMs(System.currentTimeMillis());
+        return null;
+    };
+
+    private static Function<Match, Object> move(long playerId) {
+        return m -> {
+            for (Player p : m.getPlayers()) {
+                if (p.getId() == playerId) {
+                    Position pos = p.getPosition();
+                    p.moveTo(new Position(pos.getX() + 0.5, pos.getY()));
+                }
+            }
+            return null;
+        };
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int idx = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, idx)] / 1e6;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * In-memory Redis holding serialized match payloads and the distributed
+     * locks, with a round-trip sleep per command.
+     */
+    private static final class FakeRedis {
+
+        private final GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+        private final Map<String, AtomicBoolean> locks = new ConcurrentHashMap<>();
+        private final Map<String, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+        private final AtomicInteger conflicts = new AtomicInteger();
+
+        void put(Match match) {
+            values.put(match.getCode(), serializer.serialize(new MatchCachePayload(match, 0L, 0L)));
+        }
+
+        Match get(String code) {
+            byte[] bytes = values.get(code);
+            return bytes != null ? ((MatchCachePayload) serializer.deserialize(bytes)).getMatch() : null;
+        }
+
+        MatchCacheRepository repository() {
+            return new MatchCacheRepository(null, null, null) {
+                @Override
+                public Match findActive(String code) {
+                    sleep(REDIS_RTT_MS);
+                    return get(code);
+                }
+
+                @Override
+                public void save(Match match, long ttlSeconds) {
+                    sleep(REDIS_RTT_MS);
+                    put(match);
+                }
+
+                @Override
+                public WriteOutcome compareAndSave(Match match, long expectedVersion, long ttlSeconds) {
+                    sleep(REDIS_RTT_MS);
+                    // scripts run atomically on the server
+                    synchronized (FakeRedis.this) {
+                        byte[] current = values.get(match.getCode());
+                        if (current == null) {
+                            return WriteOutcome.MISSING;
+                        }
+                        MatchCachePayload stored = (MatchCachePayload) serializer.deserialize(current);
+                        if (stored.getVersion() != expectedVersion || lock(match.getCode()).get()) {
+                            conflicts.incrementAndGet();
+                            return WriteOutcome.CONFLICT;
+                        }
+                        put(match);
+                        return WriteOutcome.WRITTEN;
+                    }
+                }
+            };
+        }
+
+        MatchLockManager lockManager() {
+            return new MatchLockManager(null) {
+                @Override
+                public <T> T withLock(String matchCode, int waitSeconds, Supplier<T> action) {
+                    // the registry serializes the threads of one node on a local lock first
+                    ReentrantLock local = localLocks.computeIfAbsent(NODE.get() + ":" + matchCode,
+                            k -> new ReentrantLock());
+                    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitSeconds);
+                    local.lock();
+                    try {
+                        AtomicBoolean held = lock(matchCode);
+                        while (true) {
+                            sleep(REDIS_RTT_MS);
+                            if (held.compareAndSet(false, true)) {
+                                break;
+                            }
+                            if (System.nanoTime() > deadline) {
+                                throw new IllegalStateException("lock timeout " + matchCode);
+                            }
+                            sleep(LOCK_IDLE_BETWEEN_TRIES_MS);
+                        }
+                        try {
+                            return action.get();
+                        } finally {
+                            sleep(REDIS_RTT_MS);
+                            held.set(false);
+                        }
+                    } finally {
+                        local.unlock();
+                    }
+                }
+            };
+        }
+
+        private AtomicBoolean lock(String code) {
+            return locks.computeIfAbsent(code, k -> new AtomicBoolean());
+        }
+    }
+}
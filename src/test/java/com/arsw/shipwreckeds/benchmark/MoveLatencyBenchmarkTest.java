@@ -0,0 +1,204 @@
+package com.arsw.shipwreckeds.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.arsw.shipwreckeds.config.GameEngineProperties;
+import com.arsw.shipwreckeds.controller.GameController;
+import com.arsw.shipwreckeds.controller.WebSocketController;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.MoveCommand;
+import com.arsw.shipwreckeds.service.AuthService;
+import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
+import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+import com.arsw.shipwreckeds.service.engine.ExecutionMode;
+import com.arsw.shipwreckeds.service.engine.MatchMutationExecutor;
+
+/**
+ * Compares p99 move latency for 1k concurrent players with blocking mutations
+ * running inline on the STOMP inbound pool versus on virtual threads. The real
+ * {@link GameController}, {@link GameEngine} and {@link MatchMutationExecutor}
+ * handle the moves; Redis is simulated behind a mocked {@link MatchService}
+ * with a per-match lock plus fixed round-trip sleeps.
+ *
+ * <p>
+ * A move's latency runs from its submission to the first broadcast whose input
+ * acknowledgements include it, i.e. until its player could see it applied.
+ * Results are published as test report entries. Run with
+ * {@code mvn test -Pbenchmark} (add {@code -Pjava21} on a Java 21 JDK to
+ * include the virtual-thread run).
+ */
+@Tag("benchmark")
+class MoveLatencyBenchmarkTest {
+
+    private static final int PLAYERS = 1000;
+    private static final int PLAYERS_PER_MATCH = 8;
+    private static final int ROUNDS = 3;
+    private static final long REDIS_RTT_MS = 2;
+
+    @Test
+    void compareP99MoveLatency(TestReporter reporter) throws Exception {
+        long[] platform = run(ExecutionMode.PLATFORM);
+        report(reporter, "platform", platform);
+        assertEquals(PLAYERS * ROUNDS, platform.length);
+
+        if (MatchMutationExecutor.isVirtualSupported()) {
+            long[] virtual = run(ExecutionMode.VIRTUAL);
+            report(reporter, "virtual", virtual);
+            assertEquals(PLAYERS * ROUNDS, virtual.length);
+        } else {
+            reporter.publishEntry("virtual", "skipped: build without the java21 profile");
+        }
+    }
+
+    private long[] run(ExecutionMode mode) throws Exception {
+        Map<String, Match> matches = new ConcurrentHashMap<>();
+        Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+        List<MoveCommand> commands = new ArrayList<>();
+        List<String> codes = new ArrayList<>();
+        long nextId = 1;
+        for (int m = 0; m < PLAYERS / PLAYERS_PER_MATCH; m++) {
+            String code = "B" + m;
+            Match match = new Match((long) m, code);
+            match.setStatus(MatchStatus.STARTED);
+            for (int p = 0; p < PLAYERS_PER_MATCH; p++) {
+                long id = nextId++;
+                String username = "u" + id;
+                match.getPlayers().add(new Player(id, username, "skin", new Position(0, 0)));
+                commands.add(new MoveCommand(username, id, new MoveCommand.Direction(1, 0)));
+                codes.add(code);
+            }
+            matches.put(code, match);
+            locks.put(code, new ReentrantLock());
+        }
+
+        // username -> {input seq, submission nanos} of the move not acknowledged yet
+        Map<String, long[]> pending = new ConcurrentHashMap<>();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch[] done = new CountDownLatch[1];
+
+        MatchService matchService = mock(MatchService.class);
+        when(matchService.updateMatch(anyString(), any())).thenAnswer(invocation -> {
+            String code = invocation.getArgument(0);
+            Function<Match, ?> updater = invocation.getArgument(1);
+            ReentrantLock lock = locks.get(code);
+            lock.lock();
+            try {
+                sleep(REDIS_RTT_MS); // lock acquire
+                sleep(REDIS_RTT_MS); // GET
+                Object result = updater.apply(matches.get(code));
+                sleep(REDIS_RTT_MS); // SET
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        });
+        AuthService authService = mock(AuthService.class);
+        when(authService.getPlayer(anyString())).thenReturn(new Player());
+        WebSocketController ws = mock(WebSocketController.class);
+        doAnswer(invocation -> {
+            long now = System.nanoTime();
+            GameState state = invocation.getArgument(1);
+            if (state.getInputAcks() != null) {
+                state.getInputAcks().forEach((username, seq) -> {
+                    long[] move = pending.get(username);
+                    if (move != null && seq >= move[0] && pending.remove(username, move)) {
+                        latencies.add(now - move[1]);
+                        done[0].countDown();
+                    }
+                });
+            }
+            return null;
+        }).when(ws).broadcastGameState(anyString(), any());
+
+        GameEngineProperties properties = new GameEngineProperties();
+        properties.setExecutionMode(mode);
+        MatchMutationExecutor executor = new MatchMutationExecutor(properties);
+        // ownership disabled: every match is handled locally, as in a single node
+        MatchOwnership ownership = mock(MatchOwnership.class);
+        GameSnapshotService snapshots = new GameSnapshotService();
+        GameEngine engine = new GameEngine(ws, matchService, properties, executor, ownership, snapshots);
+        GameController controller = new GameController(matchService, authService, ws, executor, engine, ownership,
+                mock(MatchCommandBus.class), snapshots);
+
+        // Spring's clientInboundChannel defaults to 2 * cores platform threads
+        int inboundThreads = Runtime.getRuntime().availableProcessors() * 2;
+        ExecutorService inbound = new ThreadPoolExecutor(inboundThreads, inboundThreads, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                long seq = round + 1L;
+                done[0] = new CountDownLatch(commands.size());
+                for (int i = 0; i < commands.size(); i++) {
+                    MoveCommand template = commands.get(i);
+                    MoveCommand cmd = new MoveCommand(template.getUsername(), template.getAvatarId(),
+                            template.getDirection(), seq);
+                    String code = codes.get(i);
+                    pending.put(cmd.getUsername(), new long[] { seq, System.nanoTime() });
+                    inbound.execute(() -> controller.handleMove(code, cmd));
+                }
+                assertTrue(done[0].await(60, TimeUnit.SECONDS), "Cada movimiento debe confirmarse en un broadcast");
+                // stay above the 100 ms per-avatar rate limit between rounds
+                Thread.sleep(150);
+            }
+        } finally {
+            inbound.shutdownNow();
+            engine.shutdown();
+            executor.shutdown();
+        }
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static void report(TestReporter reporter, String label, long[] latenciesNanos) {
+        long[] sorted = latenciesNanos.clone();
+        Arrays.sort(sorted);
+        reporter.publishEntry(label, String.format("moves=%d p50=%.1fms p99=%.1fms max=%.1fms", sorted.length,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0)));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int idx = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, idx)] / 1e6;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.arsw.shipwreckeds.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+import com.arsw.shipwreckeds.model.dto.CognitoTokens;
+import com.arsw.shipwreckeds.service.cache.CompactPayloadSerializer;
+import com.arsw.shipwreckeds.service.cache.MatchCachePayload;
+import com.arsw.shipwreckeds.service.cache.PayloadFormat;
+import com.arsw.shipwreckeds.service.session.PlayerSessionPayload;
+
+/**
+ * Compares bytes written, encode/decode time and bytes allocated per call of the JSON serializer with
+ * class names against the compact binary one, plain and deflated above a 1 KiB
+ * threshold, for a started match (8 players, 20 NPCs, a vote in progress) and
+ * a player session.
+ *
+ * <p>
+ * Each measurement runs warm-up rounds first and reports the best of several
+ * timed rounds, a lightweight stand-in for a JMH harness the build does not
+ * carry. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class PayloadSerializerBenchmarkTest {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int TIMED_ROUNDS = 5;
+    private static final int OPS_PER_ROUND = 5_000;
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Keeps the JIT from discarding the measured work. */
+    private static volatile Object sink;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void compareJsonAndBinaryPayloads() {
+        MatchCachePayload match = new MatchCachePayload(startedMatch(), 1_700_000_000L, 7200L);
+        Random random = new Random(7);
+        PlayerSessionPayload session = new PlayerSessionPayload(
+                new Player(1L, "player1", "skin", new Position(10.5, -3.25)),
+                new CognitoTokens(token(random, 900), token(random, 1000), token(random, 1700), 3600L, "Bearer"),
+                1_700_000_000L, 3600L);
+        RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer();
+
+        int jsonMatch = measure("json", "match", json, match);
+        int binaryMatch = measure("binary", "match", (RedisSerializer<Object>) (RedisSerializer<?>)
+                new CompactPayloadSerializer<>(MatchCachePayload.class, MatchCachePayload::getVersion,
+                        PayloadFormat.BINARY), match);
+        int deflatedMatch = measure("deflate", "match", (RedisSerializer<Object>) (RedisSerializer<?>)
+                new CompactPayloadSerializer<>(MatchCachePayload.class, MatchCachePayload::getVersion,
+                        PayloadFormat.BINARY, COMPRESSION_THRESHOLD), match);
+        measure("json", "session", json, session);
+        measure("binary", "session", (RedisSerializer<Object>) (RedisSerializer<?>)
+                new CompactPayloadSerializer<>(PlayerSessionPayload.class, payload -> 0L, PayloadFormat.BINARY),
+                session);
+        measure("deflate", "session", (RedisSerializer<Object>) (RedisSerializer<?>)
+                new CompactPayloadSerializer<>(PlayerSessionPayload.class, payload -> 0L, PayloadFormat.BINARY,
+                        COMPRESSION_THRESHOLD), session);
+
+        assertTrue(binaryMatch < jsonMatch, "El formato binario debe ocupar menos que el JSON");
+        assertTrue(deflatedMatch < binaryMatch, "La compresión debe reducir la partida");
+    }
+
+    private static int measure(String format, String payloadName, RedisSerializer<Object> serializer,
+            Object payload) {
+        byte[] bytes = serializer.serialize(payload);
+        assertEquals(payload.getClass(), serializer.deserialize(bytes).getClass());
+        double bestEncode = Double.MAX_VALUE;
+        double bestDecode = Double.MAX_VALUE;
+        long encodeAllocated = 0L;
+        long decodeAllocated = 0L;
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            long allocated = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < OPS_PER_ROUND; i++) {
+                sink = serializer.serialize(payload);
+            }
+            long encoded = System.nanoTime();
+            long encodeBytes = THREADS.getThreadAllocatedBytes(thread) - allocated;
+            allocated = THREADS.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < OPS_PER_ROUND; i++) {
+                sink = serializer.deserialize(bytes);
+            }
+            long decoded = System.nanoTime();
+            long decodeBytes = THREADS.getThreadAllocatedBytes(thread) - allocated;
+            if (round >= WARMUP_ROUNDS) {
+                bestEncode = Math.min(bestEncode, (encoded - start) / (double) OPS_PER_ROUND / 1e3);
+                bestDecode = Math.min(bestDecode, (decoded - encoded) / (double) OPS_PER_ROUND / 1e3);
+                encodeAllocated = encodeBytes / OPS_PER_ROUND;
+                decodeAllocated = decodeBytes / OPS_PER_ROUND;
+            }
+        }
+        System.out.printf("[benchmark] %-7s %-6s bytes=%-6d encode=%.1fus/%dB decode=%.1fus/%dB%n",
+                payloadName, format, bytes.length, bestEncode, encodeAllocated, bestDecode, decodeAllocated);
+        return bytes.length;
+    }
+
+    /** Token-like text: base64 of random bytes, as incompressible as a signed JWT. */
+    private static String token(Random random, int length) {
+        byte[] bytes = new byte[length * 3 / 4];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static Match startedMatch() {
+        Match match = new Match(42L, "BENCH1");
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(245);
+        match.setFuelPercentage(63.5);
+        match.setVersion(1_234L);
+        List<Player> players = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            players.add(new Player(id, "player" + id, "skin" + id, new Position(id * 3.7, -id * 1.3)));
+        }
+        players.get(5).setInfiltrator(true);
+        match.setPlayers(players);
+        match.setInfiltrator(players.get(5));
+        List<Npc> npcs = new ArrayList<>();
+        for (long id = 100_000; id < 100_020; id++) {
+            npcs.add(new Npc(id, "npc", new Position(id % 97 * 1.1, id % 89 * 0.9), 0.35, false));
+        }
+        match.setNpcs(npcs);
+        match.startVoting();
+        match.getVotesByPlayer().put("player1", 100_003L);
+        match.getVotesByPlayer().put("player2", 6L);
+        return match;
+    }
+}
@@ -0,0 +1,112 @@
+package com.arsw.shipwreckeds.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.dto.AvatarState;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
+import com.arsw.shipwreckeds.websocket.GameStateDeltaEncoder;
+import com.arsw.shipwreckeds.websocket.SnapshotBinaryCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares message size and encoding throughput of the JSON and binary
+ * snapshot codecs, for full game states and for the delta frames of a match
+ * where every NPC moves each tick.
+ *
+ * <p>
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class SnapshotCodecBenchmarkTest {
+
+    private static final int[] AVATARS = { 8, 50, 200 };
+    private static final int TICKS = 2_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void compareJsonAndBinaryCodecs() throws Exception {
+        for (int avatars : AVATARS) {
+            List<GameState> states = simulate(avatars);
+            List<GameStateFrame> deltas = new ArrayList<>();
+            BroadcastProperties properties = new BroadcastProperties();
+            properties.setKeyframeInterval(Integer.MAX_VALUE);
+            GameStateDeltaEncoder encoder = new GameStateDeltaEncoder(properties);
+            for (GameState state : states) {
+                encoder.encode("BENCH", state, deltas::add);
+            }
+            deltas.remove(0);
+
+            report(avatars, "full ", states);
+            report(avatars, "delta", deltas);
+        }
+    }
+
+    private void report(int avatars, String kind, List<?> payloads) throws Exception {
+        // warm up both codecs and check the binary form decodes
+        SnapshotBinaryCodec.StringTable warmTable = new SnapshotBinaryCodec.StringTable();
+        List<String> received = new ArrayList<>();
+        for (Object payload : payloads) {
+            mapper.writeValueAsBytes(payload);
+            SnapshotBinaryCodec.decode(SnapshotBinaryCodec.encode(payload, warmTable, false), received);
+        }
+
+        long jsonBytes = 0;
+        long start = System.nanoTime();
+        for (Object payload : payloads) {
+            jsonBytes += mapper.writeValueAsBytes(payload).length;
+        }
+        long jsonNanos = System.nanoTime() - start;
+
+        SnapshotBinaryCodec.StringTable table = new SnapshotBinaryCodec.StringTable();
+        long binaryBytes = 0;
+        start = System.nanoTime();
+        for (Object payload : payloads) {
+            binaryBytes += SnapshotBinaryCodec.encode(payload, table, false).length;
+        }
+        long binaryNanos = System.nanoTime() - start;
+
+        int n = payloads.size();
+        assertEquals(TICKS - (kind.startsWith("delta") ? 1 : 0), n);
+        System.out.printf(
+                "[benchmark] %3d avatars %s: json %6d B %7.2f us/msg, binary %6d B %7.2f us/msg%n",
+                avatars, kind, jsonBytes / n, jsonNanos / 1_000.0 / n, binaryBytes / n, binaryNanos / 1_000.0 / n);
+    }
+
+    private static List<GameState> simulate(int avatars) {
+        Random random = new Random(avatars);
+        double[] x = new double[avatars];
+        double[] y = new double[avatars];
+        for (int i = 0; i < avatars; i++) {
+            x[i] = random.nextDouble() * 160 - 80;
+            y[i] = random.nextDouble() * 160 - 80;
+        }
+        List<GameState> states = new ArrayList<>(TICKS);
+        for (int tick = 0; tick < TICKS; tick++) {
+            List<AvatarState> list = new ArrayList<>(avatars);
+            for (int i = 0; i < avatars; i++) {
+                // humans stand still most ticks, NPCs always walk
+                if (i >= 8 || random.nextInt(4) == 0) {
+                    x[i] += random.nextDouble() * 0.3 - 0.15;
+                    y[i] += random.nextDouble() * 0.3 - 0.15;
+                }
+                boolean human = i < 8;
+                list.add(new AvatarState((long) i, human ? "human" : "npc", human ? "player" + i : null, x[i], y[i],
+                        false, true, human ? "player" + i : "NPC-" + (1000 + i)));
+            }
+            states.add(new GameState("BENCH", 1_700_000_000_000L + tick * 100L, 300 - tick / 10,
+                    new GameState.Island(0, 0, 100), list, 40.0 + tick / 100.0, "STARTED",
+                    new GameState.Boat(80, 0, 12), null, false, 0, false, 0L, null, null, 0L));
+        }
+        return states;
+    }
+}
@@ -0,0 +1,129 @@
+package com.arsw.shipwreckeds.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.model.Locatable;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+
+/**
+ * Compares "avatars within radius" and "nearest avatar" queries answered by the
+ * match spatial grid against the {@code stream().filter} scans over the
+ * rosters, for growing lobby sizes. Every round moves all NPCs first, so the
+ * grid pays for its incremental updates.
+ *
+ * <p>
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class SpatialIndexBenchmarkTest {
+
+    private static final int[] AVATARS = { 50, 500, 5_000 };
+    private static final int ROUNDS = 200;
+    private static final int QUERIES_PER_ROUND = 64;
+    private static final double RADIUS = 20.0;
+
+    @Test
+    void compareGridWithLinearScans() {
+        for (int avatars : AVATARS) {
+            Match match = buildMatch(avatars);
+            Random random = new Random(3);
+            double[][] queries = new double[QUERIES_PER_ROUND][2];
+            for (double[] q : queries) {
+                q[0] = random.nextDouble() * 180 - 90;
+                q[1] = random.nextDouble() * 180 - 90;
+            }
+
+            // warm up both paths and check they agree
+            for (double[] q : queries) {
+                assertEquals(scanWithin(match, q[0], q[1]).size(),
+                        match.avatarsWithin(q[0], q[1], RADIUS, a -> true).size());
+            }
+
+            long scanNanos = 0;
+            long gridNanos = 0;
+            long sink = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                moveNpcs(match, random);
+                long start = System.nanoTime();
+                for (double[] q : queries) {
+                    sink += scanWithin(match, q[0], q[1]).size();
+                    sink += scanNearest(match, q[0], q[1]) != null ? 1 : 0;
+                }
+                scanNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                for (double[] q : queries) {
+                    sink += match.avatarsWithin(q[0], q[1], RADIUS, a -> true).size();
+                    sink += match.nearestAvatar(q[0], q[1], Double.MAX_VALUE, a -> true) != null ? 1 : 0;
+                }
+                gridNanos += System.nanoTime() - start;
+            }
+            int totalQueries = ROUNDS * QUERIES_PER_ROUND;
+            System.out.printf("[benchmark] %5d avatars: scan %8.2f us/query, grid %8.2f us/query (sink %d)%n",
+                    avatars, scanNanos / 1_000.0 / totalQueries, gridNanos / 1_000.0 / totalQueries, sink);
+        }
+    }
+
+    private static Match buildMatch(int avatars) {
+        Match match = new Match(1L, "BENCH");
+        Random random = new Random(avatars);
+        for (int i = 0; i < 8; i++) {
+            Player p = new Player((long) i, "p" + i, "skin", null);
+            match.addPlayer(p);
+            p.moveTo(new Position(random.nextDouble() * 180 - 90, random.nextDouble() * 180 - 90));
+        }
+        match.setStatus(MatchStatus.STARTED);
+        for (int i = 8; i < avatars; i++) {
+            match.addNpc(new Npc((long) i, "skin",
+                    new Position(random.nextDouble() * 180 - 90, random.nextDouble() * 180 - 90), 0.3, false));
+        }
+        return match;
+    }
+
+    private static void moveNpcs(Match match, Random random) {
+        for (Npc npc : match.getNpcs()) {
+            Position p = npc.getPosition();
+            npc.setPosition(new Position(p.getX() + random.nextDouble() - 0.5, p.getY() + random.nextDouble() - 0.5));
+        }
+    }
+
+    private static List<Locatable> scanWithin(Match match, double x, double y) {
+        List<Locatable> result = new ArrayList<>();
+        match.getPlayers().stream()
+                .filter(p -> p.getPosition() != null && distance(p, x, y) <= RADIUS)
+                .forEach(result::add);
+        match.getNpcs().stream()
+                .filter(n -> n.getPosition() != null && distance(n, x, y) <= RADIUS)
+                .forEach(result::add);
+        return result;
+    }
+
+    private static Locatable scanNearest(Match match, double x, double y) {
+        Locatable best = null;
+        double bestDistance = Double.MAX_VALUE;
+        List<Locatable> all = new ArrayList<>(match.getPlayers());
+        all.addAll(match.getNpcs());
+        for (Locatable a : all) {
+            double d = distance(a, x, y);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    private static double distance(Locatable a, double x, double y) {
+        return Math.hypot(a.getPosition().getX() - x, a.getPosition().getY() - y);
+    }
+}
@@ -0,0 +1,100 @@
+package com.arsw.shipwreckeds.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.dto.GameCatchUp;
+import com.arsw.shipwreckeds.model.dto.ReplayedEvent;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
+import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.websocket.MatchEventHistory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class GameCatchUpControllerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private MatchEventHistory history;
+    private MatchService matchService;
+    private GameCatchUpController controller;
+
+    @BeforeEach
+    void setUp() {
+        history = new MatchEventHistory(new BroadcastProperties());
+        matchService = mock(MatchService.class);
+        controller = new GameCatchUpController(history, matchService, new GameSnapshotService(), mapper);
+    }
+
+    @Test
+    @DisplayName("Con historial en memoria se reenvian los eventos perdidos sin leer la partida")
+    void catchUp_withHistory_replaysEvents() {
+        record(1, "{\"timerSeconds\":60}");
+        record(2, "{\"timerSeconds\":59}");
+
+        GameCatchUp catchUp = controller.catchUp("ABC", "s1", 1L);
+
+        assertTrue(catchUp.isComplete());
+        assertEquals(1, catchUp.getEvents().size());
+        assertEquals(2L, catchUp.getEvents().get(0).getSeq());
+        verify(matchService, never()).getMatchByCode("ABC");
+    }
+
+    @Test
+    @DisplayName("Un cliente al dia no recibe una instantanea")
+    void catchUp_upToDate_returnsNothing() {
+        record(1, "{\"timerSeconds\":60}");
+
+        GameCatchUp catchUp = controller.catchUp("ABC", "s1", 1L);
+
+        assertTrue(catchUp.isComplete());
+        assertTrue(catchUp.getEvents().isEmpty());
+        verify(matchService, never()).getMatchByCode("ABC");
+    }
+
+    @Test
+    @DisplayName("Sin historial en este nodo se responde con la instantanea almacenada de la partida")
+    void catchUp_withoutHistory_fallsBackToStoredSnapshot() throws Exception {
+        Match match = new Match(1L, "ABC");
+        match.setPlayers(new ArrayList<>());
+        match.setNpcs(new ArrayList<>());
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(42);
+        when(matchService.getMatchByCode("ABC")).thenReturn(match);
+
+        GameCatchUp catchUp = controller.catchUp("ABC", "s1", 7L);
+
+        assertFalse(catchUp.isComplete(), "La respuesta no cubre los eventos perdidos");
+        assertEquals(1, catchUp.getEvents().size());
+        ReplayedEvent event = catchUp.getEvents().get(0);
+        assertEquals("/topic/game/ABC", event.getDestination());
+        assertEquals(42, mapper.readTree(event.getPayload()).get("timerSeconds").asInt());
+    }
+
+    @Test
+    @DisplayName("Sin historial ni partida la respuesta queda vacia")
+    void catchUp_unknownMatch_returnsEmpty() {
+        GameCatchUp catchUp = controller.catchUp("NOPE", null, null);
+
+        assertFalse(catchUp.isComplete());
+        assertTrue(catchUp.getEvents().isEmpty());
+    }
+
+    private void record(long seq, String payload) {
+        history.record("/topic/game/ABC", new MatchEventHistory.Stamp("s1", seq),
+                payload.getBytes(StandardCharsets.UTF_8), true);
+    }
+}
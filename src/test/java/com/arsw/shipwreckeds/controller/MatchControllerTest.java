@@ -13,7 +13,12 @@ import com.arsw.shipwreckeds.model.dto.VoteResult;
 import com.arsw.shipwreckeds.model.dto.VoteStart;
 import com.arsw.shipwreckeds.service.AuthService;
 import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
 import com.arsw.shipwreckeds.service.MatchService;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.FuelReply;
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
 import com.arsw.shipwreckeds.service.NpcService;
 import com.arsw.shipwreckeds.service.RoleService;
 import org.junit.jupiter.api.DisplayName;
@@ -22,17 +27,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -51,6 +59,12 @@ class MatchControllerTest {
     private NpcService npcService;
     @Mock
     private GameEngine gameEngine;
+    @Mock
+    private MatchOwnership ownership;
+    @Mock
+    private MatchCommandBus commandBus;
+    @Spy
+    private GameSnapshotService snapshots = new GameSnapshotService();
 
     @InjectMocks
     private MatchController controller;
@@ -121,18 +135,31 @@ class MatchControllerTest {
         match.startVoting();
 
         AtomicInteger callCount = new AtomicInteger();
+        AtomicBoolean updating = new AtomicBoolean();
+        AtomicBoolean stoppedWhileUpdating = new AtomicBoolean();
         when(matchService.updateMatch(eq(code), any())).thenAnswer(inv -> {
             @SuppressWarnings("unchecked")
             Function<Match, ?> fn = inv.getArgument(1);
             callCount.incrementAndGet();
-            return fn.apply(match);
+            updating.set(true);
+            try {
+                return fn.apply(match);
+            } finally {
+                updating.set(false);
+            }
         });
+        doAnswer(inv -> {
+            stoppedWhileUpdating.compareAndSet(false, updating.get());
+            return null;
+        }).when(gameEngine).stopMatchTicker(code);
 
         VoteRequest req = new VoteRequest(human.getUsername(), npc.getId());
         ResponseEntity<Object> response = controller.submitVote(code, req);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertTrue(callCount.get() >= 2, "Se debe llamar updateMatch para votar y para concluir");
+        assertFalse(stoppedWhileUpdating.get(),
+                "El ticker se detiene y la propiedad se libera solo tras escribir el estado final");
         verify(gameEngine).cancelVoteTimeout(code);
         verify(webSocketController).broadcastVoteResult(eq(code), any(VoteResult.class));
         verify(webSocketController, atLeastOnce()).broadcastGameState(eq(code), any(GameState.class));
@@ -178,6 +205,34 @@ class MatchControllerTest {
         verify(webSocketController).broadcastGameState(eq(code), any(GameState.class));
     }
 
+    @Test
+    @DisplayName("El combustible aplicado por script se describe sin modificar la copia compartida de la partida")
+    void modifyFuel_appliedByScript_leavesCachedMatchUntouched() {
+        String code = "FUELS";
+        Match cached = baseMatchWithPlayers(code, "crew", 2);
+        cached.setStatus(MatchStatus.STARTED);
+        cached.setFuelPercentage(40.0);
+        when(matchService.adjustFuelAtomically(eq(code), eq("crew"), eq(true), eq(10.0), anyDouble(), anyDouble(),
+                anyDouble())).thenReturn(new FuelReply(MatchFieldScripts.Outcome.APPLIED, 50.0, 0));
+        when(matchService.getMatchByCode(code)).thenReturn(cached);
+
+        FuelActionRequest req = new FuelActionRequest();
+        req.setUsername("crew");
+        req.setAction(FuelActionRequest.Action.FILL);
+        req.setAmount(10.0);
+
+        ResponseEntity<Object> response = controller.modifyFuel(code, req);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(50.0, ((FuelActionResponse) response.getBody()).getFuelPercentage());
+        ArgumentCaptor<GameState> state = ArgumentCaptor.forClass(GameState.class);
+        verify(webSocketController).broadcastGameState(eq(code), state.capture());
+        assertEquals(50.0, state.getValue().getFuelPercentage());
+        assertEquals(40.0, cached.getFuelPercentage(), "La copia de la caché no debe modificarse");
+        verify(gameEngine, never()).syncSimulation(any());
+        verify(matchService, never()).updateMatch(eq(code), any());
+    }
+
     @Test
     @DisplayName("El infiltrado puede eliminar al último humano y la partida termina")
     void eliminate_lastHumanKilled_finishesMatch() {
@@ -207,6 +262,41 @@ class MatchControllerTest {
         verify(webSocketController).broadcastGameState(eq(code), any(GameState.class));
     }
 
+    @Test
+    @DisplayName("La eliminación se valida con la posición vista por el cliente dentro de la ventana")
+    void eliminate_outOfRangeNow_usesRewoundPositions() {
+        String code = "LAG";
+        Player infiltrator = new Player(1L, "spy", "skin", new Position(0.0, 0.0));
+        infiltrator.setInfiltrator(true);
+        infiltrator.setAlive(true);
+        Player crew = new Player(2L, "crew", "skin", new Position(30.0, 0.0));
+        crew.setAlive(true);
+        Player other = new Player(3L, "other", "skin", new Position(50.0, 0.0));
+        other.setAlive(true);
+
+        Match match = new Match(1L, code);
+        match.setStatus(MatchStatus.STARTED);
+        match.setPlayers(new ArrayList<>(List.of(infiltrator, crew, other)));
+
+        when(matchService.updateMatch(eq(code), any())).thenAnswer(inv -> {
+            @SuppressWarnings("unchecked")
+            Function<Match, ?> fn = inv.getArgument(1);
+            return fn.apply(match);
+        });
+
+        ResponseEntity<Object> stale = controller.eliminate(code, new VoteRequest("spy", 2L));
+        assertEquals(HttpStatus.FORBIDDEN, stale.getStatusCode());
+        assertTrue(crew.isAlive());
+
+        when(gameEngine.positionAt(eq(code), any(), eq(1_000L)))
+                .thenAnswer(inv -> Long.valueOf(2L).equals(inv.getArgument(1)) ? new Position(15.0, 0.0) : null);
+        ResponseEntity<Object> rewound = controller.eliminate(code, new VoteRequest("spy", 2L, 1_000L));
+
+        assertEquals(HttpStatus.OK, rewound.getStatusCode());
+        assertFalse(crew.isAlive());
+        verify(gameEngine, times(2)).flushPendingMoves(code);
+    }
+
     private Match baseMatchWithPlayers(String code, String host, int totalPlayers) {
         Match match = new Match(1L, code);
         List<Player> players = new ArrayList<>();
@@ -2,6 +2,8 @@ package com.arsw.shipwreckeds.model;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 import com.arsw.shipwreckeds.model.dto.VoteResult;
@@ -120,4 +122,36 @@ class MatchTest {
         assertSame(votes, match.getVotesByPlayer(), "Subsequent calls must reuse the same map");
         assertEquals(1, match.getVotesByPlayer().size(), "Map should persist added votes");
     }
+
+    @Test
+    void spatialIndexFollowsMovesAndRosterChanges() {
+        Match match = new Match(1L, "GRID");
+        Player alice = new Player(1L, "alice", "skin", null);
+        match.addPlayer(alice);
+        alice.moveTo(new Position(10, 10));
+        Npc npc = new Npc(2L, "skin", new Position(12, 10), 0.3, false);
+        match.addNpc(npc);
+
+        assertEquals(2, match.avatarsWithin(10, 10, 5, a -> true).size());
+
+        npc.setPosition(new Position(-50, -50));
+        alice.moveTo(new Position(40, 40));
+        assertSame(npc, match.nearestAvatar(-45, -45, 20, a -> true));
+        assertEquals(List.of(alice), match.avatarsWithin(40, 40, 1, a -> true));
+
+        assertTrue(match.removeNpc(npc));
+        assertNull(match.nearestAvatar(-45, -45, 20, a -> true));
+    }
+
+    @Test
+    void spatialIndexIsNotSerialized() throws Exception {
+        Match match = new Match(1L, "JSON");
+        match.addPlayer(new Player(1L, "alice", "skin", null));
+        match.getPlayers().get(0).moveTo(new Position(1, 1));
+        match.spatialIndex();
+
+        String json = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(match);
+
+        assertFalse(json.contains("spatialIndex"), json);
+    }
 }
@@ -0,0 +1,91 @@
+package com.arsw.shipwreckeds.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link SpatialGrid}, checked against brute-force scans.
+ */
+class SpatialGridTest {
+
+    @Test
+    void withinRadiusMatchesBruteForce() {
+        Random random = new Random(7);
+        SpatialGrid<double[]> grid = new SpatialGrid<>();
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            // some points fall outside the covered square on purpose
+            double[] p = { random.nextDouble() * 320 - 160, random.nextDouble() * 320 - 160 };
+            points.add(p);
+            grid.put(p, p[0], p[1]);
+        }
+
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 320 - 160;
+            double y = random.nextDouble() * 320 - 160;
+            double r = random.nextDouble() * 40;
+            Set<double[]> expected = new HashSet<>();
+            for (double[] p : points) {
+                if (Math.hypot(p[0] - x, p[1] - y) <= r) {
+                    expected.add(p);
+                }
+            }
+            assertEquals(expected, new HashSet<>(grid.withinRadius(x, y, r, p -> true)));
+        }
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(11);
+        SpatialGrid<double[]> grid = new SpatialGrid<>();
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            double[] p = { random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100 };
+            points.add(p);
+            grid.put(p, p[0], p[1]);
+        }
+
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 260 - 130;
+            double y = random.nextDouble() * 260 - 130;
+            double[] expected = null;
+            double best = Double.MAX_VALUE;
+            for (double[] p : points) {
+                double d = Math.hypot(p[0] - x, p[1] - y);
+                if (d < best) {
+                    best = d;
+                    expected = p;
+                }
+            }
+            assertSame(expected, grid.nearest(x, y, Double.MAX_VALUE, p -> true));
+        }
+    }
+
+    @Test
+    void movesAndRemovalsAreIncremental() {
+        SpatialGrid<String> grid = new SpatialGrid<>();
+        grid.put("a", 0, 0);
+        grid.put("b", 1, 1);
+        grid.put("a", 90, 90);
+
+        assertEquals(List.of("b"), grid.withinRadius(0, 0, 5, s -> true));
+        assertEquals(List.of("a"), grid.withinRadius(90, 90, 5, s -> true));
+
+        assertTrue(grid.remove("b"));
+        assertFalse(grid.remove("b"));
+        assertEquals(1, grid.size());
+        assertNull(grid.nearest(0, 0, 10, s -> true));
+        assertEquals("a", grid.nearest(0, 0, 200, s -> true));
+    }
+}
@@ -0,0 +1,173 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+import com.arsw.shipwreckeds.model.dto.CognitoTokens;
+import com.arsw.shipwreckeds.service.session.PlayerSessionPayload;
+
+class CompactPayloadSerializerTest {
+
+    private CompactPayloadSerializer<MatchCachePayload> serializer;
+    private Match match;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new CompactPayloadSerializer<>(MatchCachePayload.class, MatchCachePayload::getVersion,
+                PayloadFormat.BINARY);
+        match = new Match(7L, "BIN");
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(200);
+        match.setFuelPercentage(42.5);
+        match.setVersion(300L);
+        List<Player> players = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            players.add(new Player(id, "player" + id, "skin", new Position(id * 1.25, -id)));
+        }
+        players.get(2).setInfiltrator(true);
+        match.setPlayers(players);
+        match.setInfiltrator(players.get(2));
+        List<Npc> npcs = new ArrayList<>();
+        for (long id = 100; id < 110; id++) {
+            npcs.add(new Npc(id, "npc" + id, new Position(id, id), 0.3, false));
+        }
+        match.setNpcs(npcs);
+        Map<String, Long> votes = new HashMap<>();
+        votes.put("player1", 100L);
+        match.setVotesByPlayer(votes);
+    }
+
+    @Test
+    void binaryPayloadRoundTripsAndIsSmallerThanJson() {
+        byte[] bytes = serializer.serialize(new MatchCachePayload(match, 1_700_000_000L, 7200L));
+
+        Match decoded = serializer.deserialize(bytes).getMatch();
+
+        assertEquals("BIN", decoded.getCode());
+        assertEquals(300L, decoded.getVersion());
+        assertEquals(MatchStatus.STARTED, decoded.getStatus());
+        assertEquals(42.5, decoded.getFuelPercentage());
+        assertEquals(3.75, decoded.getPlayers().get(2).getPosition().getX());
+        assertTrue(decoded.getPlayers().get(2).isInfiltrator());
+        assertEquals("player3", decoded.getInfiltrator().getUsername());
+        assertEquals(10, decoded.getNpcs().size());
+        assertEquals(100L, decoded.getVotesByPlayer().get("player1"));
+        byte[] json = new GenericJackson2JsonRedisSerializer()
+                .serialize(new MatchCachePayload(match, 1_700_000_000L, 7200L));
+        assertTrue(bytes.length * 3 < json.length, bytes.length + " vs " + json.length);
+    }
+
+    @Test
+    void headerCarriesTheMatchVersionForScripts() {
+        byte[] bytes = serializer.serialize(new MatchCachePayload(match, 0L, 0L));
+
+        assertEquals(CompactPayloadSerializer.MAGIC, bytes[0] & 0xFF);
+        assertEquals(CompactPayloadSerializer.FORMAT, bytes[1]);
+        assertEquals(300L, ByteBuffer.wrap(bytes, 2, 8).getLong());
+    }
+
+    @Test
+    void legacyJsonIsStillReadAndCanStillBeWritten() {
+        byte[] json = new GenericJackson2JsonRedisSerializer().serialize(new MatchCachePayload(match, 0L, 0L));
+        assertEquals(300L, serializer.deserialize(json).getVersion());
+
+        CompactPayloadSerializer<MatchCachePayload> jsonWriter = new CompactPayloadSerializer<>(
+                MatchCachePayload.class, MatchCachePayload::getVersion, PayloadFormat.JSON);
+        assertEquals('{', jsonWriter.serialize(new MatchCachePayload(match, 0L, 0L))[0]);
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    void readersSkipPropertiesOfNewerReleasesAndDefaultMissingOnes() {
+        List<String> newer = new ArrayList<>(CompactPayloadSerializer.NAMES);
+        newer.add("spectators");
+        CompactPayloadSerializer<ExtendedPayload> newerWriter = new CompactPayloadSerializer<>(
+                ExtendedPayload.class, ExtendedPayload::getVersion, PayloadFormat.BINARY, 0, newer);
+        ExtendedPayload extended = new ExtendedPayload(match);
+        extended.setSpectators(List.of("watcher"));
+
+        byte[] bytes = newerWriter.serialize(extended);
+        assertFalse(new String(bytes, StandardCharsets.UTF_8).contains("spectators"));
+        MatchCachePayload older = serializer.deserialize(bytes);
+        assertEquals(300L, older.getMatch().getVersion());
+
+        ExtendedPayload upgraded = newerWriter.deserialize(serializer.serialize(new MatchCachePayload(match, 0L, 0L)));
+        assertEquals("BIN", upgraded.getMatch().getCode());
+        assertNull(upgraded.getSpectators());
+    }
+
+    @Test
+    void payloadsAboveTheThresholdAreDeflatedAndReadAlikeWithPlainOnes() {
+        CompactPayloadSerializer<MatchCachePayload> compressing = new CompactPayloadSerializer<>(
+                MatchCachePayload.class, MatchCachePayload::getVersion, PayloadFormat.BINARY, 256);
+        byte[] plain = serializer.serialize(new MatchCachePayload(match, 0L, 0L));
+
+        byte[] deflated = compressing.serialize(new MatchCachePayload(match, 0L, 0L));
+
+        assertEquals(CompactPayloadSerializer.DEFLATED_MAGIC, deflated[0] & 0xFF);
+        assertEquals(300L, ByteBuffer.wrap(deflated, 2, 8).getLong());
+        assertTrue(deflated.length < plain.length, deflated.length + " vs " + plain.length);
+        assertEquals(8, serializer.deserialize(deflated).getMatch().getPlayers().size());
+        assertEquals(8, compressing.deserialize(plain).getMatch().getPlayers().size());
+
+        Match small = new Match(1L, "TINY");
+        assertEquals(CompactPayloadSerializer.MAGIC,
+                compressing.serialize(new MatchCachePayload(small, 0L, 0L))[0] & 0xFF);
+    }
+
+    @Test
+    void sessionsRoundTrip() {
+        CompactPayloadSerializer<PlayerSessionPayload> sessions = new CompactPayloadSerializer<>(
+                PlayerSessionPayload.class, payload -> 0L, PayloadFormat.BINARY);
+        Player player = new Player(1L, "ana", "skin", new Position(0, 0));
+        PlayerSessionPayload payload = new PlayerSessionPayload(player,
+                new CognitoTokens("access", "id", "refresh", 3600L, "Bearer"), 10L, 20L);
+
+        PlayerSessionPayload decoded = sessions.deserialize(sessions.serialize(payload));
+
+        assertEquals("ana", decoded.getPlayer().getUsername());
+        assertEquals(3600L, decoded.getTokens().expiresIn());
+        assertEquals(20L, decoded.getTtlSeconds());
+    }
+
+    /**
+     * Payload as a later release could write it.
+     */
+    static class ExtendedPayload extends MatchCachePayload {
+
+        private List<String> spectators;
+
+        ExtendedPayload() {
+        }
+
+        ExtendedPayload(Match match) {
+            super(match, 0L, 0L);
+        }
+
+        public List<String> getSpectators() {
+            return spectators;
+        }
+
+        public void setSpectators(List<String> spectators) {
+            this.spectators = spectators;
+        }
+    }
+}
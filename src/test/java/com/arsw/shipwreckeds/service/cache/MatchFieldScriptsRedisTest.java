@@ -0,0 +1,225 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import com.arsw.shipwreckeds.config.CacheProperties;
+import com.arsw.shipwreckeds.config.RedisConfig;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+import com.arsw.shipwreckeds.service.GameSnapshotService;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.FuelReply;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.Outcome;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.VoteReply;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Runs the fuel and vote scripts against a real Redis, on hashes written by
+ * {@link MatchCacheRepository}, served by an embedded Redis server.
+ */
+class MatchFieldScriptsRedisTest {
+
+    private static final long TTL_SECONDS = 600L;
+    private static final double BOAT_X = GameSnapshotService.BOAT_X;
+    private static final double BOAT_Y = GameSnapshotService.BOAT_Y;
+    private static final double BOAT_RADIUS = GameSnapshotService.BOAT_INTERACTION_RADIUS;
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+
+    private RedisTemplate<String, MatchCachePayload> template;
+    private MatchCacheRepository repository;
+    private MatchFieldScripts scripts;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new RedisServer(port);
+        server.start();
+        connectionFactory = new LettuceConnectionFactory("127.0.0.1", port);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.serverCommands().flushAll();
+        }
+        CacheProperties properties = new CacheProperties();
+        properties.setLayout(MatchStorageLayout.HASH);
+        MatchNearCache nearCache = mock(MatchNearCache.class);
+        template = new RedisConfig().matchRedisTemplate(connectionFactory, properties);
+        repository = new MatchCacheRepository(template, nearCache, properties);
+        scripts = new MatchFieldScripts(template, nearCache, properties);
+    }
+
+    @Test
+    void fuelClickPatchesTheFuelGroupAndBumpsTheVersion() {
+        repository.save(match("M1", 170, 40.0), TTL_SECONDS);
+        // a property of the fuel group the script does not know about
+        hset("M1", "fuel", "{\"fuelPercentage\":40.0,\"fuelSource\":\"tank\"}");
+
+        FuelReply reply = scripts.adjustFuel("M1", "crew", true, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS);
+
+        assertEquals(Outcome.APPLIED, reply.outcome());
+        assertEquals(50.0, reply.fuel());
+        Match stored = repository.findActive("M1");
+        assertEquals(50.0, stored.getFuelPercentage());
+        assertEquals(2L, stored.getVersion());
+        assertTrue(hget("M1", "fuel").contains("\"fuelSource\":\"tank\""), hget("M1", "fuel"));
+    }
+
+    @Test
+    void closedWindowReportsTheSecondsLeftAndWritesNothing() {
+        repository.save(match("M1", 230, 40.0), TTL_SECONDS);
+
+        FuelReply reply = scripts.adjustFuel("M1", "crew", true, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS);
+
+        assertEquals(Outcome.WINDOW_CLOSED, reply.outcome());
+        assertEquals(50, reply.secondsToWindow());
+        assertEquals(1L, repository.findActive("M1").getVersion());
+    }
+
+    @Test
+    void clicksTheScriptCannotDecideFallBackWithoutWriting() {
+        repository.save(match("M1", 170, 95.0), TTL_SECONDS);
+
+        // completing the repair ends the match: the Java path handles it
+        assertEquals(Outcome.FALL_BACK,
+                scripts.adjustFuel("M1", "crew", true, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS).outcome());
+        // too far from the boat
+        assertEquals(Outcome.FALL_BACK,
+                scripts.adjustFuel("M1", "crew", true, 1.0, 0.0, 0.0, BOAT_RADIUS).outcome());
+        hset("M1", null, "held");
+        assertEquals(Outcome.FALL_BACK,
+                scripts.adjustFuel("M1", "crew", true, 1.0, BOAT_X, BOAT_Y, BOAT_RADIUS).outcome());
+
+        Match stored = repository.findActive("M1");
+        assertEquals(95.0, stored.getFuelPercentage());
+        assertEquals(1L, stored.getVersion());
+    }
+
+    @Test
+    void fuelRulesOfTheJavaPathAreEnforced() {
+        repository.save(match("M1", 170, 40.0), TTL_SECONDS);
+
+        assertEquals(Outcome.INFILTRATOR_CANNOT_FILL,
+                scripts.adjustFuel("M1", "spy", true, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS).outcome());
+        assertEquals(Outcome.ONLY_INFILTRATOR_SABOTAGES,
+                scripts.adjustFuel("M1", "crew", false, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS).outcome());
+        assertEquals(Outcome.INVALID_PLAYER,
+                scripts.adjustFuel("M1", "ghost", true, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS).outcome());
+        assertEquals(Outcome.NOT_FOUND,
+                scripts.adjustFuel("NOPE", "crew", true, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS).outcome());
+        assertEquals(30.0, scripts.adjustFuel("M1", "spy", false, 10.0, BOAT_X, BOAT_Y, BOAT_RADIUS).fuel());
+    }
+
+    @Test
+    void ballotsAreRecordedUntilEveryLivingHumanVoted() {
+        Match match = match("M1", 170, 40.0);
+        match.startVoting();
+        repository.save(match, TTL_SECONDS);
+
+        VoteReply first = scripts.recordVote("M1", "crew", 200L);
+        VoteReply second = scripts.recordVote("M1", "mate", -1L);
+
+        assertEquals(Outcome.APPLIED, first.outcome());
+        assertFalse(first.allVoted());
+        assertTrue(second.allVoted());
+        Match stored = repository.findActive("M1");
+        assertEquals(Map.of("crew", 200L, "mate", -1L), stored.getVotesByPlayer());
+        assertTrue(stored.isVotingActive());
+        assertEquals(3L, stored.getVersion());
+    }
+
+    @Test
+    void voteRulesOfTheJavaPathAreEnforced() {
+        repository.save(match("M1", 170, 40.0), TTL_SECONDS);
+
+        assertEquals(Outcome.NO_ACTIVE_VOTE, scripts.recordVote("M1", "crew", 200L).outcome());
+
+        Match voting = repository.findActive("M1");
+        voting.startVoting();
+        voting.setVersion(voting.getVersion() + 1);
+        repository.save(voting, TTL_SECONDS);
+
+        assertEquals(Outcome.INFILTRATOR_CANNOT_VOTE, scripts.recordVote("M1", "spy", 200L).outcome());
+        assertEquals(Outcome.INVALID_PLAYER, scripts.recordVote("M1", "ghost", 200L).outcome());
+    }
+
+    private static Match match(String code, int timerSeconds, double fuel) {
+        Player crew = new Player(1L, "crew", "skin", new Position(BOAT_X, BOAT_Y));
+        crew.setAlive(true);
+        Player mate = new Player(2L, "mate", "skin", new Position(0.0, 0.0));
+        mate.setAlive(true);
+        Player spy = new Player(3L, "spy", "skin", new Position(0.0, 0.0));
+        spy.setAlive(true);
+        spy.setInfiltrator(true);
+        Match match = new Match(1L, code);
+        match.setPlayers(new ArrayList<>(List.of(crew, mate, spy)));
+        match.setNpcs(new ArrayList<>());
+        match.setInfiltrator(spy);
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(timerSeconds);
+        match.setFuelPercentage(fuel);
+        match.setVersion(1L);
+        return match;
+    }
+
+    /** Sets a field of the match hash, or the match lock when {@code field} is {@code null}. */
+    private void hset(String code, String field, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            if (field == null) {
+                connection.stringCommands().set(utf8(MatchCacheRepository.LOCK_KEY_PREFIX + code), bytes);
+            } else {
+                connection.hashCommands().hSet(utf8(MatchCacheRepository.HASH_KEY_PREFIX + code), utf8(field), bytes);
+            }
+        }
+    }
+
+    private String hget(String code, String field) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            byte[] value = connection.hashCommands().hGet(utf8(MatchCacheRepository.HASH_KEY_PREFIX + code),
+                    utf8(field));
+            return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import com.arsw.shipwreckeds.config.CacheProperties;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.FuelReply;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.Outcome;
+import com.arsw.shipwreckeds.service.cache.MatchFieldScripts.VoteReply;
+
+class MatchFieldScriptsTest {
+
+    private RedisTemplate<String, MatchCachePayload> template;
+    private MatchNearCache nearCache;
+    private CacheProperties properties;
+    private MatchFieldScripts scripts;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        template = mock(RedisTemplate.class);
+        nearCache = mock(MatchNearCache.class);
+        properties = new CacheProperties();
+        scripts = new MatchFieldScripts(template, nearCache, properties);
+    }
+
+    @Test
+    void scriptsNeedTheHashLayout() {
+        assertFalse(scripts.isAvailable());
+
+        properties.setLayout(MatchStorageLayout.HASH);
+
+        assertTrue(scripts.isAvailable());
+    }
+
+    @Test
+    void repliesMapToTheRulesOfTheJavaPath() {
+        assertEquals(Outcome.FALL_BACK, MatchFieldScripts.outcome(List.of(0L)));
+        assertEquals(Outcome.FALL_BACK, MatchFieldScripts.outcome(List.of()));
+        assertEquals(Outcome.APPLIED, MatchFieldScripts.outcome(List.of(1L, bytes("40"), 3L)));
+        assertEquals(Outcome.NOT_FOUND, MatchFieldScripts.outcome(List.of(-1L)));
+        assertEquals(Outcome.WINDOW_CLOSED, MatchFieldScripts.outcome(List.of(-4L, bytes("12"))));
+        assertEquals(Outcome.INFILTRATOR_CANNOT_VOTE, MatchFieldScripts.outcome(List.of(-8L)));
+    }
+
+    @Test
+    void appliedFuelClickInvalidatesTheNearCacheWithTheNewVersion() {
+        reply(List.of(1L, bytes("45.5"), 9L));
+
+        FuelReply reply = scripts.adjustFuel("M1", "crew", true, 5.0, 0.0, 0.0, 40.0);
+
+        assertEquals(Outcome.APPLIED, reply.outcome());
+        assertEquals(45.5, reply.fuel());
+        verify(nearCache).invalidate("M1", 9L);
+    }
+
+    @Test
+    void closedWindowReportsTheSecondsLeftWithoutInvalidating() {
+        reply(List.of(-4L, bytes("12")));
+
+        FuelReply reply = scripts.adjustFuel("M1", "crew", true, 5.0, 0.0, 0.0, 40.0);
+
+        assertEquals(Outcome.WINDOW_CLOSED, reply.outcome());
+        assertEquals(12, reply.secondsToWindow());
+        verifyNoInteractions(nearCache);
+    }
+
+    @Test
+    void ballotReportsWhetherEveryHumanVoted() {
+        reply(List.of(1L, 1L, 4L));
+
+        VoteReply reply = scripts.recordVote("M1", "bob", 200L);
+
+        assertEquals(Outcome.APPLIED, reply.outcome());
+        assertTrue(reply.allVoted());
+        verify(nearCache).invalidate("M1", 4L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reply(List<Object> reply) {
+        when(template.execute(any(RedisCallback.class))).thenReturn(reply);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
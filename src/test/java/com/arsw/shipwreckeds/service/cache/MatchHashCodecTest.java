@@ -0,0 +1,112 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Player;
+import com.arsw.shipwreckeds.model.Position;
+
+class MatchHashCodecTest {
+
+    private MatchHashCodec codec;
+    private Match match;
+
+    @BeforeEach
+    void setUp() {
+        codec = new MatchHashCodec();
+        match = new Match(7L, "HASH");
+        match.setStatus(MatchStatus.STARTED);
+        match.setTimerSeconds(200);
+        match.setVersion(12L);
+        List<Player> players = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            players.add(new Player(id, "player" + id, "skin", new Position(id, -id)));
+        }
+        match.setPlayers(players);
+        List<Npc> npcs = new ArrayList<>();
+        for (long id = 100; id < 110; id++) {
+            npcs.add(new Npc(id, "npc" + id, new Position(id, id), 0.3, false));
+        }
+        match.setNpcs(npcs);
+    }
+
+    @Test
+    void decodeRestoresTheEncodedMatch() {
+        Map<String, byte[]> fields = codec.encode(match);
+
+        Match decoded = codec.decode(fields);
+
+        assertEquals("HASH", decoded.getCode());
+        assertEquals(12L, decoded.getVersion());
+        assertEquals(200, decoded.getTimerSeconds());
+        assertEquals(MatchStatus.STARTED, decoded.getStatus());
+        assertEquals(8, decoded.getPlayers().size());
+        assertEquals(3.0, decoded.getPlayers().get(2).getPosition().getX());
+        assertEquals(10, decoded.getNpcs().size());
+        assertSame(fields, decoded.getStoredFields());
+    }
+
+    @Test
+    void tickOnlyChangesTheTimerAndVersionFields() {
+        Map<String, byte[]> stored = codec.encode(match);
+
+        match.setTimerSeconds(199);
+        match.setVersion(13L);
+        Map<String, byte[]> changed = MatchHashCodec.changed(codec.encode(match), stored);
+
+        assertEquals(Set.of("timer", MatchHashCodec.VERSION_FIELD), changed.keySet());
+        assertTrue(bytes(changed) * 20 < bytes(stored),
+                "Un tick debe escribir una fracción pequeña de la partida");
+    }
+
+    @Test
+    void moveOnlyChangesTheRosterAndVersionFields() {
+        Map<String, byte[]> stored = codec.encode(match);
+
+        match.getPlayers().get(0).moveTo(new Position(5, 5));
+        match.setVersion(13L);
+        Map<String, byte[]> changed = MatchHashCodec.changed(codec.encode(match), stored);
+
+        assertEquals(Set.of("roster", MatchHashCodec.VERSION_FIELD), changed.keySet());
+        assertTrue(bytes(changed) < bytes(stored));
+    }
+
+    @Test
+    void unchangedGroupsKeepTheStoredArrays() {
+        match.setStoredFields(codec.encode(match));
+
+        match.setTimerSeconds(199);
+        Map<String, byte[]> fields = codec.encode(match);
+
+        assertSame(match.getStoredFields().get("npcs"), fields.get("npcs"));
+        assertSame(match.getStoredFields().get("roster"), fields.get("roster"));
+        assertNotSame(match.getStoredFields().get("timer"), fields.get("timer"));
+        assertEquals(Set.of("timer"), MatchHashCodec.changed(fields, match.getStoredFields()).keySet());
+    }
+
+    @Test
+    void unknownStoredFieldsWriteEverything() {
+        Map<String, byte[]> fields = codec.encode(match);
+
+        assertSame(fields, MatchHashCodec.changed(fields, null));
+        assertNotNull(fields.get(MatchHashCodec.META_FIELD));
+    }
+
+    private static int bytes(Map<String, byte[]> fields) {
+        return fields.entrySet().stream().mapToInt(e -> e.getKey().length() + e.getValue().length).sum();
+    }
+}
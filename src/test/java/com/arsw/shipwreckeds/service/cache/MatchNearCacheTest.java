@@ -0,0 +1,93 @@
+package com.arsw.shipwreckeds.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import com.arsw.shipwreckeds.config.CacheProperties;
+import com.arsw.shipwreckeds.model.Match;
+
+class MatchNearCacheTest {
+
+    private CacheProperties properties;
+    private MatchNearCache nearCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CacheProperties();
+        properties.setNearCacheTtlMillis(60_000);
+        nearCache = new MatchNearCache(properties);
+        loads = new AtomicInteger();
+    }
+
+    private Function<String, Match> loader(Match match) {
+        return code -> {
+            loads.incrementAndGet();
+            return match;
+        };
+    }
+
+    private static Match match(long version) {
+        Match match = new Match(1L, "M1");
+        match.setVersion(version);
+        return match;
+    }
+
+    @Test
+    void repeatedLookupsAreServedFromMemory() {
+        Match stored = match(3L);
+
+        assertSame(stored, nearCache.get("M1", loader(stored)));
+        assertSame(stored, nearCache.get("M1", loader(stored)));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidationMessageForcesTheNextLookupToRedis() {
+        Match v3 = match(3L);
+        Match v4 = match(4L);
+        nearCache.get("M1", loader(v3));
+
+        nearCache.onMessage(new DefaultMessage(MatchNearCache.CHANNEL.getBytes(), MatchNearCache.message("M1", 4L)),
+                null);
+
+        assertSame(v4, nearCache.get("M1", loader(v4)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void readStartedBeforeAnInvalidationIsNotCached() {
+        Match v4 = match(4L);
+        Match v5 = match(5L);
+        nearCache.invalidate("M1", 5L);
+
+        // a slow reader still got the version written before the invalidation
+        assertSame(v4, nearCache.get("M1", loader(v4)));
+        assertSame(v5, nearCache.get("M1", loader(v5)));
+        assertSame(v5, nearCache.get("M1", loader(v5)));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void deleteAndDisabledCacheAlwaysReadRedis() {
+        nearCache.get("M1", loader(match(2L)));
+        nearCache.invalidate("M1", MatchNearCache.DELETED);
+        assertNull(nearCache.get("M1", loader(null)));
+
+        properties.setNearCacheTtlMillis(0);
+        nearCache.get("M2", loader(match(1L)));
+        nearCache.get("M2", loader(match(1L)));
+
+        assertEquals(4, loads.get());
+    }
+}
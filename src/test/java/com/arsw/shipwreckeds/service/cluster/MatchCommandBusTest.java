@@ -0,0 +1,102 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.arsw.shipwreckeds.config.ClusterProperties;
+import com.arsw.shipwreckeds.model.dto.VoteRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class MatchCommandBusTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private StringRedisTemplate redisTemplate;
+    private ClusterProperties properties;
+    private MatchCommandBus bus;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        properties = new ClusterProperties();
+        properties.setCommandTimeoutMillis(200);
+        bus = new MatchCommandBus(new NodeIdentity("node-a"), redisTemplate, mapper, properties);
+    }
+
+    @Test
+    void commandsForThisNodeRunInProcess() {
+        List<String> received = new ArrayList<>();
+        bus.registerHandler("vote", VoteRequest.class, (code, req) -> {
+            received.add(code + ":" + req.getUsername());
+            return new CommandReply(200, bus.toJson("ok"));
+        });
+
+        CommandReply reply = bus.request("node-a", "vote", "M1", voteRequest("ana"));
+
+        assertEquals(List.of("M1:ana"), received);
+        assertEquals(200, reply.status());
+        assertEquals("ok", reply.bodyValue());
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void remoteRequestIsPublishedAndCompletedByReply() throws Exception {
+        doAnswer(inv -> {
+            ClusterCommand sent = mapper.readValue(inv.<String>getArgument(1), ClusterCommand.class);
+            ClusterCommand reply = new ClusterCommand(sent.id(), "node-b", sent.type(), sent.code(), true, false,
+                    403, mapper.valueToTree("prohibido"));
+            bus.onMessage(new DefaultMessage(new byte[0],
+                    mapper.writeValueAsString(reply).getBytes(StandardCharsets.UTF_8)), null);
+            return 1L;
+        }).when(redisTemplate).convertAndSend(eq("shipwreckeds:node:node-b"), anyString());
+
+        CommandReply reply = bus.request("node-b", "vote", "M1", voteRequest("ana"));
+
+        assertEquals(403, reply.status());
+        assertEquals("prohibido", reply.bodyValue());
+    }
+
+    @Test
+    void remoteRequestTimesOutWithoutReply() {
+        assertThrows(IllegalStateException.class, () -> bus.request("node-b", "vote", "M1", voteRequest("ana")));
+    }
+
+    @Test
+    void incomingRequestIsExecutedAndAnswered() throws Exception {
+        bus.registerHandler("vote", VoteRequest.class, (code, req) -> new CommandReply(200, bus.toJson("ok")));
+        ClusterCommand request = new ClusterCommand("id-1", "node-b", "vote", "M1", false, true, 0,
+                mapper.valueToTree(voteRequest("ana")));
+
+        bus.onMessage(new DefaultMessage(new byte[0],
+                mapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8)), null);
+
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq("shipwreckeds:node:node-b"), json.capture());
+        ClusterCommand reply = mapper.readValue(json.getValue(), ClusterCommand.class);
+        assertEquals("id-1", reply.id());
+        assertEquals(200, reply.status());
+        assertEquals(true, reply.reply());
+    }
+
+    private VoteRequest voteRequest(String username) {
+        VoteRequest req = new VoteRequest();
+        req.setUsername(username);
+        req.setTargetId(7L);
+        return req;
+    }
+}
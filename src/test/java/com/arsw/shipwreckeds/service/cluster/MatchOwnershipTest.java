@@ -0,0 +1,129 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.config.ClusterProperties;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.service.cache.MatchCacheRepository;
+
+class MatchOwnershipTest {
+
+    private MatchLeaseRepository leaseRepository;
+    private MatchCacheRepository cacheRepository;
+    private ClusterProperties properties;
+    private MatchOwnership ownership;
+
+    @BeforeEach
+    void setUp() {
+        leaseRepository = mock(MatchLeaseRepository.class);
+        cacheRepository = mock(MatchCacheRepository.class);
+        properties = new ClusterProperties();
+        properties.setOwnershipEnabled(true);
+        ownership = new MatchOwnership(new NodeIdentity("node-a"), leaseRepository, cacheRepository, properties);
+    }
+
+    @Test
+    void acquireLoadsMatchIntoMemoryWhenLeaseIsFree() {
+        Match match = new Match(1L, "M1");
+        when(leaseRepository.tryAcquire("M1", "node-a", 15_000L)).thenReturn(true);
+        when(cacheRepository.findActive("M1")).thenReturn(match);
+
+        assertTrue(ownership.acquire("M1"));
+
+        assertSame(match, ownership.owned("M1").getMatch());
+        assertEquals(Set.of("M1"), ownership.ownedCodes());
+        assertNull(ownership.remoteOwner("M1"));
+    }
+
+    @Test
+    void acquireGivesLeaseBackWhenMatchIsGone() {
+        when(leaseRepository.tryAcquire("M1", "node-a", 15_000L)).thenReturn(true);
+
+        assertFalse(ownership.acquire("M1"));
+
+        assertNull(ownership.owned("M1"));
+        verify(leaseRepository).release("M1", "node-a");
+    }
+
+    @Test
+    void remoteOwnerIsCachedAndIgnoresThisNode() {
+        when(leaseRepository.ownerOf("M1")).thenReturn("node-b");
+        when(leaseRepository.ownerOf("M2")).thenReturn("node-a");
+
+        assertEquals("node-b", ownership.remoteOwner("M1"));
+        assertEquals("node-b", ownership.remoteOwner("M1"));
+        assertNull(ownership.remoteOwner("M2"));
+        verify(leaseRepository, times(1)).ownerOf("M1");
+    }
+
+    @Test
+    void lostLeasesAreDroppedAndReported() {
+        when(leaseRepository.tryAcquire(anyString(), anyString(), anyLong())).thenReturn(true);
+        when(cacheRepository.findActive("M1")).thenReturn(new Match(1L, "M1"));
+        when(cacheRepository.findActive("M2")).thenReturn(new Match(2L, "M2"));
+        ownership.acquire("M1");
+        ownership.acquire("M2");
+        when(leaseRepository.renewAll(anyCollection(), anyString(), anyLong())).thenReturn(Set.of("M2"));
+        List<String> lost = new ArrayList<>();
+        ownership.addLeaseLostListener(lost::add);
+
+        ownership.renewLeases();
+
+        assertEquals(List.of("M2"), lost);
+        assertEquals(Set.of("M1"), ownership.ownedCodes());
+    }
+
+    @Test
+    void flushDirtyWritesPendingMatchesOnceAndReleaseFlushesTheRest() {
+        properties.setWriteBehindMillis(200);
+        when(leaseRepository.tryAcquire(anyString(), anyString(), anyLong())).thenReturn(true);
+        Match m1 = new Match(1L, "M1");
+        Match m2 = new Match(2L, "M2");
+        when(cacheRepository.findActive("M1")).thenReturn(m1);
+        when(cacheRepository.findActive("M2")).thenReturn(m2);
+        ownership.acquire("M1");
+        ownership.acquire("M2");
+        ownership.owned("M1").markDirty();
+
+        ownership.flushDirty();
+        ownership.flushDirty();
+
+        assertTrue(ownership.isWriteBehind());
+        verify(cacheRepository, times(1)).saveAll(List.of(m1), 7200L);
+        assertFalse(ownership.owned("M1").isDirty());
+
+        ownership.owned("M2").markDirty();
+        ownership.release("M2");
+
+        verify(cacheRepository).save(m2, 7200L);
+        verify(leaseRepository).release("M2", "node-a");
+    }
+
+    @Test
+    void disabledOwnershipNeverTouchesRedis() {
+        properties.setOwnershipEnabled(false);
+
+        assertFalse(ownership.acquire("M1"));
+        assertNull(ownership.remoteOwner("M1"));
+        verifyNoInteractions(leaseRepository, cacheRepository);
+    }
+}
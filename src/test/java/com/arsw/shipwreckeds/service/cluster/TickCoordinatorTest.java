@@ -0,0 +1,139 @@
+package com.arsw.shipwreckeds.service.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.arsw.shipwreckeds.config.ClusterProperties;
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.MatchStatus;
+import com.arsw.shipwreckeds.service.GameEngine;
+import com.arsw.shipwreckeds.service.cache.MatchCacheRepository;
+import com.arsw.shipwreckeds.service.cache.VersionedMatch;
+
+class TickCoordinatorTest {
+
+    private GameEngine gameEngine;
+    private MatchOwnership ownership;
+    private MatchCacheRepository cacheRepository;
+    private MatchLeaseRepository leaseRepository;
+    private NodeRegistry registry;
+    private ClusterProperties properties;
+    private TickCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        gameEngine = mock(GameEngine.class);
+        ownership = mock(MatchOwnership.class);
+        cacheRepository = mock(MatchCacheRepository.class);
+        leaseRepository = mock(MatchLeaseRepository.class);
+        registry = mock(NodeRegistry.class);
+        properties = new ClusterProperties();
+        properties.setOwnershipEnabled(true);
+        coordinator = new TickCoordinator(gameEngine, ownership, cacheRepository, leaseRepository, registry,
+                properties);
+        coordinator.setCpuProbe(() -> 0.1);
+        when(ownership.nodeId()).thenReturn("node-a");
+        when(ownership.ownedCodes()).thenReturn(Set.of());
+        when(cacheRepository.scanCodes()).thenReturn(List.of());
+    }
+
+    @Test
+    void adoptsStartedMatchesWithoutLease() {
+        when(cacheRepository.scanCodes()).thenReturn(List.of("RUN", "LEASED", "LOBBY"));
+        when(leaseRepository.ownersOf(anyList())).thenReturn(Map.of("LEASED", "node-b"));
+        when(cacheRepository.findAllActive(List.of("RUN", "LOBBY"))).thenReturn(List.of(
+                new VersionedMatch("RUN", match("RUN", MatchStatus.STARTED), "d1"),
+                new VersionedMatch("LOBBY", match("LOBBY", MatchStatus.WAITING), "d2")));
+        when(gameEngine.adoptMatch("RUN")).thenReturn(true);
+
+        coordinator.coordinate();
+
+        verify(gameEngine).adoptMatch("RUN");
+        verify(gameEngine, never()).adoptMatch("LOBBY");
+        ArgumentCaptor<NodeLoad> load = ArgumentCaptor.forClass(NodeLoad.class);
+        verify(registry).publish(load.capture(), eq(15_000L));
+        assertEquals("node-a", load.getValue().nodeId());
+    }
+
+    @Test
+    void leavesOrphansToUnderloadedPeersUntilGraceExpires() {
+        properties.setOrphanGraceMillis(60_000);
+        when(ownership.ownedCodes()).thenReturn(Set.of("A1", "A2"));
+        when(registry.liveNodes()).thenReturn(List.of(new NodeLoad("node-b", 0, 0, 0.1, 0L)));
+        when(cacheRepository.scanCodes()).thenReturn(List.of("A1", "A2", "RUN"));
+        when(leaseRepository.ownersOf(List.of("RUN"))).thenReturn(Map.of());
+        when(cacheRepository.findAllActive(List.of("RUN"))).thenReturn(List.of(
+                new VersionedMatch("RUN", match("RUN", MatchStatus.STARTED), "d1")));
+
+        coordinator.coordinate();
+
+        verify(gameEngine, never()).adoptMatch(anyString());
+        verify(gameEngine, never()).handOff(anyString());
+    }
+
+    @Test
+    void handsOffExcessToLessLoadedPeerPreferringMatchesNotVoting() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String code = "M" + i;
+            codes.add(code);
+            Match m = match(code, MatchStatus.STARTED);
+            m.setVotingActive(i < 4);
+            when(ownership.owned(code)).thenReturn(new OwnedMatch(code, m));
+        }
+        when(ownership.ownedCodes()).thenReturn(Set.copyOf(codes));
+        when(registry.liveNodes()).thenReturn(List.of(new NodeLoad("node-b", 0, 0, 0.1, 0L)));
+        when(cacheRepository.scanCodes()).thenReturn(codes);
+
+        coordinator.coordinate();
+
+        // six matches over two equal nodes: three each, at most two moves per round
+        verify(gameEngine).handOff("M4");
+        verify(gameEngine).handOff("M5");
+        verify(gameEngine, times(2)).handOff(anyString());
+    }
+
+    @Test
+    void singleNodeNeverHandsOff() {
+        when(ownership.ownedCodes()).thenReturn(Set.of("A1", "A2", "A3", "A4"));
+
+        coordinator.coordinate();
+
+        verify(gameEngine, never()).handOff(anyString());
+    }
+
+    @Test
+    void saturatedNodesGetSmallerShare() {
+        List<NodeLoad> nodes = List.of(
+                new NodeLoad("idle", 0, 0, 0.0, 0L),
+                new NodeLoad("busy", 0, 250, 0.2, 0L));
+
+        double idle = TickCoordinator.targetShare("idle", nodes, 9, 250);
+        double busy = TickCoordinator.targetShare("busy", nodes, 9, 250);
+
+        assertEquals(6.0, idle, 1e-9);
+        assertEquals(3.0, busy, 1e-9);
+    }
+
+    private Match match(String code, MatchStatus status) {
+        Match match = new Match(1L, code);
+        match.setStatus(status);
+        return match;
+    }
+}
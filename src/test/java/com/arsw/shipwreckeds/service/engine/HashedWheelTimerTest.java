@@ -0,0 +1,117 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @AfterEach
+    void tearDown() {
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    @Test
+    void oneShotFiresOnceAfterDelay() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8, "test-wheel", runAll());
+        long start = System.nanoTime();
+
+        timer.schedule("M1", TimerKind.VOTE_END, fired::countDown, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(60), "No debe dispararse antes de tiempo");
+        Thread.sleep(30);
+        assertEquals(0, timer.activeTimers());
+    }
+
+    @Test
+    void delaysLongerThanOneRevolutionWaitExtraRounds() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        // 4 slots x 5 ms = 20 ms per revolution
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 4, "test-wheel", runAll());
+        long start = System.nanoTime();
+
+        timer.schedule("M1", TimerKind.VOTE_END, fired::countDown, 70, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(70));
+    }
+
+    @Test
+    void cancelledTimerNeverFires() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8, "test-wheel", runAll());
+
+        WheelTimeout timeout = timer.schedule("M1", TimerKind.VOTE_END, runs::incrementAndGet, 30,
+                TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel(), "Cancelar dos veces no debe tener efecto");
+        Thread.sleep(80);
+
+        assertEquals(0, runs.get());
+        assertEquals(0, timer.activeTimers());
+    }
+
+    @Test
+    void periodicTimerReusesHandleUntilCancelled() throws Exception {
+        CountDownLatch ticks = new CountDownLatch(5);
+        List<WheelTimeout> seen = new CopyOnWriteArrayList<>();
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8, "test-wheel", batch -> {
+            seen.addAll(batch);
+            batch.forEach(t -> t.task().run());
+        });
+
+        WheelTimeout handle = timer.scheduleAtFixedRate("M1", TimerKind.MATCH_TICK, ticks::countDown, 10, 10,
+                TimeUnit.MILLISECONDS);
+
+        assertTrue(ticks.await(1, TimeUnit.SECONDS));
+        assertTrue(seen.stream().allMatch(t -> t == handle), "El mismo nodo se reutiliza en cada periodo");
+        assertEquals(1, timer.activeTimers());
+        handle.cancel();
+        Thread.sleep(30);
+        int firedSoFar = seen.size();
+        Thread.sleep(50);
+        assertEquals(firedSoFar, seen.size());
+        assertEquals(0, timer.activeTimers());
+    }
+
+    @Test
+    void timersInSameSlotAreDeliveredAsOneBatch() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        timer = new HashedWheelTimer(50, TimeUnit.MILLISECONDS, 8, "test-wheel", batch -> {
+            List<String> keys = new ArrayList<>();
+            batch.forEach(t -> keys.add(t.key()));
+            batches.add(keys);
+            delivered.countDown();
+        });
+
+        for (int i = 0; i < 100; i++) {
+            timer.schedule("M" + i, TimerKind.MATCH_TICK, () -> {
+            }, 60, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(delivered.await(1, TimeUnit.SECONDS));
+        assertEquals(100, batches.get(0).size());
+    }
+
+    private static Consumer<List<WheelTimeout>> runAll() {
+        return batch -> batch.forEach(t -> t.task().run());
+    }
+}
@@ -0,0 +1,122 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.config.GameEngineProperties;
+
+class MatchMutationExecutorTest {
+
+    @Test
+    void platformModeRunsInline() {
+        MatchMutationExecutor executor = new MatchMutationExecutor(new GameEngineProperties());
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+
+        executor.execute(() -> ranOn.set(Thread.currentThread()));
+        executor.execute("M1", () -> assertSame(Thread.currentThread(), ranOn.get()));
+
+        assertEquals(ExecutionMode.PLATFORM, executor.getMode());
+        assertSame(Thread.currentThread(), ranOn.get());
+    }
+
+    @Test
+    void virtualModeRunsOnVirtualThreadWhenSupported() throws Exception {
+        assumeTrue(MatchMutationExecutor.isVirtualSupported(), "Virtual threads require the java21 profile");
+        GameEngineProperties properties = new GameEngineProperties();
+        properties.setExecutionMode(ExecutionMode.VIRTUAL);
+        MatchMutationExecutor executor = new MatchMutationExecutor(properties);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+
+        executor.execute(() -> {
+            ranOn.set(Thread.currentThread());
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        // the test sources also compile on the Java 17 baseline
+        assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(ranOn.get()));
+        executor.shutdown();
+    }
+
+    @Test
+    void virtualModeFailsFastWithoutTheJava21Build() {
+        assumeFalse(MatchMutationExecutor.isVirtualSupported());
+        GameEngineProperties properties = new GameEngineProperties();
+        properties.setExecutionMode(ExecutionMode.VIRTUAL);
+
+        assertThrows(IllegalStateException.class, () -> new MatchMutationExecutor(properties));
+    }
+
+    @Test
+    void tasksOfTheSameKeyRunOneAtATimeInSubmissionOrder() throws Exception {
+        ExecutorService threads = Executors.newCachedThreadPool();
+        MatchMutationExecutor executor = new MatchMutationExecutor(ExecutionMode.VIRTUAL, threads);
+        List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean running = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(200);
+
+        for (int i = 0; i < 200; i++) {
+            int task = i;
+            executor.execute("M1", () -> {
+                overlapped.compareAndSet(false, !running.compareAndSet(false, true));
+                try {
+                    if (task == 0) {
+                        throw new IllegalStateException("a failed mutation does not stall the match");
+                    }
+                    ran.add(task);
+                } finally {
+                    running.set(false);
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertFalse(overlapped.get(), "Dos mutaciones de la misma partida no deben solaparse");
+        for (int i = 0; i < ran.size(); i++) {
+            assertEquals(i + 1, ran.get(i), "Las mutaciones deben ejecutarse en orden de llegada");
+        }
+        assertEquals(199, ran.size());
+    }
+
+    @Test
+    void tasksOfDifferentKeysDoNotWaitForEachOther() throws Exception {
+        ExecutorService threads = Executors.newCachedThreadPool();
+        MatchMutationExecutor executor = new MatchMutationExecutor(ExecutionMode.VIRTUAL, threads);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+
+        executor.execute("M1", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute("M2", other::countDown);
+
+        assertTrue(other.await(1, TimeUnit.SECONDS), "Otra partida no espera a M1");
+        release.countDown();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.model.Match;
+import com.arsw.shipwreckeds.model.Npc;
+import com.arsw.shipwreckeds.model.Position;
+
+class MatchSimulationTest {
+
+    private static final long STEP_20HZ = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    void advanceRunsOneStepPerElapsedPeriodAndCarriesRemainder() {
+        MatchSimulation sim = new MatchSimulation("M1", 20, 0L);
+
+        assertEquals(0, sim.advance(STEP_20HZ / 2));
+        assertEquals(1, sim.advance(STEP_20HZ));
+        assertEquals(2, sim.advance(STEP_20HZ * 3 + STEP_20HZ / 2));
+    }
+
+    @Test
+    void advanceDropsBacklogAfterLongStall() {
+        MatchSimulation sim = new MatchSimulation("M1", 20, 0L);
+
+        assertEquals(MatchSimulation.MAX_STEPS_PER_ADVANCE, sim.advance(TimeUnit.SECONDS.toNanos(10)));
+        assertEquals(0, sim.advance(TimeUnit.SECONDS.toNanos(10) + 1));
+    }
+
+    @Test
+    void npcsMoveWithRealDeltaAndPositionsAreWrittenOnSync() {
+        Match match = matchWithNpc(1L, new Position(0.0, 0.0));
+        MatchSimulation sim = new MatchSimulation("M1", 20, 0L);
+        sim.sync(match, 0L);
+
+        sim.advance(STEP_20HZ * 4);
+        Position simulated = sim.positionOf(1L);
+        double travelled = Math.hypot(simulated.getX(), simulated.getY());
+        // 4 steps of 50 ms at 0.3 * 3 units/s
+        assertTrue(travelled > 0.0 && travelled <= 0.3 * 3.0 * 0.2 + 1e-9, "Recorrido: " + travelled);
+
+        sim.sync(match, STEP_20HZ * 4);
+        assertEquals(simulated.getX(), match.getNpcs().get(0).getPosition().getX(), 1e-9);
+        assertEquals(simulated.getY(), match.getNpcs().get(0).getPosition().getY(), 1e-9);
+        assertSame(match, sim.view());
+    }
+
+    @Test
+    void syncDropsInactiveOrRemovedNpcs() {
+        Match match = matchWithNpc(1L, new Position(0.0, 0.0));
+        Npc other = new Npc(2L, "skin", new Position(5.0, 5.0), 0.3, false);
+        match.getNpcs().add(other);
+        MatchSimulation sim = new MatchSimulation("M1", 20, 0L);
+        sim.sync(match, 0L);
+        assertEquals(2, sim.size());
+
+        other.setActive(false);
+        match.getNpcs().remove(0);
+        sim.sync(match, 1L);
+
+        assertEquals(0, sim.size());
+        assertNull(sim.positionOf(1L));
+    }
+
+    @Test
+    void stepsNeverLeaveTheIsland() {
+        Match match = matchWithNpc(1L, new Position(97.5, 0.0));
+        MatchSimulation sim = new MatchSimulation("M1", 30, 0L);
+        sim.sync(match, 0L);
+
+        long now = 0L;
+        for (int i = 0; i < 300; i++) {
+            now += sim.stepNanos();
+            sim.advance(now);
+            Position p = sim.positionOf(1L);
+            assertTrue(Math.hypot(p.getX(), p.getY()) < 98.0 + 1e-9);
+        }
+        assertNotEquals(97.5, sim.positionOf(1L).getX());
+    }
+
+    @Test
+    void rejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new MatchSimulation("M1", 0, 0L));
+    }
+
+    private static Match matchWithNpc(long id, Position position) {
+        Match match = new Match(1L, "M1");
+        Npc npc = new Npc(id, "skin", position, 0.3, false);
+        match.setNpcs(new ArrayList<>(List.of(npc)));
+        return match;
+    }
+}
@@ -0,0 +1,83 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+class NpcStoreTest {
+
+    @Test
+    void syncRemovesUnseenNpcsAndReusesTheirSlots() {
+        NpcStore store = new NpcStore(2);
+        store.beginSync();
+        int a = store.add(1L, 0.0, 0.0, 0.3);
+        int b = store.add(2L, 5.0, 5.0, 0.3);
+        int c = store.add(3L, 9.0, 9.0, 0.3);
+        store.endSync();
+        assertEquals(3, store.size());
+        assertTrue(store.capacity() >= 3);
+
+        store.beginSync();
+        assertEquals(a, store.slotOf(1L, 0));
+        assertEquals(c, store.slotOf(3L, 0));
+        store.endSync();
+
+        assertEquals(2, store.size());
+        assertEquals(-1, store.slotOf(2L, b));
+        assertEquals(b, store.add(4L, 1.0, 1.0, 0.3));
+    }
+
+    @Test
+    void stepMovesTowardsTargetAtClampedSpeed() {
+        NpcStore store = new NpcStore();
+        int slot = store.add(1L, 0.0, 0.0, 5.0);
+        store.setTarget(slot, 50.0, 0.0);
+
+        store.step(1.0);
+
+        // speed is clamped to 0.55 and multiplied by 3 units per second
+        assertEquals(1.65, store.x(slot), 1e-9);
+        assertEquals(0.0, store.y(slot), 1e-9);
+    }
+
+    @Test
+    void stepNeverLeavesTheIsland() {
+        NpcStore store = new NpcStore();
+        int slot = store.add(1L, 97.5, 0.0, 0.55);
+        store.setTarget(slot, 150.0, 0.0);
+
+        for (int i = 0; i < 500; i++) {
+            store.step(0.05);
+            assertTrue(Math.hypot(store.x(slot), store.y(slot)) < NpcStore.ISLAND_RADIUS - 2.0 + 1e-9);
+        }
+    }
+
+    @Test
+    void stepDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        NpcStore store = new NpcStore(512);
+        for (int i = 0; i < 500; i++) {
+            store.add(i, 0.0, 0.0, 0.3);
+        }
+        for (int i = 0; i < 2_000; i++) {
+            store.step(0.05);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000; i++) {
+            store.step(0.05);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // a Position or boxed id per NPC and step would be tens of megabytes
+        assertTrue(allocated < 64 * 1024, "Bytes asignados: " + allocated);
+    }
+}
@@ -0,0 +1,59 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PositionHistoryTest {
+
+    @Test
+    void positionAtReturnsNewestSampleNotAfterTheRequestedTime() {
+        PositionHistory history = new PositionHistory(4);
+        history.record(1L, 100L, 1.0, 1.0);
+        history.record(1L, 200L, 2.0, 2.0);
+        history.record(1L, 300L, 3.0, 3.0);
+        double[] out = new double[2];
+
+        assertTrue(history.positionAt(1L, 250L, out));
+        assertArrayEquals(new double[] { 2.0, 2.0 }, out);
+        assertTrue(history.positionAt(1L, 300L, out));
+        assertArrayEquals(new double[] { 3.0, 3.0 }, out);
+        assertFalse(history.positionAt(1L, 99L, out));
+        assertFalse(history.positionAt(2L, 300L, out));
+    }
+
+    @Test
+    void ringOverwritesOldestSamplesWithoutGrowing() {
+        PositionHistory history = new PositionHistory(3);
+        for (int i = 1; i <= 10; i++) {
+            history.record(7L, i * 10L, i, -i);
+        }
+        double[] out = new double[2];
+
+        assertFalse(history.positionAt(7L, 70L, out));
+        assertTrue(history.positionAt(7L, 85L, out));
+        assertArrayEquals(new double[] { 8.0, -8.0 }, out);
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    void outOfOrderSamplesAreIgnoredAndAvatarsKeepSeparateRings() {
+        PositionHistory history = new PositionHistory(2);
+        for (long id = 0; id < 20; id++) {
+            history.record(id, 100L, id, id);
+        }
+        history.record(5L, 50L, -1.0, -1.0);
+        double[] out = new double[2];
+
+        assertTrue(history.positionAt(5L, 100L, out));
+        assertArrayEquals(new double[] { 5.0, 5.0 }, out);
+        assertTrue(history.positionAt(19L, 100L, out));
+        assertArrayEquals(new double[] { 19.0, 19.0 }, out);
+        assertEquals(20, history.size());
+        assertThrows(IllegalArgumentException.class, () -> new PositionHistory(0));
+    }
+}
@@ -0,0 +1,117 @@
+package com.arsw.shipwreckeds.service.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ShardedTickExecutorTest {
+
+    private ShardedTickExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void sameCodeAlwaysMapsToSameLane() {
+        executor = new ShardedTickExecutor(4, "test-lane");
+
+        int lane = executor.laneFor("ABC123");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(lane, executor.laneFor("ABC123"));
+        }
+        assertTrue(lane >= 0 && lane < 4);
+    }
+
+    @Test
+    void slowLaneDoesNotDelayOtherLanes() throws Exception {
+        executor = new ShardedTickExecutor(2, "test-lane");
+        String slowCode = codeOnLane(0);
+        String fastCode = codeOnLane(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastRan = new CountDownLatch(1);
+
+        executor.execute(slowCode, () -> awaitQuietly(release), System.nanoTime());
+        executor.execute(fastCode, fastRan::countDown, System.nanoTime());
+
+        assertTrue(fastRan.await(1, TimeUnit.SECONDS), "La lane libre debe ejecutar aunque la otra esté bloqueada");
+        release.countDown();
+    }
+
+    @Test
+    void statsReportQueueDepthAndLagOfBlockedLane() throws Exception {
+        executor = new ShardedTickExecutor(1, "test-lane");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute("A", () -> {
+            started.countDown();
+            awaitQuietly(release);
+        }, System.nanoTime());
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        long due = System.nanoTime();
+        executor.execute("B", () -> {
+        }, due);
+        executor.execute("C", () -> {
+        }, due);
+
+        List<TickLaneStats> stats = executor.stats();
+        assertEquals(1, stats.size());
+        assertEquals(2, stats.get(0).queueDepth());
+
+        Thread.sleep(50);
+        release.countDown();
+        Thread.sleep(50);
+        TickLaneStats after = executor.stats().get(0);
+        assertEquals(0, after.queueDepth());
+        assertEquals(3, after.executedTasks());
+        assertTrue(after.maxTickLagMs() >= 40, "Las tareas encoladas deben reportar retraso");
+    }
+
+    @Test
+    void failingTaskDoesNotKillTheLane() throws Exception {
+        executor = new ShardedTickExecutor(1, "test-lane");
+        CountDownLatch ran = new CountDownLatch(1);
+
+        executor.execute("X", () -> {
+            throw new IllegalStateException("boom");
+        }, System.nanoTime());
+        executor.execute("X", ran::countDown, System.nanoTime());
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsNonPositiveLaneCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedTickExecutor(0, "x"));
+    }
+
+    private String codeOnLane(int lane) {
+        for (int i = 0; i < 1000; i++) {
+            String code = "M" + i;
+            if (executor.laneFor(code) == lane) {
+                return code;
+            }
+        }
+        throw new IllegalStateException("no code found for lane " + lane);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.arsw.shipwreckeds.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+class BinarySnapshotSubscriptionsTest {
+
+    private static final String BINARY = "application/octet-stream;codec=snapshot-v1";
+
+    private BinarySnapshotSubscriptions subscriptions;
+    private MessageChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        subscriptions = new BinarySnapshotSubscriptions();
+        channel = mock(MessageChannel.class);
+    }
+
+    @Test
+    void nativeSubscriberRequestingBinaryIsMovedToBinaryDestination() {
+        Message<?> result = subscriptions.preSend(subscribe("s1", "sub-0", "/topic/game/ABC", BINARY, true), channel);
+
+        assertEquals("/topic/game/ABC/binary", StompHeaderAccessor.wrap(result).getDestination());
+        assertTrue(subscriptions.hasSubscribers("ABC"));
+        assertTrue(subscriptions.takeFullTableRequest("ABC"));
+        assertFalse(subscriptions.takeFullTableRequest("ABC"));
+    }
+
+    @Test
+    void sockJsAndJsonSubscribersStayOnJsonTopic() {
+        Message<?> sockJs = subscriptions.preSend(subscribe("s1", "sub-0", "/topic/game/ABC", BINARY, false), channel);
+        Message<?> json = subscriptions.preSend(subscribe("s2", "sub-0", "/topic/game/ABC", null, true), channel);
+
+        assertEquals("/topic/game/ABC", StompHeaderAccessor.wrap(sockJs).getDestination());
+        assertEquals("/topic/game/ABC", StompHeaderAccessor.wrap(json).getDestination());
+        assertFalse(subscriptions.hasSubscribers("ABC"));
+    }
+
+    @Test
+    void unsubscribeAndDisconnectReleaseSubscribers() {
+        subscriptions.preSend(subscribe("s1", "sub-0", "/topic/game/ABC", BINARY, true), channel);
+        subscriptions.preSend(subscribe("s2", "sub-0", "/topic/game/ABC", BINARY, true), channel);
+
+        StompHeaderAccessor unsubscribe = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+        unsubscribe.setSessionId("s1");
+        unsubscribe.setSubscriptionId("sub-0");
+        subscriptions.preSend(MessageBuilder.createMessage(new byte[0], unsubscribe.getMessageHeaders()), channel);
+        assertTrue(subscriptions.hasSubscribers("ABC"));
+
+        StompHeaderAccessor disconnect = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        disconnect.setSessionId("s2");
+        subscriptions.onDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.createMessage(new byte[0], disconnect.getMessageHeaders()), "s2", CloseStatus.NORMAL));
+        assertFalse(subscriptions.hasSubscribers("ABC"));
+    }
+
+    private Message<byte[]> subscribe(String session, String subscription, String destination, String contentType,
+            boolean nativeTransport) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(session);
+        accessor.setSubscriptionId(subscription);
+        accessor.setDestination(destination);
+        if (contentType != null) {
+            accessor.setNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER, contentType);
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        if (nativeTransport) {
+            attributes.put(BinarySnapshotSubscriptions.NATIVE_TRANSPORT, Boolean.TRUE);
+        }
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -1,14 +1,22 @@
 package com.arsw.shipwreckeds.websocket;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -17,10 +25,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,26 +46,107 @@ class DistributedWsBroadcasterTest {
     @Mock
     private SimpMessagingTemplate messagingTemplate;
 
+    @Mock
+    private BinarySnapshotRelay binaryRelay;
+
     private ObjectMapper objectMapper;
+    private BroadcastProperties properties;
+    private MatchEventHistory history;
     private DistributedWsBroadcaster broadcaster;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
-        broadcaster = new DistributedWsBroadcaster(redisTemplate, objectMapper, messagingTemplate);
+        properties = new BroadcastProperties();
+        history = new MatchEventHistory(properties);
+        broadcaster = new DistributedWsBroadcaster(redisTemplate, objectMapper, messagingTemplate, binaryRelay,
+                history, properties);
     }
 
     @Test
-    void publishSerializesPayloadAndSendsItToRedis() throws Exception {
+    void publishSerializesPayloadOnceAndSendsItToRedis() throws Exception {
         Map<String, Object> payload = Map.of("message", "hello");
 
         broadcaster.publish("/topic/game/ABC", payload);
 
-        ArgumentCaptor<String> jsonCaptor = ArgumentCaptor.forClass(String.class);
-        verify(redisTemplate).convertAndSend(eq(DistributedWsBroadcaster.WS_CHANNEL), jsonCaptor.capture());
-        DistributedWsEvent event = objectMapper.readValue(jsonCaptor.getValue(), DistributedWsEvent.class);
+        DistributedWsEvent event = DistributedWsEvent.decode(published(1).get(0));
         assertEquals("/topic/game/ABC", event.destination());
-        assertEquals("hello", event.payload().get("message").asText());
+        assertArrayEquals(objectMapper.writeValueAsBytes(payload), event.payload());
+        assertEquals(1L, event.seq());
+        assertFalse(event.snapshot());
+    }
+
+    @Test
+    void matchEventsAreSequencedAndRelayedWithTheirStamp() throws Exception {
+        broadcaster.publish("/topic/game/ABC", Map.of("n", 1));
+        broadcaster.publish("/topic/game/ABC/elimination", Map.of("n", 2));
+        broadcaster.publish("/topic/lobby/ABC", Map.of("n", 3));
+
+        List<byte[]> bodies = published(3);
+        DistributedWsEvent state = DistributedWsEvent.decode(bodies.get(0));
+        DistributedWsEvent elimination = DistributedWsEvent.decode(bodies.get(1));
+        DistributedWsEvent lobby = DistributedWsEvent.decode(bodies.get(2));
+        assertEquals(state.stream(), elimination.stream());
+        assertEquals(2L, elimination.seq());
+        assertNull(lobby.stream());
+
+        var message = mock(org.springframework.data.redis.connection.Message.class);
+        when(message.getBody()).thenReturn(bodies.get(1));
+        broadcaster.onMessage(message, null);
+
+        Message<?> sent = sentTo("/topic/game/ABC/elimination");
+        assertArrayEquals(elimination.payload(), (byte[]) sent.getPayload());
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(sent);
+        assertEquals(state.stream(), headers.getFirstNativeHeader(MatchEventHistory.STREAM_HEADER));
+        assertEquals("2", headers.getFirstNativeHeader(MatchEventHistory.SEQ_HEADER));
+        assertEquals(1, history.catchUp("ABC", state.stream(), 1L).getEvents().size());
+    }
+
+    @Test
+    void gameStatesAreFlaggedSoRelaysNeedNotParseThem() throws Exception {
+        GameState state = new GameState("ABC", 1L, 60, null, List.of(), 0.0, "STARTED", null, null, false, 0,
+                false, 0L, null, null, 0L);
+        GameStateFrame delta = GameStateFrame.delta("s", 2, state);
+
+        broadcaster.publish("/topic/game/ABC", state);
+        broadcaster.publish("/topic/game/ABC", delta);
+
+        List<byte[]> bodies = published(2);
+        DistributedWsEvent full = DistributedWsEvent.decode(bodies.get(0));
+        DistributedWsEvent frame = DistributedWsEvent.decode(bodies.get(1));
+        assertTrue(full.snapshot());
+        assertFalse(full.frame());
+        assertFalse(frame.snapshot());
+        assertTrue(frame.frame());
+
+        var message = mock(org.springframework.data.redis.connection.Message.class);
+        when(message.getBody()).thenReturn(bodies.get(1));
+        broadcaster.onMessage(message, null);
+
+        verify(binaryRelay).relay("/topic/game/ABC", frame.payload(), true);
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    void perMatchChannelsRouteMatchTopicsAwayFromTheSharedChannel() throws Exception {
+        properties.setPerMatchChannels(true);
+
+        broadcaster.publish("/topic/game/ABC/vote/result", Map.of("n", 1));
+        broadcaster.publish("/topic/lobby/ABC", Map.of("n", 2));
+        broadcaster.publish("/topic/announcements", Map.of("n", 3));
+
+        ArgumentCaptor<RedisCallback> callbacks = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate, times(3)).execute(callbacks.capture());
+        RedisConnection connection = mock(RedisConnection.class);
+        for (RedisCallback callback : callbacks.getAllValues()) {
+            callback.doInRedis(connection);
+        }
+        byte[] matchChannel = DistributedWsBroadcaster.matchChannel("ABC").getBytes(StandardCharsets.UTF_8);
+        verify(connection, times(2)).publish(eq(matchChannel), any(byte[].class));
+        verify(connection).publish(eq(DistributedWsBroadcaster.WS_CHANNEL.getBytes(StandardCharsets.UTF_8)),
+                any(byte[].class));
+        assertEquals("ABC", DistributedWsBroadcaster.matchOf("/topic/game/ABC/binary"));
+        assertNull(DistributedWsBroadcaster.matchOf("/topic/game/"));
     }
 
     @Test
@@ -63,16 +158,95 @@ class DistributedWsBroadcasterTest {
     }
 
     @Test
-    void onMessageDispatchesPayload() throws Exception {
-        JsonNode payload = objectMapper.valueToTree(Map.of("foo", "bar"));
+    void publishAllSendsEveryEventInOnePipeline() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            RedisCallback<?> callback = inv.getArgument(0);
+            callback.doInRedis(connection);
+            return List.of(1L, 1L);
+        });
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("/topic/game/A", Map.of("n", 1));
+        payloads.put("/topic/game/B", Map.of("n", 2));
+
+        broadcaster.publishAll(payloads);
+
+        ArgumentCaptor<byte[]> bodies = ArgumentCaptor.forClass(byte[].class);
+        verify(connection, times(2)).publish(eq(DistributedWsBroadcaster.WS_CHANNEL.getBytes(StandardCharsets.UTF_8)),
+                bodies.capture());
+        DistributedWsEvent second = DistributedWsEvent.decode(bodies.getAllValues().get(1));
+        assertEquals("/topic/game/B", second.destination());
+        assertEquals(2, objectMapper.readTree(second.payload()).get("n").asInt());
+        verify(redisTemplate, never()).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void onMessageDispatchesPreEncodedPayload() {
+        byte[] payload = "{\"foo\":\"bar\"}".getBytes(StandardCharsets.UTF_8);
         DistributedWsEvent event = new DistributedWsEvent("instance", "/topic/foo", payload);
-        String body = objectMapper.writeValueAsString(event);
         var message = mock(org.springframework.data.redis.connection.Message.class);
-        when(message.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        when(message.getBody()).thenReturn(event.encode());
+
+        broadcaster.onMessage(message, null);
+
+        Message<?> sent = sentTo("/topic/foo");
+        assertArrayEquals(payload, (byte[]) sent.getPayload());
+        assertEquals("application/json;charset=UTF-8",
+                SimpMessageHeaderAccessor.wrap(sent).getContentType().toString());
+        verify(binaryRelay).relay("/topic/foo", payload, false);
+    }
+
+    @Test
+    void publishWritesTheJsonEnvelopeOlderNodesRead() throws Exception {
+        broadcaster.publish("/topic/game/ABC", Map.of("message", "hello"));
+
+        byte[] body = published(1).get(0);
+        var envelope = objectMapper.readTree(body);
+        assertEquals("/topic/game/ABC", envelope.get("destination").asText());
+        assertEquals("hello", envelope.get("payload").get("message").asText());
+        assertEquals(1L, envelope.get("seq").asLong());
+        assertTrue(envelope.get("stream").isTextual());
+    }
+
+    @Test
+    void binaryEnvelopeIsPublishedOnlyWhenEnabled() throws Exception {
+        properties.setBinaryEnvelope(true);
+
+        broadcaster.publish("/topic/game/ABC", Map.of("message", "hello"));
+
+        byte[] body = published(1).get(0);
+        assertEquals(DistributedWsEvent.FORMAT, body[0]);
+        assertEquals("/topic/game/ABC", DistributedWsEvent.decode(body).destination());
+    }
+
+    @Test
+    void onMessageReadsTheJsonEnvelopeOfOlderNodes() {
+        byte[] body = ("{\"sourceId\":\"old-node\",\"destination\":\"/topic/game/ABC\","
+                + "\"payload\":{\"kind\":\"keyframe\",\"seq\":4},\"stream\":\"s1\",\"seq\":4}")
+                .getBytes(StandardCharsets.UTF_8);
+        var message = mock(org.springframework.data.redis.connection.Message.class);
+        when(message.getBody()).thenReturn(body);
+
+        broadcaster.onMessage(message, null);
+
+        DistributedWsEvent event = DistributedWsEvent.decode(body);
+        assertEquals("old-node", event.sourceId());
+        assertTrue(event.frame());
+        assertTrue(event.snapshot());
+        Message<?> sent = sentTo("/topic/game/ABC");
+        assertEquals("{\"kind\":\"keyframe\",\"seq\":4}", new String((byte[]) sent.getPayload(), StandardCharsets.UTF_8));
+        assertEquals("4", SimpMessageHeaderAccessor.wrap(sent).getFirstNativeHeader(MatchEventHistory.SEQ_HEADER));
+        verify(binaryRelay).relay("/topic/game/ABC", event.payload(), true);
+    }
+
+    @Test
+    void onMessageDropsUnknownFormats() {
+        var message = mock(org.springframework.data.redis.connection.Message.class);
+        when(message.getBody()).thenReturn("{\"destination\":\"/topic/foo\"}".getBytes(StandardCharsets.UTF_8));
 
         broadcaster.onMessage(message, null);
 
-        verify(messagingTemplate).convertAndSend("/topic/foo", payload);
+        verifyNoInteractions(messagingTemplate, binaryRelay);
     }
 
     @Test
@@ -84,4 +258,24 @@ class DistributedWsBroadcasterTest {
 
         verifyNoInteractions(messagingTemplate);
     }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private List<byte[]> published(int count) throws Exception {
+        ArgumentCaptor<RedisCallback> callbacks = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate, times(count)).execute(callbacks.capture());
+        RedisConnection connection = mock(RedisConnection.class);
+        for (RedisCallback callback : callbacks.getAllValues()) {
+            callback.doInRedis(connection);
+        }
+        ArgumentCaptor<byte[]> bodies = ArgumentCaptor.forClass(byte[].class);
+        verify(connection, times(count)).publish(eq(DistributedWsBroadcaster.WS_CHANNEL.getBytes(StandardCharsets.UTF_8)),
+                bodies.capture());
+        return bodies.getAllValues();
+    }
+
+    private Message<?> sentTo(String destination) {
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq(destination), sent.capture());
+        return sent.getValue();
+    }
 }
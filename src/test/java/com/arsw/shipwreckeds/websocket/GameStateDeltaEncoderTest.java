@@ -0,0 +1,155 @@
+package com.arsw.shipwreckeds.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.dto.AvatarDelta;
+import com.arsw.shipwreckeds.model.dto.AvatarState;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class GameStateDeltaEncoderTest {
+
+    private BroadcastProperties properties;
+    private GameStateDeltaEncoder encoder;
+    private List<GameStateFrame> sent;
+
+    @BeforeEach
+    void setUp() {
+        properties = new BroadcastProperties();
+        properties.setDeltaEnabled(true);
+        properties.setKeyframeInterval(3);
+        encoder = new GameStateDeltaEncoder(properties);
+        sent = new ArrayList<>();
+    }
+
+    @Test
+    void firstFrameIsKeyframeAndNextOnesCarryOnlyChanges() {
+        GameState first = state(8, 0.0);
+        GameState second = state(8, 0.0);
+        second.getAvatars().get(2).setX(3.5);
+
+        encoder.encode("ABC", first, sent::add);
+        encoder.encode("ABC", second, sent::add);
+
+        GameStateFrame keyframe = sent.get(0);
+        assertTrue(keyframe.isKeyframe());
+        assertEquals(1, keyframe.getSeq());
+        assertSame(first, keyframe.getState());
+
+        GameStateFrame delta = sent.get(1);
+        assertEquals(GameStateFrame.DELTA, delta.getKind());
+        assertEquals(2, delta.getSeq());
+        assertEquals(1L, delta.getBaseSeq());
+        assertEquals(keyframe.getStream(), delta.getStream());
+        assertNull(delta.getState());
+        assertNull(delta.getTimerSeconds());
+        assertEquals(1, delta.getAvatars().size());
+        AvatarDelta moved = delta.getAvatars().get(0);
+        assertEquals(3L, moved.getId());
+        assertEquals(3.5, moved.getX());
+        assertNull(moved.getY());
+        assertNull(moved.getDisplayName());
+    }
+
+    @Test
+    void sendsPeriodicAndRequestedKeyframes() {
+        for (int i = 0; i < 5; i++) {
+            encoder.encode("ABC", state(4, i), sent::add);
+        }
+        encoder.requestKeyframe("ABC");
+        encoder.encode("ABC", state(4, 9), sent::add);
+
+        // keyframe, three deltas, periodic keyframe, requested keyframe
+        List<Boolean> kinds = sent.stream().map(GameStateFrame::isKeyframe).toList();
+        assertEquals(List.of(true, false, false, false, true, true), kinds);
+    }
+
+    @Test
+    void reportsAddedAndRemovedAvatarsAndFallsBackToKeyframeWhenFieldsAreCleared() {
+        GameState before = state(3, 0.0);
+        before.setVoteOptions(List.of(avatar(1L, 0.0)));
+        GameState after = state(3, 0.0);
+        after.getAvatars().remove(0);
+        after.getAvatars().add(avatar(7L, 1.0));
+        after.setVoteOptions(List.of(avatar(1L, 0.0)));
+        after.setTimerSeconds(41);
+
+        GameStateFrame delta = GameStateDeltaEncoder.diff(before, after, "s", 2);
+
+        assertEquals(41, delta.getTimerSeconds());
+        assertNull(delta.getVoteOptions());
+        assertEquals(List.of(1L), delta.getRemovedAvatars());
+        assertEquals(7L, delta.getAvatars().get(0).getId());
+        assertEquals("npc", delta.getAvatars().get(0).getType());
+
+        GameState voteOver = state(3, 0.0);
+        assertNull(GameStateDeltaEncoder.diff(before, voteOver, "s", 2));
+    }
+
+    @Test
+    void deltaListsOnlyAdvancedInputAcks() {
+        GameState before = state(2, 0.0);
+        before.setInputAcks(Map.of("ana", 3L, "bob", 9L));
+        GameState after = state(2, 0.0);
+        after.setInputAcks(Map.of("ana", 4L, "bob", 9L));
+
+        GameStateFrame delta = GameStateDeltaEncoder.diff(before, after, "s", 2);
+
+        assertEquals(Map.of("ana", 4L), delta.getInputAcks());
+        GameState gone = state(2, 0.0);
+        gone.setInputAcks(Map.of("ana", 4L));
+        assertNull(GameStateDeltaEncoder.diff(before, gone, "s", 2));
+    }
+
+    @Test
+    void finishedMatchDropsItsStream() {
+        encoder.encode("ABC", state(2, 0.0), sent::add);
+        GameState finished = state(2, 0.0);
+        finished.setStatus("FINISHED");
+        encoder.encode("ABC", finished, sent::add);
+
+        assertEquals(0, encoder.streamCount());
+        encoder.encode("ABC", state(2, 0.0), sent::add);
+        assertTrue(sent.get(2).isKeyframe());
+        assertFalse(sent.get(2).getStream().equals(sent.get(0).getStream()));
+    }
+
+    @Test
+    void singleMoveDeltaIsAnOrderOfMagnitudeSmallerThanFullState() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        GameState before = state(40, 0.0);
+        GameState after = state(40, 0.0);
+        after.getAvatars().get(0).setX(3.5);
+
+        int full = mapper.writeValueAsBytes(after).length;
+        int delta = mapper.writeValueAsBytes(GameStateDeltaEncoder.diff(before, after, "abcd1234", 2)).length;
+
+        assertTrue(delta * 10 < full, "Delta " + delta + " bytes vs estado completo " + full);
+    }
+
+    private static GameState state(int avatars, double offset) {
+        List<AvatarState> list = new ArrayList<>();
+        for (long id = 1; id <= avatars; id++) {
+            list.add(avatar(id, offset + id * 1.37));
+        }
+        return new GameState("ABC", 1_000L, 60, new GameState.Island(0, 0, 100), list, 50.0, "STARTED",
+                new GameState.Boat(80, 0, 12), null, false, 0, false, 0L, null, null, 0L);
+    }
+
+    private static AvatarState avatar(long id, double x) {
+        return new AvatarState(id, "npc", null, x, -x / 3.0, false, true, "NPC-" + (1000 + id));
+    }
+}
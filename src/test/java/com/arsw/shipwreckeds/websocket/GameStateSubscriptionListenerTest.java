@@ -0,0 +1,78 @@
+package com.arsw.shipwreckeds.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import com.arsw.shipwreckeds.service.cluster.MatchCommandBus;
+import com.arsw.shipwreckeds.service.cluster.MatchOwnership;
+
+class GameStateSubscriptionListenerTest {
+
+    private GameStateDeltaEncoder encoder;
+    private MatchOwnership ownership;
+    private MatchCommandBus commandBus;
+    private GameStateSubscriptionListener listener;
+
+    @BeforeEach
+    void setUp() {
+        encoder = mock(GameStateDeltaEncoder.class);
+        ownership = mock(MatchOwnership.class);
+        commandBus = mock(MatchCommandBus.class);
+        when(encoder.isEnabled()).thenReturn(true);
+        listener = new GameStateSubscriptionListener(encoder, ownership, commandBus);
+    }
+
+    @Test
+    void extractsMatchCodeOnlyFromGameStateTopic() {
+        assertEquals("ABC", GameStateSubscriptionListener.matchCodeOf("/topic/game/ABC"));
+        assertNull(GameStateSubscriptionListener.matchCodeOf("/topic/game/ABC/vote/start"));
+        assertNull(GameStateSubscriptionListener.matchCodeOf("/topic/lobby/ABC"));
+        assertNull(GameStateSubscriptionListener.matchCodeOf(null));
+    }
+
+    @Test
+    void requestsKeyframeLocallyOrFromOwner() {
+        when(ownership.remoteOwner("REMOTE")).thenReturn("node-b");
+
+        listener.onSubscribe(subscribe("/topic/game/LOCAL"));
+        listener.onSubscribe(subscribe("/topic/game/REMOTE"));
+
+        verify(encoder).requestKeyframe("LOCAL");
+        verify(encoder, never()).requestKeyframe("REMOTE");
+        verify(commandBus).send("node-b", GameStateSubscriptionListener.CMD_KEYFRAME, "REMOTE", null);
+    }
+
+    @Test
+    void ignoresSubscriptionsWhenDeltasAreDisabled() {
+        when(encoder.isEnabled()).thenReturn(false);
+
+        listener.onSubscribe(subscribe("/topic/game/ABC"));
+
+        verify(encoder, never()).requestKeyframe(anyString());
+        verify(commandBus, never()).send(anyString(), anyString(), anyString(), any());
+        verify(commandBus).registerHandler(eq(GameStateSubscriptionListener.CMD_KEYFRAME), eq(Object.class), any());
+    }
+
+    private SessionSubscribeEvent subscribe(String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setSessionId("s1");
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionSubscribeEvent(this, message);
+    }
+}
@@ -0,0 +1,112 @@
+package com.arsw.shipwreckeds.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+
+class MatchChannelSubscriptionsTest {
+
+    private RedisMessageListenerContainer container;
+    private DistributedWsBroadcaster broadcaster;
+    private BroadcastProperties properties;
+    private MatchChannelSubscriptions subscriptions;
+
+    @BeforeEach
+    void setUp() {
+        container = mock(RedisMessageListenerContainer.class);
+        broadcaster = mock(DistributedWsBroadcaster.class);
+        properties = new BroadcastProperties();
+        properties.setPerMatchChannels(true);
+        subscriptions = new MatchChannelSubscriptions(container, broadcaster, properties);
+    }
+
+    @Test
+    void listensWhileAnyLocalSessionIsSubscribedToTheMatch() {
+        ChannelTopic channel = new ChannelTopic(DistributedWsBroadcaster.matchChannel("ABC"));
+
+        subscriptions.onSubscribe(subscribe("s1", "sub-1", "/topic/game/ABC"));
+        subscriptions.onSubscribe(subscribe("s1", "sub-2", "/topic/game/ABC/vote/start"));
+        subscriptions.onSubscribe(subscribe("s2", "sub-1", "/topic/lobby/ABC"));
+
+        verify(container).addMessageListener(broadcaster, channel);
+        assertTrue(subscriptions.isListening("ABC"));
+
+        subscriptions.onUnsubscribe(unsubscribe("s1", "sub-1"));
+        subscriptions.onDisconnect(disconnect("s1"));
+        verify(container, never()).removeMessageListener(any(MessageListener.class), any(Topic.class));
+
+        subscriptions.onDisconnect(disconnect("s2"));
+        verify(container).removeMessageListener(broadcaster, channel);
+        assertFalse(subscriptions.isListening("ABC"));
+    }
+
+    @Test
+    void unsubscribingTwiceOrFromOtherTopicsDoesNotDropTheChannel() {
+        subscriptions.onSubscribe(subscribe("s1", "sub-1", "/topic/game/ABC"));
+        subscriptions.onSubscribe(subscribe("s1", "sub-2", "/topic/chat"));
+
+        subscriptions.onUnsubscribe(unsubscribe("s1", "sub-2"));
+        subscriptions.onUnsubscribe(unsubscribe("s9", "sub-1"));
+
+        assertTrue(subscriptions.isListening("ABC"));
+        subscriptions.onUnsubscribe(unsubscribe("s1", "sub-1"));
+        subscriptions.onUnsubscribe(unsubscribe("s1", "sub-1"));
+        verify(container, times(1)).removeMessageListener(any(MessageListener.class), any(Topic.class));
+    }
+
+    @Test
+    void disabledPerMatchChannelsNeverSubscribe() {
+        properties.setPerMatchChannels(false);
+
+        subscriptions.onSubscribe(subscribe("s1", "sub-1", "/topic/game/ABC"));
+
+        verifyNoInteractions(container);
+        assertFalse(subscriptions.isListening("ABC"));
+    }
+
+    private SessionSubscribeEvent subscribe(String sessionId, String subscriptionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        return new SessionSubscribeEvent(this, message(accessor, sessionId, subscriptionId));
+    }
+
+    private SessionUnsubscribeEvent unsubscribe(String sessionId, String subscriptionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+        return new SessionUnsubscribeEvent(this, message(accessor, sessionId, subscriptionId));
+    }
+
+    private SessionDisconnectEvent disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        return new SessionDisconnectEvent(this, message(accessor, sessionId, null), sessionId, CloseStatus.NORMAL);
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor, String sessionId, String subscriptionId) {
+        accessor.setSessionId(sessionId);
+        if (subscriptionId != null) {
+            accessor.setSubscriptionId(subscriptionId);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
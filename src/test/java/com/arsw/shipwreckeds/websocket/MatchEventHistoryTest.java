@@ -0,0 +1,122 @@
+package com.arsw.shipwreckeds.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.config.BroadcastProperties;
+import com.arsw.shipwreckeds.model.dto.GameCatchUp;
+import com.arsw.shipwreckeds.model.dto.ReplayedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class MatchEventHistoryTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private BroadcastProperties properties;
+    private MatchEventHistory history;
+
+    @BeforeEach
+    void setUp() {
+        properties = new BroadcastProperties();
+        properties.setHistorySize(6);
+        history = new MatchEventHistory(properties);
+    }
+
+    @Test
+    void publishStampsMatchTopicsInOrderAndLeavesOthersUnstamped() {
+        List<MatchEventHistory.Stamp> stamps = new ArrayList<>();
+        history.publishSequenced("/topic/game/ABC", stamps::add);
+        history.publishSequenced("/topic/game/ABC/vote/result", stamps::add);
+        history.publishSequenced("/topic/game/XYZ", stamps::add);
+        history.publishSequenced("/topic/lobby/ABC", stamps::add);
+        history.publishSequenced("/topic/game/ABC/binary", stamps::add);
+
+        assertEquals(2L, stamps.get(1).seq());
+        assertEquals(stamps.get(0).stream(), stamps.get(1).stream());
+        assertEquals(1L, stamps.get(2).seq());
+        assertNull(stamps.get(3));
+        assertNull(stamps.get(4));
+    }
+
+    @Test
+    void catchUpReplaysTheGapSkippingSupersededStates() throws Exception {
+        record(1, "/topic/game/ABC", Map.of("timerSeconds", 60));
+        record(2, "/topic/game/ABC/elimination", Map.of("targetId", 2));
+        record(3, "/topic/game/ABC", Map.of("timerSeconds", 59));
+        record(4, "/topic/game/ABC/vote/result", Map.of("message", "Expulsado"));
+        record(5, "/topic/game/ABC", Map.of("timerSeconds", 58));
+
+        GameCatchUp catchUp = history.catchUp("ABC", "s1", 1L);
+
+        assertTrue(catchUp.isComplete());
+        assertEquals(5L, catchUp.getLatestSeq());
+        assertEquals(List.of(2L, 4L, 5L), seqs(catchUp));
+        assertEquals("{\"targetId\":2}", catchUp.getEvents().get(0).getPayload());
+        assertTrue(mapper.writeValueAsString(catchUp).contains("\"payload\":{\"targetId\":2}"));
+        assertEquals(List.of(), seqs(history.catchUp("ABC", "s1", 5L)));
+    }
+
+    @Test
+    void tooOldOrForeignGapRestartsFromLatestSnapshot() {
+        record(1, "/topic/game/ABC", Map.of("kind", "keyframe"));
+        for (long seq = 2; seq <= 4; seq++) {
+            record(seq, "/topic/game/ABC", Map.of("kind", "delta"));
+        }
+        record(5, "/topic/game/ABC", Map.of("kind", "keyframe"));
+        record(6, "/topic/game/ABC", Map.of("kind", "delta"));
+        record(7, "/topic/game/ABC/elimination", Map.of("targetId", 2));
+        record(8, "/topic/game/ABC", Map.of("kind", "delta"));
+
+        GameCatchUp stale = history.catchUp("ABC", "s1", 1L);
+        GameCatchUp foreign = history.catchUp("ABC", "other", 7L);
+
+        assertFalse(stale.isComplete());
+        assertEquals(List.of(5L, 6L, 7L, 8L), seqs(stale));
+        assertEquals(List.of(5L, 6L, 7L, 8L), seqs(foreign));
+        // a delta gap is replayed as is
+        assertEquals(List.of(7L, 8L), seqs(history.catchUp("ABC", "s1", 6L)));
+    }
+
+    @Test
+    void newStreamReplacesTheHistoryAndEvictedSnapshotGivesNothing() {
+        record(1, "/topic/game/ABC", Map.of("kind", "keyframe"));
+        for (long seq = 2; seq <= 8; seq++) {
+            record(seq, "/topic/game/ABC", Map.of("kind", "delta"));
+        }
+        assertTrue(history.catchUp("ABC", null, null).getEvents().isEmpty());
+
+        history.record("/topic/game/ABC", new MatchEventHistory.Stamp("s2", 1), json(Map.of("kind", "keyframe")),
+                true);
+        GameCatchUp catchUp = history.catchUp("ABC", "s1", 8L);
+
+        assertEquals("s2", catchUp.getStream());
+        assertEquals(List.of(1L), seqs(catchUp));
+        assertTrue(history.catchUp("NONE", null, null).getEvents().isEmpty());
+    }
+
+    private void record(long seq, String destination, Map<String, Object> payload) {
+        boolean snapshot = !payload.containsKey("kind") || "keyframe".equals(payload.get("kind"));
+        history.record(destination, new MatchEventHistory.Stamp("s1", seq), json(payload), snapshot);
+    }
+
+    private byte[] json(Map<String, Object> payload) {
+        try {
+            return mapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Long> seqs(GameCatchUp catchUp) {
+        return catchUp.getEvents().stream().map(ReplayedEvent::getSeq).toList();
+    }
+}
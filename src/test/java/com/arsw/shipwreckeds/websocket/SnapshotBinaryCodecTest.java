@@ -0,0 +1,136 @@
+package com.arsw.shipwreckeds.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.arsw.shipwreckeds.model.dto.AvatarDelta;
+import com.arsw.shipwreckeds.model.dto.AvatarState;
+import com.arsw.shipwreckeds.model.dto.GameState;
+import com.arsw.shipwreckeds.model.dto.GameStateFrame;
+import com.arsw.shipwreckeds.model.dto.VoteResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class SnapshotBinaryCodecTest {
+
+    @Test
+    void fullStateRoundTripsWithQuantizedPositions() {
+        GameState state = state();
+        state.setVotingActive(true);
+        state.setVoteOptions(List.of(new AvatarState(9L, "npc", null, 1.0, 2.0, false, true, "NPC-1009")));
+        state.setLastVoteResult(new VoteResult(Map.of(9L, 2), 9L, "npc", "Expulsado NPC-1009", 1, 5_000L));
+        state.setLastVoteResultEpochMs(5_000L);
+        state.setInputAcks(Map.of("ana", 42L));
+
+        GameState decoded = (GameState) SnapshotBinaryCodec.decode(
+                SnapshotBinaryCodec.encode(state, new SnapshotBinaryCodec.StringTable(), false), new ArrayList<>());
+
+        assertEquals("ABC", decoded.getCode());
+        assertEquals(state.getTimestamp(), decoded.getTimestamp());
+        assertEquals(100.0, decoded.getIsland().getRadius());
+        assertEquals(3, decoded.getAvatars().size());
+        AvatarState human = decoded.getAvatars().get(0);
+        assertEquals("human", human.getType());
+        assertEquals("ana", human.getOwnerUsername());
+        assertEquals(12.35, human.getX(), 1e-9);
+        assertEquals(-40.12, human.getY(), 1e-9);
+        assertTrue(human.isAlive());
+        AvatarState disguised = decoded.getAvatars().get(1);
+        assertEquals("npc", disguised.getType());
+        assertTrue(disguised.isInfiltrator());
+        assertEquals("NPC-1002", disguised.getDisplayName());
+        assertEquals("STARTED", decoded.getStatus());
+        assertEquals(37.5, decoded.getFuelPercentage());
+        assertTrue(decoded.isVotingActive());
+        assertEquals(1, decoded.getVoteOptions().size());
+        assertEquals(9L, decoded.getLastVoteResult().getExpelledId());
+        assertEquals(2, decoded.getLastVoteResult().getCounts().get(9L));
+        assertEquals("Expulsado NPC-1009", decoded.getLastVoteResult().getMessage());
+        assertNull(decoded.getWinnerMessage());
+        assertEquals(Map.of("ana", 42L), decoded.getInputAcks());
+    }
+
+    @Test
+    void deltaRoundTripsOnlyPresentFields() {
+        GameState header = state();
+        GameStateFrame delta = GameStateFrame.delta("s1", 7, header);
+        delta.setTimerSeconds(58);
+        delta.setVotingActive(false);
+        AvatarDelta moved = new AvatarDelta();
+        moved.setId(2L);
+        moved.setX(3.5);
+        moved.setAlive(false);
+        delta.setAvatars(List.of(moved));
+        delta.setRemovedAvatars(List.of(3L));
+
+        GameStateFrame decoded = (GameStateFrame) SnapshotBinaryCodec.decode(
+                SnapshotBinaryCodec.encode(delta, new SnapshotBinaryCodec.StringTable(), false), new ArrayList<>());
+
+        assertEquals(GameStateFrame.DELTA, decoded.getKind());
+        assertEquals("s1", decoded.getStream());
+        assertEquals(7, decoded.getSeq());
+        assertEquals(6L, decoded.getBaseSeq());
+        assertEquals(58, decoded.getTimerSeconds());
+        assertEquals(Boolean.FALSE, decoded.getVotingActive());
+        assertNull(decoded.getFuelPercentage());
+        AvatarDelta avatar = decoded.getAvatars().get(0);
+        assertEquals(2L, avatar.getId());
+        assertEquals(3.5, avatar.getX());
+        assertNull(avatar.getY());
+        assertEquals(Boolean.FALSE, avatar.getAlive());
+        assertNull(avatar.getInfiltrator());
+        assertEquals(List.of(3L), decoded.getRemovedAvatars());
+    }
+
+    @Test
+    void stringsAreSentOnceUnlessFullTableRequested() {
+        SnapshotBinaryCodec.StringTable table = new SnapshotBinaryCodec.StringTable();
+        List<String> received = new ArrayList<>();
+
+        byte[] first = SnapshotBinaryCodec.encode(state(), table, false);
+        byte[] second = SnapshotBinaryCodec.encode(state(), table, false);
+        SnapshotBinaryCodec.decode(first, received);
+        GameState decoded = (GameState) SnapshotBinaryCodec.decode(second, received);
+
+        assertTrue(second.length < first.length);
+        assertEquals("ana", decoded.getAvatars().get(0).getOwnerUsername());
+
+        // a late subscriber cannot decode the second message but can decode a full-table one
+        assertThrows(IllegalStateException.class, () -> SnapshotBinaryCodec.decode(second, new ArrayList<>()));
+        byte[] full = SnapshotBinaryCodec.encode(state(), table, true);
+        assertEquals("ABC", ((GameState) SnapshotBinaryCodec.decode(full, new ArrayList<>())).getCode());
+    }
+
+    @Test
+    void binaryStateIsMuchSmallerThanJson() throws Exception {
+        GameState state = state();
+        List<AvatarState> avatars = new ArrayList<>(state.getAvatars());
+        for (long id = 10; id < 50; id++) {
+            avatars.add(new AvatarState(id, "npc", null, id * 1.731, -id * 0.917, false, true, "NPC-" + (1000 + id)));
+        }
+        state.setAvatars(avatars);
+        SnapshotBinaryCodec.StringTable table = new SnapshotBinaryCodec.StringTable();
+        SnapshotBinaryCodec.encode(state, table, false);
+
+        int json = new ObjectMapper().writeValueAsBytes(state).length;
+        int binary = SnapshotBinaryCodec.encode(state, table, false).length;
+
+        assertTrue(binary * 5 < json, "Binario " + binary + " bytes vs JSON " + json);
+    }
+
+    private static GameState state() {
+        List<AvatarState> avatars = new ArrayList<>();
+        avatars.add(new AvatarState(1L, "human", "ana", 12.3456, -40.1234, false, true, "ana"));
+        avatars.add(new AvatarState(2L, "npc", null, 0.0, 0.0, true, true, "NPC-1002"));
+        avatars.add(new AvatarState(3L, "npc", null, 5.0, 5.0, false, false, "NPC-1003"));
+        return new GameState("ABC", 1_700_000_000_123L, 60, new GameState.Island(0, 0, 100), avatars, 37.5,
+                "STARTED", new GameState.Boat(80, 0, 12), null, false, 0, false, 0L, null, null, 0L);
+    }
+}